@@ -0,0 +1,186 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.bench;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import at.dms.kjc.AutoCloner;
+import at.dms.kjc.flatgraph.GraphFlattener;
+import at.dms.kjc.sir.SIRStream;
+import at.dms.kjc.sir.lowering.ConstantProp;
+import at.dms.kjc.sir.lowering.ConstructSIRTree;
+import at.dms.kjc.sir.lowering.FieldProp;
+import at.dms.kjc.sir.lowering.Flattener;
+import at.dms.kjc.sir.lowering.Unroller;
+import at.dms.kjc.sir.lowering.fusion.Lifter;
+import at.dms.kjc.sir.lowering.partition.GreedierPartitioner;
+import at.dms.kjc.sir.lowering.partition.GreedyPartitioner;
+import at.dms.kjc.sir.lowering.partition.WorkEstimate;
+import at.dms.kjc.sir.lowering.partition.dynamicprog.DynamicProgPartitioner;
+
+/**
+ * Measures compiler passes on the stream graphs of programs from
+ * apps/benchmarks, at three stages of the main compilation path:
+ *
+ * <pre>
+ * raw      right out of Kopi2SIR, with statics propagated
+ * tree     after constant propagation and ConstructSIRTree
+ * lowered  after Flattener.lowerFilterContents (what the
+ *          partitioners see)
+ * </pre>
+ *
+ * The graphs are built once per fork, and passes that change them
+ * work on a fresh copy, made outside of the measured time.  A raw
+ * graph can't be copied (the children of its containers are only
+ * reachable through their init functions), and Kopi2SIR can only
+ * run once per VM, so constant propagation is timed once per fork,
+ * cold, as it runs in the compiler.  The .str files are looked for
+ * under the directory named by the streamit.bench.apps property,
+ * where the bench-apps target of build.xml puts them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompilerPassBench
+{
+    @State(Scope.Benchmark)
+    public static class Graphs
+    {
+        @Param({"FFT2", "FMRadio", "BitonicSort", "FIR", "MatrixMultBlock"})
+        public String app;
+
+        /** the number of partitions the partitioners aim for */
+        @Param({"16"})
+        public int tiles;
+
+        SIRStream raw, tree, lowered;
+
+        @Setup(Level.Trial)
+        public void load(BenchmarkParams params) throws Exception
+        {
+            File dir = new File(System.getProperty("streamit.bench.apps", "apps"),
+                                app);
+            raw = SIRCapture.load(new File(dir, app + ".str"));
+            if (params.getBenchmark().endsWith(".constantProp"))
+                return;
+
+            tree = raw;
+            raw = null;
+            ConstantProp.propagateAndUnroll(tree, true);
+            ConstructSIRTree.doit(tree);
+
+            lowered = copy(tree);
+            Flattener.lowerFilterContents(lowered, false);
+            Lifter.liftAggressiveSync(lowered);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TreeCopy
+    {
+        SIRStream str;
+
+        @Setup(Level.Invocation)
+        public void copy(Graphs graphs) { str = CompilerPassBench.copy(graphs.tree); }
+    }
+
+    @State(Scope.Thread)
+    public static class LoweredCopy
+    {
+        SIRStream str;
+
+        @Setup(Level.Invocation)
+        public void copy(Graphs graphs) { str = CompilerPassBench.copy(graphs.lowered); }
+    }
+
+    static SIRStream copy(SIRStream str)
+    {
+        return (SIRStream)AutoCloner.deepCopy(str);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public SIRStream constantProp(Graphs graphs)
+    {
+        ConstantProp.propagateAndUnroll(graphs.raw, true);
+        return graphs.raw;
+    }
+
+    @Benchmark
+    public SIRStream fieldProp(TreeCopy copy)
+    {
+        return FieldProp.doPropagate(copy.str);
+    }
+
+    @Benchmark
+    public SIRStream unroll(TreeCopy copy)
+    {
+        Unroller.unroll(copy.str);
+        return copy.str;
+    }
+
+    @Benchmark
+    public SIRStream lowerFilterContents(TreeCopy copy)
+    {
+        Flattener.lowerFilterContents(copy.str, false);
+        return copy.str;
+    }
+
+    @Benchmark
+    public Object deepCopy(Graphs graphs)
+    {
+        return AutoCloner.deepCopy(graphs.tree);
+    }
+
+    @Benchmark
+    public GraphFlattener flatten(Graphs graphs)
+    {
+        return new GraphFlattener(graphs.lowered);
+    }
+
+    @Benchmark
+    public SIRStream partitionDynamicProg(LoweredCopy copy, Graphs graphs)
+    {
+        WorkEstimate work = WorkEstimate.getWorkEstimate(copy.str);
+        return new DynamicProgPartitioner(copy.str, work, graphs.tiles,
+                                          false, false, true).toplevel();
+    }
+
+    @Benchmark
+    public SIRStream partitionGreedy(LoweredCopy copy, Graphs graphs)
+    {
+        WorkEstimate work = WorkEstimate.getWorkEstimate(copy.str);
+        new GreedyPartitioner(copy.str, work, graphs.tiles, false).toplevelFusion();
+        return copy.str;
+    }
+
+    @Benchmark
+    public SIRStream partitionGreedier(LoweredCopy copy, Graphs graphs)
+    {
+        WorkEstimate work = WorkEstimate.getWorkEstimate(copy.str);
+        return new GreedierPartitioner(copy.str, work, graphs.tiles, false).toplevel();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import at.dms.kjc.common.EventHeap;
+import at.dms.kjc.common.SimulatorEvent;
+import at.dms.kjc.flatgraph.FlatNode;
+import at.dms.kjc.sir.SIRFilter;
+
+/**
+ * Measures the event heap of the work based switch-code simulators
+ * (raw and spacedynamic --wbs) on the events of one steady state of
+ * <pre>items</pre> items sent by <pre>nodes</pre> filters.  Each
+ * filter sends its items one apart, starting after its work estimate,
+ * and the items of the filters are interleaved as the simulator would
+ * make them.  The old list-based heap took quadratic time here.
+ *
+ * <pre>
+ * steadyState  all the events are scheduled, then run in order
+ * window       at most nodes events are scheduled at a time, and
+ *              each one run is replaced by the next
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventHeapBench
+{
+    /** the items sent in the steady state */
+    @Param({"1024", "16384", "131072"})
+    public int items;
+
+    /** the filters sending them */
+    @Param({"16"})
+    public int nodes;
+
+    private SimulatorEvent[] events;
+
+    @Setup(Level.Trial)
+    public void makeEvents()
+    {
+        FlatNode[] filters = new FlatNode[nodes];
+        for (int i = 0; i < nodes; i++)
+            filters[i] = new FlatNode(new SIRFilter("Filter" + i));
+        events = new SimulatorEvent[items];
+        for (int i = 0; i < items; i++) {
+            int node = i % nodes;
+            int item = i / nodes;
+            events[i] = new SimulatorEvent("send", 10 + 7 * node + item,
+                                           filters[node], null, item,
+                                           i >= items - nodes);
+        }
+    }
+
+    @Benchmark
+    public long steadyState()
+    {
+        EventHeap heap = new EventHeap();
+        for (int i = 0; i < items; i++)
+            heap.addEvent(events[i]);
+        long sum = 0;
+        while (!heap.isEmpty())
+            sum += heap.getNextEvent().time;
+        return sum;
+    }
+
+    @Benchmark
+    public long window()
+    {
+        EventHeap heap = new EventHeap();
+        int next = 0;
+        for (; next < nodes && next < items; next++)
+            heap.addEvent(events[next]);
+        long sum = 0;
+        while (!heap.isEmpty()) {
+            sum += heap.getNextEvent().time;
+            if (next < items)
+                heap.addEvent(events[next++]);
+        }
+        return sum;
+    }
+}
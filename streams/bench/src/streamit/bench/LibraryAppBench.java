@@ -0,0 +1,128 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.bench;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import streamit.library.Operator;
+import streamit.library.Stream;
+import streamit.library.io.FileWriter;
+
+/**
+ * Runs a benchmark from apps/benchmarks on the Java library for
+ * <pre>iters</pre> steady states, with the library options in
+ * <pre>options</pre> (for example "-fuse" or "-threads 2").
+ *
+ * The programs are translated with ToJava --library and compiled by
+ * the bench-apps target of build.xml, each into its own directory
+ * under the directory named by the streamit.bench.apps property,
+ * since the helper classes of different programs share names.  Each
+ * measured run constructs the program anew, so it includes building
+ * the schedule; use enough iterations that the steady state
+ * dominates.  The program's output is thrown away.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LibraryAppBench
+{
+    @Param({"FFT2", "FMRadio", "BitonicSort", "FIR", "MatrixMultBlock"})
+    public String app;
+
+    @Param({"1000"})
+    public int iters;
+
+    @Param({""})
+    public String options;
+
+    private Class appClass;
+    private Stream program;
+    private PrintStream savedOut;
+
+    @Setup(Level.Trial)
+    public void loadApp() throws Exception
+    {
+        File dir = new File(System.getProperty("streamit.bench.apps", "apps"),
+                            app);
+        if (!dir.isDirectory())
+            throw new IllegalStateException("no compiled program in " + dir +
+                                            "; run the bench-apps target first");
+        ClassLoader loader =
+            new URLClassLoader(new URL[] { dir.toURI().toURL() },
+                               LibraryAppBench.class.getClassLoader());
+        appClass = Class.forName(app, true, loader);
+
+        savedOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+                public void write(int b) {}
+                public void write(byte[] b, int off, int len) {}
+            }));
+    }
+
+    @Setup(Level.Iteration)
+    public void makeProgram() throws Exception
+    {
+        // forget the operators of the previous run
+        Operator.allSinks.clear();
+        Operator.allSources.clear();
+        Operator.allFilters.clear();
+        Operator.allJoiners.clear();
+        Operator.allSplitters.clear();
+        Operator.allNodes.clear();
+        program = (Stream)appClass.newInstance();
+    }
+
+    @Benchmark
+    public Stream run()
+    {
+        program.run(makeArgs());
+        return program;
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeFiles()
+    {
+        FileWriter.closeAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void restoreOut()
+    {
+        System.setOut(savedOut);
+    }
+
+    private String[] makeArgs()
+    {
+        String opts = options.trim();
+        String[] extra = opts.length() == 0 ? new String[0] : opts.split("\\s+");
+        String[] args = new String[extra.length + 2];
+        args[0] = "-i";
+        args[1] = String.valueOf(iters);
+        System.arraycopy(extra, 0, args, 2, extra.length);
+        return args;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import streamit.misc.*;
+
+/**
+ * Measures filling an empty queue with <pre>size</pre> items and
+ * draining it again, which is what happens to a channel that is not
+ * sized by the schedule (unscheduled runs, and the init schedule of
+ * a scheduled one).  The WrappableGrowableQueue_* classes grow by
+ * doubling and copying item by item; the RingBuffer_* classes that
+ * replaced them in Channel are measured the same way for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBench
+{
+    /** items in the queue when it is full */
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    @Benchmark
+    public int growInt()
+    {
+        WrappableGrowableQueue_int queue = new WrappableGrowableQueue_int();
+        for (int i = 0; i < size; i++)
+            queue.enqueue(i);
+        int sum = 0;
+        while (queue.size() > 0)
+            sum += queue.dequeue();
+        return sum;
+    }
+
+    @Benchmark
+    public float growFloat()
+    {
+        WrappableGrowableQueue_float queue = new WrappableGrowableQueue_float();
+        for (int i = 0; i < size; i++)
+            queue.enqueue(i);
+        float sum = 0;
+        while (queue.size() > 0)
+            sum += queue.dequeue();
+        return sum;
+    }
+
+    @Benchmark
+    public double growDouble()
+    {
+        WrappableGrowableQueue_double queue = new WrappableGrowableQueue_double();
+        for (int i = 0; i < size; i++)
+            queue.enqueue(i);
+        double sum = 0;
+        while (queue.size() > 0)
+            sum += queue.dequeue();
+        return sum;
+    }
+
+    @Benchmark
+    public int growShort()
+    {
+        WrappableGrowableQueue_short queue = new WrappableGrowableQueue_short();
+        for (int i = 0; i < size; i++)
+            queue.enqueue((short)i);
+        int sum = 0;
+        while (queue.size() > 0)
+            sum += queue.dequeue();
+        return sum;
+    }
+
+    @Benchmark
+    public int growChar()
+    {
+        WrappableGrowableQueue_char queue = new WrappableGrowableQueue_char();
+        for (int i = 0; i < size; i++)
+            queue.enqueue((char)i);
+        int sum = 0;
+        while (queue.size() > 0)
+            sum += queue.dequeue();
+        return sum;
+    }
+
+    @Benchmark
+    public int growBoolean()
+    {
+        WrappableGrowableQueue_boolean queue = new WrappableGrowableQueue_boolean();
+        for (int i = 0; i < size; i++)
+            queue.enqueue((i & 1) == 0);
+        int count = 0;
+        while (queue.size() > 0)
+            if (queue.dequeue())
+                count++;
+        return count;
+    }
+
+    @Benchmark
+    public int growRingInt()
+    {
+        RingBuffer_int queue = new RingBuffer_int();
+        for (int i = 0; i < size; i++)
+            queue.enqueue(i);
+        int sum = 0;
+        while (queue.size() > 0)
+            sum += queue.dequeue();
+        return sum;
+    }
+
+    @Benchmark
+    public float growRingFloat()
+    {
+        RingBuffer_float queue = new RingBuffer_float();
+        for (int i = 0; i < size; i++)
+            queue.enqueue(i);
+        float sum = 0;
+        while (queue.size() > 0)
+            sum += queue.dequeue();
+        return sum;
+    }
+
+    @Benchmark
+    public double growRingDouble()
+    {
+        RingBuffer_double queue = new RingBuffer_double();
+        for (int i = 0; i < size; i++)
+            queue.enqueue(i);
+        double sum = 0;
+        while (queue.size() > 0)
+            sum += queue.dequeue();
+        return sum;
+    }
+}
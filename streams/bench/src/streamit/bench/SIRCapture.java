@@ -0,0 +1,95 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import at.dms.kjc.JInterfaceDeclaration;
+import at.dms.kjc.sir.*;
+import at.dms.kjc.sir.lowering.FieldInitMover;
+import at.dms.kjc.sir.lowering.StaticsProp;
+import streamit.frontend.ToJava;
+
+/**
+ * A compiler backend (for --backend) that keeps the stream graph it
+ * is given instead of generating code, so that benchmarks can run
+ * the compiler passes on the graph of a real program.
+ */
+public class SIRCapture
+{
+    private static SIRStream captured;
+
+    /**
+     * Backend entry point, called by StreaMITMain.  Does what every
+     * backend does before constant propagation: moves field
+     * initializers into init functions and propagates the statics.
+     */
+    public static void run(SIRStream str,
+                           JInterfaceDeclaration[] interfaces,
+                           SIRInterfaceTable[] interfaceTables,
+                           SIRStructure[] structs,
+                           SIRHelper[] helpers,
+                           SIRGlobal global)
+    {
+        FieldInitMover.moveStreamInitialAssignments(str,
+                                                    FieldInitMover.COPY_ARRAY_INITIALIZERS);
+        Set<SIRGlobal> theStatics = new HashSet<SIRGlobal>();
+        if (global != null)
+            theStatics.add(global);
+        StaticsProp.propagate(str, theStatics);
+        captured = str;
+    }
+
+    /**
+     * Runs the front end and Kopi2SIR on the StreamIt program in
+     * <pre>strFile</pre>, and returns its stream graph.  The
+     * intermediate Java file goes in a temporary directory.
+     */
+    public static synchronized SIRStream load(File strFile)
+        throws IOException
+    {
+        String name = strFile.getName();
+        if (name.endsWith(".str"))
+            name = name.substring(0, name.length() - 4);
+        File workDir = File.createTempFile("sircapture", "");
+        if (!workDir.delete() || !workDir.mkdir())
+            throw new IOException("cannot make directory " + workDir);
+        File javaFile = new File(workDir, name + ".java");
+        // deleted in the reverse order
+        workDir.deleteOnExit();
+        javaFile.deleteOnExit();
+
+        if (new ToJava().run(new String[] { "--output", javaFile.getPath(),
+                                            strFile.getPath() }) != 0)
+            throw new IOException("front end failed on " + strFile);
+
+        captured = null;
+        if (!at.dms.kjc.Main.compile(new String[] { "--streamit",
+                                                    "--backend",
+                                                    SIRCapture.class.getName(),
+                                                    javaFile.getPath() })
+            || captured == null)
+            throw new IOException("Kopi2SIR failed on " + javaFile);
+
+        SIRStream result = captured;
+        captured = null;
+        return result;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.library;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of moving items through a library Channel, for
+ * each primitive type a tape can hold.  Every invocation pushes
+ * <pre>batch</pre> items onto a channel and pops them off again, the
+ * way a producer and consumer that fire once each in the steady
+ * state would; the score is per batch.
+ *
+ * This is in streamit.library so that it can attach the channel to
+ * its source and sink the way Stream does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelBench
+{
+    /** items pushed and popped per invocation */
+    @Param({"1", "64"})
+    public int batch;
+
+    private Channel intChannel, bitChannel, floatChannel, doubleChannel,
+        shortChannel, charChannel, boolChannel;
+
+    private int[] ints;
+    private float[] floats;
+    private double[] doubles;
+
+    @Setup
+    public void setup()
+    {
+        intChannel = makeChannel(Integer.TYPE);
+        bitChannel = makeChannel(Bit.TYPE);
+        floatChannel = makeChannel(Float.TYPE);
+        doubleChannel = makeChannel(Double.TYPE);
+        shortChannel = makeChannel(Short.TYPE);
+        charChannel = makeChannel(Character.TYPE);
+        boolChannel = makeChannel(Boolean.TYPE);
+        ints = new int[batch];
+        floats = new float[batch];
+        doubles = new double[batch];
+    }
+
+    /**
+     * Returns a channel of <pre>type</pre> between two Identities,
+     * with room for a batch of items.
+     */
+    private Channel makeChannel(Class type)
+    {
+        Channel channel = new Channel(type, batch);
+        channel.setSource(new Identity(type));
+        channel.setSink(new Identity(type));
+        channel.setChannelSize(batch);
+        return channel;
+    }
+
+    @Benchmark
+    public int pushPopInt()
+    {
+        int sum = 0;
+        for (int i = 0; i < batch; i++)
+            intChannel.pushInt(i);
+        for (int i = 0; i < batch; i++)
+            sum += intChannel.popInt();
+        return sum;
+    }
+
+    @Benchmark
+    public int pushPopBit()
+    {
+        int sum = 0;
+        for (int i = 0; i < batch; i++)
+            bitChannel.pushBit(i & 1);
+        for (int i = 0; i < batch; i++)
+            sum += bitChannel.popBit();
+        return sum;
+    }
+
+    @Benchmark
+    public float pushPopFloat()
+    {
+        float sum = 0;
+        for (int i = 0; i < batch; i++)
+            floatChannel.pushFloat(i);
+        for (int i = 0; i < batch; i++)
+            sum += floatChannel.popFloat();
+        return sum;
+    }
+
+    @Benchmark
+    public double pushPopDouble()
+    {
+        double sum = 0;
+        for (int i = 0; i < batch; i++)
+            doubleChannel.pushDouble(i);
+        for (int i = 0; i < batch; i++)
+            sum += doubleChannel.popDouble();
+        return sum;
+    }
+
+    @Benchmark
+    public int pushPopShort()
+    {
+        int sum = 0;
+        for (int i = 0; i < batch; i++)
+            shortChannel.pushShort((short)i);
+        for (int i = 0; i < batch; i++)
+            sum += shortChannel.popShort();
+        return sum;
+    }
+
+    @Benchmark
+    public int pushPopChar()
+    {
+        int sum = 0;
+        for (int i = 0; i < batch; i++)
+            charChannel.pushChar((char)i);
+        for (int i = 0; i < batch; i++)
+            sum += charChannel.popChar();
+        return sum;
+    }
+
+    @Benchmark
+    public int pushPopBool()
+    {
+        int count = 0;
+        for (int i = 0; i < batch; i++)
+            boolChannel.pushBool((i & 1) == 0);
+        for (int i = 0; i < batch; i++)
+            if (boolChannel.popBool())
+                count++;
+        return count;
+    }
+
+    @Benchmark
+    public void peekPopInt(Blackhole bh)
+    {
+        for (int i = 0; i < batch; i++)
+            intChannel.pushInt(i);
+        for (int i = 0; i < batch; i++)
+            bh.consume(intChannel.peekInt(batch - 1 - i));
+        for (int i = 0; i < batch; i++)
+            bh.consume(intChannel.popInt());
+    }
+
+    // the bulk operations, as used by code from LoopsToBulkTapeOps
+
+    @Benchmark
+    public void bulkPushPopInt(Blackhole bh)
+    {
+        intChannel.pushInts(ints, 0, batch);
+        intChannel.popInts(ints, 0, batch);
+        bh.consume(ints);
+    }
+
+    @Benchmark
+    public void bulkPushPopFloat(Blackhole bh)
+    {
+        floatChannel.pushFloats(floats, 0, batch);
+        floatChannel.popFloats(floats, 0, batch);
+        bh.consume(floats);
+    }
+
+    @Benchmark
+    public void bulkPushPopDouble(Blackhole bh)
+    {
+        doubleChannel.pushDoubles(doubles, 0, batch);
+        doubleChannel.popDoubles(doubles, 0, batch);
+        bh.consume(doubles);
+    }
+}
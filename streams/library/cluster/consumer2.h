@@ -56,6 +56,17 @@ class consumer2 : public socket_holder, public serializable {
   }
 
 
+  // set the number of bytes received per chunk, must match the
+  // producer and be called before init()
+
+  void set_batch_size(int bytes) {
+    buffer_length = bytes / item_size;
+    if (buffer_length < 1) buffer_length = 1;
+#ifdef CONSUMER_BUFFER_SIZE
+    offs = buffer_length;
+#endif
+  }
+
   void init() {
 #ifndef ARM
 
@@ -38,6 +38,7 @@ class consumer2p : public socket_holder, public serializable {
   int offs;
   int item_size;
   int item_count;
+  int buffer_length; // the number of ITEMS that will fit in the buffer
 
   T *push_buf;
   bool in_push;
@@ -51,14 +52,32 @@ class consumer2p : public socket_holder, public serializable {
     buf = NULL;
     in_push = false;
 
+    item_size = sizeof(T);
+    item_count = 0;
+    // set buffer_length depending on the item size, the same way as
+    // consumer2 and producer2 so that both ends agree on the chunk size
+    if (CONSUMER_BUFFER_SIZE / item_size > 1) {
+        buffer_length = CONSUMER_BUFFER_SIZE / item_size;
+    } else {
+        buffer_length = CONSUMER_MIN_BUFFER_LENGTH;
+    }
+
 #ifdef CONSUMER_BUFFER_SIZE
-    offs = CONSUMER_BUFFER_SIZE;
+    offs = buffer_length;
 #else
     offs = 0;
 #endif
+  }
 
-    item_size = sizeof(T);
-    item_count = 0;
+  // set the number of bytes received per chunk, must match the
+  // producer and be called before init()
+
+  void set_batch_size(int bytes) {
+    buffer_length = bytes / item_size;
+    if (buffer_length < 1) buffer_length = 1;
+#ifdef CONSUMER_BUFFER_SIZE
+    offs = buffer_length;
+#endif
   }
 
 
@@ -70,11 +89,11 @@ class consumer2p : public socket_holder, public serializable {
 #ifdef CONSUMER_BUFFER_SIZE
     if (is_mem_socket) {
       
-      ((memsocket*)sock)->set_buffer_size(CONSUMER_BUFFER_SIZE * sizeof(T));
+      ((memsocket*)sock)->set_buffer_size(buffer_length * sizeof(T));
       
     } else {
       
-      buf =  (T*)malloc(CONSUMER_BUFFER_SIZE * sizeof(T));
+      buf =  (T*)malloc(buffer_length * sizeof(T));
       
     }
 #endif
@@ -123,7 +142,7 @@ class consumer2p : public socket_holder, public serializable {
     } else {
 
       ((netsocket*)sock)->read_chunk((char*)buf, 
-				     CONSUMER_BUFFER_SIZE * sizeof(T));
+				     buffer_length * sizeof(T));
       offs = 0;
     }
 #endif
@@ -161,14 +180,14 @@ class consumer2p : public socket_holder, public serializable {
 
   __start:
     
-    if (num <= CONSUMER_BUFFER_SIZE - offs) {
+    if (num <= buffer_length - offs) {
       int _offs = offs;
       for (int i = 0; i < num; i++, _offs++) data[i] = buf[_offs];
       offs = _offs;
       return;
     }
     
-    int avail = CONSUMER_BUFFER_SIZE - offs;
+    int avail = buffer_length - offs;
     int _offs = offs;
     for (int i = 0; i < avail; i++, _offs++) data[i] = buf[_offs];
 
@@ -205,7 +224,7 @@ class consumer2p : public socket_holder, public serializable {
 
     //item_count++;
 
-    if (offs == CONSUMER_BUFFER_SIZE) {
+    if (offs == buffer_length) {
       recv_buffer();
     }
     
@@ -217,7 +236,7 @@ class consumer2p : public socket_holder, public serializable {
   inline void peek(int index) {
     
 #ifdef CONSUMER_BUFFER_SIZE
-    if (offs == CONSUMER_BUFFER_SIZE) {
+    if (offs == buffer_length) {
       recv_buffer();
     }
 #endif
@@ -80,6 +80,7 @@ short init_instance::listen_port = 22222;
 
 map<int, unsigned> init_instance::thread_machines;
 map<int, unsigned> init_instance::thread_start_iter;
+map<sock_dscr, int> init_instance::batch_sizes;
 
 init_instance::Thread_info init_instance::threadInfo;
 
@@ -118,20 +119,31 @@ void init_instance::reset_all() {
 }
 
 
+// Each line of cluster-config.txt is either "<thread> <machine>" or
+// "batch <from> <to> <bytes>", giving the number of bytes sent per
+// write on the data connection <from>-><to>.
+
 void init_instance::read_config_file() {
   
-  int node;
+  int node, from, to, bytes;
+  char line[1024];
   char name[1024];
 
   FILE *f = fopen("cluster-config.txt", "r");
   if (debugging) {
     fprintf(stderr,"Reading cluster config file...\n");
   }
-  for (;;) {
-  
-    fscanf(f, "%d %s", &node, name);
+  while (fgets(line, sizeof(line), f) != NULL) {
+
+    if (sscanf(line, "batch %d %d %d", &from, &to, &bytes) == 3) {
+      batch_sizes[sock_dscr(from, to, DATA_SOCKET)] = bytes;
+      if (debugging) {
+	fprintf(stderr,"connection:%d->%d batch:%d\n", from, to, bytes);
+      }
+      continue;
+    }
 
-    if (feof(f)) break;
+    if (sscanf(line, "%d %s", &node, name) != 2) continue;
 
     string s(name);
     thread_machines[node] = lookup_ip(s.c_str());
@@ -160,6 +172,17 @@ void init_instance::set_thread_start_iter(int thread, unsigned iter) {
 }
 
 
+int init_instance::get_batch_size(int from, int to, int default_bytes) {
+  map<sock_dscr, int>::iterator i = batch_sizes.find(sock_dscr(from, to, DATA_SOCKET));
+
+  if (i == batch_sizes.end()) {
+    return default_bytes;
+  } else {
+    return (*i).second;
+  }
+}
+
+
 unsigned init_instance::get_thread_ip(int thread) {
   // Here I should make a change also
   map<int, unsigned>::iterator i = thread_machines.find(thread);
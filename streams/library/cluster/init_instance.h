@@ -61,6 +61,9 @@ private:
   static map<int, unsigned> thread_machines;
   static map<int, unsigned> thread_start_iter;
 
+  // bytes per write of data connections, from cluster-config.txt
+  static map<sock_dscr, int> batch_sizes;
+
   static Thread_info threadInfo;
   //// helpers
 
@@ -85,6 +88,8 @@ private:
   static void set_thread_start_iter(int thread, unsigned iter); 
   static unsigned get_thread_start_iter(int thread);
 
+  static int get_batch_size(int from, int to, int default_bytes);
+
   static void add_incoming(int from, int to, int type);
   static void add_outgoing(int from, int to, int type);
   
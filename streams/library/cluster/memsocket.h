@@ -17,169 +17,174 @@
 #ifndef __MEMSOCKET_H
 #define __MEMSOCKET_H
 
+#include <assert.h>
 #include <mysocket.h>
 #include <pthread.h>
+#include <sched.h>
 #include <stdlib.h>
 #include <stdio.h>
-#include <queue>
 
-using namespace std;
+// Number of buffers in the ring, must be a power of 2.  One buffer is
+// always owned by the producer, so NUMBER_OF_BLOCKS - 1 can be in flight.
+#define NUMBER_OF_BLOCKS 8 // 4-16
 
-#define NUMBER_OF_BLOCKS 4 // 4-10
+// Number of times to yield while waiting before going to sleep
+#define MEMSOCKET_SPIN_COUNT 64
 
-class memsocket : public mysocket {
+#define CACHE_LINE_SIZE 64
 
-  queue<void*> free_buffers;
-  pthread_mutex_t free_buffer_lock;
-  pthread_cond_t free_buffer_release_cond;
+// A memsocket connects a producer and a consumer thread in the same
+// process.  Buffers are passed through a single-producer single-consumer
+// ring: the producer fills buffer[head] and advances head, the consumer
+// reads buffer[tail] and advances tail.  Each index is only written by
+// one side, so the common case needs no lock; a side that has waited for
+// a while sleeps on a condition variable and the other side wakes it up.
 
-  queue<void*> data_queue;
-  pthread_mutex_t queue_lock;
-  pthread_cond_t queue_push_cond;
-  //pthread_cond_t queue_pop_cond;
+class memsocket : public mysocket {
 
+  void *buffer[NUMBER_OF_BLOCKS];
   int buffer_size;
 
+  // written by the producer only
+  volatile int head;
+  volatile bool producer_waiting;
+  char pad1[CACHE_LINE_SIZE];
+
+  // written by the consumer only
+  volatile int tail;
+  volatile bool consumer_waiting;
+  char pad2[CACHE_LINE_SIZE];
+
+  pthread_mutex_t lock;
+  pthread_cond_t push_cond;
+  pthread_cond_t release_cond;
+
  public:
 
   memsocket() {
     buffer_size = 0;
-    pthread_mutex_init(&free_buffer_lock, NULL);
-    pthread_cond_init(&free_buffer_release_cond, NULL);
-    pthread_mutex_init(&queue_lock, NULL);
-    pthread_cond_init(&queue_push_cond, NULL);
-    //pthread_cond_init(&queue_pop_cond, NULL);
+    head = 0;
+    tail = 0;
+    producer_waiting = false;
+    consumer_waiting = false;
+    pthread_mutex_init(&lock, NULL);
+    pthread_cond_init(&push_cond, NULL);
+    pthread_cond_init(&release_cond, NULL);
   }
 
+  // called by both the producer and the consumer, the first call
+  // allocates the buffers
 
   virtual void set_buffer_size(int size) {
 
-    if (buffer_size == 0) {
+    pthread_mutex_lock(&lock);
 
-      pthread_mutex_lock(&free_buffer_lock);
-      for (int y = 0; y < NUMBER_OF_BLOCKS; y++) {
-          void* ptr = malloc(size);
-          if (ptr == 0) {
-              fprintf(stderr, "error: failed to malloc communication buffers");
-              exit(0);
-          }
-          free_buffers.push(ptr);
+    if (buffer_size == 0) {
+      for (int i = 0; i < NUMBER_OF_BLOCKS; i++) {
+        buffer[i] = malloc(size);
+        if (buffer[i] == NULL) {
+          fprintf(stderr, "error: failed to malloc communication buffers\n");
+          exit(1);
+        }
       }
-      pthread_cond_signal(&free_buffer_release_cond);
-      pthread_mutex_unlock(&free_buffer_lock);
-
-
+      buffer_size = size;
     } else {
       if (size != buffer_size) {
-	fprintf(stderr, "error: not alowed to change the buffer size form memsocket!");
-	exit(0);
+	fprintf(stderr, "error: not alowed to change the buffer size form memsocket!\n");
+	exit(1);
       }
     }
+
+    pthread_mutex_unlock(&lock);
   }
   
   virtual bool is_mem_socket() { return true; }
   virtual bool is_net_socket() { return false; }
   virtual void close() {}
 
-  /*
-
-  void my_cond_wait(pthread_cond_t *cond, pthread_mutex_t *mutex, int per_sec) {
-    struct timespec t;
-    t.tv_sec = 0;
-    t.tv_nsec = 1000*1000*1000/per_sec ; // 1/20th second 
-    int res;
-    for (;;) {
-      res = pthread_cond_timedwait(cond, mutex, &t);
-      if (res == 0) break;
-      //assert (res == ETIMEDOUT);
-      if (check_thread_fptr != NULL) check_thread_fptr();    
-    }
+  // the buffer the producer should fill next
+
+  inline void *get_free_buffer() {
+    assert(buffer_size > 0);
+    return buffer[head];
   }
 
-  */
+  // hand the filled buffer to the consumer, waits while the ring is full
+
+  inline void push_buffer(void *ptr) {
+
+    assert(ptr == buffer[head]);
 
-  void *get_free_buffer() {
-    void *res;
-    pthread_mutex_lock(&free_buffer_lock);
-    while (free_buffers.size() == 0) {
-      //my_cond_wait(&free_buffer_release_cond, &free_buffer_lock, 10);
-      pthread_cond_wait(&free_buffer_release_cond, &free_buffer_lock);
+    int nhead = (head + 1) & (NUMBER_OF_BLOCKS-1); 
+
+    for (int spin = 0; nhead == tail; spin++) {
+      if (spin < MEMSOCKET_SPIN_COUNT) {
+        sched_yield();
+        continue;
+      }
+      pthread_mutex_lock(&lock);
+      producer_waiting = true;
+      __sync_synchronize();
+      while (nhead == tail) {
+        pthread_cond_wait(&release_cond, &lock);
+      }
+      producer_waiting = false;
+      pthread_mutex_unlock(&lock);
     }
-    res = free_buffers.front();
-    free_buffers.pop();
-    pthread_mutex_unlock(&free_buffer_lock);
-    return res;
-  }  
 
-  void release_buffer(void *buf) {
-    pthread_mutex_lock(&free_buffer_lock);
-    free_buffers.push(buf);
-    pthread_cond_signal(&free_buffer_release_cond);
-    pthread_mutex_unlock(&free_buffer_lock);
-  }
+    // make the contents of the buffer visible before publishing it
+    __sync_synchronize();
+    head = nhead;
+    __sync_synchronize();
 
-  /*
+    if (consumer_waiting) {
+      pthread_mutex_lock(&lock);
+      pthread_cond_signal(&push_cond);
+      pthread_mutex_unlock(&lock);
+    }
+  }      
 
-  inline int queue_size() {
-    int size;
-    pthread_mutex_lock(&queue_lock);
-    size = data_queue.size();
-    pthread_mutex_unlock(&queue_lock);
-    return size;
-  }
+  // the next full buffer, waits until one is available
 
-  inline bool queue_empty() {
-    return queue_size() == 0;
-  }
+  inline void* pop_buffer() {
 
-  inline bool queue_full() {
-    return queue_size() >= NUMBER_OF_BLOCKS;
-  }
-  
-  inline void wait_for_data() {
-    pthread_mutex_lock(&queue_lock);
-    //my_cond_wait(&queue_push_cond, &queue_lock, 10);
-    pthread_cond_wait(&queue_push_cond, &queue_lock);
-    pthread_mutex_unlock(&queue_lock);
-    return;
+    for (int spin = 0; tail == head; spin++) {
+      if (spin < MEMSOCKET_SPIN_COUNT) {
+        sched_yield();
+        continue;
+      }
+      pthread_mutex_lock(&lock);
+      consumer_waiting = true;
+      __sync_synchronize();
+      while (tail == head) {
+        pthread_cond_wait(&push_cond, &lock);
+      }
+      consumer_waiting = false;
+      pthread_mutex_unlock(&lock);
+    }
+
+    __sync_synchronize();
+    return buffer[tail];
   }
 
-  inline void wait_for_space() {
-    pthread_mutex_lock(&queue_lock);
-    //my_cond_wait(&queue_pop_cond, &queue_lock, 10);
-    pthread_cond_wait(&queue_pop_cond, &queue_lock);
-    pthread_mutex_unlock(&queue_lock);
-    return;
-  }  
-  
-  */
+  // give the buffer returned by the last pop_buffer back to the producer
 
-  // push_buffer always succeeds!
+  void release_buffer(void *buf) {
 
-  inline void push_buffer(void *ptr) {
-    pthread_mutex_lock(&queue_lock);
-    data_queue.push(ptr);
-    pthread_cond_signal(&queue_push_cond);
-    pthread_mutex_unlock(&queue_lock);
-  }
+    assert(buf == buffer[tail]);
 
-  // pop_buffer can block until data available!
+    // finish reading the buffer before the producer may reuse it
+    __sync_synchronize();
+    tail = (tail + 1) & (NUMBER_OF_BLOCKS-1); 
+    __sync_synchronize();
 
-  inline void* pop_buffer() {
-    void *res;
-    pthread_mutex_lock(&queue_lock);
-    while (data_queue.size() == 0) {
-      pthread_cond_wait(&queue_push_cond, &queue_lock);
+    if (producer_waiting) {
+      pthread_mutex_lock(&lock);
+      pthread_cond_signal(&release_cond);
+      pthread_mutex_unlock(&lock);
     }
-    res = data_queue.front();
-    data_queue.pop();
-    //pthread_cond_signal(&queue_pop_cond);
-    pthread_mutex_unlock(&queue_lock);
-    return res;
-  }  
+  }
 
 };
 
 #endif
-
-
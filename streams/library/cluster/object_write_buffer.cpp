@@ -24,6 +24,7 @@
 object_write_buffer::object_write_buffer() {
   size = 0;
   read_offset = 0;
+  record_start = 0;
 }
 
 void object_write_buffer::erase() {
@@ -69,6 +70,25 @@ void object_write_buffer::read(void *data, int dsize) {
   read_offset += dsize;
 }
 
+//================================= records
+
+void object_write_buffer::begin_record(int id) {
+  write_int(id);
+  record_start = size;
+  write_int(0); // length, set by end_record
+}
+
+void object_write_buffer::end_record() {
+  int len = size - record_start - sizeof(int);
+  memcpy(buf + record_start, &len, sizeof(int));
+}
+
+void object_write_buffer::write_record(int id, void *data, int dsize) {
+  begin_record(id);
+  write(data, dsize);
+  end_record();
+}
+
 //================================= convenience functinos
 
 void object_write_buffer::write_boolean(int data) {
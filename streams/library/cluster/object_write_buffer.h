@@ -24,6 +24,7 @@ class object_write_buffer {
 
   int size;
   int read_offset;
+  int record_start;  // offset of the length of the open record
 
  public:
 
@@ -42,6 +43,12 @@ class object_write_buffer {
   void write(void *ptr, int size);
   void read(void *ptr, int size);
 
+  // =========== records (id, length, data) of an incremental checkpoint
+
+  void begin_record(int id);
+  void end_record();
+  void write_record(int id, void *ptr, int size);
+
   // =========== convenience functions
 
   void write_boolean(int data);
@@ -49,6 +49,14 @@ class producer2 : public socket_holder, public serializable {
   }
 
 
+  // set the number of bytes sent per write, must match the consumer
+  // and be called before init()
+
+  void set_batch_size(int bytes) {
+    buffer_length = bytes / item_size;
+    if (buffer_length < 1) buffer_length = 1;
+  }
+
   void init() {
 #ifndef ARM
 #ifdef PRODUCER_BUFFER_SIZE
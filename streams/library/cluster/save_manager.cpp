@@ -19,6 +19,7 @@
 
 pthread_mutex_t save_manager::queue_lock = PTHREAD_MUTEX_INITIALIZER;
 queue <checkpoint_info*> save_manager::checkpoints;  
+map<int, map<int, vector<char> > > save_manager::images;
 
 void save_manager::push_item(checkpoint_info *info) {
 
@@ -52,6 +53,36 @@ checkpoint_info *save_manager::pop_item() {
   return res;
 }
 
+object_write_buffer *save_manager::merge_records(int thread, object_write_buffer *records) {
+
+  map<int, vector<char> > &image = images[thread];
+
+  // a thread only writes the fields that changed since its previous
+  // checkpoint, the other records are taken from the image
+
+  int size = records->get_size();
+  int offset = 0;
+
+  records->set_read_offset(0);
+
+  while (offset < size) {
+    int id = records->read_int();
+    int len = records->read_int();
+    vector<char> &data = image[id];
+    data.resize(len);
+    if (len > 0) records->read(&data[0], len);
+    offset += 2 * sizeof(int) + len;
+  }
+
+  object_write_buffer *buf = new object_write_buffer();
+
+  for (map<int, vector<char> >::iterator i = image.begin(); i != image.end(); ++i) {
+    if (!i->second.empty()) buf->write(&i->second[0], i->second.size());
+  }
+
+  return buf;
+}
+
 void save_manager::run() {
 
   checkpoint_info *info;
@@ -69,13 +100,16 @@ void save_manager::run() {
 
       int thread_id = t_info->get_thread_id();
       
-      save_state::save_buffer(thread_id, info->steady_iter, info->buf);
+      object_write_buffer *buf = merge_records(thread_id, info->buf);
+      
+      save_state::save_buffer(thread_id, info->steady_iter, buf);
 
       (*t_info->get_latest_checkpoint()) = info->steady_iter;
 
       //fprintf(stderr,"save(%d.%d)", thread_id, info->steady_iter);
       //fflush(stderr);
 
+      delete buf;
       delete info->buf;
       delete info;
     }
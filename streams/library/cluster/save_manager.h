@@ -21,6 +21,8 @@
 #include <unistd.h>
 #include <pthread.h>
 #include <queue>
+#include <map>
+#include <vector>
 
 #include <service.h>
 #include <object_write_buffer.h>
@@ -52,8 +54,15 @@ class save_manager : public service {
   static pthread_mutex_t queue_lock;
   static queue <checkpoint_info*> checkpoints;
 
+  // latest contents of every record of every thread
+  static map<int, map<int, vector<char> > > images;
+
   static checkpoint_info *pop_item(); // removes a checkpoint from queue
 
+  // updates the image of a thread with the records of an incremental
+  // checkpoint and returns the complete checkpoint
+  static object_write_buffer *merge_records(int thread, object_write_buffer *records);
+
   virtual void run();
 
  public:
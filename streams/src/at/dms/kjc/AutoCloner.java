@@ -14,8 +14,11 @@ import java.lang.reflect.Array;
 public class AutoCloner {
     /**
      * List of things that should be cloned on the current pass.
+     * This and the registry are per thread, so that separate
+     * threads can clone separate structures at the same time.
      */
-    private static HashSet<DeepCloneable> toBeCloned;
+    private static final ThreadLocal<HashSet<DeepCloneable>> toBeCloned =
+        new ThreadLocal<HashSet<DeepCloneable>>();
     /**
      * Mapping from old objects to their clones, so that object
      * equality is preserved across a cloning call.
@@ -23,16 +26,13 @@ public class AutoCloner {
      * To avoid hashcode problems, this maps from RegistryWrapper to
      * Object.
      */
-    private static HashMap<RegistryWrapper, Object> registry;
+    private static final ThreadLocal<HashMap<RegistryWrapper, Object>> registry =
+        new ThreadLocal<HashMap<RegistryWrapper, Object>>();
     
     //Do not use unless not going to use this anymore
     public static void clear() {
-        toBeCloned.clear();
-        toBeCloned=null;
-        if(registry!=null) {
-            registry.clear();
-            registry=null;
-        }
+        toBeCloned.remove();
+        registry.remove();
     }
 
     /**
@@ -43,11 +43,11 @@ public class AutoCloner {
         CloningVisitor visitor = new CloningVisitor();
         IterFactory.createFactory().createIter(oldObj).accept(visitor);
 
-        toBeCloned = visitor.getToBeCloned();
-        registry = new HashMap<RegistryWrapper, Object>();
+        toBeCloned.set(visitor.getToBeCloned());
+        registry.set(new HashMap<RegistryWrapper, Object>());
         Object result = cloneToplevel(oldObj);
         // clear registry to promote GC
-        registry = null;
+        registry.remove();
         return result;
     }
 
@@ -60,11 +60,11 @@ public class AutoCloner {
         CloningVisitor visitor = new CloningVisitor();
         oldObj.accept(visitor);
 
-        toBeCloned = visitor.getToBeCloned();
-        registry = new HashMap<RegistryWrapper, Object>();
+        toBeCloned.set(visitor.getToBeCloned());
+        registry.set(new HashMap<RegistryWrapper, Object>());
         Object result = cloneToplevel(oldObj);
         // clear registry to promote GC
-        registry = null;
+        registry.remove();
         return result;
     }
 
@@ -77,11 +77,11 @@ public class AutoCloner {
         CloningVisitor visitor = new CloningVisitor();
         visitor.visitBlockStatement(offset,oldObj,oldObj.getComments());
 
-        toBeCloned = visitor.getToBeCloned();
-        registry = new HashMap<RegistryWrapper, Object>();
+        toBeCloned.set(visitor.getToBeCloned());
+        registry.set(new HashMap<RegistryWrapper, Object>());
         Object result = cloneToplevel(oldObj);
         // clear registry to promote GC
-        registry = null;
+        registry.remove();
         return result;
     }
 
@@ -94,11 +94,11 @@ public class AutoCloner {
     static public Object deepCopy (Slice slice) {
         // not sure what toBeCloned should be in this case... for now
         // make it empty.
-        toBeCloned = new HashSet<DeepCloneable>();
+        toBeCloned.set(new HashSet<DeepCloneable>());
 
-        registry = new HashMap<RegistryWrapper, Object>();
+        registry.set(new HashMap<RegistryWrapper, Object>());
         Object result = cloneToplevel(slice);
-        registry = null;
+        registry.remove();
         return result;
     }
     
@@ -109,11 +109,11 @@ public class AutoCloner {
     static public Object deepCopy(Kopi2SIR kopi2sir) {
         // not sure what toBeCloned should be in this case... for now
         // make it empty.
-        toBeCloned = new HashSet<DeepCloneable>();
+        toBeCloned.set(new HashSet<DeepCloneable>());
 
-        registry = new HashMap<RegistryWrapper, Object>();
+        registry.set(new HashMap<RegistryWrapper, Object>());
         Object result = cloneToplevel(kopi2sir);
-        registry = null;
+        registry.remove();
         return result;
     }
 
@@ -128,7 +128,7 @@ public class AutoCloner {
      * instead of creating yet another clone.
      */
     static public void register(Object oldObj, Object newObj) {
-        registry.put(new RegistryWrapper(oldObj), newObj);
+        registry.get().put(new RegistryWrapper(oldObj), newObj);
     }
 
     /**
@@ -143,7 +143,7 @@ public class AutoCloner {
             return null;
         }
         // if we've already cloned <pre>pre</pre>o</pre>, then return the clone
-        Object alreadyCloned = registry.get(new RegistryWrapper(o));
+        Object alreadyCloned = registry.get().get(new RegistryWrapper(o));
         if (alreadyCloned!=null) {
             return alreadyCloned;
         }
@@ -265,7 +265,7 @@ public class AutoCloner {
         if (o instanceof SIROperator) {
             SIRContainer parent = ((SIROperator)o).getParent();
             if (parent!=null) {
-                SIRContainer clonedParent = (SIRContainer)registry.get(new RegistryWrapper(parent));
+                SIRContainer clonedParent = (SIRContainer)registry.get().get(new RegistryWrapper(parent));
                 if (clonedParent!=null) {
                     ((SIROperator)result).setParent(clonedParent);
                 }
@@ -291,7 +291,7 @@ public class AutoCloner {
      * cloning process.
      */
     static private Object cloneJLocalVariable(JLocalVariable var) {
-        if (toBeCloned.contains(var)) {
+        if (toBeCloned.get().contains(var)) {
             return var.deepClone();
         } else {
             return var;
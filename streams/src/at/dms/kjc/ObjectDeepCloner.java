@@ -28,13 +28,16 @@ public class ObjectDeepCloner
 {
     /**
      * List of things that should be cloned on the current pass.
+     * Kept per thread, like the state of AutoCloner.
      */
-    private static HashSet<DeepCloneable> toBeCloned;
+    private static final ThreadLocal<HashSet<DeepCloneable>> toBeCloned =
+        new ThreadLocal<HashSet<DeepCloneable>>();
 
     /**
      * List of objects we're preserving across a cloning operation.
      */
-    private static LinkedList<Object> preserved;
+    private static final ThreadLocal<LinkedList<Object>> preserved =
+        new ThreadLocal<LinkedList<Object>>();
 
     // so that nobody can accidentally create an ObjectCloner object
     private ObjectDeepCloner(){}
@@ -62,7 +65,7 @@ public class ObjectDeepCloner
             // set the list of what we should clone
             CloningVisitor visitor = new CloningVisitor();
             IterFactory.createFactory().createIter(oldObj).accept(visitor);
-            toBeCloned = visitor.getToBeCloned();
+            toBeCloned.set(visitor.getToBeCloned());
             return doCopy(oldObj);
         }
     }
@@ -77,7 +80,7 @@ public class ObjectDeepCloner
             // set the list of what we should clone
             CloningVisitor visitor = new CloningVisitor();
             oldObj.accept(visitor);
-            toBeCloned = visitor.getToBeCloned();
+            toBeCloned.set(visitor.getToBeCloned());
             return doCopy(oldObj);
         }
     }
@@ -93,7 +96,7 @@ public class ObjectDeepCloner
             // set the list of what we should clone
             CloningVisitor visitor = new CloningVisitor();
             visitor.visitBlockStatement(offset,oldObj,oldObj.getComments());
-            toBeCloned = visitor.getToBeCloned();
+            toBeCloned.set(visitor.getToBeCloned());
             return doCopy(oldObj);
         }
     }
@@ -149,12 +152,12 @@ public class ObjectDeepCloner
      * its identity across a serialization operation.
      */
     static public Object getHandle(Object oldInstance) {
-        if (toBeCloned.contains(oldInstance)) {
+        if (toBeCloned.get().contains(oldInstance)) {
             return new Integer(-1);
         } else {
             //System.err.println("Preserving across a cloning call: " + oldInstance.getClass());
-            preserved.add(oldInstance);
-            return new Integer(preserved.size() - 1);
+            preserved.get().add(oldInstance);
+            return new Integer(preserved.get().size() - 1);
         }
     }
 
@@ -181,7 +184,7 @@ public class ObjectDeepCloner
               System.err.println("Preserving container " + preserved.get(index));
             */
             // otherwise, return our old preserved version
-            return preserved.get(index);
+            return preserved.get().get(index);
         }
     }
 
@@ -196,7 +199,7 @@ public class ObjectDeepCloner
         try
             {
                 // clear the list of objects we're preserving
-                preserved = new LinkedList<Object>();
+                preserved.set(new LinkedList<Object>());
                 // get an output stream ready
                 ByteArrayOutputStream bos = 
                     new ByteArrayOutputStream();
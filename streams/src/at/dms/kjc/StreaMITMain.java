@@ -173,6 +173,7 @@ public class StreaMITMain {
 
         try {
             theMethod.invoke(null, params);
+            at.dms.kjc.common.FilterCache.printStats();
         } catch (IllegalAccessException e) {
             System.err.println("*** Not allowed to invoke backend " +
                                backendClass);
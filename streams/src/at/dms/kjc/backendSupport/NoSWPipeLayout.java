@@ -23,6 +23,37 @@ public class NoSWPipeLayout<T extends ComputeNode, Ts extends ComputeNodesI> ext
     /** from assignment when done with simulated annealing */
     private HashMap<SliceNode, T> layout;
     
+    /** the filter moved by the last swapAssignment() if its cost has not been computed, or null */
+    private FilterSliceNode movedFilter;
+    /** the compute node that movedFilter was assigned to before the move */
+    private T movedFrom;
+    /** the filter moved by the move that undoSwap() reverts, or null */
+    private FilterSliceNode undoFilter;
+    /** the compute node that undoFilter was assigned to before the move */
+    private T undoFrom;
+    
+    /** scheduleOrder as an array, used by placementCost() */
+    private Slice[] order;
+    /** the position of the filter of each slice in order */
+    private HashMap<FilterSliceNode, Integer> position;
+    /** the bottleneck work of each slice in order */
+    private double[] sliceWork;
+    /** the positions in order of the upstream slices of each slice in order */
+    private int[][] upstream;
+    /** 
+     * nodeCosts[i] is the time at which each compute node is free before the 
+     * i'th slice of order is scheduled, nodeCosts[order.length] after 
+     * all of them are 
+     */
+    private double[][] nodeCosts;
+    /** the end time of each slice in order */
+    private double[] endTimes;
+    /** 
+     * the first position in order from which nodeCosts and endTimes 
+     * might not match the assignment 
+     */
+    private int staleFrom;
+    
     public NoSWPipeLayout(SpaceTimeScheduleAndSlicer spaceTime, Ts chip) {
         this.chip = chip;
         this.slicer = (SIRSlicer)spaceTime.getSlicer();
@@ -54,16 +85,43 @@ public class NoSWPipeLayout<T extends ComputeNode, Ts extends ComputeNodesI> ext
      */
     public void setAssignment(HashMap newAssign) {
         this.assignment = newAssign;
+        staleFrom = 0;
+        movedFilter = null;
+        undoFilter = null;
     }
     
     /**
      * Called by perturbConfiguration() to perturb the configuration.
      * perturbConfiguration() decides if we should keep the new assignment.
      * The assignment should contain only {@link at.dms.kjc.slicegraphFilterSliceNode FilterSliceNode}s when this is called.
+     * Subclasses that override this should change the assignment with 
+     * {@link #moveFilter}, so the move can be undone and its cost computed
+     * incrementally.
      */
     public void swapAssignment() {
         FilterSliceNode filter1 = (FilterSliceNode)assignedFilters.get(rand.nextInt(assignedFilters.size()));
-        assignment.put(filter1, chip.getNthComputeNode(rand.nextInt(chip.size())));
+        moveFilter(filter1, (T)chip.getNthComputeNode(rand.nextInt(chip.size())));
+    }
+    
+    /**
+     * Assign filter to node in a way that can be reverted by undoSwap().
+     */
+    protected void moveFilter(FilterSliceNode filter, T node) {
+        movedFilter = filter;
+        movedFrom = (T)assignment.get(filter);
+        assignment.put(filter, node);
+    }
+    
+    protected boolean canUndoSwap() {
+        return true;
+    }
+    
+    protected void undoSwap() {
+        if (undoFilter == null)
+            return;
+        assignment.put(undoFilter, undoFrom);
+        staleFrom = Math.min(staleFrom, position.get(undoFilter).intValue());
+        undoFilter = null;
     }
     
     /**
@@ -97,42 +155,82 @@ public class NoSWPipeLayout<T extends ComputeNode, Ts extends ComputeNodesI> ext
      * @return placement cost
      */
     public double placementCost(boolean debug) {
-        double tileCosts[] = new double[chip.size()];
-        
-        Iterator<Slice> slices = scheduleOrder.iterator();
-        HashMap<FilterSliceNode, Double> endTime = new HashMap<FilterSliceNode, Double>();
-        while (slices.hasNext()) {
-            Slice slice = slices.next();
-            //System.err.println(slice.toString());
-            T tile = (T)assignment.get(slice.getHead().getNextFilter());
-            double traceWork = slicer.getSliceBNWork(slice); 
-            double startTime = 0;
-            //now find the start time
-            
-            //find the max end times of all the traces that this trace depends on
-            double maxDepStartTime = 0;
-            InputSliceNode input = slice.getHead();
-            Iterator<InterSliceEdge> inEdges = input.getSourceSet(SchedulingPhase.STEADY).iterator();
+        if (order == null)
+            initSchedule();
+        return scheduleFrom(0);
+    }
+    
+    /**
+     * Only the slices from the moved filter on in scheduleOrder can change 
+     * their start times, so only reschedule those.
+     */
+    protected double swapCost(double oldCost) {
+        undoFilter = movedFilter;
+        undoFrom = movedFrom;
+        movedFilter = null;
+        if (undoFilter == null || order == null) 
+            return placementCost(false);
+        return scheduleFrom(Math.min(staleFrom, position.get(undoFilter).intValue()));
+    }
+    
+    /**
+     * Compute the parts of the schedule that do not depend on the assignment.
+     */
+    private void initSchedule() {
+        order = scheduleOrder.toArray(new Slice[scheduleOrder.size()]);
+        position = new HashMap<FilterSliceNode, Integer>();
+        for (int i = 0; i < order.length; i++) 
+            position.put(order[i].getHead().getNextFilter(), i);
+        sliceWork = new double[order.length];
+        upstream = new int[order.length][];
+        for (int i = 0; i < order.length; i++) {
+            sliceWork[i] = slicer.getSliceBNWork(order[i]);
+            LinkedList<Integer> ups = new LinkedList<Integer>();
+            Iterator<InterSliceEdge> inEdges = order[i].getHead().getSourceSet(SchedulingPhase.STEADY).iterator();
             while (inEdges.hasNext()) {
                 InterSliceEdge edge = inEdges.next();
                 if (slicer.isIO(edge.getSrc().getParent()))
                     continue;
-                FilterSliceNode upStream = edge.getSrc().getPrevFilter();
-                
-                ComputeNode upTile = (T)assignment.get(upStream);
-                assert endTime.containsKey(upStream); // TODO: assertion fails on fedback loop.
-                if (endTime.get(upStream).doubleValue() > maxDepStartTime)
-                    maxDepStartTime = endTime.get(upStream).doubleValue();
+                Integer up = position.get(edge.getSrc().getPrevFilter());
+                assert up != null && up.intValue() < i; // TODO: assertion fails on fedback loop.
+                ups.add(up);
             }
+            upstream[i] = new int[ups.size()];
+            for (int j = 0; j < upstream[i].length; j++) 
+                upstream[i][j] = ups.get(j).intValue();
+        }
+        nodeCosts = new double[order.length + 1][chip.size()];
+        endTimes = new double[order.length];
+        staleFrom = 0;
+    }
+    
+    /**
+     * Schedule the slices of order from position first on, using the 
+     * schedule of the earlier slices computed before, and return the time 
+     * at which all compute nodes are done.
+     */
+    private double scheduleFrom(int first) {
+        for (int i = first; i < order.length; i++) {
+            double[] tileCosts = nodeCosts[i + 1];
+            System.arraycopy(nodeCosts[i], 0, tileCosts, 0, tileCosts.length);
+            T tile = (T)assignment.get(order[i].getHead().getNextFilter());
             
-            startTime = Math.max(maxDepStartTime, tileCosts[tile.getUniqueId()]);
+            //find the max end times of all the traces that this trace depends on
+            double maxDepStartTime = 0;
+            for (int j = 0; j < upstream[i].length; j++) {
+                if (endTimes[upstream[i][j]] > maxDepStartTime)
+                    maxDepStartTime = endTimes[upstream[i][j]];
+            }
+            
+            double startTime = Math.max(maxDepStartTime, tileCosts[tile.getUniqueId()]);
             
             //add the start time to the trace work (one filter)!
-            tileCosts[tile.getUniqueId()] = startTime + traceWork;
-            endTime.put(slice.getHead().getNextFilter(), tileCosts[tile.getUniqueId()]);
+            tileCosts[tile.getUniqueId()] = startTime + sliceWork[i];
+            endTimes[i] = tileCosts[tile.getUniqueId()];
         }
+        staleFrom = order.length;
         
-        
+        double[] tileCosts = nodeCosts[order.length];
         double max = -1;
         for (int i = 0; i < tileCosts.length; i++) {
             if (tileCosts[i] > max) 
@@ -265,7 +265,7 @@ public class ClusterBackend {
         // (several phases above introduce new peeks, pops, pushes
         //  including but not limited to doLinearAnalysis)
         if (!(KjcOptions.linearreplacement || KjcOptions.linearreplacement2 ||
-              KjcOptions.linearreplacement3 || KjcOptions.atlas || KjcOptions.linearpartition ||
+              KjcOptions.linearreplacement3 || KjcOptions.linearblocked || KjcOptions.atlas || KjcOptions.linearpartition ||
               KjcOptions.frequencyreplacement || KjcOptions.redundantreplacement)) {
             // for now, do not run in combination with linear replacements
             // because some linear expressions do not have type set
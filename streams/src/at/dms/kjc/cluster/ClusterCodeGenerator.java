@@ -308,6 +308,22 @@ class ClusterCodeGenerator {
                                        v.getValue());
         }
 
+        // dirty flags of fields, set when the field is written and
+        // cleared when it is written to a checkpoint
+        DirtyFields dirty = null;
+        if (oper instanceof SIRFilter && !KjcOptions.standalone) {
+            dirty = DirtyFields.getInstance((SIRFilter)oper);
+        }
+        if (dirty != null) {
+            p.println("");
+            for (int f = 0; f < fields.length; f++) {
+                String ident = fields[f].getVariable().getIdent();
+                if (dirty.hasFlag(ident)) {
+                    p.println("int "+DirtyFields.getFlagName(ident, id)+" = 1;");
+                }
+            }
+        }
+
         p.println("");
 
         //  +=============================+
@@ -331,8 +347,16 @@ class ClusterCodeGenerator {
         
 	if (! KjcOptions.standalone) {
 	//p.println("#ifndef __CLUSTER_STANDALONE\n");
+        // The checkpoint is a sequence of records: the tapes, peek
+        // buffer and file pointer, one record per field and the
+        // outgoing tapes.  A field with a dirty flag is only written if
+        // it changed since the last checkpoint, save_manager merges the
+        // records into a complete checkpoint.
         p.println("void __write_thread__"+id+"(object_write_buffer *buf) {");
 
+        int record = 0;
+        p.println("  buf->begin_record("+(record++)+");");
+
         for (Tape in : data_in) {
           if (in != null && in instanceof TapeCluster) {
               TapeCluster inc = (TapeCluster)in;
@@ -353,6 +377,8 @@ class ClusterCodeGenerator {
                 }
                 p.println("  save_file_pointer__" + id + "(buf);");
             }
+
+        p.println("  buf->end_record();");
         
         for (int f = 0; f < fields.length; f++) {
             CType type = fields[f].getType();
@@ -361,27 +387,44 @@ class ClusterCodeGenerator {
             DetectConst dc = DetectConst.getInstance((SIRFilter)oper);
             if (dc != null && dc.isConst(ident)) continue;
 
+            String ptr, size;
             if (type.isArrayType()) {
-                int size = 0;
+                int dim = 0;
                 String dims[] = (new FlatIRToCluster()).makeArrayStrings(((CArrayType)type).getDims());
                 CType base = ((CArrayType)type).getBaseType();
                 try {
-                    size = Integer.valueOf(dims[0]).intValue();
+                    dim = Integer.valueOf(dims[0]).intValue();
                 } catch (NumberFormatException ex) {
                     System.out.println("Warning! Could not estimate size of an array: "+ident);
                 }
-                p.println("  buf->write("+ident+"__"+id+", "+size+" * sizeof("+CommonUtils.CTypeToStringA(base,true)+"));");
+                ptr = ident+"__"+id;
+                size = dim+" * sizeof("+CommonUtils.CTypeToStringA(base,true)+")";
             } else {
-                p.println("  buf->write(&"+ident+"__"+id+", sizeof("+CommonUtils.CTypeToStringA(type,true)+"));");
+                ptr = "&"+ident+"__"+id;
+                size = "sizeof("+CommonUtils.CTypeToStringA(type,true)+")";
+            }
+
+            if (dirty != null && dirty.hasFlag(ident)) {
+                String flag = DirtyFields.getFlagName(ident, id);
+                p.println("  if ("+flag+") {");
+                p.println("    "+flag+" = 0;");
+                p.println("    buf->write_record("+(record++)+", "+ptr+", "+size+");");
+                p.println("  }");
+            } else {
+                p.println("  buf->write_record("+(record++)+", "+ptr+", "+size+");");
             }
         }
 
+        p.println("  buf->begin_record("+(record++)+");");
+
         for (Tape out : data_out) {
           if (out != null && out instanceof TapeCluster) {
             p.println("  "+((TapeCluster)out).getProducerName()+".write_object(buf);");
           }
         }
 
+        p.println("  buf->end_record();");
+
         p.println("}");
 
         p.println("");  
@@ -436,6 +479,16 @@ class ClusterCodeGenerator {
           }
         }
 
+        // the restored state may differ from the last checkpoint
+        if (dirty != null) {
+            for (int f = 0; f < fields.length; f++) {
+                String ident = fields[f].getVariable().getIdent();
+                if (dirty.hasFlag(ident)) {
+                    p.println("  "+DirtyFields.getFlagName(ident, id)+" = 1;");
+                }
+            }
+        }
+
         p.println("}");
 
         p.println("");  
@@ -546,6 +599,7 @@ class ClusterCodeGenerator {
             FlatNode tmp = NodeEnumerator.getFlatNode(out.getDest());
             if (!fusedWith.contains(tmp)) {     
                 p.println("  init_instance::add_outgoing("+out.getSource()+","+out.getDest()+", DATA_SOCKET);");
+                GenerateSetupFile.addDataEdge(out.getSource(), out.getDest());
             }
           } 
         }
@@ -589,6 +643,7 @@ class ClusterCodeGenerator {
                 p.println("  sock->set_check_thread_status(cs_fptr);");
                 //p.println("  sock->set_item_size(sizeof("+in.getType()+"));");
                 p.println("  "+((TapeCluster)in).getConsumerName()+".set_socket(sock);");
+                p.println("  "+((TapeCluster)in).getConsumerName()+".set_batch_size(init_instance::get_batch_size("+in.getSource()+","+in.getDest()+","+SocketBatchSize.getBatchBytes(in)+"));");
                 p.println("  "+((TapeCluster)in).getConsumerName()+".init();");
                 p.println("");
             }
@@ -603,6 +658,8 @@ class ClusterCodeGenerator {
                 p.println("  sock->set_check_thread_status(cs_fptr);");
                 //p.println("  sock->set_item_size(sizeof("+out.getType()+"));");
                 p.println("  "+((TapeCluster)out).getProducerName()+".set_socket(sock);");
+                p.println("  "+((TapeCluster)out).getProducerName()+".set_batch_size(init_instance::get_batch_size("+out.getSource()+","+out.getDest()+","+SocketBatchSize.getBatchBytes(out)+"));");
+                GenerateConfigFile.addBatchSize(out.getSource(), out.getDest(), SocketBatchSize.getBatchBytes(out));
                 p.println("  "+((TapeCluster)out).getProducerName()+".init();");
                 p.println("");
             }
@@ -0,0 +1,189 @@
+package at.dms.kjc.cluster;
+
+import at.dms.kjc.*;
+import at.dms.kjc.sir.*;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Finds the checkpointed fields of a filter whose modification can be
+ * tracked with a dirty flag, so that a checkpoint only needs to copy the
+ * fields that changed since the previous checkpoint.
+ * <br/>
+ * A field is tracked if every write to it outside of the init function
+ * is the whole expression of an expression statement (an assignment,
+ * compound assignment, increment or decrement of the field or of an
+ * element of it).  {@link FlatIRToCluster} sets the dirty flag of the
+ * field next to each such statement.  A field that is written in any
+ * other way, for example in the header of a for loop, nested in another
+ * expression, or by passing it as an array to a method, is written to
+ * every checkpoint.
+ * <br/>
+ * Must be run on the filter that is printed, after all optimizations.
+ * Not run for standalone code, which takes no checkpoints and so
+ * declares no dirty flags.
+ */
+
+public class DirtyFields extends SLIREmptyVisitor {
+
+    private static HashMap<SIRFilter, DirtyFields> instances = new HashMap<SIRFilter, DirtyFields>();
+
+    // fields that have a dirty flag
+    private HashSet<String> flagged = new HashSet<String>();
+    // fields written in a way that can not be tracked
+    private HashSet<String> untracked = new HashSet<String>();
+    // the expression of the expression statement being visited
+    private JExpression statementExpr = null;
+    // > 0 while visiting the header of a for loop
+    private int forHeader = 0;
+
+    public static void detect(SIRFilter filter) {
+        DirtyFields df = new DirtyFields();
+        instances.put(filter, df);
+
+        String init = filter.getInit().getName();
+        JMethodDeclaration[] methods = filter.getMethods();
+        for (int i = 0; i < methods.length; i++) {
+            if (!methods[i].getName().equals(init)) {
+                methods[i].accept(df);
+            }
+        }
+
+        DetectConst dc = DetectConst.getInstance(filter);
+        JFieldDeclaration[] fields = filter.getFields();
+        for (int i = 0; i < fields.length; i++) {
+            String ident = fields[i].getVariable().getIdent();
+            if (fields[i].getType().toString().endsWith("Portal")) continue;
+            if (dc != null && dc.isConst(ident)) continue;
+            if (!df.untracked.contains(ident)) {
+                df.flagged.add(ident);
+            }
+        }
+    }
+
+    public static DirtyFields getInstance(SIRFilter filter) {
+        return instances.get(filter);
+    }
+
+    /**
+     * Returns true if field has a dirty flag, false if it is either
+     * not checkpointed or written to every checkpoint.
+     */
+    public boolean hasFlag(String field) {
+        return flagged.contains(field);
+    }
+
+    /**
+     * Returns the name of the dirty flag of a field of operator id.
+     */
+    public static String getFlagName(String field, int id) {
+        return "__dirty_"+field+"__"+id;
+    }
+
+    /**
+     * Returns the field of this filter that is written by expression
+     * statement expr, or null if expr does not write a field.
+     */
+    public static String getWrittenField(JExpression expr) {
+        if (expr instanceof JAssignmentExpression) {
+            return getRootField(((JAssignmentExpression)expr).getLeft());
+        }
+        if (expr instanceof JPrefixExpression) {
+            return getRootField(((JPrefixExpression)expr).getExpr());
+        }
+        if (expr instanceof JPostfixExpression) {
+            return getRootField(((JPostfixExpression)expr).getExpr());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the field of this filter that contains the location of
+     * expr, e.g. "a" for this.a[i].b, or null.
+     */
+    private static String getRootField(JExpression expr) {
+        for (;;) {
+            if (expr instanceof JArrayAccessExpression) {
+                expr = ((JArrayAccessExpression)expr).getPrefix();
+            } else if (expr instanceof JFieldAccessExpression) {
+                JFieldAccessExpression f_expr = (JFieldAccessExpression)expr;
+                if (f_expr.getPrefix() instanceof JThisExpression) {
+                    return f_expr.getIdent();
+                }
+                expr = f_expr.getPrefix();
+            } else {
+                return null;
+            }
+        }
+    }
+
+    private void write(JExpression self, JExpression target) {
+        String field = getRootField(target);
+        if (field != null && self != statementExpr) {
+            untracked.add(field);
+        }
+    }
+
+    public void visitExpressionStatement(JExpressionStatement self,
+                                         JExpression expr) {
+        statementExpr = (forHeader > 0 ? null : expr);
+        expr.accept(this);
+        statementExpr = null;
+    }
+
+    public void visitForStatement(JForStatement self,
+                                  JStatement init,
+                                  JExpression cond,
+                                  JStatement incr,
+                                  JStatement body) {
+        forHeader++;
+        if (init != null) init.accept(this);
+        if (cond != null) cond.accept(this);
+        if (incr != null) incr.accept(this);
+        forHeader--;
+        body.accept(this);
+    }
+
+    public void visitMethodCallExpression(JMethodCallExpression self,
+                                          JExpression prefix,
+                                          String ident,
+                                          JExpression[] args) {
+        // arrays are passed by reference and may be written by the callee
+        for (int i = 0; i < args.length; i++) {
+            String field = getRootField(args[i]);
+            if (field != null && (args[i].getType() == null || args[i].getType().isArrayType())) {
+                untracked.add(field);
+            }
+        }
+        super.visitMethodCallExpression(self, prefix, ident, args);
+    }
+
+    public void visitPrefixExpression(JPrefixExpression self,
+                                      int oper,
+                                      JExpression expr) {
+        write(self, expr);
+        super.visitPrefixExpression(self, oper, expr);
+    }
+
+    public void visitPostfixExpression(JPostfixExpression self,
+                                       int oper,
+                                       JExpression expr) {
+        write(self, expr);
+        super.visitPostfixExpression(self, oper, expr);
+    }
+
+    public void visitAssignmentExpression(JAssignmentExpression self,
+                                          JExpression left,
+                                          JExpression right) {
+        write(self, left);
+        super.visitAssignmentExpression(self, left, right);
+    }
+
+    public void visitCompoundAssignmentExpression(JCompoundAssignmentExpression self,
+                                                  int oper,
+                                                  JExpression left,
+                                                  JExpression right) {
+        write(self, left);
+        super.visitCompoundAssignmentExpression(self, oper, left, right);
+    }
+}
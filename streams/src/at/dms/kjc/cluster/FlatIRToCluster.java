@@ -188,6 +188,12 @@ public class FlatIRToCluster extends InsertTimers implements
 
         (new FinalUnitOptimize()).optimize(filter);
 
+        // find fields whose changes can be tracked for incremental
+        // checkpoints; standalone code takes no checkpoints
+        if (!KjcOptions.standalone) {
+            DirtyFields.detect(filter);
+        }
+
 //        System.err.println("Filter after DCE");
 //        SIRToStreamIt.run(contentsAsFilter,
 //                new JInterfaceDeclaration[0],
@@ -1245,6 +1251,7 @@ public class FlatIRToCluster extends InsertTimers implements
         p.print("; ");
         if (incr != null) {
             FlatIRToCluster l2c = new FlatIRToCluster(filter);
+            l2c.forLoopHeader = forLoopHeader;
             incr.accept(l2c);
             // get String
             String str = l2c.p.getString();
@@ -1303,6 +1310,23 @@ public class FlatIRToCluster extends InsertTimers implements
      * prints an expression list statement
      */
 
+    /**
+     * prints an expression statement, marking the field it writes as
+     * dirty for the next incremental checkpoint
+     */
+    public void visitExpressionStatement(JExpressionStatement self,
+                                         JExpression expr) {
+        DirtyFields dirty = (filter == null ? null : DirtyFields.getInstance(filter));
+        String field = DirtyFields.getWrittenField(expr);
+        if (dirty == null || field == null || !dirty.hasFlag(field) || forLoopHeader > 0) {
+            super.visitExpressionStatement(self, expr);
+            return;
+        }
+        p.print("{ " + DirtyFields.getFlagName(field, selfID) + " = 1; ");
+        super.visitExpressionStatement(self, expr);
+        p.print(" }");
+    }
+
     /*
      * prints a empty statement
      */
@@ -7,7 +7,9 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import at.dms.kjc.common.CodegenPrintWriter;
 import at.dms.util.Utils;
@@ -22,6 +24,11 @@ import at.dms.util.Utils;
  * everyone to the current host (useful for testing or shared-memory
  * implementation.)
  * 
+ * <p>It also lists the number of bytes sent per write on each data
+ * connection as "batch &lt;from&gt; &lt;to&gt; &lt;bytes&gt;", see
+ * {@link SocketBatchSize}.  These lines can be edited to tune the
+ * batching of a connection without recompiling.
+ * 
  * @author Janis
  *
  */
@@ -34,6 +41,14 @@ public class GenerateConfigFile {
      * Name of file where thread/machine mapping is output.
      */
     private final static String CLUSTER_CONFIG_FILENAME = "cluster-config.txt";
+    /**
+     * Machine assigned to each thread, null until cluster-config.txt is generated.
+     */
+    private static String[] threadHosts = null;
+    /**
+     * Bytes per write of each data connection, keyed by "from to".
+     */
+    private static Map<String,Integer> batchSizes = new LinkedHashMap<String,Integer>();
 
     /**
      * Generate cluster-config.txt
@@ -41,6 +56,7 @@ public class GenerateConfigFile {
     public static void generateConfigFile() {
         int threadNumber = NodeEnumerator.getNumberOfNodes();
         CodegenPrintWriter p = new CodegenPrintWriter();
+        threadHosts = new String[threadNumber];
 
         String[] clusterMachines = readClusterMachines();
         if (clusterMachines.length == 0) {
@@ -51,6 +67,10 @@ public class GenerateConfigFile {
             mapOneThreadPerMachine(clusterMachines, p, threadNumber);
         }
 
+        for (Map.Entry<String,Integer> batch : batchSizes.entrySet()) {
+            p.print("batch "+batch.getKey()+" "+batch.getValue()+"\n");
+        }
+
         try {
             FileWriter fw = new FileWriter(CLUSTER_CONFIG_FILENAME);
             fw.write(p.getString());
@@ -61,13 +81,20 @@ public class GenerateConfigFile {
         }   
     }
 
+    /**
+     * Remember the number of bytes per write of a data connection.
+     */
+    public static void addBatchSize(int from, int to, int bytes) {
+        batchSizes.put(from+" "+to, bytes);
+    }
+
     /**
      * No machines specified, map all threads to current host.
      */
     private static void mapToCurrentHost(String[] clusterMachines, CodegenPrintWriter p, int threadNumber) {
         String currentHostName = getCurrentHostName();
         for (int i = 0; i < threadNumber; i++) {
-            p.print(i+" "+currentHostName+"\n");
+            assignThread(p, i, currentHostName);
         }
         // print warning    
         System.err.println("NOTE: Missing or empty $STREAMIT_HOME/cluster-machines.txt file,");
@@ -87,7 +114,7 @@ public class GenerateConfigFile {
             int threadsPerMachine = (int)Math.ceil(((float)threadsRemaining) / ((float)machinesRemaining));
             // assign current machine
             for (int j=0; j<threadsPerMachine; j++, curThread++) {
-                p.print(curThread+" "+clusterMachines[i]+"\n");
+                assignThread(p, curThread, clusterMachines[i]);
             }
         }
         // print warning
@@ -100,12 +127,31 @@ public class GenerateConfigFile {
     private static void mapOneThreadPerMachine(String[] clusterMachines, CodegenPrintWriter p, int threadNumber) {
         // we have enough machines for the threads
         for (int i=0; i<threadNumber; i++) {
-            p.print(i+" "+clusterMachines[i]+"\n");
+            assignThread(p, i, clusterMachines[i]);
         }
         System.err.println("Reading machine names from $STREAMIT_HOME/cluster-machines.txt.");
         System.err.println("  Storing thread/machine mapping in ./cluster-config.txt.");
     }
 
+    /**
+     * Map thread to machine and print the mapping.
+     */
+    private static void assignThread(CodegenPrintWriter p, int thread, String machine) {
+        threadHosts[thread] = machine;
+        p.print(thread+" "+machine+"\n");
+    }
+
+    /**
+     * Returns the machine that thread was mapped to in cluster-config.txt,
+     * or null if no configuration file has been generated.
+     */
+    public static String getThreadHost(int thread) {
+        if (threadHosts == null || thread < 0 || thread >= threadHosts.length) {
+            return null;
+        }
+        return threadHosts[thread];
+    }
+
     /**
      * Returns an array of machine names that are defined in
      * $STREAMIT_HOME/cluster-machines.txt.  If this file is not found
@@ -1,8 +1,11 @@
 package at.dms.kjc.cluster;
 
 import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
 import at.dms.kjc.KjcOptions;
 import at.dms.kjc.common.CodegenPrintWriter;
+import at.dms.kjc.flatgraph.FlatNode;
 
 
 /**
@@ -17,6 +20,19 @@ import at.dms.kjc.common.CodegenPrintWriter;
  *
  */
 public class GenerateSetupFile {
+    /**
+     * Data connections between threads as {source, destination} node ids.
+     */
+    private static List<int[]> dataEdges = new ArrayList<int[]>();
+
+    /**
+     * Remember a data connection between two threads so that its transport
+     * can be reported in cluster-setup.txt.
+     */
+    public static void addDataEdge(int source, int dest) {
+        dataEdges.add(new int[]{source, dest});
+    }
+
     public static void generateSetupFile() {
 
         CodegenPrintWriter p = new CodegenPrintWriter();
@@ -28,6 +44,8 @@ public class GenerateSetupFile {
             p.print("number_of_iterations " + KjcOptions.iterations + "    // Number of steady state iterations can be overriden by parameter -i <number>\n");
         else
             p.print("number_of_iterations 10000    // Number of steady state iterations can be overriden by parameter -i <number>\n");
+        if (!KjcOptions.standalone)
+            printTransports(p);
 
         try {
             FileWriter fw = new FileWriter("cluster-setup.txt");
@@ -38,5 +56,37 @@ public class GenerateSetupFile {
             System.err.println("Unable to write cluster setup file");
         }   
     }
+
+    /**
+     * Print the transport of each data connection as a comment.  The
+     * sockets of a fused node are created by the thread it was fused
+     * into, so the connection is between the threads of the masters.
+     */
+    private static void printTransports(CodegenPrintWriter p) {
+        p.print("\n// Data connections (based on the generated cluster-config.txt):\n");
+        for (int[] edge : dataEdges) {
+            int src = getThread(edge[0]);
+            int dst = getThread(edge[1]);
+            String srcHost = GenerateConfigFile.getThreadHost(src);
+            String dstHost = GenerateConfigFile.getThreadHost(dst);
+            p.print("// " + edge[0] + "->" + edge[1] + " ");
+            if (srcHost != null && srcHost.equals(dstHost)) {
+                p.print("shared memory (threads " + src + "," + dst + " on " + srcHost + ")\n");
+            } else {
+                p.print("tcp (thread " + src + " on " + srcHost + ", thread " + dst + " on " + dstHost + ")\n");
+            }
+        }
+    }
+
+    /**
+     * Returns the thread that runs the node with the given id.
+     */
+    private static int getThread(int nodeId) {
+        FlatNode node = NodeEnumerator.getFlatNode(nodeId);
+        while (ClusterFusion.isEliminated(node)) {
+            node = ClusterFusion.getMaster(node);
+        }
+        return NodeEnumerator.getFlatNodeId(node);
+    }
 }
 
@@ -6,7 +6,6 @@ package at.dms.kjc.cluster;
 //import at.dms.kjc.flatgraph.FlatVisitor;
 import at.dms.kjc.*;
 import at.dms.kjc.sir.*;
-import at.dms.kjc.iterator.*;
 //import at.dms.util.Utils;
 //import at.dms.compiler.*;
 import at.dms.kjc.sir.lowering.*;
@@ -16,7 +15,7 @@ import java.util.*;
 //import java.io.*;
 
 /**
- * A StreamVisitor that perfoms a sequence of optimizations.
+ * A FilterPass that perfoms a sequence of optimizations.
  * 
  * <p>Currently only acts on non-phase filters.  All other constructs
  * are ignored.</p>
@@ -29,13 +28,15 @@ import java.util.*;
  * 
  * <p>The name Optimizer may be a misnomer since this is nowhere near the 
  * complete suite of standard optimizations.</p>
+ * <p>Filters are optimized on <code>--compilethreads</code> threads.</p>
  * @see Unroller
  * @see Propagator
  * @see BlockFlattener
  * @see VarDeclRaiser
  * @see DeadCodeElimination
+ * @see FilterPass
  */
-class Optimizer implements StreamVisitor {
+class Optimizer extends FilterPass {
 
     public Optimizer() {}
 
@@ -43,13 +44,12 @@ class Optimizer implements StreamVisitor {
         Optimizer est = new Optimizer();
         if (ClusterBackend.debugging)
             System.out.print("Optimizing filters...");
-        IterFactory.createFactory().createIter(str).accept(est);
+        FilterPass.doit(str, est);
         if (ClusterBackend.debugging)
             System.out.println("done.");
     }
 
-    public void visitFilter(SIRFilter filter,
-                            SIRFilterIter iter) { 
+    public void visitFilter(SIRFilter filter) { 
 
         //unroll all methods
         //System.out.println("Optimizing "+filter+"...");
@@ -77,38 +77,4 @@ class Optimizer implements StreamVisitor {
            
         DeadCodeElimination.doit(filter);
     }
-
-    public void visitPhasedFilter(SIRPhasedFilter self,
-                                  SIRPhasedFilterIter iter) {
-        // This is a stub; it'll get filled in once we figure out how phased
-        // filters should actually work.
-    }
-    
-    /**
-     * PRE-VISITS 
-     */
-        
-    /* pre-visit a pipeline */
-    public void preVisitPipeline(SIRPipeline self, SIRPipelineIter iter) {}
-    
-    /* pre-visit a splitjoin */
-    public void preVisitSplitJoin(SIRSplitJoin self, SIRSplitJoinIter iter) {}
-    
-    /* pre-visit a feedbackloop */
-    public void preVisitFeedbackLoop(SIRFeedbackLoop self, SIRFeedbackLoopIter iter) {}
-    
-    /**
-     * POST-VISITS 
-     */
-        
-    /* post-visit a pipeline */
-    public void postVisitPipeline(SIRPipeline self, SIRPipelineIter iter) {}
-   
-    /* post-visit a splitjoin */
-    public void postVisitSplitJoin(SIRSplitJoin self, SIRSplitJoinIter iter) {}
-
-    /* post-visit a feedbackloop */
-    public void postVisitFeedbackLoop(SIRFeedbackLoop self, SIRFeedbackLoopIter iter) {}
-
-
 }
@@ -0,0 +1,61 @@
+package at.dms.kjc.cluster;
+
+import at.dms.kjc.JIntLiteral;
+import at.dms.kjc.KjcOptions;
+import at.dms.kjc.sir.SIRFilter;
+import at.dms.kjc.flatgraph.FlatNode;
+
+/**
+ * Calculate the number of bytes sent per write on a data connection
+ * between two cluster threads.
+ * <br/>
+ * A producer collects items in a buffer and only writes the buffer when it
+ * is full, so the batch size trades throughput (few large writes) against
+ * latency (how long the first item in the buffer waits before the consumer
+ * sees it).  The batch aims for {@link KjcOptions#clusterbatch} bytes.  With
+ * {@link KjcOptions#clusterlatency} it is further limited to the number of
+ * items pushed on the connection in that many steady states, so no item is
+ * held back for longer than that.
+ * <br/>
+ * Both ends of a connection must use the same batch size.  The computed
+ * sizes are listed in cluster-config.txt where they can be tuned per
+ * connection without recompiling.
+ */
+public class SocketBatchSize {
+
+    /**
+     * Get the number of bytes to send per write on a data connection.
+     * @param tape the connection
+     * @return batch size in bytes
+     */
+    public static int getBatchBytes(Tape tape) {
+        int bytes = KjcOptions.clusterbatch;
+
+        if (KjcOptions.clusterlatency > 0) {
+            long steadyItems = getSteadyItems(NodeEnumerator.getFlatNode(tape.getSource()),
+                                              NodeEnumerator.getFlatNode(tape.getDest()));
+            if (steadyItems > 0) {
+                long latencyBytes = KjcOptions.clusterlatency * steadyItems
+                    * Math.max(1, DataEstimate.getTypeSize(tape.getType()));
+                bytes = (int)Math.min(bytes, latencyBytes);
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Number of items pushed from src to dst in one steady state, or 0 if
+     * not known because src has a dynamic push rate.
+     */
+    private static long getSteadyItems(FlatNode src, FlatNode dst) {
+        if (src.isFilter() && !(((SIRFilter)src.contents).getPush() instanceof JIntLiteral)) {
+            return 0;
+        }
+        Integer mult = ClusterBackend.steadyExecutionCounts.get(src);
+        if (mult == null) {
+            return 0;
+        }
+        return (long)mult.intValue() * FlatNode.getItemsPushed(src, dst);
+    }
+}
@@ -0,0 +1,172 @@
+package at.dms.kjc.common;
+
+import at.dms.kjc.flatgraph.FlatNode;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * The class represents the heap of scheduled events for the work
+ * based simulators of the raw and spacedynamic backends.  It is a
+ * binary heap ordered by the time of the events, so adding an event
+ * and getting the next one take O(log n) time.
+ * <br/>
+ * The items of one node are sent in the order of their item IDs: an
+ * event is never taken before an earlier added event of the same node
+ * that is still in the heap, even if the earlier one has a later time.
+ * Events with the same time come out in the order they were added.
+ **/
+public class EventHeap
+{
+    //the events, the first size entries of which form the heap
+    private SimulatorEvent[] events;
+    //the time each event is ordered by, at least that of the last
+    //event of the same node added before it
+    private int[] keys;
+    //the order in which the events were added, to break ties
+    private long[] order;
+    private int size;
+    private long added;
+    //the last event added for each node that still has events in the
+    //heap, and its key
+    private HashMap<FlatNode, SimulatorEvent> lastEvents;
+    private HashMap<FlatNode, Integer> lastKeys;
+    private HashMap<FlatNode, Integer> itemIDs;
+
+    public EventHeap()
+    {
+        events = new SimulatorEvent[16];
+        keys = new int[16];
+        order = new long[16];
+        size = 0;
+        added = 0;
+        lastEvents = new HashMap<FlatNode, SimulatorEvent>();
+        lastKeys = new HashMap<FlatNode, Integer>();
+        itemIDs = new HashMap<FlatNode, Integer>();
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    //add to the event heap, after the earlier items of the same node
+    public void addEvent(SimulatorEvent event)
+    {
+        int key = event.time;
+        Integer last = lastKeys.get(event.node);
+        if (last != null && last > key)
+            key = last;
+        lastEvents.put(event.node, event);
+        lastKeys.put(event.node, key);
+
+        if (size == events.length) {
+            SimulatorEvent[] newEvents = new SimulatorEvent[2 * size];
+            int[] newKeys = new int[2 * size];
+            long[] newOrder = new long[2 * size];
+            System.arraycopy(events, 0, newEvents, 0, size);
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            System.arraycopy(order, 0, newOrder, 0, size);
+            events = newEvents;
+            keys = newKeys;
+            order = newOrder;
+        }
+
+        //sift the new event up from the bottom of the heap
+        int i = size++;
+        long seq = added++;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!before(key, seq, keys[parent], order[parent]))
+                break;
+            set(i, events[parent], keys[parent], order[parent]);
+            i = parent;
+        }
+        set(i, event, key, seq);
+    }
+
+
+    public SimulatorEvent getNextEvent()
+    {
+        if (size == 0)
+            return null;
+
+        SimulatorEvent next = events[0];
+        //the items of a node come out in order, so if this is the last
+        //one added, the node has nothing left in the heap to wait for
+        if (lastEvents.get(next.node) == next) {
+            lastEvents.remove(next.node);
+            lastKeys.remove(next.node);
+        }
+        size--;
+        SimulatorEvent event = events[size];
+        int key = keys[size];
+        long seq = order[size];
+        events[size] = null;
+
+        //sift the last event down from the top of the heap
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size &&
+                before(keys[child + 1], order[child + 1], keys[child], order[child]))
+                child++;
+            if (!before(keys[child], order[child], key, seq))
+                break;
+            set(i, events[child], keys[child], order[child]);
+            i = child;
+        }
+        if (size > 0)
+            set(i, event, key, seq);
+        return next;
+    }
+
+    public SimulatorEvent peekNextEvent()
+    {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return events[0];
+    }
+
+    /**
+     * Returns an iterator over the scheduled events, in no
+     * particular order.
+     **/
+    public Iterator<SimulatorEvent> iterator()
+    {
+        return Arrays.asList(events).subList(0, size).iterator();
+    }
+
+    public int getItemId(FlatNode node)
+    {
+        if (!itemIDs.containsKey(node)) {
+            itemIDs.put(node, 0);
+            return 0;
+        }
+        else {
+            int old = itemIDs.get(node);
+            itemIDs.put(node, old + 1);
+            return old;
+        }
+    }
+
+    //true if the event with key1 added at seq1 comes out before the
+    //one with key2 added at seq2
+    private static boolean before(int key1, long seq1, int key2, long seq2)
+    {
+        return key1 < key2 || (key1 == key2 && seq1 < seq2);
+    }
+
+    private void set(int i, SimulatorEvent event, int key, long seq)
+    {
+        events[i] = event;
+        keys[i] = key;
+        order[i] = seq;
+    }
+}
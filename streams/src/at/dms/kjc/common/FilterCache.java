@@ -0,0 +1,241 @@
+package at.dms.kjc.common;
+
+import at.dms.kjc.*;
+import at.dms.kjc.sir.*;
+import at.dms.util.IRPrinter;
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An on-disk cache of per-filter analysis results, kept in the
+ * directory named by <code>--filtercache</code> so that they survive
+ * from one compile to the next.
+ *
+ * <p>A result is filed under a hash of the filter's IR (its rates,
+ * tape types, fields and methods, as printed by IRPrinter) and of a
+ * string naming the analysis and the options it depends on.  Names
+ * that the compiler makes unique with a counter (by RenameAll,
+ * ThreeAddressCode, LoweringConstants or Propagator) are numbered in
+ * order of appearance within the filter before hashing, since their
+ * counters depend on what else is in the program.  Parameters have
+ * been propagated into the IR by the time the analyses run, so two
+ * instances of a filter with different parameters get different
+ * keys.</p>
+ *
+ * <p>The cache is only ever a shortcut: anything that goes wrong in
+ * reading or writing it is reported once and otherwise treated as a
+ * miss.</p>
+ */
+public class FilterCache {
+    /**
+     * Part of every key; change it whenever the printed form of the
+     * IR or the format of a stored result changes.
+     */
+    private static final String VERSION = "1";
+
+    /** Names made unique by a counter; group 1 is kept as is. */
+    private static final Pattern UNIQUE_NAME =
+        Pattern.compile("\\b(\\w*__|__tmp|streamItVar|interfaceTable|hierarchical_work_|__constpropvar_)\\d+\\b");
+
+    private static final AtomicInteger hits = new AtomicInteger();
+    private static final AtomicInteger misses = new AtomicInteger();
+    private static volatile boolean warned = false;
+
+    /**
+     * Returns whether a cache directory was given.
+     */
+    public static boolean isEnabled() {
+        return KjcOptions.filtercache != null;
+    }
+
+    /**
+     * Returns the key under which the result of <i>analysis</i> on
+     * <i>filter</i> is filed, or null if the cache is not in use.
+     * <i>analysis</i> should name the analysis and give the value of
+     * every option that changes its result.
+     */
+    public static String getKey(SIRFilter filter, String analysis) {
+        if (!isEnabled()) {
+            return null;
+        }
+        StringWriter text = new StringWriter();
+        text.write(VERSION + " " + analysis + "\n");
+        text.write(filter.getClass().getName() + " " +
+                   filter.getInputType() + " -> " + filter.getOutputType() + "\n");
+
+        IRPrinter printer = new IRPrinter(text);
+        printRate(printer, text, "peek", filter.getPeek());
+        printRate(printer, text, "pop", filter.getPop());
+        printRate(printer, text, "push", filter.getPush());
+        if (filter instanceof SIRTwoStageFilter) {
+            SIRTwoStageFilter two = (SIRTwoStageFilter)filter;
+            printRate(printer, text, "initpeek", two.getInitPeek());
+            printRate(printer, text, "initpop", two.getInitPop());
+            printRate(printer, text, "initpush", two.getInitPush());
+        }
+        JFieldDeclaration[] fields = filter.getFields();
+        for (int i = 0; i < fields.length; i++) {
+            fields[i].accept(printer);
+        }
+        JMethodDeclaration[] methods = filter.getMethods();
+        for (int i = 0; i < methods.length; i++) {
+            // mark which methods are init and work, since the names
+            // don't say (IRPrinter flushes after every write)
+            if (methods[i] == filter.getInit()) {
+                text.write("\ninit");
+            } else if (methods[i] == filter.getWork()) {
+                text.write("\nwork");
+            }
+            methods[i].accept(printer);
+        }
+        printer.close();
+
+        return hash(canonicalize(text.toString()));
+    }
+
+    /**
+     * Writes <i>rate</i> to <i>text</i>, labelled with <i>name</i>.
+     */
+    private static void printRate(IRPrinter printer, StringWriter text,
+                                  String name, JExpression rate) {
+        text.write("\n" + name);
+        if (rate != null) {
+            rate.accept(printer);
+        }
+    }
+
+    /**
+     * Renumbers the counter-made names in <i>text</i> from zero, in
+     * order of first appearance.
+     */
+    private static String canonicalize(String text) {
+        Map<String,String> names = new HashMap<String,String>();
+        Matcher m = UNIQUE_NAME.matcher(text);
+        StringBuffer result = new StringBuffer(text.length());
+        while (m.find()) {
+            String name = names.get(m.group());
+            if (name == null) {
+                name = m.group(1) + "#" + names.size();
+                names.put(m.group(), name);
+            }
+            m.appendReplacement(result, Matcher.quoteReplacement(name));
+        }
+        m.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * Returns the SHA-1 of <i>text</i> in hex.
+     */
+    private static String hash(String text) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] digest = md.digest(text.getBytes("UTF-8"));
+            StringBuffer hex = new StringBuffer();
+            for (int i = 0; i < digest.length; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the file that the result filed under <i>key</i> is
+     * kept in.
+     */
+    private static File getFile(String key) {
+        return new File(new File(KjcOptions.filtercache, key.substring(0, 2)), key);
+    }
+
+    /**
+     * Returns the result filed under <i>key</i>, or null if there is
+     * none (or <i>key</i> is null).
+     */
+    public static byte[] get(String key) {
+        if (key == null) {
+            return null;
+        }
+        File file = getFile(key);
+        if (!file.isFile()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                byte[] data = new byte[(int)file.length()];
+                in.readFully(data);
+                hits.incrementAndGet();
+                return data;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            warn(e);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Files <i>data</i> under <i>key</i>, replacing what was there.
+     * Does nothing if <i>key</i> is null.
+     */
+    public static void put(String key, byte[] data) {
+        if (key == null) {
+            return;
+        }
+        File file = getFile(key);
+        try {
+            file.getParentFile().mkdirs();
+            // write a temporary file and rename it, so that a
+            // compile running at the same time never sees half a
+            // result
+            File temp = File.createTempFile(key, ".tmp", file.getParentFile());
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    temp.delete();
+                    throw new IOException("can't rename " + temp + " to " + file);
+                }
+            }
+        } catch (IOException e) {
+            warn(e);
+        }
+    }
+
+    private static void warn(IOException e) {
+        if (!warned) {
+            System.err.println("WARNING: filter cache in " + KjcOptions.filtercache +
+                               " not usable: " + e.getMessage());
+            warned = true;
+        }
+    }
+
+    /**
+     * Prints how many lookups were answered from the cache, if it
+     * is in use.
+     */
+    public static void printStats() {
+        if (isEnabled() && hits.get() + misses.get() > 0) {
+            System.err.println("Filter cache: " + hits.get() + " hits, " +
+                               misses.get() + " misses");
+        }
+    }
+}
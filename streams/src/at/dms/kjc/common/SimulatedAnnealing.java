@@ -6,6 +6,8 @@ package at.dms.kjc.common;
 import java.util.HashMap;
 import java.util.Random;
 
+import at.dms.kjc.KjcOptions;
+
 /**
  * This is a abstract class that any simulated annealing assignment
  * algorithm can inherit and use. 
@@ -29,6 +31,9 @@ public abstract class SimulatedAnnealing {
     /** the assignment that we arrive at and use during execution */
     protected HashMap assignment;
 
+    /** the cost of the current assignment, kept up to date by perturbConfiguration() */
+    private double currentCost;
+
     protected SimulatedAnnealing() {
         assignment = new HashMap();
         random = new Random(17);
@@ -72,6 +77,40 @@ public abstract class SimulatedAnnealing {
      */
     public abstract double placementCost(boolean debug); 
     
+    /**
+     * The placement cost of the configuration after a call to 
+     * swapAssignment(), given the cost <oldCost> before it.  This is called 
+     * once for every move, so subclasses that know which part of the 
+     * assignment was changed by swapAssignment() should override it to 
+     * update the cost from the affected nodes and edges only.  It must return
+     * the same value as placementCost(false).
+     * 
+     * @param oldCost The placement cost before swapAssignment().
+     * @return placement cost
+     */
+    protected double swapCost(double oldCost) {
+        return placementCost(false);
+    }
+    
+    /**
+     * Return true if the subclass can revert the last swapAssignment() with 
+     * undoSwap().  Otherwise, the assignment is copied before every move so 
+     * that it can be restored with setAssignment().
+     * 
+     * @return true if undoSwap() is supported.
+     */
+    protected boolean canUndoSwap() {
+        return false;
+    }
+    
+    /**
+     * Revert the changes of the last swapAssignment().  Only called if 
+     * canUndoSwap() returns true.
+     */
+    protected void undoSwap() {
+        
+    }
+    
     /** 
      * Perform any initialization that has to be done before
      * simulated annealing. This does not include the initial placement. 
@@ -97,7 +136,10 @@ public abstract class SimulatedAnnealing {
     }
     
     /**
-     * Run the simulated annealing assignment.
+     * Run the simulated annealing assignment.  If --annealstarts is more 
+     * than one, run that many chains, each from the initial placement and 
+     * with a different random seed, and keep the layout of the first chain 
+     * that reached the lowest cost.
      * 
      * @param iterations The number of simulated annealing iterations to
      * run.
@@ -105,11 +147,7 @@ public abstract class SimulatedAnnealing {
      */
     public final void simAnnealAssign(int iterations, int nover) {
         System.out.println("Simulated Annealing Assignment");
-        int nsucc = 0, j = 0;
-        double currentCost = 0.0, minCost = 0.0;
-        // number of paths tried at an iteration
         
-
         try {
             
 //          initialize
@@ -118,95 +156,130 @@ public abstract class SimulatedAnnealing {
             // create an initial placement
             initialPlacement();
 
-            int configuration = 0;
+            int starts = KjcOptions.annealstarts;
+            if (starts <= 1) {
+                annealChain(iterations, nover);
+                return;
+            }
+            
+            HashMap assignInit = (HashMap)assignment.clone();
+            HashMap assignBest = null;
+            double bestCost = 0.0;
+            for (int start = 0; start < starts; start++) {
+                if (start > 0) {
+                    System.out.println("Annealing chain " + (start + 1) + " of " + starts);
+                    random = new Random(17 + start);
+                    setAssignment((HashMap)assignInit.clone());
+                }
+                double cost = annealChain(iterations, nover);
+                if (assignBest == null || cost < bestCost) {
+                    bestCost = cost;
+                    assignBest = (HashMap)assignment.clone();
+                }
+            }
+            System.out.println("Best Cost of " + starts + " chains: " + bestCost);
+            setAssignment(assignBest);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Run one annealing chain from the current assignment, and leave 
+     * the assignment with the minimum cost that the chain found.
+     * 
+     * @return The cost of the final assignment.
+     */
+    private double annealChain(int iterations, int nover) throws Exception {
+        int nsucc = 0, j = 0;
+        double minCost = 0.0;
+        int configuration = 0;
 
-            currentCost = placementCost(false);
-            assert currentCost >= 0.0;
-            System.out.println("Initial Cost: " + currentCost);
-            double lastInitialCost = currentCost;
+        currentCost = placementCost(false);
+        assert currentCost >= 0.0;
+        System.out.println("Initial Cost: " + currentCost);
+        double lastInitialCost = currentCost;
          
-            // as a little hack, we will cache the layout with the minimum cost
-            // these two hashmaps store this layout
-            HashMap assignMin = (HashMap) assignment.clone();
-            minCost = currentCost;
+        // as a little hack, we will cache the layout with the minimum cost
+        // these two hashmaps store this layout
+        HashMap assignMin = (HashMap) assignment.clone();
+        minCost = currentCost;
 
-            if (currentCost == 0.0) {
-                return;
-            }
+        if (currentCost == 0.0) {
+            return currentCost;
+        }
 
-            // The first iteration is really just to get a
-            // good initial layout. Some random layouts really kill the
-            // algorithm
-            for (int two = 0; two < iterations; two++) {
-                if (two > 0 && lastInitialCost == currentCost) {
-                    System.out.println("Not using last layout.");
-                    initialPlacement();
-                    currentCost = placementCost(false);
-                }
-                lastInitialCost = currentCost;
+        // The first iteration is really just to get a
+        // good initial layout. Some random layouts really kill the
+        // algorithm
+        for (int two = 0; two < iterations; two++) {
+            if (two > 0 && lastInitialCost == currentCost) {
+                System.out.println("Not using last layout.");
+                initialPlacement();
+                currentCost = placementCost(false);
+            }
+            lastInitialCost = currentCost;
                 
-                System.out.print("\nRunning Annealing Step (" + currentCost
-                                 + ", " + minCost + ")");
-                double t = annealMaxTemp();
-                double tFinal = annealMinTemp();
-                while (true) {
-                    int k = 0;
-                    nsucc = 0;
-                    for (k = 0; k < nover; k++) {
-                        // true if config change was accepted
-                        boolean accepted = perturbConfiguration(t);
-                        currentCost = placementCost(false);
-                        // the layout should always be legal
-                        assert currentCost >= 0.0 : currentCost;
+            System.out.print("\nRunning Annealing Step (" + currentCost
+                             + ", " + minCost + ")");
+            double t = annealMaxTemp();
+            double tFinal = annealMinTemp();
+            while (true) {
+                int k = 0;
+                nsucc = 0;
+                for (k = 0; k < nover; k++) {
+                    // true if config change was accepted, 
+                    // currentCost is updated by the call
+                    boolean accepted = perturbConfiguration(t);
+                    // the layout should always be legal
+                    assert currentCost >= 0.0 : currentCost;
 
-                        if (accepted) {
-                            nsucc++;
-                            configuration++;
-                            //System.out.println(currentCost);
-                        }
+                    if (accepted) {
+                        nsucc++;
+                        configuration++;
+                        //System.out.println(currentCost);
+                    }
                         
-                        if (configuration % 500 == 0)
-                            System.out.print(".");
+                    if (configuration % 500 == 0)
+                        System.out.print(".");
                           
-                        // keep the layout with the minimum cost
-                        // or if this layout has the same minimun cost
-                        // call keepNewEqualMin to decide if we should keep it
-                        if (currentCost < minCost) { 
-                            minCost = currentCost;
-                            // save the layout with the minimum cost
-                            assignMin = (HashMap)assignment.clone();
-                        } 
+                    // keep the layout with the minimum cost
+                    // or if this layout has the same minimun cost
+                    // call keepNewEqualMin to decide if we should keep it
+                    if (currentCost < minCost) { 
+                        minCost = currentCost;
+                        // save the layout with the minimum cost
+                        assignMin = (HashMap)assignment.clone();
+                    } 
                        
 
-                        // this will be the final layout
-                        if (currentCost == 0.0)
-                            break;
-                    }
-
-                    t *= TFACTR;
-
-                    if (nsucc == 0)
-                        break;
+                    // this will be the final layout
                     if (currentCost == 0.0)
                         break;
-                    if (t <= tFinal)
-                        break;
-                    j++;
                 }
-                if (currentCost == 0)
+
+                t *= TFACTR;
+
+                if (nsucc == 0)
+                    break;
+                if (currentCost == 0.0)
                     break;
+                if (t <= tFinal)
+                    break;
+                j++;
             }
+            if (currentCost == 0)
+                break;
+        }
 
-            currentCost = placementCost(false);
-            System.out.println("\nFinal Cost: " + currentCost + " Min Cost : "
-                               + minCost + " in  " + j + " iterations.");
-            if (minCost < currentCost) {
-                setAssignment(assignMin);
-                currentCost = minCost;
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+        currentCost = placementCost(false);
+        System.out.println("\nFinal Cost: " + currentCost + " Min Cost : "
+                           + minCost + " in  " + j + " iterations.");
+        if (minCost < currentCost) {
+            setAssignment(assignMin);
+            currentCost = minCost;
         }
+        return currentCost;
     }
 
     /**
@@ -224,6 +297,7 @@ public abstract class SimulatedAnnealing {
         double T = 1.0;
         int total = 0, accepted = 0;
         HashMap assignInit = (HashMap)assignment.clone();
+        double costInit = currentCost;
 
         for (int i = 0; i < MAXTEMPITERATIONS; i++) {
             T = 2.0 * T;
@@ -231,7 +305,8 @@ public abstract class SimulatedAnnealing {
             accepted = 0;
             for (int j = 0; j < 100; j++) {
                 // c_old <- c_init
-                assignment = (HashMap)assignInit.clone();
+                setAssignment((HashMap)assignInit.clone());
+                currentCost = costInit;
                 if (perturbConfiguration(T))
                     accepted++;
                 total++;
@@ -240,7 +315,8 @@ public abstract class SimulatedAnnealing {
                 break;
         }
         // c_old <- c_init
-        assignment = (HashMap)assignInit.clone();
+        setAssignment((HashMap)assignInit.clone());
+        currentCost = costInit;
         return T;
     }
 
@@ -248,6 +324,7 @@ public abstract class SimulatedAnnealing {
         double T = 1.0;
         int total = 0, accepted = 0;
         HashMap assignInit = (HashMap)assignment.clone();
+        double costInit = currentCost;
 
         for (int i = 0; i < MINTEMPITERATIONS; i++) {
             T = 0.5 * T;
@@ -255,7 +332,8 @@ public abstract class SimulatedAnnealing {
             accepted = 0;
             for (int j = 0; j < 100; j++) {
                 // c_old <- c_init
-                assignment = (HashMap)assignInit.clone();
+                setAssignment((HashMap)assignInit.clone());
+                currentCost = costInit;
                 if (perturbConfiguration(T))
                     accepted++;
                 total++;
@@ -264,7 +342,8 @@ public abstract class SimulatedAnnealing {
                 break;
         }
         // c_old <- c_init
-        assignment = (HashMap)assignInit.clone();
+        setAssignment((HashMap)assignInit.clone());
+        currentCost = costInit;
         return T;
     }
     
@@ -272,25 +351,29 @@ public abstract class SimulatedAnnealing {
     
     /**
      * Perturb the configuration (assignment) and decide if we are going
-     * to keep the perturbation.
+     * to keep the perturbation.  Updates currentCost to the cost of the 
+     * resulting assignment.
      * 
      * @param T the current anneal temperature.
      * @return
      */
     private final boolean perturbConfiguration(double T) {
         // the cost of the new layout and the old layout
-        double e_new, e_old = placementCost(false);
-        //the old assignment
-        HashMap oldAssignment = (HashMap)assignment.clone();
+        double e_new, e_old = currentCost;
+        //the old assignment, if the subclass cannot undo the swap
+        HashMap oldAssignment = canUndoSwap() ? null : (HashMap)assignment.clone();
         // find 2 suitable nodes to swap
         while (true) {
             swapAssignment();
             //get the new placement codes
-            e_new = placementCost(false);
+            e_new = swapCost(e_old);
 
             if (e_new < 0.0) {
                 // illegal tile assignment so revert the assignment
-                setAssignment((HashMap)oldAssignment.clone());
+                if (oldAssignment == null)
+                    undoSwap();
+                else
+                    setAssignment((HashMap)oldAssignment.clone());
                 continue;
             } else
                 // found a successful new layout
@@ -306,12 +389,16 @@ public abstract class SimulatedAnnealing {
             P = Math.exp((((double) e_old) - ((double) e_new)) / T);
 
         if (R < P) {
+            currentCost = e_new;
             return true;
         } else {
             //don't accept the new state,
             //revert..
             //System.out.println("  Don't accept: calling set assignment()");
-            setAssignment(oldAssignment);
+            if (oldAssignment == null)
+                undoSwap();
+            else
+                setAssignment(oldAssignment);
             return false;
         }
     }
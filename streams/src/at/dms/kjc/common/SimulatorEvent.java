@@ -1,10 +1,10 @@
-package at.dms.kjc.raw;
+package at.dms.kjc.common;
 
 import at.dms.kjc.flatgraph.FlatNode;
 import java.util.List;
 
 
-//This class represents an event in the work bases simulator which is 
+//This class represents an event in the work based simulators which are 
 //implemented as an event-driven simulation
 //the class is pretty self-explanatory...
 public class SimulatorEvent 
@@ -16,6 +16,8 @@ import java.util.LinkedList;
 import java.util.ListIterator;
 import java.util.Iterator;
 import at.dms.kjc.common.CommonUtils;
+import at.dms.kjc.common.EventHeap;
+import at.dms.kjc.common.SimulatorEvent;
 //import at.dms.kjc.sir.lowering.partition.WorkEstimate;
 
 /**
@@ -448,28 +450,13 @@ public class WorkBasedSimulator extends Simulator  implements FlatVisitor
     
     }
     
-    private boolean earlierEventsWaiting(SimulatorEvent tryToSched) 
-    {
-        Iterator<SimulatorEvent> it = pendingQueue.iterator();
-        while (it.hasNext()) {
-            SimulatorEvent current = it.next();
-            if (current == tryToSched) 
-                break;
-            if (current.node == tryToSched.node &&
-                current.itemID < tryToSched.itemID) 
-                return true;
-        }
-        return false;
-    }
-    
-
     //move earliest event from the pending queue and schedule them to be fired...
     private void moveFromPendingtoScheduled(HashMap<FlatNode, Integer> exeCounts, SimulationCounter sCounters) 
     {
         Iterator<SimulatorEvent> it = pendingQueue.iterator();
-        //This set will store all the events we scheduled on this call,
-        //so we can remove them from the pending queue
-        HashSet<SimulatorEvent> scheduled = new HashSet<SimulatorEvent>();  
+        //This set will store the nodes that have an event earlier in the
+        //pending queue, the items of a node are queued in item ID order
+        HashSet<FlatNode> waiting = new HashSet<FlatNode>();  
 
         //iterate over the pending queue
         //and schedule one event
@@ -478,7 +465,7 @@ public class WorkBasedSimulator extends Simulator  implements FlatVisitor
 
             //do not schedule if earlier items from the same src have not 
             //been scheduled...
-            if (earlierEventsWaiting(event))
+            if (!waiting.add(event.node))
                 continue;
 
             //check that its downstream dest(s) is not firing...
@@ -507,18 +494,13 @@ public class WorkBasedSimulator extends Simulator  implements FlatVisitor
             if (waitForDest)
                 continue;
         
-            //add to the scheduled set
-            scheduled.add(event);
+            //remove it from the pending queue
+            it.remove();
             //we can add this event now...
             addEvent(event);
             //      System.out.println("Scheduling " + event.node + " " + event.time);
             break;
         }
-        //iterate over the newly scheduled events and remove them from the 
-        //pending queue
-        Iterator<SimulatorEvent> remove = scheduled.iterator();
-        while (remove.hasNext())
-            pendingQueue.remove(remove.next());
     }
     
     private boolean waitForIdentityDests(FlatNode identity, 
@@ -281,7 +281,7 @@ public abstract class SIROperator implements Finalizable, Serializable, DeepClon
          * multiple runs of the program (does not depend on memory
          * allocation).
          */
-        static int getUniqueNumber(SIROperator op) {
+        static synchronized int getUniqueNumber(SIROperator op) {
             Integer key = new Integer(op.origHashCode());
             if (opToNumber.containsKey(key)) {
                 return opToNumber.get(key).intValue();
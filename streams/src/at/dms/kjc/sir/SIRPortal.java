@@ -98,11 +98,11 @@ public class SIRPortal extends JLiteral /*JExpression*/ {
         return type;
     }
 
-    public void addReceiver(SIRStream stream) {
+    public synchronized void addReceiver(SIRStream stream) {
         if (!receivers.contains(stream)) receivers.add(stream);
     }
 
-    public void addSender(SIRPortalSender sender) {
+    public synchronized void addSender(SIRPortalSender sender) {
         if (!senders.contains(sender)) senders.add(sender);
     }
 
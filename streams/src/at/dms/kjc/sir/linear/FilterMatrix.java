@@ -12,6 +12,10 @@ import at.dms.util.Utils;
  * though the internal representation was changed to
  * two associated arrays of floats for performance reasons.<br>
  *
+ * The imaginary array is only allocated once a non-real value is
+ * stored, and products skip zero elements, which keeps the large and
+ * mostly zero matrices of decimating filters cheap to combine.<br>
+ *
  * Note: In the current implementation, if a matrix element is ever
  * assigned an imaginary value, the matrix is forever designated as
  * have imaginary parts, even if the imaginary element is reassigned
@@ -26,7 +30,7 @@ import at.dms.util.Utils;
 public class FilterMatrix {
     /** Internal representation of the matrix (real). **/ 
     private double internalMatrixReal[][] = null;
-    /** Internal representation of the matrix (imag). **/
+    /** Internal representation of the matrix (imag), null while the matrix is real. **/
     private double internalMatrixImag[][] = null;
     /** This flag is used to easily differentiate between real amd complex matrices. **/
     private boolean realFlag = true;
@@ -43,8 +47,8 @@ public class FilterMatrix {
             throw new IllegalArgumentException("Illegal dimensions:("+rows+","+cols+")");
         }
         // instantiate the internal matrix, and save the dimensions
+        // (the imaginary part is allocated by makeComplex when needed)
         this.internalMatrixReal = new double[rows][cols];
-        this.internalMatrixImag = new double[rows][cols];
         this.internalSizeRows = rows;
         this.internalSizeCols = cols;
     }
@@ -57,9 +61,44 @@ public class FilterMatrix {
     public ComplexNumber getElement(int row, int col) {
         // do bounds checking
         validateBounds(row,col);
+        double re = this.internalMatrixReal[row][col];
+        double im = getImag(row, col);
+        // most elements are zero (or one), share the canonical numbers
+        // for those rather than allocating a new one each time
+        if (Double.doubleToRawLongBits(im) == 0) {
+            if (Double.doubleToRawLongBits(re) == 0) {
+                return ComplexNumber.ZERO;
+            } else if (re == 1) {
+                return ComplexNumber.ONE;
+            }
+        }
         // actually give back the value
-        return new ComplexNumber(this.internalMatrixReal[row][col],
-                                 this.internalMatrixImag[row][col]);
+        return new ComplexNumber(re, im);
+    }
+
+    /**
+     * Accessor: returns the real part of the value at the specified
+     * position, without allocating a ComplexNumber.
+     **/
+    public double getRealElement(int row, int col) {
+        validateBounds(row,col);
+        return this.internalMatrixReal[row][col];
+    }
+
+    /** Returns the imaginary part of (row,col), no bounds checking. **/
+    private double getImag(int row, int col) {
+        return (this.internalMatrixImag == null) ? 0 : this.internalMatrixImag[row][col];
+    }
+
+    /**
+     * Allocates the imaginary part of this matrix, which from now on
+     * is not real anymore.
+     **/
+    private void makeComplex() {
+        if (this.internalMatrixImag == null) {
+            this.internalMatrixImag = new double[this.internalSizeRows][this.internalSizeCols];
+        }
+        this.realFlag = false;
     }
 
     /**
@@ -90,7 +129,7 @@ public class FilterMatrix {
         // if the imaginary part is non-zero, this matrix is now non-real
         double imagValue = value.getImaginary();
         if (imagValue != 0) {
-            this.realFlag = false;
+            makeComplex();
             this.internalMatrixImag[row][col] = imagValue;
         }
     }
@@ -132,9 +171,8 @@ public class FilterMatrix {
         // return new matrix
         FilterMatrix result = new FilterMatrix(internalSizeRows-zeroRows, internalSizeCols);
         for (int i=zeroRows; i<internalSizeRows; i++) {
-            for (int j=0; j<internalSizeCols; j++) {
-                result.setElement(i-zeroRows, j, internalMatrixReal[i][j]);
-            }
+            System.arraycopy(internalMatrixReal[i], 0,
+                             result.internalMatrixReal[i-zeroRows], 0, internalSizeCols);
         }
         return result;
     }
@@ -173,19 +211,18 @@ public class FilterMatrix {
         FilterMatrix copyMatrix = new FilterMatrix(this.internalSizeRows,
                                                    this.internalSizeCols);
 
-        // easy implementation -- just copy element by element (using information
+        // easy implementation -- just copy row by row (using information
         // about underlying impelementation
         for (int i=0; i<this.internalSizeRows; i++) {
-            for (int j=0; j<this.internalSizeCols; j++) {
-                copyMatrix.internalMatrixReal[i][j] = this.internalMatrixReal[i][j];
-            }
+            System.arraycopy(this.internalMatrixReal[i], 0,
+                             copyMatrix.internalMatrixReal[i], 0, this.internalSizeCols);
         }
         // do the same copy if the real flag is false
         if (realFlag == false) {
+            copyMatrix.makeComplex();
             for (int i=0; i<this.internalSizeRows; i++) {
-                for (int j=0; j<this.internalSizeCols; j++) {
-                    copyMatrix.internalMatrixImag[i][j] = this.internalMatrixImag[i][j];
-                }
+                System.arraycopy(this.internalMatrixImag[i], 0,
+                                 copyMatrix.internalMatrixImag[i], 0, this.internalSizeCols);
             }
         }
         return copyMatrix;
@@ -211,18 +248,16 @@ public class FilterMatrix {
 
         // now that we are satisfied that the boundaries are ok, do the copy.
         for (int i=0; i<sourceRows; i++) {
-            for (int j=0; j<sourceCols; j++) {
-                this.internalMatrixReal[offsetRow + i][offsetCol + j] =
-                    sourceMatrix.internalMatrixReal[i][j];
-            }
+            System.arraycopy(sourceMatrix.internalMatrixReal[i], 0,
+                             this.internalMatrixReal[offsetRow + i], offsetCol, sourceCols);
         }
         // if we have any complex data, copy that too
+        if (sourceMatrix.realFlag == false) {
+            this.makeComplex();
+        }
         if (this.realFlag == false) {
             for (int i=0; i<sourceRows; i++) {
-                for (int j=0; j<sourceCols; j++) {
-                    this.internalMatrixImag[offsetRow + i][offsetCol + j] =
-                        sourceMatrix.internalMatrixImag[i][j];
-                }
+                copyImagRow(sourceMatrix, i, 0, this.internalMatrixImag[offsetRow + i], offsetCol, sourceCols);
             }
         }
         return;
@@ -257,17 +292,17 @@ public class FilterMatrix {
         }
         // finally, do the copy for the real data
         for (int i=0; i<this.internalSizeRows; i++) {
-            for (int j=0; j<numCols; j++) {
-                this.internalMatrixReal[i][destOffset+j] = sourceMatrix.internalMatrixReal[i][srcOffset+j];
-            }
+            System.arraycopy(sourceMatrix.internalMatrixReal[i], srcOffset,
+                             this.internalMatrixReal[i], destOffset, numCols);
         }
 
         // if we have imaginary parts, copy them too
+        if (sourceMatrix.realFlag == false) {
+            this.makeComplex();
+        }
         if (this.realFlag == false) {
             for (int i=0; i<this.internalSizeRows; i++) {
-                for (int j=0; j<numCols; j++) {
-                    this.internalMatrixImag[i][destOffset+j] = sourceMatrix.internalMatrixImag[i][srcOffset+j];
-                }
+                copyImagRow(sourceMatrix, i, srcOffset, this.internalMatrixImag[i], destOffset, numCols);
             }
         }
 
@@ -293,19 +328,32 @@ public class FilterMatrix {
         }
         // do the copy for reals
         for (int i=0; i<numRows; i++) {
-            for (int j=0; j<this.internalSizeCols; j++) {
-                this.internalMatrixReal[i+thisOffset][j] = source.internalMatrixReal[sourceOffset+i][j];
-            }
+            System.arraycopy(source.internalMatrixReal[sourceOffset+i], 0,
+                             this.internalMatrixReal[i+thisOffset], 0, this.internalSizeCols);
         }
         // if we have imaginary data
+        if (source.realFlag == false) {
+            this.makeComplex();
+        }
         if (this.realFlag == false) {
             for (int i=0; i<numRows; i++) {
-                for (int j=0; j<this.internalSizeCols; j++) {
-                    this.internalMatrixImag[i+thisOffset][j] = source.internalMatrixImag[sourceOffset+i][j];
-                }
+                copyImagRow(source, sourceOffset+i, 0, this.internalMatrixImag[i+thisOffset], 0, this.internalSizeCols);
             }
         }
     }
+
+    /**
+     * Copies length imaginary parts of row of source starting at
+     * srcOffset into dest at destOffset (zeros if source is real).
+     **/
+    private static void copyImagRow(FilterMatrix source, int row, int srcOffset,
+                                    double[] dest, int destOffset, int length) {
+        if (source.internalMatrixImag == null) {
+            Arrays.fill(dest, destOffset, destOffset + length, 0);
+        } else {
+            System.arraycopy(source.internalMatrixImag[row], srcOffset, dest, destOffset, length);
+        }
+    }
      
 
     /**
@@ -325,20 +373,29 @@ public class FilterMatrix {
         if ((this.realFlag == false) || (other.realFlag == false)) {
             throw new RuntimeException("complex matrix multiply not supported yet");
         }
-        // just implement matrix multiply straight up, one element after another
+        // Accumulate each row of the product as the sum of the rows of
+        // other, weighted by the elements in the same row of this. The
+        // filter matrices are mostly zeros (banded for FIR filters, and
+        // sparser still after expansion for decimation), so zero weights
+        // are skipped entirely. Each element still sums its terms in
+        // increasing k, so the result is the same as the straight
+        // triple loop.
         FilterMatrix product = new FilterMatrix(this.getRows(), other.getCols());
+        int otherCols = other.internalSizeCols;
         // for each row of this
         for (int i=0; i<this.internalSizeRows; i++) {
-            // for each col of other
-            for (int j=0; j<other.internalSizeCols; j++) {
-                double sum = 0;
-                // for each element, compute partial sum (eg this(i,k)other(k,j)
-                for (int k=0; k<this.internalSizeCols; k++) {
-                    // sum = sum + (this(i,k)*other(k,j)
-                    sum += this.internalMatrixReal[i][k]*other.internalMatrixReal[k][j];
+            double[] thisRow = this.internalMatrixReal[i];
+            double[] productRow = product.internalMatrixReal[i];
+            for (int k=0; k<this.internalSizeCols; k++) {
+                double weight = thisRow[k];
+                if (weight == 0) {
+                    continue;
+                }
+                double[] otherRow = other.internalMatrixReal[k];
+                // product(i,j) = product(i,j) + this(i,k)*other(k,j)
+                for (int j=0; j<otherCols; j++) {
+                    productRow[j] += weight*otherRow[j];
                 }
-                // set the element i,j in the new matrix
-                product.internalMatrixReal[i][j] = sum;
             }
         }
         return product;
@@ -365,17 +422,43 @@ public class FilterMatrix {
             }
         }
         // if we have complex parts, sum them too
-        if (this.realFlag == false) {
+        if ((this.realFlag == false) || (other.realFlag == false)) {
+            sum.makeComplex();
             for (int i=0; i<this.internalSizeRows; i++) {
                 for (int j=0; j<this.internalSizeCols; j++) {
-                    sum.internalMatrixImag[i][j] = (this.internalMatrixImag[i][j] +
-                                                    other.internalMatrixImag[i][j]);
+                    sum.internalMatrixImag[i][j] = (this.getImag(i,j) + other.getImag(i,j));
                 }
             }
         }
         return sum;
     }   
 
+    /**
+     * Adds other to this matrix element-wise (mutating this).
+     * Requires that this and other have the same dimensions.
+     **/
+    void add(FilterMatrix other) {
+        if ((this.internalSizeRows != other.internalSizeRows) ||
+            (this.internalSizeCols != other.internalSizeCols)) {
+            throw new IllegalArgumentException("Dimension mismatch in FilterMatrix.add!");
+        }
+        for (int i=0; i<this.internalSizeRows; i++) {
+            double[] thisRow = this.internalMatrixReal[i];
+            double[] otherRow = other.internalMatrixReal[i];
+            for (int j=0; j<this.internalSizeCols; j++) {
+                thisRow[j] += otherRow[j];
+            }
+        }
+        if (other.realFlag == false) {
+            this.makeComplex();
+            for (int i=0; i<this.internalSizeRows; i++) {
+                for (int j=0; j<this.internalSizeCols; j++) {
+                    this.internalMatrixImag[i][j] += other.internalMatrixImag[i][j];
+                }
+            }
+        }
+    }
+
     /**
      * Return the transpose of this FilterMatrix.
      */
@@ -389,6 +472,7 @@ public class FilterMatrix {
         }
         // if we have imaginary parts, copy them too
         if (this.realFlag == false) {
+            result.makeComplex();
             for (int i=0; i<this.internalSizeRows; i++) {
                 for (int j=0; j<this.internalSizeCols; j++) {
                     result.internalMatrixImag[j][i] = this.internalMatrixImag[i][j];
@@ -405,11 +489,9 @@ public class FilterMatrix {
     public boolean isIntegral() {
         for (int i=0; i<internalSizeRows; i++) {
             for (int j=0; j<internalSizeCols; j++) {
-                // use the function in complex number...
-                // Not so efficient, but easy to implement...
-                ComplexNumber temp = new ComplexNumber(this.internalMatrixReal[i][j],
-                                                       this.internalMatrixImag[i][j]);
-                if (!temp.isIntegral()) {
+                // same test as ComplexNumber.isIntegral
+                if (!isIntegral(this.internalMatrixReal[i][j]) ||
+                    !isIntegral(this.getImag(i,j))) {
                     return false;
                 }
             }
@@ -417,6 +499,11 @@ public class FilterMatrix {
         return true;
     }
 
+    /** Returns true if d is an integer (within ComplexNumber.MAX_PRECISION). **/
+    private static boolean isIntegral(double d) {
+        return Math.abs(Math.abs(Math.round(d)) - Math.abs(d)) < ComplexNumber.MAX_PRECISION;
+    }
+
     /**
      * Return whether or not all the elements of this FilterMatrix are real.
      */
@@ -451,13 +538,13 @@ public class FilterMatrix {
             }
         }
         // now, compare element by element(imag) if necessary
-        if (this.realFlag == false) {
+        if ((this.realFlag == false) || (other.realFlag == false)) {
             for (int i=0; i<this.internalSizeRows; i++) {
                 for (int j=0; j<this.internalSizeCols; j++) {
                     // if the elements are not the same, we are done
                     // use the doubleEquals method from COmplexNumber
-                    if (!ComplexNumber.doubleEquals(this.internalMatrixImag[i][j],
-                                                    other.internalMatrixImag[i][j])) {
+                    if (!ComplexNumber.doubleEquals(this.getImag(i,j),
+                                                    other.getImag(i,j))) {
                         return false;
                     }
                 }
@@ -481,13 +568,13 @@ public class FilterMatrix {
         // now, compare element by element
         for (int i=0; i<this.internalSizeRows; i++) {
             for (int j=0; j<this.internalSizeCols; j++) {
-                boolean thisZero = this.getElement(i,j).equals(ComplexNumber.ZERO);
-                boolean otherZero = other.getElement(i,j).equals(ComplexNumber.ZERO);
+                boolean thisZero = this.elementEquals(i,j,0);
+                boolean otherZero = other.elementEquals(i,j,0);
                 if (thisZero != otherZero) {
                     return false;
                 }
-                boolean thisOne = this.getElement(i,j).equals(ComplexNumber.ONE);
-                boolean otherOne = other.getElement(i,j).equals(ComplexNumber.ONE);
+                boolean thisOne = this.elementEquals(i,j,1);
+                boolean otherOne = other.elementEquals(i,j,1);
                 if (thisOne != otherOne) {
                     return false;
                 }
@@ -497,6 +584,15 @@ public class FilterMatrix {
         return true;
     }
 
+    /**
+     * Returns true if (row,col) is equal to the real number value, as
+     * ComplexNumber.equals would determine, without allocating.
+     **/
+    private boolean elementEquals(int row, int col, double value) {
+        return (ComplexNumber.doubleEquals(this.internalMatrixReal[row][col], value) &&
+                ComplexNumber.doubleEquals(this.getImag(row,col), 0));
+    }
+
     /**
      * Preserve the semantics of equals/hashCode. If two objects
      * are equal, they should produce the same hash code. Performance
@@ -534,36 +630,43 @@ public class FilterMatrix {
                     this.internalMatrixReal[i][j] *= realFactor;
                 }
             }
+            if (this.realFlag == false) {
+                for (int i=0; i<this.internalSizeRows; i++) {
+                    for (int j=0; j<this.internalSizeCols; j++) {
+                        this.internalMatrixImag[i][j] *= realFactor;
+                    }
+                }
+            }
         }       
     }
     
 
     /** PrettyPrint our matrix. **/
     public String toString() {
-        String returnString = "[";
+        StringBuffer returnString = new StringBuffer("[");
         // for each row
         for (int i=0; i<internalSizeRows; i++) {
             if (i != 0) {
-                returnString += " ";
+                returnString.append(" ");
             }
-            returnString += "[";
+            returnString.append("[");
             // for each column
             for (int j=0; j<internalSizeCols; j++) {
                 // stick the value of the matrix onto this line
-                returnString += this.getElement(i,j);
+                returnString.append(this.getElement(i,j));
                 // don't add a space if this is the last element in the column
                 if (j != (internalSizeCols-1)) {
-                    returnString += " ";
+                    returnString.append(" ");
                 }
             }
-            returnString += "]";
+            returnString.append("]");
             if (i != (internalSizeRows-1)) {
-                returnString += "\n";
+                returnString.append("\n");
             }
         }
-        returnString += "]";
+        returnString.append("]");
 
-        return returnString;
+        return returnString.toString();
     }
 
     /**
@@ -575,7 +678,7 @@ public class FilterMatrix {
         for (int i=0; i<internalSizeRows; i++) {
             for (int j=0; j<internalSizeCols; j++) {
                 // append real part
-                sb.append(this.getElement(i,j).getReal());
+                sb.append(this.internalMatrixReal[i][j]);
                 // add tab if not at end
                 if (j!=(internalSizeCols-1)) {
                     sb.append("\t");
@@ -593,34 +696,34 @@ public class FilterMatrix {
      * Print only a "0" for zero elements and an "x" for non-zero elements.
      **/
     public String getZeroString() {
-        String returnString = "[";
+        StringBuffer returnString = new StringBuffer("[");
         // for each row
         for (int i=0; i<internalSizeRows; i++) {
             if (i != 0) {
-                returnString += " ";
+                returnString.append(" ");
             }
-            returnString += "[";
+            returnString.append("[");
             // for each column
             for (int j=0; j<internalSizeCols; j++) {
                 // stick the value of the matrix onto this line
-                if (this.getElement(i,j).equals(ComplexNumber.ZERO)) {
-                    returnString += "0";
+                if (this.elementEquals(i,j,0)) {
+                    returnString.append("0");
                 } else {
-                    returnString += "x";
+                    returnString.append("x");
                 }
                 // don't add a space if this is the last element in the column
                 if (j != (internalSizeCols-1)) {
-                    returnString += " ";
+                    returnString.append(" ");
                 }
             }
-            returnString += "]";
+            returnString.append("]");
             if (i != (internalSizeRows-1)) {
-                returnString += "\n";
+                returnString.append("\n");
             }
         }
-        returnString += "]";
+        returnString.append("]");
 
-        return returnString;
+        return returnString.toString();
     }
 
 }
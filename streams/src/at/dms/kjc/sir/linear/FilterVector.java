@@ -47,9 +47,7 @@ public class FilterVector extends FilterMatrix {
     public FilterMatrix copy() {
         FilterVector fv = new FilterVector(this.getSize());
         // copy weights
-        for (int i=0; i<this.getSize(); i++) {
-            fv.setElement(i,this.getElement(i));
-        }
+        fv.copyAt(0,0,this);
         return fv;
     }
 
@@ -68,9 +66,7 @@ public class FilterVector extends FilterMatrix {
         }
         FilterVector newVector = new FilterVector(matrix.getCols());
         // copy over the elements in the matrix
-        for (int i=0; i<matrix.getCols(); i++) {
-            newVector.setElement(i, matrix.getElement(0,i));
-        }
+        newVector.copyAt(0,0,matrix);
         return newVector;
     }
 }
@@ -1,8 +1,9 @@
 package at.dms.kjc.sir.linear;
 
 import java.util.*;
-import java.io.FileWriter;
+import java.io.*;
 import at.dms.kjc.*;
+import at.dms.kjc.common.FilterCache;
 import at.dms.kjc.sir.*;
 import at.dms.kjc.sir.linear.*;
 import at.dms.kjc.sir.linear.transform.*;
@@ -192,6 +193,14 @@ public class LinearAnalyzer extends EmptyStreamVisitor {
             return;
         }
 
+        // look for the result of analyzing the same filter on an
+        // earlier compile
+        String cacheKey = FilterCache.getKey(self, "linear unrolled=" + (KjcOptions.unroll>=100000));
+        if (readCachedResult(self, FilterCache.get(cacheKey))) {
+            LinearPrinter.println("  (result from filter cache)");
+            return;
+        }
+
         LinearFilterVisitor theVisitor = new LinearFilterVisitor(self.getIdent(),
                                                                  peekRate, pushRate, popRate);
     
@@ -229,11 +238,56 @@ public class LinearAnalyzer extends EmptyStreamVisitor {
         } else {
             nonLinearStreams.add(self);
         }
+        if (cacheKey != null) {
+            FilterCache.put(cacheKey, makeCachedResult(getLinearRepresentation(self)));
+        }
         // check that we have not violated the rep invariant
         if(CHECKREP)
             checkRep();
     }
     
+    /**
+     * Records the result stored in the filter cache for <self>, if
+     * there is one.  Returns whether there was.
+     **/
+    private boolean readCachedResult(SIRFilter self, byte[] cached) {
+        if (cached == null) {
+            return false;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(cached));
+            if (in.readBoolean()) {
+                addLinearRepresentation(self, LinearFilterRepresentation.read(in));
+            } else {
+                nonLinearStreams.add(self);
+            }
+            return true;
+        } catch (IOException e) {
+            // unreadable, so analyze the filter again
+            return false;
+        }
+    }
+
+    /**
+     * Returns what to store in the filter cache for a filter with
+     * linear form <rep> (null if it is non-linear).
+     **/
+    private static byte[] makeCachedResult(LinearFilterRepresentation rep) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeBoolean(rep != null);
+            if (rep != null) {
+                rep.write(out);
+            }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // can't happen writing to memory
+            throw new RuntimeException(e);
+        }
+    }
+
     public void postVisitFeedbackLoop(SIRFeedbackLoop self, SIRFeedbackLoopIter iter) {
         // short-circuit the case where we've already seen this stream
         // (for dynamic programming partitioner)
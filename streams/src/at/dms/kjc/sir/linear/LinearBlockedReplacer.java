@@ -0,0 +1,478 @@
+package at.dms.kjc.sir.linear;
+
+import java.util.*;
+import at.dms.util.*;
+import at.dms.kjc.*;
+import at.dms.kjc.sir.*;
+import at.dms.kjc.sir.linear.*;
+import at.dms.kjc.iterator.*;
+import at.dms.compiler.*;
+
+/**
+ * This replacer chooses an implementation for each linear filter
+ * based on the shape of its matrix, without relying on any external
+ * library:<br>
+ *
+ * - If the filter needs only a few multiplies, its work function is
+ *   fully unrolled, as in LinearDirectReplacer.<br>
+ *
+ * - If most of the elements between the first and last non-zero
+ *   element of each column are zero, the matrix is sparse and the
+ *   work function is that of LinearIndirectReplacer.<br>
+ *
+ * - Otherwise the matrix is dense or banded (e.g., an FIR filter,
+ *   with or without decimation).  The outputs are then computed in
+ *   tiles of a few outputs at a time.  Each input that is peeked is
+ *   multiplied into all outputs of the tile, and the coefficients of a
+ *   tile are stored contiguously in the order they are used, so the
+ *   inner loop is a unit-stride walk over the coefficient table that
+ *   the C compiler can keep in registers and vectorize.  The window of
+ *   a tile spans the non-zero stretches of all its columns; the tile
+ *   size is only used if this adds few multiplies by zero.<br>
+ *
+ * The code size of the tiled and sparse kernels does not depend on
+ * the size of the matrix, only on the number of coefficients in the
+ * tables.
+ **/
+public class LinearBlockedReplacer extends LinearDirectReplacer implements Constants{
+    /**
+     * Filters with fewer multiplies than this are unrolled (same
+     * threshold as LinearPartitioner.MAX_MULT_TO_UNROLL).
+     **/
+    public static final int MAX_MULT_TO_UNROLL = 256;
+    /**
+     * If less than this fraction of the elements in the non-zero
+     * stretches of the columns is non-zero, use the sparse kernel.
+     **/
+    public static final double MIN_BAND_DENSITY = 0.5;
+    /**
+     * The largest fraction of multiplies by zero that tiling may add
+     * to the non-zero stretches of the columns.
+     **/
+    public static final double MAX_TILE_PADDING = 0.25;
+    /** Tile sizes to try, largest first. **/
+    private static final int[] TILE_SIZES = { 4, 2 };
+
+    // names of fields
+    private static final String NAME_A = "blockA";
+    private static final String NAME_B = "b";
+    private static final String NAME_START = "start";
+    private static final String NAME_LENGTH = "length";
+
+    /**
+     * Layout of the tiled kernel for the filter currently being
+     * replaced, or null if it is unrolled.
+     **/
+    private BlockInfo blockInfo;
+    /**
+     * Two-dimensional coefficient field referenced in generated code.
+     */
+    private JFieldDeclaration blockAField;
+    /**
+     * One-dimensional constant field referenced in generated code.
+     */
+    private JFieldDeclaration bField;
+    /**
+     * One-dimensional array of indices, giving the first peek index
+     * of each tile.
+     */
+    private JFieldDeclaration startField;
+    /**
+     * One-dimensional array giving the number of inputs of each tile.
+     */
+    private JFieldDeclaration lengthField;
+
+    protected LinearBlockedReplacer(LinearAnalyzer lfa, LinearReplaceCalculator costs) {
+        super(lfa, costs);
+    }
+
+    /** start the process of replacement on str using the Linearity information in lfa. **/
+    public static void doReplace(LinearAnalyzer lfa, SIRStream str) {
+        // calculate the best way to replace linear components.
+        LinearReplaceCalculator replaceCosts = new LinearReplaceCalculator(lfa);
+        str.accept(replaceCosts);
+        LinearPrinter.println("starting replacement pass. Will replace " + replaceCosts.getDoReplace().keySet().size() + " filters:");
+        Iterator<SIRStream> keyIter = replaceCosts.getDoReplace().keySet().iterator();
+        while(keyIter.hasNext()) {
+            Object key = keyIter.next();
+            LinearPrinter.println(" " + key);
+        }
+        // make a new replacer with the information contained in the analyzer and the costs
+        LinearBlockedReplacer replacer = new LinearBlockedReplacer(lfa, replaceCosts);
+        // pump the replacer through the stream graph.
+        IterFactory.createFactory().createIter(str).accept(replacer);
+    }
+
+    protected SIRFilter makeEfficientImplementation(SIRStream oldStream,
+                                                    LinearFilterRepresentation linearRep) {
+        // only deal with real things for now
+        assert linearRep.getA().isReal() && linearRep.getb().isReal():
+            "Don't support linear replacement of " +
+            "complex coefficients for now.";
+
+        // small filters: unroll
+        LinearCost cost = linearRep.getCost();
+        if (Math.max(cost.getMultiplies(), cost.getAdds()) < MAX_MULT_TO_UNROLL) {
+            LinearPrinter.println(" using unrolled kernel.");
+            this.blockInfo = null;
+            return super.makeEfficientImplementation(oldStream, linearRep);
+        }
+
+        BlockInfo info = calcBlockInfo(linearRep);
+
+        // sparse matrices: index the non-zero elements
+        if (info.nonZeros < MIN_BAND_DENSITY * info.bandSize) {
+            LinearPrinter.println(" using sparse kernel (" + info.nonZeros + " non-zeros in bands of " + info.bandSize + ").");
+            LinearIndirectReplacer sparse = new LinearIndirectReplacer(this.linearityInformation, this.replaceGuide);
+            return sparse.makeEfficientImplementation(oldStream, linearRep);
+        }
+
+        // dense and banded matrices: tiles
+        LinearPrinter.println(" using tiled kernel with " + info.tileSize + " outputs per tile (" +
+                              info.paddedSize + " multiplies for " + info.bandSize + " band elements).");
+        this.blockInfo = info;
+        // make coefficient and index fields
+        makeFields(linearRep, info);
+        // make actual filter
+        SIRFilter result = super.makeEfficientImplementation(oldStream, linearRep);
+        // set fields
+        JFieldDeclaration[] fields = { this.blockAField,
+                                       this.bField,
+                                       this.startField,
+                                       this.lengthField };
+        result.setFields(fields);
+        // add initialization of fields to init function
+        addInitialization(result.getInit(), linearRep, info);
+        this.blockInfo = null;
+        return result;
+    }
+
+    /**
+     * Returns the coefficient by which peek(peekIndex) is multiplied
+     * for the output pushed in position pushIndex.
+     */
+    private static double getCoefficient(FilterMatrix A, int peekIndex, int pushIndex) {
+        return A.getRealElement(A.getRows() - peekIndex - 1, A.getCols() - pushIndex - 1);
+    }
+
+    /**
+     * Calculates the non-zero stretch of every output and chooses a
+     * tile size.
+     */
+    private BlockInfo calcBlockInfo(LinearFilterRepresentation linearRep) {
+        FilterMatrix A = linearRep.getA();
+        int peek = A.getRows();
+        int push = A.getCols();
+
+        // first and last non-zero peek index of every output (first >
+        // last if the output does not depend on the input)
+        int[] first = new int[push];
+        int[] last = new int[push];
+        int nonZeros = 0;
+        int bandSize = 0;
+        for (int o=0; o<push; o++) {
+            first[o] = peek;
+            last[o] = -1;
+            for (int p=0; p<peek; p++) {
+                if (getCoefficient(A, p, o) != 0) {
+                    if (first[o] == peek) { first[o] = p; }
+                    last[o] = p;
+                    nonZeros++;
+                }
+            }
+            bandSize += Math.max(0, last[o] - first[o] + 1);
+        }
+
+        // use the largest tile size that does not add too many
+        // multiplies by zero
+        int tileSize = 1;
+        for (int k=0; k<TILE_SIZES.length; k++) {
+            if (push % TILE_SIZES[k] == 0 &&
+                paddedSize(first, last, TILE_SIZES[k]) <= (1 + MAX_TILE_PADDING) * bandSize) {
+                tileSize = TILE_SIZES[k];
+                break;
+            }
+        }
+
+        // window of every tile
+        int numTiles = push / tileSize;
+        int[] start = new int[numTiles];
+        int[] length = new int[numTiles];
+        int maxLength = 0;
+        for (int t=0; t<numTiles; t++) {
+            int tileFirst = peek;
+            int tileLast = -1;
+            for (int o=t*tileSize; o<(t+1)*tileSize; o++) {
+                tileFirst = Math.min(tileFirst, first[o]);
+                tileLast = Math.max(tileLast, last[o]);
+            }
+            if (tileLast >= tileFirst) {
+                start[t] = tileFirst;
+                length[t] = tileLast - tileFirst + 1;
+            }
+            maxLength = Math.max(maxLength, length[t]);
+        }
+
+        return new BlockInfo(tileSize, start, length, Math.max(1, maxLength),
+                             nonZeros, bandSize, paddedSize(first, last, tileSize));
+    }
+
+    /**
+     * Returns the number of multiplies done with tiles of tileSize
+     * outputs, given the non-zero stretch [first, last] of each output.
+     */
+    private static int paddedSize(int[] first, int[] last, int tileSize) {
+        int size = 0;
+        for (int t=0; t<first.length/tileSize; t++) {
+            int tileFirst = Integer.MAX_VALUE;
+            int tileLast = -1;
+            for (int o=t*tileSize; o<(t+1)*tileSize; o++) {
+                tileFirst = Math.min(tileFirst, first[o]);
+                tileLast = Math.max(tileLast, last[o]);
+            }
+            size += tileSize * Math.max(0, tileLast - tileFirst + 1);
+        }
+        return size;
+    }
+
+    /**
+     * Builds field declarations for generated filter, storing them in
+     * fields of this.
+     */
+    private void makeFields(LinearFilterRepresentation linearRep, BlockInfo info) {
+        int push = linearRep.getA().getCols();
+        int numTiles = info.start.length;
+        JExpression[] dims1 = { new JIntLiteral(numTiles), new JIntLiteral(info.maxLength * info.tileSize) };
+        JExpression[] dims2 = { new JIntLiteral(push) };
+        JExpression[] dims3 = { new JIntLiteral(numTiles) };
+
+        // declare fields
+        CClassType arrayType;
+        CType blockABaseType = linearRep.getA().isIntegral() ? (CType)CStdType.Integer : (CType)CStdType.Float;
+        // for some reason we need to set the class of 2-dimensional
+        // arrays to a plain object, since Kopi isn't analyzing them
+        // for us
+        arrayType = new CArrayType(blockABaseType, 2, dims1);
+        arrayType.setClass(CStdType.Object.getCClass());
+        this.blockAField = new JFieldDeclaration(new JVariableDefinition(arrayType,
+                                                                         NAME_A));
+
+        CType bBaseType = linearRep.getb().isIntegral() ? (CType)CStdType.Integer : (CType)CStdType.Float;
+        this.bField = new JFieldDeclaration(new JVariableDefinition(new CArrayType(bBaseType, 1, dims2),
+                                                                    NAME_B));
+
+        this.startField = new JFieldDeclaration(new JVariableDefinition(new CArrayType(CStdType.Integer, 1, dims3),
+                                                                        NAME_START));
+
+        this.lengthField = new JFieldDeclaration(new JVariableDefinition(new CArrayType(CStdType.Integer, 1, dims3),
+                                                                         NAME_LENGTH));
+    }
+
+    /** Returns a literal of value, integer if isInt and float otherwise. **/
+    private static JExpression makeLiteral(double value, boolean isInt) {
+        return (isInt ?
+                (JExpression)new JIntLiteral((int)value) :
+                (JExpression)new JFloatLiteral((float)value));
+    }
+
+    /**
+     * Adds field initialization functions to init function "init".
+     */
+    private void addInitialization(JMethodDeclaration init, LinearFilterRepresentation linearRep, BlockInfo info) {
+        JBlock block = init.getBody();
+
+        FilterMatrix A = linearRep.getA();
+        FilterVector b = linearRep.getb();
+        int push = A.getCols();
+        boolean intA = A.isIntegral();
+        boolean intB = b.isIntegral();
+        int tileSize = info.tileSize;
+
+        // the coefficients of a tile are stored input by input, with
+        // the coefficients of all outputs of the tile for an input
+        // next to each other.  Zeros inside the window are read, so
+        // they are stored as well.
+        for (int t=0; t<info.start.length; t++) {
+            for (int i=0; i<info.length[t]; i++) {
+                for (int k=0; k<tileSize; k++) {
+                    // "blockA"[t][i*tileSize+k] = coefficient of peek(start[t]+i) for output t*tileSize+k
+                    double value = getCoefficient(A, info.start[t] + i, t*tileSize + k);
+                    block.addStatement(makeAssignmentStatement(new JArrayAccessExpression(makeArrayFieldAccessExpr(blockAField.getVariable(), t),
+                                                                                          new JIntLiteral(i*tileSize + k)),
+                                                               makeLiteral(value, intA)));
+                }
+            }
+            // "start"[t] = start[t]
+            block.addStatement(makeAssignmentStatement(makeArrayFieldAccessExpr(startField.getVariable(), t), new JIntLiteral(info.start[t])));
+            // "length"[t] = length[t]
+            block.addStatement(makeAssignmentStatement(makeArrayFieldAccessExpr(lengthField.getVariable(), t), new JIntLiteral(info.length[t])));
+        }
+        // "b"[o] = b.getElement(push-o-1), as outputs are pushed from
+        // the high-numbered column down
+        for (int o=0; o<push; o++) {
+            block.addStatement(makeAssignmentStatement(makeArrayFieldAccessExpr(bField.getVariable(), o),
+                                                       makeLiteral(b.getRealElement(0, push-o-1), intB)));
+        }
+    }
+
+    /**
+     * Generate a Vector of Statements which implement the matrix
+     * multiplication represented by the linear representation, with
+     * the tiled kernel (or unrolled if no tiled kernel was chosen).<br>
+     *
+     * The basic format of the resulting statements, for a tile size
+     * of 2, is:<br>
+     * <pre>
+     * float sum0, sum1, input;
+     * int count, iters, base;
+     * for (int t=0; t<numTiles; t++) {
+     *   sum0 = 0; sum1 = 0;
+     *   count = start[t];
+     *   iters = length[t];
+     *   base = 0;
+     *   for (int i=0; i<iters; i++) {
+     *     input = peek(count);
+     *     sum0 = sum0 + blockA[t][base] * input;
+     *     sum1 = sum1 + blockA[t][base + 1] * input;
+     *     count = count + 1;
+     *     base = base + 2;
+     *   }
+     *   sum0 = sum0 + b[t*2];
+     *   push(sum0);
+     *   sum1 = sum1 + b[t*2 + 1];
+     *   push(sum1);
+     * }
+     * </pre>
+     **/
+    public Vector makePushStatementVector(LinearFilterRepresentation linearRep,
+                                          CType inputType,
+                                          CType outputType) {
+        if (this.blockInfo == null) {
+            return super.makePushStatementVector(linearRep, inputType, outputType);
+        }
+        Vector result = new Vector();
+        int tileSize = this.blockInfo.tileSize;
+        int numTiles = this.blockInfo.start.length;
+
+        // declare our variables
+        JVariableDefinition[] sumVars = new JVariableDefinition[tileSize];
+        for (int k=0; k<tileSize; k++) {
+            sumVars[k] = new JVariableDefinition(null, 0, outputType, "sum" + k, null);
+            result.add(new JVariableDeclarationStatement(null, sumVars[k], null));
+        }
+        JVariableDefinition inputVar = new JVariableDefinition(null, 0, inputType, "input", null);
+        result.add(new JVariableDeclarationStatement(null, inputVar, null));
+        JVariableDefinition countVar = new JVariableDefinition(null, 0, CStdType.Integer, "count", null);
+        result.add(new JVariableDeclarationStatement(null, countVar, null));
+        JVariableDefinition itersVar = new JVariableDefinition(null, 0, CStdType.Integer, "iters", null);
+        result.add(new JVariableDeclarationStatement(null, itersVar, null));
+        JVariableDefinition baseVar = new JVariableDefinition(null, 0, CStdType.Integer, "base", null);
+        result.add(new JVariableDeclarationStatement(null, baseVar, null));
+
+        // make loop bodies and loop counters
+        JBlock outerLoop = new JBlock();
+        JBlock innerLoop = new JBlock();
+        JVariableDefinition iVar = new JVariableDefinition(/* where */ null,  /* modifiers */ 0, /* type */ CStdType.Integer,
+                                                           /* ident */ "i", /* initializer */ new JIntLiteral(0));
+        JVariableDefinition tVar = new JVariableDefinition(/* where */ null,  /* modifiers */ 0, /* type */ CStdType.Integer,
+                                                           /* ident */ "t", /* initializer */ new JIntLiteral(0));
+
+        // build up outer loop...
+        // sumk = 0
+        for (int k=0; k<tileSize; k++) {
+            outerLoop.addStatement(makeAssignmentStatement(makeLocalVarExpression(sumVars[k]),
+                                                           new JIntLiteral(0)));
+        }
+        // count = start[t]
+        outerLoop.addStatement(makeAssignmentStatement(makeLocalVarExpression(countVar),
+                                                       makeArrayFieldAccessExpr(startField.getVariable(), makeLocalVarExpression(tVar))));
+        // iters = length[t]
+        outerLoop.addStatement(makeAssignmentStatement(makeLocalVarExpression(itersVar),
+                                                       makeArrayFieldAccessExpr(lengthField.getVariable(), makeLocalVarExpression(tVar))));
+        // base = 0
+        outerLoop.addStatement(makeAssignmentStatement(makeLocalVarExpression(baseVar),
+                                                       new JIntLiteral(0)));
+        // add the inner for loop
+        outerLoop.addStatement(Utils.makeForLoop(innerLoop, makeLocalVarExpression(itersVar), iVar));
+
+        for (int k=0; k<tileSize; k++) {
+            // sumk += b[t*tileSize + k]
+            JExpression outputIndex = makeLocalVarExpression(tVar);
+            if (tileSize > 1) {
+                outputIndex = new JAddExpression(null,
+                                                 new JMultExpression(null, outputIndex, new JIntLiteral(tileSize)),
+                                                 new JIntLiteral(k));
+            }
+            outerLoop.addStatement(makeAssignmentStatement(makeLocalVarExpression(sumVars[k]),
+                                                           new JAddExpression(null,
+                                                                              makeLocalVarExpression(sumVars[k]),
+                                                                              makeArrayFieldAccessExpr(bField.getVariable(), outputIndex))));
+            // push (sumk)
+            outerLoop.addStatement(new JExpressionStatement(null, new SIRPushExpression(makeLocalVarExpression(sumVars[k]), outputType), null));
+        }
+
+        // now build up the inner loop...
+        // input = peek(count);
+        innerLoop.addStatement(makeAssignmentStatement(makeLocalVarExpression(inputVar),
+                                                       new SIRPeekExpression(makeLocalVarExpression(countVar), inputType)));
+        // sumk = sumk + blockA[t][base + k] * input;
+        for (int k=0; k<tileSize; k++) {
+            JExpression index = makeLocalVarExpression(baseVar);
+            if (k > 0) {
+                index = new JAddExpression(null, index, new JIntLiteral(k));
+            }
+            JExpression blockAtk = new JArrayAccessExpression(makeArrayFieldAccessExpr(blockAField.getVariable(),
+                                                                                       makeLocalVarExpression(tVar)),
+                                                              index);
+            innerLoop.addStatement(makeAssignmentStatement(makeLocalVarExpression(sumVars[k]),
+                                                           new JAddExpression(null,
+                                                                              makeLocalVarExpression(sumVars[k]),
+                                                                              new JMultExpression(null,
+                                                                                                  blockAtk,
+                                                                                                  makeLocalVarExpression(inputVar)))));
+        }
+        // count = count + 1
+        innerLoop.addStatement(makeAssignmentStatement(makeLocalVarExpression(countVar),
+                                                       new JAddExpression(null,
+                                                                          makeLocalVarExpression(countVar),
+                                                                          new JIntLiteral(1))));
+        // base = base + tileSize
+        innerLoop.addStatement(makeAssignmentStatement(makeLocalVarExpression(baseVar),
+                                                       new JAddExpression(null,
+                                                                          makeLocalVarExpression(baseVar),
+                                                                          new JIntLiteral(tileSize))));
+
+        // we'll return the outer loop
+        result.add(Utils.makeForLoop(outerLoop, new JIntLiteral(numTiles), tVar));
+        return result;
+    }
+
+    // just a data structure of useful fields for the codegen
+    class BlockInfo {
+        // number of outputs computed together
+        public int tileSize;
+        // first peek index of each tile
+        public int[] start;
+        // number of inputs of each tile
+        public int[] length;
+        // maximum length across all tiles
+        public int maxLength;
+        // number of non-zero elements in the matrix
+        public int nonZeros;
+        // number of elements in the non-zero stretches of all columns
+        public int bandSize;
+        // number of multiplies done by the tiles
+        public int paddedSize;
+
+        public BlockInfo(int tileSize, int[] start, int[] length, int maxLength,
+                         int nonZeros, int bandSize, int paddedSize) {
+            this.tileSize = tileSize;
+            this.start = start;
+            this.length = length;
+            this.maxLength = maxLength;
+            this.nonZeros = nonZeros;
+            this.bandSize = bandSize;
+            this.paddedSize = paddedSize;
+        }
+    }
+}
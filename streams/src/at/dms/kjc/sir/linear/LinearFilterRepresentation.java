@@ -1,5 +1,9 @@
 package at.dms.kjc.sir.linear;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * A LinearFilterRepresentation represents the computations performed by a filter
  * on its input values as a matrix and a vector. The matrix represents
@@ -266,4 +270,50 @@ public class LinearFilterRepresentation {
         // if we get here, there are only real elemets in this rep
         return true;
     }
+
+    //////////////// Storage  ///////////////////
+
+    /**
+     * Writes this representation to <out>, in the form that read()
+     * reads back (for the filter cache).
+     **/
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.popCount);
+        writeMatrix(out, this.A);
+        writeMatrix(out, this.b);
+    }
+
+    /** Reads back a representation written by write(). **/
+    public static LinearFilterRepresentation read(DataInput in) throws IOException {
+        int popc = in.readInt();
+        FilterMatrix matrixA = readMatrix(in);
+        FilterVector vectorb = FilterVector.toVector(readMatrix(in));
+        return new LinearFilterRepresentation(matrixA, vectorb, popc);
+    }
+
+    private static void writeMatrix(DataOutput out, FilterMatrix m) throws IOException {
+        out.writeInt(m.getRows());
+        out.writeInt(m.getCols());
+        for (int i=0; i<m.getRows(); i++) {
+            for (int j=0; j<m.getCols(); j++) {
+                ComplexNumber element = m.getElement(i,j);
+                out.writeDouble(element.getReal());
+                out.writeDouble(element.getImaginary());
+            }
+        }
+    }
+
+    private static FilterMatrix readMatrix(DataInput in) throws IOException {
+        int rows = in.readInt();
+        int cols = in.readInt();
+        FilterMatrix m = new FilterMatrix(rows, cols);
+        for (int i=0; i<rows; i++) {
+            for (int j=0; j<cols; j++) {
+                double re = in.readDouble();
+                double im = in.readDouble();
+                m.setElement(i, j, new ComplexNumber(re, im));
+            }
+        }
+        return m;
+    }
 }
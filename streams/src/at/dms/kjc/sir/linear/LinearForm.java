@@ -14,6 +14,8 @@ package at.dms.kjc.sir.linear;
  * $Id: LinearForm.java,v 1.8 2006-01-25 17:01:57 thies Exp $
  **/
 public class LinearForm {
+    /** scale factor used by negate **/
+    private static final ComplexNumber MINUS_ONE = new ComplexNumber(-1, 0);
     /** weights of inputs **/
     private FilterVector weights;
     /** offset that is added later **/
@@ -25,6 +27,12 @@ public class LinearForm {
         this.offset = ComplexNumber.ZERO;
     }
 
+    /** Construct a new LinearForm that uses (not copies) weights. **/
+    private LinearForm(FilterVector weights, ComplexNumber offset) {
+        this.weights = weights;
+        this.offset = offset;
+    }
+
     /** returns true if this linear form's offset is an integer **/
     public boolean isIntegerOffset() {
         if (!this.offset.isReal()) {
@@ -90,16 +98,12 @@ public class LinearForm {
      * the result.
      **/
     public LinearForm negate() {
-        // make a new linear form with the same size as this
-        LinearForm negatedForm = new LinearForm(this.weights.getSize());
-        // negate the offset
-        negatedForm.setOffset(this.getOffset().negate());
-        // for each element, negate the offset
-        for (int i=0; i<this.weights.getSize(); i++) {
-            negatedForm.setWeight(i, this.getWeight(i).negate());
-        }
-        // return the negated form
-        return negatedForm;
+        // negate the weights in place on a copy, rather than one
+        // ComplexNumber at a time
+        FilterVector negatedWeights = (FilterVector)this.weights.copy();
+        negatedWeights.scale(MINUS_ONE);
+        // return the negated form (with the negated offset)
+        return new LinearForm(negatedWeights, this.getOffset().negate());
     }
 
     /**
@@ -115,15 +119,11 @@ public class LinearForm {
         if (other.weights.getSize() != this.weights.getSize()) {
             throw new IllegalArgumentException("sizes of linear forms don't match while adding.");
         }
-        LinearForm summedForm = new LinearForm(this.weights.getSize());
-        // sum the offsets
-        summedForm.setOffset(this.getOffset().plus(other.getOffset()));
-        // for each of the weights, sum the weights
-        for(int i=0; i<this.weights.getSize(); i++) {
-            summedForm.setWeight(i,this.getWeight(i).plus(other.getWeight(i)));
-        }
-        // return the summed linear form
-        return summedForm;
+        // sum the weights element-wise on a copy of our weights
+        FilterVector summedWeights = (FilterVector)this.weights.copy();
+        summedWeights.add(other.weights);
+        // return the summed linear form (with the summed offsets)
+        return new LinearForm(summedWeights, this.getOffset().plus(other.getOffset()));
     }
 
     /**
@@ -135,14 +135,12 @@ public class LinearForm {
         if (scaleFactor == null) {
             throw new IllegalArgumentException("null scale factor");
         }
-        LinearForm scaledForm = new LinearForm(this.getWeightsSize());
         // copy the weights from this
-        scaledForm.weights = (FilterVector)this.weights.copy();
+        FilterVector scaledWeights = (FilterVector)this.weights.copy();
         // actually scale the weights 
-        scaledForm.weights.scale(scaleFactor);
+        scaledWeights.scale(scaleFactor);
         // scale the offset
-        scaledForm.offset = this.offset.times(scaleFactor);
-        return scaledForm;
+        return new LinearForm(scaledWeights, this.offset.times(scaleFactor));
     }
 
     /**
@@ -93,8 +93,25 @@ public class FieldProp implements Constants
      * @param removeDeadFields whether to remove fully-propagated fields.
      */
     public static SIRStream doPropagate(SIRStream str, boolean unrollOuterLoops,
-                                        boolean removeDeadFields)
+                                        final boolean removeDeadFields)
     {
+        if (KjcOptions.compilethreads > 1 && str instanceof SIRContainer) {
+            // The filters don't depend on each other, so do them all
+            // at once; then do the containers, each after its children.
+            List<SIRFilter> filters = new ArrayList<SIRFilter>();
+            List<SIRStream> rest = new ArrayList<SIRStream>();
+            collectPostOrder(str, filters, rest);
+            FilterPass.doit(filters, new FilterPass() {
+                    public void visitFilter(SIRFilter filter) {
+                        doPropagateNotRecursive(filter, false, removeDeadFields);
+                    }
+                });
+            for (SIRStream s : rest) {
+                doPropagateNotRecursive(s, s == str && unrollOuterLoops, removeDeadFields);
+            }
+            return str;
+        }
+
         // First, visit children (if any).
         if (str instanceof SIRFeedbackLoop)
             {
@@ -126,6 +143,35 @@ public class FieldProp implements Constants
         return doPropagateNotRecursive(str, unrollOuterLoops, removeDeadFields); 
     }
     
+    /**
+     * Adds the streams in <i>str</i> to <i>filters</i> (the filters)
+     * and <i>rest</i> (everything else), in the order doPropagate
+     * visits them.
+     */
+    private static void collectPostOrder(SIRStream str, List<SIRFilter> filters,
+                                         List<SIRStream> rest) {
+        if (str instanceof SIRFeedbackLoop) {
+            SIRFeedbackLoop fl = (SIRFeedbackLoop)str;
+            collectPostOrder(fl.getBody(), filters, rest);
+            collectPostOrder(fl.getLoop(), filters, rest);
+        }
+        if (str instanceof SIRPipeline) {
+            for (SIROperator child : ((SIRPipeline)str).getChildren()) {
+                collectPostOrder((SIRStream)child, filters, rest);
+            }
+        }
+        if (str instanceof SIRSplitJoin) {
+            for (SIRStream child : ((SIRSplitJoin)str).getParallelStreams()) {
+                collectPostOrder(child, filters, rest);
+            }
+        }
+        if (str instanceof SIRFilter) {
+            filters.add((SIRFilter)str);
+        } else {
+            rest.add(str);
+        }
+    }
+
     /**
      * Perform field propagation on a given stream, without recursing into its child streams.
      */
@@ -0,0 +1,114 @@
+package at.dms.kjc.sir.lowering;
+
+import at.dms.kjc.*;
+import at.dms.kjc.sir.*;
+import at.dms.kjc.iterator.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A pass that works on one filter at a time, touching nothing outside
+ * of the filter (its fields, methods and the variables in them), so
+ * that the filters of a stream graph can be done in any order.  The
+ * filters are handed out to <pre>KjcOptions.compilethreads</pre>
+ * threads; with the default of one thread, they are done in order on
+ * the calling thread, as a StreamVisitor would.
+ *
+ * Passes run this way may only use state that is local to the pass or
+ * safe to share: the unique-name counters in LoweringConstants,
+ * ThreeAddressCode and Propagator are atomic, and AutoCloner keeps its
+ * registry per thread.  With more than one thread, the numbers in the
+ * names of generated variables depend on the order in which the
+ * filters happen to be done.
+ */
+public abstract class FilterPass {
+
+    /**
+     * Does the pass on <i>filter</i>.  May be called on any thread,
+     * and at the same time as for other filters.
+     */
+    public abstract void visitFilter(SIRFilter filter);
+
+    /**
+     * Runs <i>pass</i> on every filter in <i>str</i>, not counting
+     * phased filters.
+     */
+    public static void doit(SIRStream str, FilterPass pass) {
+        final List<SIRFilter> filters = new LinkedList<SIRFilter>();
+        IterFactory.createFactory().createIter(str).accept(new EmptyStreamVisitor() {
+                public void visitFilter(SIRFilter self, SIRFilterIter iter) {
+                    filters.add(self);
+                }
+            });
+        doit(filters, pass);
+    }
+
+    /**
+     * Runs <i>pass</i> on each of <i>filters</i>.  A filter that is
+     * listed more than once is done that many times in a row, by the
+     * same thread.  Returns once all of them are done; if the pass
+     * fails on any filter, the first failure (in the order of
+     * <i>filters</i>) is thrown after the others have finished.
+     */
+    public static void doit(List<SIRFilter> filters, final FilterPass pass) {
+        int threads = Math.min(KjcOptions.compilethreads, filters.size());
+        if (threads <= 1) {
+            for (SIRFilter filter : filters) {
+                pass.visitFilter(filter);
+            }
+            return;
+        }
+
+        // group repeated filters, so that no filter is worked on by
+        // two threads at once
+        final Map<SIRFilter,Integer> count = new IdentityHashMap<SIRFilter,Integer>();
+        List<SIRFilter> distinct = new ArrayList<SIRFilter>();
+        for (SIRFilter filter : filters) {
+            Integer n = count.get(filter);
+            if (n == null) {
+                distinct.add(filter);
+                count.put(filter, Integer.valueOf(1));
+            } else {
+                count.put(filter, Integer.valueOf(n.intValue() + 1));
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, distinct.size()));
+        try {
+            List<Future<Object>> done = new ArrayList<Future<Object>>();
+            for (final SIRFilter filter : distinct) {
+                final int times = count.get(filter).intValue();
+                done.add(pool.submit(new Callable<Object>() {
+                        public Object call() {
+                            for (int i = 0; i < times; i++) {
+                                pass.visitFilter(filter);
+                            }
+                            return filter;
+                        }
+                    }));
+            }
+            Throwable failure = null;
+            for (Future<Object> f : done) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException)failure;
+            } else if (failure instanceof Error) {
+                throw (Error)failure;
+            } else if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -305,6 +305,7 @@ public class Flattener {
              KjcOptions.linearreplacement ||
              KjcOptions.linearreplacement2 ||
              KjcOptions.linearreplacement3 ||
+             KjcOptions.linearblocked ||
              KjcOptions.atlas ||
              KjcOptions.linearpartition ||
              KjcOptions.frequencyreplacement ||
@@ -371,6 +372,16 @@ public class Flattener {
                     LinearDot.printGraph(str, "linear-diagonal-replace.dot", lfa);
                 }
 
+                // if we are supposed to transform the graph
+                // by replacing work functions with tiled matrix multiplies
+                if (KjcOptions.linearblocked) {
+                    System.err.print("Running blocked linear replacement... ");
+                    LinearBlockedReplacer.doReplace(lfa, str);
+                    System.err.println("done.");
+                    // print out the stream graph after linear replacement
+                    LinearDot.printGraph(str, "linear-blocked-replace.dot", lfa);
+                }
+
                 // if we are supposed to transform the graph
                 // by replacing work functions with diagonal matrix multiplies
                 if (KjcOptions.atlas) {
@@ -418,6 +429,7 @@ public class Flattener {
             if (KjcOptions.linearpartition ||
                 KjcOptions.linearreplacement2 ||
                 KjcOptions.linearreplacement3 ||
+                KjcOptions.linearblocked ||
                 KjcOptions.atlas ||
                 KjcOptions.linearpartition ||
                 KjcOptions.frequencyreplacement ||
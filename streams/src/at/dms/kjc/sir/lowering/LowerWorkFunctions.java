@@ -16,7 +16,15 @@ public class LowerWorkFunctions implements StreamVisitor
      */
     public static void lower(SIRIterator iter)
     {
-        iter.accept(new LowerWorkFunctions());
+        // the filters are done independently of each other, on
+        // KjcOptions.compilethreads threads; the visitor does the rest
+        final LowerWorkFunctions lower = new LowerWorkFunctions();
+        FilterPass.doit(iter.getStream(), new FilterPass() {
+                public void visitFilter(SIRFilter filter) {
+                    lower.doGeneralFilter(filter);
+                }
+            });
+        iter.accept(lower);
     }
     
     private void addEntryExit(JMethodDeclaration method)
@@ -68,7 +76,7 @@ public class LowerWorkFunctions implements StreamVisitor
     /* visit a filter */
     public void visitFilter(SIRFilter self,
                             SIRFilterIter iter) {
-        doGeneralFilter(self);
+        // already done by lower
     }
 
     /* visit a phased filter */
@@ -3,6 +3,7 @@ package at.dms.kjc.sir.lowering;
 import at.dms.kjc.iterator.*;
 import at.dms.kjc.sir.*;
 import at.dms.kjc.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Contains various constants for the lowering process.
@@ -76,20 +77,21 @@ public class LoweringConstants {
 
     /**
      * Counts the work functions that have been created so that each
-     * can be assigned a unique name.
+     * can be assigned a unique name.  The counters are atomic since
+     * filters may be lowered on several threads.
      */
-    private static int workFunctionCounter = 1;
+    private static final AtomicInteger workFunctionCounter = new AtomicInteger(1);
 
     /**
      * Counts the interface table fields that have been assigned;
      */
-    private static int interfaceTableCounter = 1;
+    private static final AtomicInteger interfaceTableCounter = new AtomicInteger(1);
 
     /**
      * Counts the number of vars that have been defined, so that each
      * can be given a unique identifier.
      */
-    private static int varCounter = 1;
+    private static final AtomicInteger varCounter = new AtomicInteger(1);
 
 
     /**
@@ -97,7 +99,7 @@ public class LoweringConstants {
      * the program.
      */
     public static String getUniqueVarName() {
-        return "streamItVar" + varCounter++;
+        return "streamItVar" + varCounter.getAndIncrement();
     }
     
     /**
@@ -115,7 +117,7 @@ public class LoweringConstants {
                                        CStdType.Void,
                                        /* ident - number them */
                                        "interfaceTable" + 
-                                       interfaceTableCounter++, 
+                                       interfaceTableCounter.getAndIncrement(), 
                                        /* init exp */ initializer);
     }
 
@@ -246,7 +248,7 @@ public class LoweringConstants {
      * no analogue in the stream structure (is "anonymous")
      */
     public static String getAnonWorkName() {
-        return "hierarchical_work_" + workFunctionCounter++;
+        return "hierarchical_work_" + workFunctionCounter.getAndIncrement();
     }
 
     /**
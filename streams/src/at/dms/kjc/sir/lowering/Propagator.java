@@ -1,6 +1,7 @@
 package at.dms.kjc.sir.lowering;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import at.dms.kjc.*;
 import at.dms.util.*;
 import at.dms.kjc.sir.*;
@@ -54,9 +55,14 @@ public class Propagator extends SLIRReplacingVisitor {
     /**
      * Used for naming constprop vars
      */
-    private static int propNum=0;
+    private static final AtomicInteger propNum=new AtomicInteger();
 
-    private static int loopDepth=0;
+    /**
+     * Number of loops enclosing the code being visited; copied into
+     * the propagators made for nested scopes.  Kept per instance so
+     * that filters can be propagated on separate threads.
+     */
+    private int loopDepth=0;
 
     /**
      * List of vars mutated so the can be assigned the right
@@ -117,6 +123,16 @@ public class Propagator extends SLIRReplacingVisitor {
         return new Propagator(constants,write);
     }
 
+    /**
+     * Makes a propagator for a nested scope, at this propagator's
+     * loop depth.
+     */
+    private Propagator nested(Hashtable<JLocalVariable,Object> constants,boolean write) {
+        Propagator prop=construct(constants,write);
+        prop.loopDepth=loopDepth;
+        return prop;
+    }
+
     /**
      * Get map from JLocalVariable (JVariableDefinition, JFormalParameter etc) to constant.
      * Code seems to save various constants: JLiteral, SIRPortal, java arrays of above,
@@ -190,7 +206,7 @@ public class Propagator extends SLIRReplacingVisitor {
             body.accept(this);
         } else {
             Set<JLocalVariable> freeVars = getFreeVars(self);
-            Propagator newProp=construct(cloneTable(constants, freeVars),false);
+            Propagator newProp=nested(cloneTable(constants, freeVars),false);
        
             cond.accept(newProp);
             body.accept(newProp);
@@ -235,7 +251,7 @@ public class Propagator extends SLIRReplacingVisitor {
         } else {
 
             Set<JLocalVariable> freeVars = getFreeVars(self);
-            Propagator newProp=construct(cloneTable(constants, freeVars),false);
+            Propagator newProp=nested(cloneTable(constants, freeVars),false);
        
             cond.accept(newProp);
             body.accept(newProp);
@@ -532,7 +548,7 @@ public class Propagator extends SLIRReplacingVisitor {
                 Set<JLocalVariable> varsToClone = getFreeVars(body[i]);
                 // include free var from <expr> for proper comparison with <origConstants> below
                 varsToClone.addAll(getFreeVars(expr));
-                Propagator prop=construct(cloneTable(constants, varsToClone),true);
+                Propagator prop=nested(cloneTable(constants, varsToClone),true);
                 propagators[i]=prop;
                 body[i].accept(prop);
             }
@@ -646,8 +662,8 @@ public class Propagator extends SLIRReplacingVisitor {
                         return new JEmptyStatement(self.getTokenReference(), null);
                 }
             // propagate through then and else
-            Propagator thenProp=construct(cloneTable(constants, getFreeVars(thenClause)),true);
-            Propagator elseProp=construct(cloneTable(constants, getFreeVars(elseClause)),true);
+            Propagator thenProp=nested(cloneTable(constants, getFreeVars(thenClause)),true);
+            Propagator elseProp=nested(cloneTable(constants, getFreeVars(elseClause)),true);
             // then clause for any if
             thenClause.accept(thenProp);
             // else clause for two-branched if, and simplify "else {}" to one-branched
@@ -790,7 +806,7 @@ public class Propagator extends SLIRReplacingVisitor {
             if (newInit!=null && newInit!=init) {
                 self.setInit(newInit);
             }
-            Propagator newProp=construct(cloneTable(constants, getFreeVars(self)),false);
+            Propagator newProp=nested(cloneTable(constants, getFreeVars(self)),false);
             //init.accept(newProp);
             incr.accept(newProp);
             cond.accept(newProp);
@@ -1764,7 +1780,7 @@ public class Propagator extends SLIRReplacingVisitor {
       }*/
 
     private String propName() {
-        return TEMP_VARIABLE_BASE+propNum++;
+        return TEMP_VARIABLE_BASE+propNum.getAndIncrement();
     }
 
 //    private boolean propVarLocal(JLocalVariable var) {
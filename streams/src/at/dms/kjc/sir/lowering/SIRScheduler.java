@@ -259,7 +259,12 @@ public class SIRScheduler implements Constants {
      * Interface with the scheduler to get a schedule for <str>.
      */
     private static Scheduler computeSchedule(SIRStream str) {
-        streamit.scheduler2.Scheduler scheduler = streamit.scheduler2.minlatency.Scheduler.create(IterFactory.createFactory().createIter(str));
+        streamit.scheduler2.Scheduler scheduler;
+        if (KjcOptions.minbuffer >= 0) {
+            scheduler = streamit.scheduler2.minbuffer.Scheduler.create(IterFactory.createFactory().createIter(str), KjcOptions.minbuffer);
+        } else {
+            scheduler = streamit.scheduler2.minlatency.Scheduler.create(IterFactory.createFactory().createIter(str));
+        }
         scheduler.computeSchedule();
         //System.err.println("Back from scheduler package.");
         return scheduler;
@@ -38,7 +38,13 @@ public class SimplifyArguments {
     }
 
     private void cvt (SIRStream str) {
-        (new ThreeAddress()).threeAddressCode(str);
+        // a ThreeAddress keeps state while it converts a filter, so
+        // each filter gets its own
+        FilterPass.doit(str, new FilterPass() {
+                public void visitFilter(SIRFilter filter) {
+                    (new ThreeAddress()).threeAddressCodeFilter(filter);
+                }
+            });
     }
     
     private class ThreeAddress extends ThreeAddressCode {
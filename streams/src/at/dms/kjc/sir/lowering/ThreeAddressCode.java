@@ -10,6 +10,7 @@ import at.dms.kjc.sir.*;
 import at.dms.kjc.iterator.*;
 import at.dms.kjc.lir.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import streamit.misc.Pair;
 
@@ -352,14 +353,13 @@ public class ThreeAddressCode {
         return false;
     }
 
-    private static int lastTemp = 0;
+    private static final AtomicInteger lastTemp = new AtomicInteger();
     /**
      * nextTemp returns a fresh variable name (hopefully)
      * @return a fresh name.
      */
     public static String nextTemp() {
-        lastTemp++;
-        return "__tmp" + lastTemp;
+        return "__tmp" + lastTemp.incrementAndGet();
     }
     
     /**
@@ -108,18 +108,30 @@ public class Unroller extends SLIRReplacingVisitor {
                     }
                 }
             });
-        // now do unrolling
-        int origUnroll = KjcOptions.unroll;
-        boolean origLimitNoTapeLoops = limitNoTapeLoops;
-
-        KjcOptions.unroll = unrollFactor;
-        limitNoTapeLoops = false;
-        FieldProp.doPropagate(filter, true);
-
-        KjcOptions.unroll = origUnroll;
-        limitNoTapeLoops = origLimitNoTapeLoops;
+        // now do unrolling, with the factor given and no limit on
+        // loops without tape operations
+        Integer origForced = forcedUnroll.get();
+        forcedUnroll.set(Integer.valueOf(unrollFactor));
+        try {
+            FieldProp.doPropagate(filter, true);
+        } finally {
+            if (origForced == null) {
+                forcedUnroll.remove();
+            } else {
+                forcedUnroll.set(origForced);
+            }
+        }
     }
 
+    /**
+     * Unroll factor set by unrollFilter for the calling thread, which
+     * takes the place of KjcOptions.unroll and the limit on loops
+     * without tape operations.  This used to be done by changing the
+     * options for the duration of the call, which is not safe when
+     * filters are compiled on several threads.
+     */
+    private static final ThreadLocal<Integer> forcedUnroll = new ThreadLocal<Integer>();
+
     /**
      * @param init
      */
@@ -254,7 +266,10 @@ public class Unroller extends SLIRReplacingVisitor {
         // to do the right thing if someone set an unroll factor of 0
         // (or 1, which means to do nothing)
 
-        if((KjcOptions.unroll>1 || inContainerInit) && !self.getUnrolled()) { //Ignore if already unrolled
+        Integer forced = forcedUnroll.get();
+        int unroll = forced != null ? forced.intValue() : KjcOptions.unroll;
+
+        if((unroll>1 || inContainerInit) && !self.getUnrolled()) { //Ignore if already unrolled
 
             // first recurse into body...
             Hashtable<JLocalVariable, Boolean> saveModified=currentModified;
@@ -277,11 +292,11 @@ public class Unroller extends SLIRReplacingVisitor {
 
             // if we are not in init then limit unroll factor for loops that
             // do not have tape operations in them
-            unrollLimit = KjcOptions.unroll;
-            if (limitNoTapeLoops && !inContainerInit) {
+            unrollLimit = unroll;
+            if (limitNoTapeLoops && forced == null && !inContainerInit) {
                 boolean tape_op = FindTapeOps.findTapeOps(body);
                 if (!tape_op) {
-                    if (KjcOptions.unroll > unrollLimitNoTapeLoops) {
+                    if (unroll > unrollLimitNoTapeLoops) {
                         unrollLimit = unrollLimitNoTapeLoops;
                     }
                 }
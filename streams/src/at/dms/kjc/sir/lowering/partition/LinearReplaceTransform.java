@@ -44,6 +44,9 @@ public final class LinearReplaceTransform extends StreamTransform {
         // otherwise, we have large code...
         // do indirect replacement if option specified
         else if (KjcOptions.linearreplacement2) { LinearIndirectReplacer.doReplace(lfa, str); }
+        // do blocked replacement (choosing a kernel from the shape
+        // of the matrix) if option specified
+        else if (KjcOptions.linearblocked) { LinearBlockedReplacer.doReplace(lfa, str); }
         // do atlas replacement if option specified, and if this
         // filter pushes at least 2 (since presumably atlas can't
         // leverage anything otherwise)
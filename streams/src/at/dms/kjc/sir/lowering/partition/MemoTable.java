@@ -0,0 +1,171 @@
+package at.dms.kjc.sir.lowering.partition;
+
+/**
+ * A memoization table for the dynamic programming partitioners.  It
+ * maps non-negative <pre>long</pre> keys (a packed tuple of indices
+ * into the table) to a fixed number of <pre>long</pre> values and,
+ * optionally, one object.  Only the entries that are computed are
+ * stored, so the table takes space proportional to the number of
+ * sub-problems that the partitioner actually visits instead of the
+ * bounding box of all of them.
+ * <br/>
+ * The table uses open addressing with linear probing and doubles when
+ * it is half full.  Slot numbers returned by {@link #find} and {@link
+ * #insert} are only valid until the next call to {@link #insert}.
+ */
+public class MemoTable {
+    /**
+     * Initial number of slots; must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * key+1 of the entry in each slot, or 0 if the slot is empty.
+     */
+    private long[] keys;
+    /**
+     * Values of the entry in slot s are values[s*numLongs] through
+     * values[s*numLongs+numLongs-1].
+     */
+    private long[] values;
+    /**
+     * Object of the entry in each slot, or null if this has no
+     * object column.
+     */
+    private Object[] objects;
+    /**
+     * Number of long values for each key.
+     */
+    private final int numLongs;
+    /**
+     * Number of entries in this.
+     */
+    private int size;
+
+    /**
+     * Creates a table that holds <pre>numLongs</pre> long values for
+     * each key, and one object for each key if <pre>hasObject</pre>.
+     */
+    public MemoTable(int numLongs, boolean hasObject) {
+        this.numLongs = numLongs;
+        this.keys = new long[INITIAL_CAPACITY];
+        this.values = new long[INITIAL_CAPACITY*numLongs];
+        this.objects = hasObject ? new Object[INITIAL_CAPACITY] : null;
+        this.size = 0;
+    }
+
+    /**
+     * Returns the slot holding <pre>key</pre>, or -1 if there is no
+     * entry for <pre>key</pre>.
+     */
+    public int find(long key) {
+        assert key>=0 : "Negative key in memo table: " + key;
+        int mask = keys.length-1;
+        int slot = hash(key) & mask;
+        while (keys[slot]!=0) {
+            if (keys[slot]==key+1) {
+                return slot;
+            }
+            slot = (slot+1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot holding <pre>key</pre>, adding an entry for it
+     * if there is none.  The values of a new entry are zero and its
+     * object is null.
+     */
+    public int insert(long key) {
+        int slot = find(key);
+        if (slot!=-1) {
+            return slot;
+        }
+        if (2*(size+1)>keys.length) {
+            grow();
+        }
+        int mask = keys.length-1;
+        slot = hash(key) & mask;
+        while (keys[slot]!=0) {
+            slot = (slot+1) & mask;
+        }
+        keys[slot] = key+1;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Returns the <pre>column</pre>'th long value in <pre>slot</pre>.
+     */
+    public long getLong(int slot, int column) {
+        return values[slot*numLongs+column];
+    }
+
+    /**
+     * Sets the <pre>column</pre>'th long value in <pre>slot</pre>.
+     */
+    public void setLong(int slot, int column, long value) {
+        values[slot*numLongs+column] = value;
+    }
+
+    /**
+     * Returns the object in <pre>slot</pre>.
+     */
+    public Object getObject(int slot) {
+        return objects[slot];
+    }
+
+    /**
+     * Sets the object in <pre>slot</pre>.
+     */
+    public void setObject(int slot, Object obj) {
+        objects[slot] = obj;
+    }
+
+    /**
+     * Returns the number of entries in this.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Doubles the number of slots and re-inserts all entries.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        Object[] oldObjects = objects;
+        int capacity = 2*oldKeys.length;
+        keys = new long[capacity];
+        values = new long[capacity*numLongs];
+        objects = oldObjects==null ? null : new Object[capacity];
+        int mask = capacity-1;
+        for (int i=0; i<oldKeys.length; i++) {
+            if (oldKeys[i]!=0) {
+                int slot = hash(oldKeys[i]-1) & mask;
+                while (keys[slot]!=0) {
+                    slot = (slot+1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                System.arraycopy(oldValues, i*numLongs, values, slot*numLongs, numLongs);
+                if (objects!=null) {
+                    objects[slot] = oldObjects[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Mixes the bits of <pre>key</pre>, since packed keys differ
+     * mostly in their low-order bits.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int)key;
+    }
+}
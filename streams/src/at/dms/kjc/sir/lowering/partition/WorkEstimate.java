@@ -6,6 +6,7 @@ import at.dms.kjc.sir.lowering.*;
 import java.util.*;
 
 import at.dms.kjc.cluster.CodeEstimate;
+import at.dms.kjc.common.FilterCache;
 
 /**
  * Provides a means for estimating the amount of work in a stream graph.
@@ -222,9 +223,7 @@ public class WorkEstimate {
                 long workEstimate;
                 
                 if (UNROLL_FOR_WORK_EST) {
-                    SIRFilter newFilter = (SIRFilter)ObjectDeepCloner.deepCopy((SIRStream)obj); 
-                    Unroller.unrollFilter(newFilter, 256);
-                    workEstimate = WorkVisitor.getWork(newFilter);
+                    workEstimate = getUnrolledWork((SIRFilter)obj);
                 }
                 else {
                     workEstimate = WorkVisitor.getWork((SIRFilter)obj);
@@ -236,6 +235,36 @@ public class WorkEstimate {
         }
     }
 
+    /**
+     * Returns the work in <pre>filter</pre> after unrolling a copy
+     * of it.  The copying and unrolling cost much more than the
+     * estimate itself, so the result is kept in the filter cache.
+     */
+    private static long getUnrolledWork(SIRFilter filter) {
+        String key = FilterCache.getKey(filter, "unrolledwork loopcount=" + KjcOptions.loopcount);
+        byte[] cached = FilterCache.get(key);
+        if (cached != null && cached.length == 8) {
+            long work = 0;
+            for (int i = 0; i < 8; i++) {
+                work = (work << 8) | (cached[i] & 0xff);
+            }
+            return work;
+        }
+
+        SIRFilter newFilter = (SIRFilter)ObjectDeepCloner.deepCopy(filter); 
+        Unroller.unrollFilter(newFilter, 256);
+        long work = WorkVisitor.getWork(newFilter);
+
+        if (key != null) {
+            byte[] data = new byte[8];
+            for (int i = 0; i < 8; i++) {
+                data[i] = (byte)(work >>> (56 - 8*i));
+            }
+            FilterCache.put(key, data);
+        }
+        return work;
+    }
+
     public static class WorkVisitor extends SLIREmptyVisitor implements WorkConstants {
         private Set<JMethodDeclaration> methodsBeingProcessed;
         
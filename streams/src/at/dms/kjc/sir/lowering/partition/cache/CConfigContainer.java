@@ -19,28 +19,31 @@ abstract class CConfigContainer extends CConfig {
     protected SIRContainer cont;
     /**
      * C[n][x1][x2] is best cost if children x1..x2 are assigned to
-     * <pre>n</pre> tiles.
+     * <pre>n</pre> tiles.  Only the entries that are visited are
+     * stored, indexed by {@link #key}.
      */
-    private CCost[][][] C; // cost for n tiles
+    private MemoTable C; // cost for n tiles
     
     public CConfigContainer(SIRContainer cont, CachePartitioner partitioner) {
         super(partitioner);
         this.cont = cont;
-        C = new CCost[0][cont.size()][cont.size()];
+        C = new MemoTable(0, true);
     }
 
-    private void expandCostArray(int tileLimit) {
-        if (C.length-1<tileLimit) {
-            // allocate new array
-            CCost[][][] old = C;
-            C = new CCost[tileLimit+1][cont.size()][cont.size()];
-            // copy over old contents
-            for (int i=0; i<old.length; i++) {
-                C[i] = old[i];
-            }
-            // help gc
-            old = null;
-        }
+    /**
+     * Returns the key of C[tileLimit][x1][x2] in the memo table.
+     */
+    private long key(int tileLimit, int x1, int x2) {
+        return ((long)tileLimit*cont.size() + x1)*cont.size() + x2;
+    }
+
+    /**
+     * Returns C[tileLimit][x1][x2], or null if it has not been
+     * computed.
+     */
+    private CCost lookup(int tileLimit, int x1, int x2) {
+        int slot = C.find(key(tileLimit, x1, x2));
+        return slot==-1 ? null : (CCost)C.getObject(slot);
     }
     
     /**
@@ -48,9 +51,6 @@ abstract class CConfigContainer extends CConfig {
      * tiles.
      */
     protected CCost get(int tileLimit) {
-        // make sure our array is big enough
-        expandCostArray(tileLimit);
-
         return get(0, cont.size()-1, tileLimit);
     }
 
@@ -62,8 +62,9 @@ abstract class CConfigContainer extends CConfig {
         //System.err.println("get(" + x1 + ", " + x2 + ", " + tileLimit + ")");
 
         // return it if it's memoized
-        if (C[tileLimit][x1][x2]!=null) {
-            return C[tileLimit][x1][x2];
+        CCost memoized = lookup(tileLimit, x1, x2);
+        if (memoized!=null) {
+            return memoized;
         }
 
         CCost result = null;
@@ -96,7 +97,7 @@ abstract class CConfigContainer extends CConfig {
 
         // memoize result
         assert result!=null;
-        C[tileLimit][x1][x2] = result;
+        C.setObject(C.insert(key(tileLimit, x1, x2)), result);
         return result;
     }
 
@@ -161,7 +162,7 @@ abstract class CConfigContainer extends CConfig {
         CCost cost1 = get(x1, xPivot, tPivot);
         CCost cost2 = get(xPivot+1, x2, tileLimit-tPivot);
         CCost combo = CCost.combine(cost1, cost2);
-        if (combo.equals(C[tileLimit][x1][x2])) {
+        if (combo.equals(lookup(tileLimit, x1, x2))) {
         return doCut(partitions, curPartition, x1, x2, xPivot, tileLimit, tPivot, str);
         }
         }
@@ -283,7 +284,7 @@ abstract class CConfigContainer extends CConfig {
         for (int i=0; i<cont.size(); i++) {
             for (int j=0; j<cont.size(); j++) {
                 for (int k=0; k<numTiles; k++) {
-                    System.err.println("C[" + k + "][" + i + "][" + j + "] = " + C[k][i][j]);
+                    System.err.println("C[" + k + "][" + i + "][" + j + "] = " + lookup(k, i, j));
                 }
                 System.err.println();
             }
@@ -11,31 +11,32 @@ import at.dms.kjc.sir.lowering.partition.*;
 
 abstract class DPConfigContainer extends DPConfig {
     /**  
-     * A_s[x1][x2][y1][y2][n][j] holds minimum cost of assigning
-     * children (x1..x2, y1..y2) of stream s to n tiles.  <b>j</b> is 1 if
-     * these children are next to a downstream joiner in the current
-     * configuration; <b>j</b> is zero otherwise.  If this corresponds to a
-     * filter's config, then A is null.
+     * Memoized costs of sub-rectangles of this, indexed by {@link
+     * #key}.  For children (x1..x2, y1..y2) of stream s, n tiles, and
+     * <b>j</b> equal to 1 if these children are next to a downstream
+     * joiner in the current configuration (zero otherwise), it holds:
+     * <br/>
+     * A (column 0): the minimum cost of assigning the children to n
+     * tiles.
+     * <br/>
+     * B (column 1): the minimal SUM of the costs of the children.
+     * This is used as a tiebreaker if two different tracebacks have
+     * the same A value.
+     * <br/>
+     * I (column 2): the maximum instruction code size associated
+     * with the minimum cost configuration.  When instruction code
+     * caching is enabled, this is used as a threshold to consider
+     * what configurations are allowable.
+     * <br/>
+     * Only the entries that are visited are stored, so the table
+     * stays small even for wide splitjoins and many tiles.
      */
-    private long[][][][][][] A;
+    private MemoTable memo;
+    private static final int A = 0, B = 1, I = 2;
     /**
-     * Holds the minimal SUM of the costs of the children.  This is
-     * used as a tiebreaker if two different tracebacks have the same
-     * A value.
+     * Number of bits of a key that hold the tile limit.
      */
-    private long[][][][][][] B;
-    /**
-     * Holds the maximum instruction code size associated with the
-     * minimum cost configuration.  When instruction code caching is
-     * enabled, this is used as a threshold to consider what
-     * configurations are allowable.
-     */
-    private long[][][][][][] I;
-
-    /**
-     * Value to initialize A, B with.
-     */
-    private int NOT_MEMOIZED = -1;
+    private static final int TILE_BITS = 20;
     
     /**
      * The stream for this container.
@@ -58,6 +59,20 @@ abstract class DPConfigContainer extends DPConfig {
      * Whether or not there is the same width from i to j, for i&lt;=j.
      */
     boolean sameWidth[][];
+    /**
+     * For each row, the first row of the maximal uniform region with
+     * the same width that contains it, or -1 if the row is not
+     * uniform.
+     */
+    private int[] region;
+    /**
+     * Width of the bounding box of this.
+     */
+    private int boxWidth;
+    /**
+     * Number of rows of this.
+     */
+    private int height;
     
     /**
      * <pre>width</pre> and <pre>height</pre> represent the dimensions of the stream.
@@ -73,37 +88,17 @@ abstract class DPConfigContainer extends DPConfig {
         for (int i=0; i<height; i++) {
             maxWidth = Math.max(maxWidth, width[i]);
         }
-        // for simplicity, allocate the bounding box for A
-        this.A = new long[maxWidth][maxWidth][height][height][partitioner.getNumTiles()+1][2];
-        initArray(A);
-        this.B = new long[maxWidth][maxWidth][height][height][partitioner.getNumTiles()+1][2];
-        initArray(B);
-        this.I = new long[maxWidth][maxWidth][height][height][partitioner.getNumTiles()+1][2];
-        initArray(I);
+        this.boxWidth = maxWidth;
+        this.height = height;
+        assert (long)maxWidth*maxWidth*height*height < (1L<<(62-TILE_BITS)) :
+            "Stream too large to pack memo table keys: " + cont.getName();
+        this.memo = new MemoTable(3, false);
         this.uniform = new boolean[height];
         initUniform();
-        //maxAlias();
         initWidth();
     }
 
-    private void initArray(long[][][][][][] arr) {
-        for (int i1=0; i1<arr.length; i1++) {
-            for (int i2=0; i2<arr[0].length; i2++) {
-                for (int i3=0; i3<arr[0][0].length; i3++) {
-                    for (int i4=0; i4<arr[0][0][0].length; i4++) {
-                        for (int i5=0; i5<arr[0][0][0][0].length; i5++) {
-                            for (int i6=0; i6<2; i6++) {
-                                arr[i1][i2][i3][i4][i5][i6] = NOT_MEMOIZED;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-    }
-
     private void initWidth() {
-        int height=A[0][0].length;
         maxWidth = new int[height][height];
         sameWidth = new boolean[height][height];
         for (int y1=0; y1<height; y1++) {
@@ -119,7 +114,8 @@ abstract class DPConfigContainer extends DPConfig {
     }
 
     /**
-     * Initialize <pre>uniform</pre> array and introduce aliasing into [A] and [B] accordingly.
+     * Initialize <pre>uniform</pre> array and find the regions of
+     * uniform rows that share memoized values (see {@link #key}).
      */
     private void initUniform() {
         // find the uniform rows
@@ -154,7 +150,10 @@ abstract class DPConfigContainer extends DPConfig {
           }
           }
         */
-        // now find maximal uniform regions with the same width, and alias their memoization tables
+        // now find maximal uniform regions with the same width,
+        // which share their memoized values
+        region = new int[uniform.length];
+        Arrays.fill(region, -1);
         int low=0;
         while (low<uniform.length) {
             while (low<uniform.length && !uniform[low]) {
@@ -165,95 +164,63 @@ abstract class DPConfigContainer extends DPConfig {
                 while (high+1<uniform.length && uniform[high+1] && (width[high+1]==width[low])) {
                     high++;
                 }
-                // alias low..high across the board, to point to values in 0'th column
-                for (int i1=low; i1<=high; i1++) {
-                    // only aliasing from i2=i1..high matters, but we'd just as well go i2=low...high
-                    for (int i2=low; i2<=high; i2++) {
-                        for (int xWidth=0; xWidth<width[low]-1; xWidth++) {
-                            for (int xStart=1; xStart<width[low]-xWidth; xStart++) {
-                                A[xStart][xStart+xWidth][i1][i2] = A[0][xWidth][i1][i2];
-                                B[xStart][xStart+xWidth][i1][i2] = B[0][xWidth][i1][i2];
-                                I[xStart][xStart+xWidth][i1][i2] = I[0][xWidth][i1][i2];
-                            }
-                        }
-                    }
+                for (int i=low; i<=high; i++) {
+                    region[i] = low;
                 }
+                low = high;
             }
             low++;
         }
     }
 
-    public static int aliases=0;
-    // NOTE: this is a very unsafe hash because it takes the sum of
-    // work instead of a hash of work.
-    private void maxAlias() {
-        // consider every rectangle [x1,y1]->[x2,y2]
-        int height=A[0][0].length;
-        for (int y1=0; y1<height; y1++) {
-            int rectWidth = width[y1];
-            for (int y2=y1; y2<height; y2++) {
-                rectWidth = Math.min(rectWidth, width[y2]);
-                for (int x1=0; x1<rectWidth; x1++) {
-                    for (int x2=0; x2<rectWidth; x2++) {
-                        // my rectangle
-                        long rect1=workFor(x1,x2,y1,y2);
-                        if (rect1==-1) { continue; }
-                        // rectangle to left
-                        long rect3=workFor(x1-1,x2-1,y1,y2);
-                        if (rect1==rect3) {
-                            A[x1][x2][y1][y2] = A[x1-1][x2-1][y1][y2];
-                            //System.err.println("For " + cont.getName() + ", aliasing (" + x1 + ", " + y1 + ")->(" + x2 + ", " + y2 + ") left");
-                            aliases++;
-                            continue;
-                        }
-                        // rectangle above
-                        long rect2=workFor(x1,x2,y1-1,y2-1);
-                        if (rect1==rect3) {
-                            A[x1][x2][y1][y2] = A[x1][x2][y1-1][y2-1];
-                            //System.err.println("For " + cont.getName() + ", aliasing (" + x1 + ", " + y1 + ")->(" + x2 + ", " + y2 + ") up");
-                            aliases++;
-                            continue;
-                        }
-                    }
-                }
-            }
+    /**
+     * Returns the key of A[x1][x2][y1][y2][tileLimit][nextToJoiner]
+     * in the memo table.  Entries that are known to be equal map to
+     * the same key:
+     * <br/>
+     * - Within a uniform region (all children have the same work
+     *   estimate and all rows have the same width), a sub-rectangle
+     *   has the same cost wherever it starts, so it is shifted to the
+     *   0'th column.
+     * <br/>
+     * - With one tile, everything is fused and no joiner is needed, so
+     *   the cost does not depend on <b>nextToJoiner</b>.
+     */
+    private long key(int x1, int x2, int y1, int y2, int tileLimit, int nextToJoiner) {
+        if (x1>0 && region[y1]!=-1 && region[y1]==region[y2]) {
+            x2 -= x1;
+            x1 = 0;
         }
+        if (tileLimit==1) {
+            nextToJoiner = 1;
+        }
+        assert tileLimit < (1<<TILE_BITS);
+        long rect = (((long)x1*boxWidth + x2)*height + y1)*height + y2;
+        return (((rect << TILE_BITS) | tileLimit) << 1) | nextToJoiner;
     }
 
     /**
-     * Return work for rectangle in range; return -1 if undefined.
+     * Returns the memoized cost of
+     * A[x1][x2][y1][y2][tileLimit][nextToJoiner], or null if it has
+     * not been computed.
      */
-    private long workFor(int x1, int x2, int y1, int y2) {
-        // check bounds
-        if (x1<0 || y1<0 || x2<0 || y2<0 || x2<x1 || y2<y1 || x2>width[y1]-1 ) {
-            return -1;
-        }
-        // do sum
-        long sum = 0;
-        for (int x=x1; x<=x2; x++) {
-            for (int y=y1; y<=y2; y++) {
-                long s = workFor(childConfig(x, y).getStream());
-                // quit if we ever hit undefined
-                if (s==-1) {
-                    return -1;
-                }  else {
-                    sum+=s;
-                }
-            }
+    private DPCost lookup(int x1, int x2, int y1, int y2, int tileLimit, int nextToJoiner) {
+        int slot = memo.find(key(x1, x2, y1, y2, tileLimit, nextToJoiner));
+        if (slot==-1) {
+            return null;
         }
-        return sum;
+        return new DPCost(memo.getLong(slot, A), memo.getLong(slot, B), memo.getLong(slot, I));
     }
 
     /**
-     * Right now work estimate doesn't recognize some things like
-     * predefined filters and containers, so wrap it like this.
+     * Memoizes <pre>cost</pre> as the cost of
+     * A[x1][x2][y1][y2][tileLimit][nextToJoiner].
      */
-    private long workFor(SIRStream str) {
-        try {
-            return partitioner.getWorkEstimate().getWork((SIRFilter)str);
-        } catch (RuntimeException e) {
-            return -1;
-        }
+    private void memoize(int x1, int x2, int y1, int y2, int tileLimit, int nextToJoiner, DPCost cost) {
+        int slot = memo.insert(key(x1, x2, y1, y2, tileLimit, nextToJoiner));
+        memo.setLong(slot, A, cost.getMaxCost());
+        memo.setLong(slot, B, cost.getSumCost());
+        memo.setLong(slot, I, cost.getICodeSize());
     }
 
     public SIRStream getStream() {
@@ -277,7 +244,7 @@ abstract class DPConfigContainer extends DPConfig {
 
     protected DPCost get(int tileLimit, int nextToJoiner) {
         // otherwise, compute it
-        return get(0, A.length-1, 0, A[0][0].length-1, tileLimit, nextToJoiner);
+        return get(0, boxWidth-1, 0, height-1, tileLimit, nextToJoiner);
     }
 
     private static int indent=0;
@@ -307,27 +274,20 @@ abstract class DPConfigContainer extends DPConfig {
         }
 
         // if we've memoized the value before, return it
-        if (A[x1][x2][y1][y2][tileLimit][nextToJoiner]!=NOT_MEMOIZED) {
-            assert B[x1][x2][y1][y2][tileLimit][nextToJoiner]!=NOT_MEMOIZED:
-                "Memoized A but not B.";
-            assert I[x1][x2][y1][y2][tileLimit][nextToJoiner]!=NOT_MEMOIZED:
-                "Memoized A but not I.";
+        DPCost memoized = lookup(x1, x2, y1, y2, tileLimit, nextToJoiner);
+        if (memoized!=null) {
             /*
               System.err.println("Found memoized A[" + child1 + "][" + child2 + "][" + tileLimit + "] = " + 
               A[child1][child2][tileLimit] + " for " + cont.getName());
             */
             indent--;
-            return new DPCost(A[x1][x2][y1][y2][tileLimit][nextToJoiner],
-                              B[x1][x2][y1][y2][tileLimit][nextToJoiner],
-                              I[x1][x2][y1][y2][tileLimit][nextToJoiner]);
+            return memoized;
         }
 
         // if we are down to one child, then descend into child
         if (x1==x2 && y1==y2) {
             DPCost childCost = childConfig(x1, y1).get(tileLimit, nextToJoiner); 
-            A[x1][x2][y1][y2][tileLimit][nextToJoiner] = childCost.getMaxCost();
-            B[x1][x2][y1][y2][tileLimit][nextToJoiner] = childCost.getSumCost();
-            I[x1][x2][y1][y2][tileLimit][nextToJoiner] = childCost.getICodeSize();
+            memoize(x1, x2, y1, y2, tileLimit, nextToJoiner, childCost);
             //System.err.println("Returning " + childCost + " from descent into child.");
             indent--;
             return childCost;
@@ -367,9 +327,7 @@ abstract class DPConfigContainer extends DPConfig {
             if (!fusable && numFilters>1) {
                 DPCost cost = new DPCost(Long.MAX_VALUE/2, Long.MAX_VALUE/2, partitioner.ICODE_THRESHOLD+1);
 
-                A[x1][x2][y1][y2][tileLimit][nextToJoiner] = cost.getMaxCost();
-                B[x1][x2][y1][y2][tileLimit][nextToJoiner] = cost.getSumCost();
-                I[x1][x2][y1][y2][tileLimit][nextToJoiner] = cost.getICodeSize();
+                memoize(x1, x2, y1, y2, tileLimit, nextToJoiner, cost);
 
                 return cost;
             }
@@ -437,17 +395,13 @@ abstract class DPConfigContainer extends DPConfig {
             }
 
             // since we went to down to one child, the cost is the
-            // same whether or not there is a joiner, so record both
-            // ways.
-            A[x1][x2][y1][y2][tileLimit][0] = max;
-            A[x1][x2][y1][y2][tileLimit][1] = max;
-            B[x1][x2][y1][y2][tileLimit][0] = sum;
-            B[x1][x2][y1][y2][tileLimit][1] = sum;
-            I[x1][x2][y1][y2][tileLimit][0] = iCode;
-            I[x1][x2][y1][y2][tileLimit][1] = iCode;
+            // same whether or not there is a joiner; both ways share
+            // one entry (see key).
+            DPCost cost = new DPCost(max, sum, iCode);
+            memoize(x1, x2, y1, y2, tileLimit, nextToJoiner, cost);
 
             indent--;
-            return new DPCost(max, sum, iCode);
+            return cost;
         }
 
         // otherwise, we're going to try making a cut... but first see
@@ -461,9 +415,7 @@ abstract class DPConfigContainer extends DPConfig {
         if (tilesAvail==1 && y1==y2) {
             // must have added a joiner if you've gotten to this point
             DPCost cost = get(x1, x2, y1, y2, tilesAvail, 1);
-            A[x1][x2][y1][y2][tileLimit][nextToJoiner] = cost.getMaxCost();
-            B[x1][x2][y1][y2][tileLimit][nextToJoiner] = cost.getSumCost();
-            I[x1][x2][y1][y2][tileLimit][nextToJoiner] = cost.getICodeSize();
+            memoize(x1, x2, y1, y2, tileLimit, nextToJoiner, cost);
             indent--;
             return cost;
         }
@@ -546,11 +498,10 @@ abstract class DPConfigContainer extends DPConfig {
         assert minCost!=Long.MAX_VALUE:
             "Failed to make cut on container: " + cont.getName();
 
-        A[x1][x2][y1][y2][tileLimit][nextToJoiner] = minCost;
-        B[x1][x2][y1][y2][tileLimit][nextToJoiner] = minSum;
-        I[x1][x2][y1][y2][tileLimit][nextToJoiner] = minICode;
+        DPCost cost = new DPCost(minCost, minSum, minICode);
+        memoize(x1, x2, y1, y2, tileLimit, nextToJoiner, cost);
         indent--;
-        return new DPCost(minCost, minSum, minICode);
+        return cost;
     }
 
     /**
@@ -615,7 +566,7 @@ abstract class DPConfigContainer extends DPConfig {
      * Traceback function.
      */
     public SIRStream traceback(LinkedList<PartitionRecord> partitions, PartitionRecord curPartition, int tileLimit, int nextToJoiner, SIRStream str) {
-        SIRStream result = traceback(partitions, curPartition, 0, A.length-1, 0, A[0][0].length-1, tileLimit, nextToJoiner, str);
+        SIRStream result = traceback(partitions, curPartition, 0, boxWidth-1, 0, height-1, tileLimit, nextToJoiner, str);
         // if the whole container is assigned to one tile, record it
         // as such.
         if (tileLimit==1) {
@@ -694,6 +645,7 @@ abstract class DPConfigContainer extends DPConfig {
         }
 
         SIRSplitJoin verticalObj = getVerticalObj(x1, x2, y1, y2, tilesAvail, str);
+        DPCost best = get(x1, x2, y1, y2, tileLimit, nextToJoiner);
 
         if (verticalObj!=null) {
             // otherwise, see if we made a vertical cut (breaking into
@@ -706,9 +658,9 @@ abstract class DPConfigContainer extends DPConfig {
                     long cost = Math.max(cost1.getMaxCost(), cost2.getMaxCost());
                     long sum = cost1.getSumCost() + cost2.getSumCost();
                     long iCode = Math.max(cost1.getICodeSize(), cost2.getICodeSize());
-                    if (cost==A[x1][x2][y1][y2][tileLimit][nextToJoiner] &&
-                        sum ==B[x1][x2][y1][y2][tileLimit][nextToJoiner] &&
-                        iCode ==I[x1][x2][y1][y2][tileLimit][nextToJoiner]) {
+                    if (cost==best.getMaxCost() &&
+                        sum ==best.getSumCost() &&
+                        iCode ==best.getICodeSize()) {
                         // there's a division at this <xPivot>.  We'll
                         // return result of a vertical cut
                         debugMessage("splitting vertical range " + x1 + "-" + x2 + " into " + x1 + "-" + xPivot + "(" + get(x1, xPivot, y1, y2, tPivot, 0).getMaxCost() + ")" + 
@@ -761,9 +713,9 @@ abstract class DPConfigContainer extends DPConfig {
                 long cost = Math.max(cost1.getMaxCost(), cost2.getMaxCost());
                 long sum = cost1.getSumCost() + cost2.getSumCost();
                 long iCode = Math.max(cost1.getICodeSize(), cost2.getICodeSize());
-                if (cost==A[x1][x2][y1][y2][tileLimit][nextToJoiner] &&
-                    sum ==B[x1][x2][y1][y2][tileLimit][nextToJoiner] &&
-                    iCode ==I[x1][x2][y1][y2][tileLimit][nextToJoiner]) {
+                if (cost==best.getMaxCost() &&
+                    sum ==best.getSumCost() &&
+                    iCode ==best.getICodeSize()) {
                     debugMessage("splitting horizontal range " + y1 + "-" + y2 + " into " + y1 + "-" + yPivot + "(" + get(x1, x2, y1, yPivot, tPivot, 0).getMaxCost() + ")" + 
                                  " and " + (yPivot+1) + "-" + y2 + "(" + get(x1, x2, yPivot+1, y2, tileLimit-tPivot, nextToJoiner).getMaxCost() + ")");
                     // there's a division at this <yPivot>.  We'll
@@ -807,7 +759,7 @@ abstract class DPConfigContainer extends DPConfig {
     
         // if we make it this far, then we didn't find our traceback
         Utils.fail("Didn't find traceback for A[" + x1 + "][" + x2 + "][" + y1 + "][" + y2 + "][" + tileLimit + "][" + nextToJoiner + "]" + 
-                   " with verticalObj=" + verticalObj + " and A=" + A[x1][x2][y1][y2][tileLimit][nextToJoiner] + " and B=" + B[x1][x2][y1][y2][tileLimit][nextToJoiner]);
+                   " with verticalObj=" + verticalObj + " and A=" + best.getMaxCost() + " and B=" + best.getSumCost());
         return null;
     }
 
@@ -884,18 +836,19 @@ abstract class DPConfigContainer extends DPConfig {
     public void printArray() {
         String msg = "Printing array for " + getStream().getIdent() + " --------------------------";
         System.err.println(msg);
-        for (int i1=0; i1<A.length; i1++) {
-            for (int i2=0; i2<A[0].length; i2++) {
-                for (int i3=0; i3<A[0][0].length; i3++) {
-                    for (int i4=0; i4<A[0][0][0].length; i4++) {
+        for (int i1=0; i1<boxWidth; i1++) {
+            for (int i2=0; i2<boxWidth; i2++) {
+                for (int i3=0; i3<height; i3++) {
+                    for (int i4=0; i4<height; i4++) {
                         System.err.println();
-                        for (int i5=0; i5<A[0][0][0][0].length; i5++) {
+                        for (int i5=0; i5<=partitioner.getNumTiles(); i5++) {
                             for (int i6=0; i6<2; i6++) {
+                                DPCost cost = (i1<=i2 && i3<=i4) ? lookup(i1, i2, i3, i4, i5, i6) : null;
                                 System.err.println(getStream().getIdent() + "[" + i1 + "][" + i2 + "][" + i3 + "][" + i4 + "][" + 
-                                                   i5 + "][" + i6 + "] = " + A[i1][i2][i3][i4][i5][i6]);
+                                                   i5 + "][" + i6 + "] = " + (cost==null ? -1 : cost.getMaxCost()));
                                 /*
                                   System.err.println("SUM" + getStream().getIdent() + "[" + i1 + "][" + i2 + "][" + i3 + "][" + i4 + "][" + 
-                                  i5 + "][" + i6 + "] = " + B[i1][i2][i3][i4][i5][i6]);
+                                  i5 + "][" + i6 + "] = " + (cost==null ? -1 : cost.getSumCost()));
                                 */
                             }
                         }
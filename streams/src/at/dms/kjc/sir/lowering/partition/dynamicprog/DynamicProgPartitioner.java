@@ -226,9 +226,6 @@ public class DynamicProgPartitioner extends ListPartitioner {
         // build stream config
         System.out.println("  Building stream config... ");
         DPConfig topConfig = buildStreamConfig();
-        if (DPConfigContainer.aliases>0) {
-            System.out.println("  Aliasing " + DPConfigContainer.aliases + " entries of memo table.");
-        }
         // rebuild our work estimate, since we might have introduced
         // identity nodes to make things rectangular
         work = WorkEstimate.getWorkEstimate(str);
@@ -21,14 +21,16 @@ abstract class LDPConfigContainer extends LDPConfig {
     protected SIRContainer cont;
     /**  
      * A_s[x1][x2][y1][y2][c] holds savings if children (x1..x2,
-     * y1..y2) of stream s given collapse policy <pre>c</pre>.
+     * y1..y2) of stream s given collapse policy <pre>c</pre>.  Only
+     * the entries that are visited are stored, indexed by {@link
+     * #key}.
      */
-    private long[][][][][] A;
+    private MemoTable A;
     /**  
-     * Streams we've created for a given sub-segment.  Lowest-order
-     * dimension is just for aliasing.
+     * Streams we've created for a given sub-segment, indexed by
+     * {@link #key} with no collapse policy.
      */
-    private SIRStream[][][][][] strCache;
+    private MemoTable strCache;
     /**
      * Specifies the width of i'th row of this.
      */
@@ -40,6 +42,20 @@ abstract class LDPConfigContainer extends LDPConfig {
      * non-linear).
      */
     boolean[] uniform;
+    /**
+     * For each row, the first row of the maximal uniform region with
+     * the same width that contains it, or -1 if the row is not
+     * uniform.
+     */
+    private int[] region;
+    /**
+     * Width of the bounding box of this.
+     */
+    private int boxWidth;
+    /**
+     * Number of rows of this.
+     */
+    private int height;
     
     /**
      * <pre>width</pre>[] and <pre>height</pre> represent the dimensions of the stream.
@@ -61,10 +77,13 @@ abstract class LDPConfigContainer extends LDPConfig {
         // calculate uniform
         this.uniform = new boolean[height];
         initUniform();
-        // for simplicity, allocate the bounding box for A
-        this.A = new long[maxWidth][maxWidth][height][height][4];
-        this.strCache = new SIRStream[maxWidth][maxWidth][height][height][1];
-        initCaches();
+        this.boxWidth = maxWidth;
+        this.height = height;
+        assert (long)maxWidth*maxWidth*height*height < (1L<<60) :
+            "Stream too large to pack memo table keys: " + cont.getName();
+        this.A = new MemoTable(1, false);
+        this.strCache = new MemoTable(0, true);
+        initRegions();
         starttime = System.currentTimeMillis();
     }
 
@@ -112,21 +131,13 @@ abstract class LDPConfigContainer extends LDPConfig {
     }
 
     /**
-     * Initialize elements of this.A to -1.  Setup sharing in A and strCache
+     * Find the regions of uniform rows that share entries in A and
+     * strCache (see {@link #key}).
      */
-    private void initCaches() {
-        for (int i1=0; i1<A.length; i1++) {
-            for (int i2=0; i2<A[0].length; i2++) {
-                for (int i3=0; i3<A[0][0].length; i3++) {
-                    for (int i4=0; i4<A[0][0][0].length; i4++) {
-                        for (int i5=0; i5<A[0][0][0][0].length; i5++) {
-                            A[i1][i2][i3][i4][i5] = -1;
-                        }
-                    }
-                }
-            }
-        }
-        // now find maximal uniform regions with the same width, and alias their memoization tables
+    private void initRegions() {
+        region = new int[uniform.length];
+        Arrays.fill(region, -1);
+        // find maximal uniform regions with the same width
         int low=0;
         while (low<uniform.length) {
             while (low<uniform.length && !uniform[low]) {
@@ -137,23 +148,64 @@ abstract class LDPConfigContainer extends LDPConfig {
                 while (high+1<uniform.length && uniform[high+1] && (width[high+1]==width[low])) {
                     high++;
                 }
-                // alias low..high across the board, to point to values in 0'th column
-                for (int i1=low; i1<=high; i1++) {
-                    // only aliasing from i2=i1..high matters, but we'd just as well go i2=low...high
-                    for (int i2=low; i2<=high; i2++) {
-                        for (int xWidth=0; xWidth<width[low]-1; xWidth++) {
-                            for (int xStart=1; xStart<width[low]-xWidth; xStart++) {
-                                A[xStart][xStart+xWidth][i1][i2] = A[0][xWidth][i1][i2];
-                                strCache[xStart][xStart+xWidth][i1][i2] = strCache[0][xWidth][i1][i2];
-                            }
-                        }
-                    }
+                for (int i=low; i<=high; i++) {
+                    region[i] = low;
                 }
+                low = high;
             }
             low++;
         }
     }
 
+    /**
+     * Returns the key of lookup(x1, x2, y1, y2, collapse) in the memo
+     * table.  Within a uniform region, a sub-rectangle has the same
+     * savings wherever it starts, so it is shifted to the 0'th
+     * column.  If <pre>collapse</pre> is -1, returns the key for
+     * strCache.
+     */
+    private long key(int x1, int x2, int y1, int y2, int collapse) {
+        if (x1>0 && region[y1]!=-1 && region[y1]==region[y2]) {
+            x2 -= x1;
+            x1 = 0;
+        }
+        long rect = (((long)x1*boxWidth + x2)*height + y1)*height + y2;
+        return rect*5 + (collapse+1);
+    }
+
+    /**
+     * Returns lookup(x1, x2, y1, y2, collapse), or -1 if it has not been
+     * computed.
+     */
+    private long lookup(int x1, int x2, int y1, int y2, int collapse) {
+        int slot = A.find(key(x1, x2, y1, y2, collapse));
+        return slot==-1 ? -1 : A.getLong(slot, 0);
+    }
+
+    /**
+     * Sets lookup(x1, x2, y1, y2, collapse) to <pre>cost</pre>.
+     */
+    private void memoize(int x1, int x2, int y1, int y2, int collapse, long cost) {
+        A.setLong(A.insert(key(x1, x2, y1, y2, collapse)), 0, cost);
+    }
+
+    /**
+     * Returns the cached stream for children (x1..x2, y1..y2), or
+     * null if there is none.
+     */
+    private SIRStream getCachedStream(int x1, int x2, int y1, int y2) {
+        int slot = strCache.find(key(x1, x2, y1, y2, -1));
+        return slot==-1 ? null : (SIRStream)strCache.getObject(slot);
+    }
+
+    /**
+     * Caches <pre>str</pre> as the stream for children (x1..x2,
+     * y1..y2).
+     */
+    private void cacheStream(int x1, int x2, int y1, int y2, SIRStream str) {
+        strCache.setObject(strCache.insert(key(x1, x2, y1, y2, -1)), str);
+    }
+
     public SIRStream getStream() {
         return cont;
     }
@@ -181,7 +233,7 @@ abstract class LDPConfigContainer extends LDPConfig {
 
     protected long get(int collapse) {
         // otherwise, compute it
-        return get(0, A.length-1, 0, A[0][0].length-1, collapse, this.cont);
+        return get(0, boxWidth-1, 0, height-1, collapse, this.cont);
     }
 
     /** debugging fields */
@@ -194,7 +246,7 @@ abstract class LDPConfigContainer extends LDPConfig {
         indent++;
         String callStr = "get(" + x1 + ", " + x2 + ", " + y1 + ", " + y2 + ", " + LinearPartitioner.COLLAPSE_STRING(collapse) + ", " + (_str==null ? "null" : _str.getIdent());
         /*
-          if (x1==0 && x2==A.length-1) { 
+          if (x1==0 && x2==boxWidth-1) { 
           for (int i=0; i<indent; i++) {System.err.print(" ");} 
           System.err.println(callStr + " (spent " + (elapsed/1000) + " secs, or " + 
           (((float)(100*elapsed))/((float)(System.currentTimeMillis()-starttime))) + "% in LinearAnalyzer.findLinearFilters)");
@@ -213,10 +265,11 @@ abstract class LDPConfigContainer extends LDPConfig {
         }
 
         // if we've memoized the value before, return it
-        if (A[x1][x2][y1][y2][collapse]>=0) {
-            debugMessage(" returning memoized value, " + callStr + " = " + A[x1][x2][y1][y2][collapse]);
+        long memoized = lookup(x1, x2, y1, y2, collapse);
+        if (memoized>=0) {
+            debugMessage(" returning memoized value, " + callStr + " = " + memoized);
             indent--;
-            return A[x1][x2][y1][y2][collapse];
+            return memoized;
         } else if (LinearPartitioner.tracingBack) {
             // we should always hit memoized values on traceback
             Utils.fail("Didn't find memoized value on traceback for " + callStr);
@@ -227,12 +280,12 @@ abstract class LDPConfigContainer extends LDPConfig {
         SIRStream str;
         // always prefer ones that have a linear representation
         if (lfa.hasLinearRepresentation(_str) || lfa.isNonLinear(_str)) {
-            strCache[x1][x2][y1][y2][0] = _str;
+            cacheStream(x1, x2, y1, y2, _str);
             str = _str;
-        } else if (strCache[x1][x2][y1][y2][0]!=null ) {
-            str = strCache[x1][x2][y1][y2][0];
+        } else if (getCachedStream(x1, x2, y1, y2)!=null ) {
+            str = getCachedStream(x1, x2, y1, y2);
         } else if (_str!=null) {
-            strCache[x1][x2][y1][y2][0] = _str;
+            cacheStream(x1, x2, y1, y2, _str);
             str = _str;
         } else {
             str = null;
@@ -243,7 +296,7 @@ abstract class LDPConfigContainer extends LDPConfig {
         if (x1==x2 && y1==y2) {
             long childCost = childConfig(x1, y1).get(collapse); 
             assert childCost>=0: "childCost = " + childCost;
-            A[x1][x2][y1][y2][collapse] = childCost;
+            memoize(x1, x2, y1, y2, collapse, childCost);
             debugMessage(" returning child cost, " + callStr + " = " + childCost);
             indent--;
             return childCost;
@@ -445,7 +498,7 @@ abstract class LDPConfigContainer extends LDPConfig {
         
         }
     
-        A[x1][x2][y1][y2][collapse] = cost;
+        memoize(x1, x2, y1, y2, collapse, cost);
         assert cost>=0: "cost = " + cost;
         debugMessage(" returning " + callStr + " = " + cost);
         indent--;
@@ -513,7 +566,7 @@ abstract class LDPConfigContainer extends LDPConfig {
      */
     public StreamTransform traceback(int collapse) {
         if (LinearPartitioner.DEBUG) { printArray(); }
-        StreamTransform st = traceback(0, A.length-1, 0, A[0][0].length-1, collapse, this.cont);
+        StreamTransform st = traceback(0, boxWidth-1, 0, height-1, collapse, this.cont);
         return st;
     }
     
@@ -532,7 +585,7 @@ abstract class LDPConfigContainer extends LDPConfig {
         }
 
         // when tracing back, everything should be cached
-        SIRStream str = strCache[x1][x2][y1][y2][0];
+        SIRStream str = getCachedStream(x1, x2, y1, y2);
         assert str!=null;
 
         // if we're down to one node, then descend into it
@@ -541,7 +594,7 @@ abstract class LDPConfigContainer extends LDPConfig {
             // if this config container only has one child, then we
             // should wrap this in an identity so that we don't apply
             // it to ourself
-            if (A.length==1 && A[0][0].length==1) {
+            if (boxWidth==1 && height==1) {
                 StreamTransform result = new IdentityTransform();
                 result.addSucc(child);
                 return result.reduce();
@@ -558,14 +611,14 @@ abstract class LDPConfigContainer extends LDPConfig {
                               LinearPartitioner.COLLAPSE_LINEAR, 
                               LinearPartitioner.COLLAPSE_NONE };
             for (int i=0; i<options.length; i++) {
-                if (A[x1][x2][y1][y2][collapse] == get(x1, x2, y1, y2, options[i], str)) {
+                if (lookup(x1, x2, y1, y2, collapse) == get(x1, x2, y1, y2, options[i], str)) {
                     if (LinearPartitioner.DEBUG) { System.err.println("Tracing back through ANY of " + cont.getName() + " and found best option = " + 
                                                                       LinearPartitioner.COLLAPSE_STRING(options[i]) + " with cost " + get(x1,x2,y1,y2,options[i],str)); }
                     return traceback(x1, x2, y1, y2, options[i], str);
                 }
             }
             Utils.fail("Didn't find traceback; was looking for ANY of " + cont + "[" + x1 + "][" + x2 + "][" + y1 + "][" + y2 + 
-                       "][" + LinearPartitioner.COLLAPSE_STRING(collapse) + "] = " + A[x1][x2][y1][y2][collapse]);
+                       "][" + LinearPartitioner.COLLAPSE_STRING(collapse) + "] = " + lookup(x1, x2, y1, y2, collapse));
             break;
         }
 
@@ -596,7 +649,7 @@ abstract class LDPConfigContainer extends LDPConfig {
                     for (int i=x1; i<=x2; i++) {
                         sum += get(i, i, y1, y2, LinearPartitioner.COLLAPSE_ANY, null);
                     }
-                    if (sum==A[x1][x2][y1][y2][collapse]) {
+                    if (sum==lookup(x1, x2, y1, y2, collapse)) {
                         // found the optimum...
                         debugMessage(" Found uniform cut on traceback.");
                         // generate transform
@@ -619,7 +672,7 @@ abstract class LDPConfigContainer extends LDPConfig {
                     // try a vertical cut
                     for (int xPivot=x1; xPivot<x2; xPivot++) {
                         // break along <xPivot>
-                        if (A[x1][x2][y1][y2][collapse] == (get(x1, xPivot, y1, y2, LinearPartitioner.COLLAPSE_ANY, 
+                        if (lookup(x1, x2, y1, y2, collapse) == (get(x1, xPivot, y1, y2, LinearPartitioner.COLLAPSE_ANY, 
                                                                 /* dummy arg since get operation should just be lookup now */ null) +
                                                             get(xPivot+1, x2, y1, y2, LinearPartitioner.COLLAPSE_ANY, 
                                                                 /* dummy arg since get operation should just be lookup now */ null)) ) {
@@ -664,7 +717,7 @@ abstract class LDPConfigContainer extends LDPConfig {
             // section
             for (int yPivot=y1; yPivot<y2; yPivot++) {
                 // break along <yPivot>
-                if (A[x1][x2][y1][y2][collapse] == (get(x1, x2, y1, yPivot, LinearPartitioner.COLLAPSE_ANY, str) +
+                if (lookup(x1, x2, y1, y2, collapse) == (get(x1, x2, y1, yPivot, LinearPartitioner.COLLAPSE_ANY, str) +
                                                     get(x1, x2, yPivot+1, y2, LinearPartitioner.COLLAPSE_ANY, str)) ) {
                     // found the optimum
                     int[] arr = { 1 + (yPivot-y1), y2-yPivot };
@@ -739,18 +792,19 @@ abstract class LDPConfigContainer extends LDPConfig {
     public void printArray() {
         String msg = "Printing array for " + getStream().getIdent() + " --------------------------";
         System.err.println(msg);
-        for (int i1=0; i1<A.length; i1++) {
-            for (int i2=0; i2<A[0].length; i2++) {
-                for (int i3=0; i3<A[0][0].length; i3++) {
-                    for (int i4=0; i4<A[0][0][0].length; i4++) {
+        for (int i1=0; i1<boxWidth; i1++) {
+            for (int i2=0; i2<boxWidth; i2++) {
+                for (int i3=0; i3<height; i3++) {
+                    for (int i4=0; i4<height; i4++) {
                         System.err.println();
                         for (int i5=0; i5<4; i5++) {
+                            long cost = (i1<=i2 && i3<=i4) ? lookup(i1, i2, i3, i4, i5) : -1;
                             System.err.print(getStream().getIdent() + "[" + i1 + "][" + i2 + "][" + i3 + "][" + i4 + "][" + 
                                              LinearPartitioner.COLLAPSE_STRING(i5) + "] = ");
-                            if (A[i1][i2][i3][i4][i5]==Long.MAX_VALUE) {
+                            if (cost==Long.MAX_VALUE) {
                                 System.err.println("INFINITY");
                             } else {
-                                System.err.println(A[i1][i2][i3][i4][i5]);
+                                System.err.println(cost);
                             }
                         }
                     }
@@ -38,6 +38,26 @@ public class Core extends ComputeNode<CoreCodeStore> {
        return getUniqueId();
     }
     
+    /**
+     * Return the NUMA node of this core, 0 if the topology is unknown
+     * 
+     * @return The NUMA node
+     */
+    public int getNode() {
+        if (machine.getTopology() == null || !isComputeNode())
+            return 0;
+        return machine.getTopology().getNode(getCoreID());
+    }
+    
+    /**
+     * Return the NUMA distance from this core to <pre>core</pre>.
+     * 
+     * @return The distance, SMPTopology.LOCAL_DISTANCE if on the same node
+     */
+    public int getDistance(Core core) {
+        return machine.getDistance(this, core);
+    }
+    
     /**
      * Return the Machine we are a part of.
      * @return the Machine we are a part of.
@@ -287,8 +287,12 @@ public class CoreCodeStore extends ComputeCodeStore<Core> {
 	    FileOutputContent fileOutput = (FileOutputContent)fileW.getFilter();
 
 	    codeStore.addPrintOutputCode(buf, firstInputFilter);
-	    codeStore.appendTxtToGlobal("FILE *output;\n");
-	    codeStore.addStatementFirstToBufferInit(Util.toStmt("output = fopen(\"" + fileOutput.getFileName() + "\", \"w\")"));
+	    if (KjcOptions.mmapio) {
+	        codeStore.addMappedOutputCode(fileOutput.getFileName());
+	    } else {
+	        codeStore.appendTxtToGlobal("FILE *output;\n");
+	        codeStore.addStatementFirstToBufferInit(Util.toStmt("output = fopen(\"" + fileOutput.getFileName() + "\", \"w\")"));
+	    }
             
         }
     }
@@ -312,10 +316,81 @@ public class CoreCodeStore extends ComputeCodeStore<Core> {
         String type = ((FileOutputContent)fileW.getFilter()).getType() == CStdType.Integer ? "%d" : "%f";
         String cast = ((FileOutputContent)fileW.getFilter()).getType() == CStdType.Integer ? "(int)" : "(float)";
         String bufferName = buf.getAddressRotation(filter).currentWriteBufName;
+        //without a steady-state barrier, wait for the other inputs to finish writing the outputs
+        if (KjcOptions.p2psync) {
+            for (JStatement stmt : buf.waitForSourcesStatements())
+                addSteadyLoopStatement(stmt);
+        }
         //create the loop
-        addSteadyLoopStatement(Util.toStmt(
-                "for (int _i_ = 0; _i_ < " + outputs + "; _i_++) fprintf(output, \"" + type + "\\n\", " + cast + 
-                bufferName +"[_i_])"));
+        if (KjcOptions.mmapio)
+            addSteadyLoopStatement(Util.toStmt(
+                    "for (int _i_ = 0; _i_ < " + outputs + "; _i_++) { " +
+                    "if (OUTPUT_WINDOW - output_used < OUTPUT_MAX_ITEM) output_next_window(); " +
+                    "output_used += sprintf(output_window + output_used, \"" + type + "\\n\", " + cast + 
+                    bufferName + "[_i_]); }"));
+        else
+            addSteadyLoopStatement(Util.toStmt(
+                    "for (int _i_ = 0; _i_ < " + outputs + "; _i_++) fprintf(output, \"" + type + "\\n\", " + cast + 
+                    bufferName +"[_i_])"));
+        if (KjcOptions.p2psync) {
+            for (JStatement stmt : buf.signalSourcesStatements())
+                addSteadyLoopStatement(stmt);
+        }
+    }
+    
+    /**
+     * Add the code to write the file writer output through a window of the output file 
+     * that is mapped into memory, instead of through stdio.  The window slides forward
+     * (growing the file) as it fills up, and the file is truncated to the amount written
+     * in the cleanup code, so the output is only complete if the number of iterations 
+     * is bounded.
+     * 
+     * @param fileName The name of the output file
+     */
+    private void addMappedOutputCode(String fileName) {
+        appendTxtToGlobal("#define OUTPUT_WINDOW (16 * 1024 * 1024)\n");
+        //the longest item that we print, a float printed with %f
+        appendTxtToGlobal("#define OUTPUT_MAX_ITEM 64\n");
+        appendTxtToGlobal("int output_fd;\n");
+        appendTxtToGlobal("char *output_window;\n");
+        appendTxtToGlobal("off_t output_offset = 0;\n");
+        appendTxtToGlobal("size_t output_used = 0;\n");
+        
+        appendTxtToGlobal("void output_map_window() {\n");
+        appendTxtToGlobal("  if (ftruncate(output_fd, output_offset + OUTPUT_WINDOW) != 0) {\n");
+        appendTxtToGlobal("    printf(\"Error growing output file\\n\");\n");
+        appendTxtToGlobal("    exit(1);\n");
+        appendTxtToGlobal("  }\n");
+        appendTxtToGlobal("  output_window = (char *)mmap(NULL, OUTPUT_WINDOW, PROT_READ | PROT_WRITE, MAP_SHARED, output_fd, output_offset);\n");
+        appendTxtToGlobal("  if (output_window == MAP_FAILED) {\n");
+        appendTxtToGlobal("    printf(\"Error mapping output file\\n\");\n");
+        appendTxtToGlobal("    exit(1);\n");
+        appendTxtToGlobal("  }\n");
+        appendTxtToGlobal("  madvise(output_window, OUTPUT_WINDOW, MADV_SEQUENTIAL);\n");
+        appendTxtToGlobal("}\n");
+        
+        //slide the window so that it starts at the page containing the end of the output
+        appendTxtToGlobal("void output_next_window() {\n");
+        appendTxtToGlobal("  off_t end = output_offset + output_used;\n");
+        appendTxtToGlobal("  munmap(output_window, OUTPUT_WINDOW);\n");
+        appendTxtToGlobal("  output_offset = end - (end % sysconf(_SC_PAGESIZE));\n");
+        appendTxtToGlobal("  output_used = end - output_offset;\n");
+        appendTxtToGlobal("  output_map_window();\n");
+        appendTxtToGlobal("}\n");
+        
+        appendTxtToGlobal("void output_close() {\n");
+        appendTxtToGlobal("  munmap(output_window, OUTPUT_WINDOW);\n");
+        appendTxtToGlobal("  if (ftruncate(output_fd, output_offset + output_used) != 0)\n");
+        appendTxtToGlobal("    printf(\"Error truncating output file\\n\");\n");
+        appendTxtToGlobal("  close(output_fd);\n");
+        appendTxtToGlobal("}\n");
+        
+        //added first, so these end up in the order open, map
+        addStatementFirstToBufferInit(Util.toStmt("output_map_window()"));
+        addStatementFirstToBufferInit(Util.toStmt(
+                "if ((output_fd = open(\"" + fileName + "\", O_RDWR | O_CREAT | O_TRUNC, 0666)) < 0) " +
+                "{ printf(\"Error opening output file " + fileName + "\\n\"); exit(1); }"));
+        addCleanupStatement(Util.toStmt("output_close()"));
     }
     
     public void generateNumbersCode() {
@@ -49,8 +49,13 @@ public class EmitSMPCode extends EmitCode {
             }
             
             // for all the cores, add a barrier at the end of the steady state, do it here 
-            // because we are done with all code gen
-            CoreCodeStore.addBarrierSteady();
+            // because we are done with all code gen.  With point-to-point synchronization
+            // the buffers synchronize themselves in the steady state, so just add one barrier
+            // to make sure the prime pump is done everywhere before the steady state starts
+            if(KjcOptions.p2psync)
+                CoreCodeStore.addBarrierInit();
+            else
+                CoreCodeStore.addBarrierSteady();
             
             // if load balancing, instrument steady-state loop after steady-state barrier
             if(KjcOptions.loadbalance) {
@@ -331,6 +336,33 @@ public class EmitSMPCode extends EmitCode {
         p.println("extern void barrier_init(barrier_t *barrier, int num_threads);");
         p.println("extern void barrier_wait(barrier_t *barrier);");
         p.println();
+        if(KjcOptions.p2psync) {
+            p.println("#define CACHE_LINE_SIZE 64");
+            p.println();
+            p.println("/* Counter of steady states written to or read from a buffer, padded so");
+            p.println(" * that each counter has its own cache line. */");
+            p.println("typedef struct sync_counter {");
+            p.println("  volatile int count;");
+            p.println("  char pad[CACHE_LINE_SIZE - sizeof(int)];");
+            p.println("} __attribute__((aligned(CACHE_LINE_SIZE))) sync_counter_t;");
+            p.println();
+            p.println("/* Spin until the counter reaches value, then make sure we see all the");
+            p.println(" * writes made before it got there. */");
+            p.println("static __inline__ void sync_counter_wait(sync_counter_t *counter, int value)");
+            p.println("{");
+            p.println("  while(counter->count < value);");
+            p.println("  __sync_synchronize();");
+            p.println("}");
+            p.println();
+            p.println("/* Make all our writes visible, then increment the counter.  Each counter");
+            p.println(" * has a single writer. */");
+            p.println("static __inline__ void sync_counter_incr(sync_counter_t *counter)");
+            p.println("{");
+            p.println("  __sync_synchronize();");
+            p.println("  counter->count++;");
+            p.println("}");
+            p.println();
+        }
         p.println("#endif");
         p.close();
 
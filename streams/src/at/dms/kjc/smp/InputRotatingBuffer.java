@@ -37,6 +37,10 @@ public class InputRotatingBuffer extends RotatingBuffer {
     /** the name of the pointer to the read buffer of the current rotation that the file reader should
      * read into */
     protected String currentFileReaderBufName;
+    
+    /** the name of the counter of the steady-states that have been read out of this buffer,
+     * used to synchronize with the sources when we are not using a steady-state barrier */
+    protected String consumedCounterName;
 
     /** InputRotatingBuffers for fizzed filters will use shared constituent buffers.
      * This HashMap will store the names of the shared constituent buffers */
@@ -87,6 +91,8 @@ public class InputRotatingBuffer extends RotatingBuffer {
             buf.setBufferSize();
             buf.createInitCode();
             buf.createAddressBufs();
+            if (KjcOptions.p2psync)
+                buf.declareSyncCounters();
         }
     }
 
@@ -108,6 +114,8 @@ public class InputRotatingBuffer extends RotatingBuffer {
         
         currentFileReaderRotName = this.getIdent() + "_fr_current";
         currentFileReaderBufName = this.getIdent() + "_fr_buf";
+        
+        consumedCounterName = this.getIdent() + "_consumed";
 
         if(KjcOptions.sharedbufs && FissionGroupStore.isFizzed(filterNode.getParent())) {
             //System.out.println(filterNode + " is fizzed");
@@ -271,7 +279,142 @@ public class InputRotatingBuffer extends RotatingBuffer {
     public SourceAddressRotation getAddressRotation(FilterSliceNode filterSliceNode) {
         return addrBufMap.get(filterSliceNode);
     }
-    
+
+    /**
+     * Return true if the source that writes through this address rotation has to
+     * synchronize with the reader of this buffer when we are not using a steady-state
+     * barrier.  Sources on the same core are ordered by the steady-state loop, and file
+     * readers are copied from by the reader's core itself.  The outputs of a file writer
+     * are printed from one of its source's cores, so all of its sources synchronize.
+     */
+    protected boolean needsSync(SourceAddressRotation addr) {
+        if (!addr.parent.isComputeNode())
+            return false;
+
+        return filterNode.isFileOutput() || !addr.parent.equals(parent);
+    }
+
+    /**
+     * Return true if any of the sources of this buffer has to synchronize with its reader.
+     */
+    protected boolean hasSync() {
+        for (SourceAddressRotation addr : addressBufs) {
+            if (needsSync(addr))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Declare the counters used to synchronize the sources and the reader of this buffer:
+     * one counter of the steady-states read and, for each source, one counter of the
+     * steady-states written.  The counters are padded to a cache line (see barrier.h) so
+     * that cores spinning on different buffers do not share a line.
+     */
+    protected void declareSyncCounters() {
+        if (!hasSync())
+            return;
+
+        CoreCodeStore cs;
+        if (filterNode.isFileOutput())
+            cs = ProcessFileWriter.getAllocatingCore(filterNode).getComputeCode();
+        else
+            cs = parent.getComputeCode();
+
+        List<String> names = new LinkedList<String>();
+        names.add(consumedCounterName);
+        for (SourceAddressRotation addr : addressBufs) {
+            if (needsSync(addr))
+                names.add(addr.producedCounterName);
+        }
+
+        for (String name : names) {
+            parent.getMachine().getOffChipMemory().getComputeCode().appendTxtToGlobal(
+                    "extern sync_counter_t " + name + ";\n");
+            cs.appendTxtToGlobal("sync_counter_t " + name + ";\n");
+        }
+    }
+
+    /**
+     * Return how many more times the source runs in the prime pump schedule than
+     * the filter of this buffer, so how many steady-states ahead of the reader it is.
+     */
+    protected int primePumpLead(FilterSliceNode src) {
+        BasicSpaceTimeSchedule schedule = SMPBackend.scheduler.getGraphSchedule();
+        return schedule.getPrimePumpMult(src.getParent()) -
+            schedule.getPrimePumpMult(filterNode.getParent());
+    }
+
+    /**
+     * Return an expression for the value of a sync counter plus a constant.
+     */
+    private static String counterPlus(String counterName, int offset) {
+        if (offset > 0)
+            return counterName + ".count + " + offset;
+        else if (offset < 0)
+            return counterName + ".count - " + (-offset);
+        else
+            return counterName + ".count";
+    }
+
+    /**
+     * Return the statements the reader of this buffer runs at the beginning of a
+     * steady-state when we are not using a steady-state barrier: for each source on
+     * another core, wait until it has written the rotation we are about to read.  In
+     * steady-state t we read what the source wrote in steady-state (t - lead), where t is
+     * the number of steady-states we have read so far.
+     */
+    public List<JStatement> waitForSourcesStatements() {
+        LinkedList<JStatement> list = new LinkedList<JStatement>();
+        for (Map.Entry<FilterSliceNode, SourceAddressRotation> entry : addrBufMap.entrySet()) {
+            SourceAddressRotation addr = entry.getValue();
+            if (!needsSync(addr))
+                continue;
+            list.add(Util.toStmt("sync_counter_wait(&" + addr.producedCounterName + ", " +
+                    counterPlus(consumedCounterName, 1 - primePumpLead(entry.getKey())) + ")"));
+        }
+        return list;
+    }
+
+    /**
+     * Return the statements the reader of this buffer runs at the end of a steady-state
+     * when we are not using a steady-state barrier: count the steady-state as read.
+     */
+    public List<JStatement> signalSourcesStatements() {
+        LinkedList<JStatement> list = new LinkedList<JStatement>();
+        if (hasSync())
+            list.add(Util.toStmt("sync_counter_incr(&" + consumedCounterName + ")"));
+        return list;
+    }
+
+    /**
+     * Return the statements the source <b>src</b> runs before it writes a steady-state's output into
+     * this buffer when we are not using a steady-state barrier: wait until the reader is done
+     * with the rotation the output will overwrite.  The output of the source's steady-state t
+     * is read in the reader's steady-state (t + lead), and the rotation was last read
+     * rotationLength steady-states before that.
+     */
+    public List<JStatement> waitForReaderStatements(FilterSliceNode src) {
+        LinkedList<JStatement> list = new LinkedList<JStatement>();
+        SourceAddressRotation addr = addrBufMap.get(src);
+        if (needsSync(addr))
+            list.add(Util.toStmt("sync_counter_wait(&" + consumedCounterName + ", " +
+                    counterPlus(addr.producedCounterName, primePumpLead(src) - rotationLength + 1) + ")"));
+        return list;
+    }
+
+    /**
+     * Return the statements the source <b>src</b> runs after it has written a steady-state's output into
+     * this buffer when we are not using a steady-state barrier: count the steady-state as written.
+     */
+    public List<JStatement> signalReaderStatements(FilterSliceNode src) {
+        LinkedList<JStatement> list = new LinkedList<JStatement>();
+        SourceAddressRotation addr = addrBufMap.get(src);
+        if (needsSync(addr))
+            list.add(Util.toStmt("sync_counter_incr(&" + addr.producedCounterName + ")"));
+        return list;
+    }
+
     /**
      * return all the input buffers of the file writers of this application
      */
@@ -537,27 +680,37 @@ public class InputRotatingBuffer extends RotatingBuffer {
     }
 
     public List<JStatement> beginPrimePumpRead() {
-    	return beginSteadyRead();
+        LinkedList<JStatement> list = new LinkedList<JStatement>();
+        list.add(transferCommands.zeroOutTail(SchedulingPhase.STEADY));
+        return list;
     }
     
     public List<JStatement> endPrimePumpRead() {
-    	return endSteadyRead();
+        LinkedList<JStatement> list = new LinkedList<JStatement>();
+        //copy the copyDown items to the next rotation buffer
+        list.addAll(transferCommands.readTransferCommands(SchedulingPhase.STEADY));
+        //rotate to the next buffer
+        list.addAll(rotateStatementsRead());
+        return list;
+        //copyDownStatements(SchedulingPhase.STEADY));
     }
     
     public List<JStatement> beginSteadyRead() {
         LinkedList<JStatement> list = new LinkedList<JStatement>();
-        list.add(transferCommands.zeroOutTail(SchedulingPhase.STEADY));
+        //wait for the sources on other cores to fill the current rotation
+        if (KjcOptions.p2psync)
+            list.addAll(waitForSourcesStatements());
+        list.addAll(beginPrimePumpRead());
         return list;
     }
     
     public List<JStatement> endSteadyRead() {
         LinkedList<JStatement> list = new LinkedList<JStatement>();
-        //copy the copyDown items to the next rotation buffer
-        list.addAll(transferCommands.readTransferCommands(SchedulingPhase.STEADY));
-        //rotate to the next buffer
-        list.addAll(rotateStatementsRead());
+        list.addAll(endPrimePumpRead());
+        //tell the sources on other cores that we are done with the rotation
+        if (KjcOptions.p2psync)
+            list.addAll(signalSourcesStatements());
         return list;
-        //copyDownStatements(SchedulingPhase.STEADY));
     }
 
     /* (non-Javadoc)
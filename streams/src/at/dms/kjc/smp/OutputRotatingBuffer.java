@@ -419,10 +419,27 @@ public class OutputRotatingBuffer extends RotatingBuffer {
      */
     public List<JStatement> beginSteadyWrite() {
         LinkedList<JStatement> list = new LinkedList<JStatement>();
+        //when writing directly into the receivers' buffers, we have to wait for them
+        //to free the rotation before the work function runs
+        if (KjcOptions.p2psync && directWrite)
+            list.addAll(waitForReadersStatements());
         list.add(transferCommands.zeroOutHead(SchedulingPhase.STEADY));
         return list;
     }
     
+    /**
+     * Return the statements that wait, for each receiver of this buffer's output, until the 
+     * receiver is done with the rotation we are about to write.  Used instead of the 
+     * steady-state barrier.
+     */
+    protected List<JStatement> waitForReadersStatements() {
+        LinkedList<JStatement> list = new LinkedList<JStatement>();
+        for (InputRotatingBuffer input : addressBuffers.keySet()) {
+            list.addAll(input.waitForReaderStatements(filterNode));
+        }
+        return list;
+    }
+    
     /**
      * The rotate statements that includes the current buffer (for output of this 
      * firing) and transfer buffer.
@@ -439,8 +456,18 @@ public class OutputRotatingBuffer extends RotatingBuffer {
     public List<JStatement> endSteadyWrite() {
         LinkedList<JStatement> list = new LinkedList<JStatement>();
         
+        if (KjcOptions.p2psync && !directWrite)
+            list.addAll(waitForReadersStatements());
+        
         list.addAll(transferCommands.writeTransferCommands(SchedulingPhase.STEADY));
         
+        //tell the receivers that the output of this steady-state is in their buffers
+        if (KjcOptions.p2psync) {
+            for (InputRotatingBuffer input : addressBuffers.keySet()) {
+                list.addAll(input.signalReaderStatements(filterNode));
+            }
+        }
+        
         //generate the rotate statements for this output buffer
         list.addAll(rotateStatements());
         
@@ -147,7 +147,10 @@ public class ProcessFileReader {
         long fileSize = getFileSizeBytes();
         JBlock block = new JBlock();
 
-        codeStore.appendTxtToGlobal("FILE *input;\n");
+        if (KjcOptions.mmapio)
+            codeStore.appendTxtToGlobal("int input_fd;\n");
+        else
+            codeStore.appendTxtToGlobal("FILE *input;\n");
         codeStore.appendTxtToGlobal("off_t num_inputs;\n");
         codeStore.appendTxtToGlobal(fileInput.getType() + "*fileReadBuffer;\n");
         //codeStore.appendTxtToGlobal("int fileReadIndex__n" + codeStore.getParent().getUniqueId() + " = 0;\n");
@@ -155,14 +158,30 @@ public class ProcessFileReader {
         SMPBackend.chip.getOffChipMemory().getComputeCode().appendTxtToGlobal("extern " + fileInput.getType() + "*fileReadBuffer;\n");
         SMPBackend.chip.getOffChipMemory().getComputeCode().appendTxtToGlobal("extern off_t num_inputs;\n");
 
-        //open the file read the file into the buffer on the heap
-        block.addStatement(Util.toStmt("struct stat statbuf"));
-        block.addStatement(Util.toStmt("stat(\"" + fileInput.getFileName() + "\", &statbuf)"));
-        block.addStatement(Util.toStmt("num_inputs = statbuf.st_size / " + fileInput.getType().getSizeInC()));
-        block.addStatement(Util.toStmt("fileReadBuffer = (" + fileInput.getType() + " *)malloc(statbuf.st_size)"));
-        block.addStatement(Util.toStmt("input = fopen(\"" + fileInput.getFileName() + "\", \"r\")"));
-        block.addStatement(Util.toStmt("if(fread((void *)fileReadBuffer, " + fileInput.getType().getSizeInC() + ", num_inputs, input) != num_inputs)" +
-        								"printf(\"Error reading %lu bytes of input file\\n\", (unsigned long)statbuf.st_size)"));
+        if (KjcOptions.mmapio) {
+            //map the file instead of reading it, the readers index the mapping directly, so
+            //startup does not depend on the file size and the kernel pages the input in
+            //(and, because it is sequential, drops it again) as the steady state advances
+            block.addStatement(Util.toStmt("struct stat statbuf"));
+            block.addStatement(Util.toStmt("input_fd = open(\"" + fileInput.getFileName() + "\", O_RDONLY)"));
+            block.addStatement(Util.toStmt("if(input_fd < 0 || fstat(input_fd, &statbuf) != 0 || statbuf.st_size == 0)" +
+                                           "{ printf(\"Error opening input file " + fileInput.getFileName() + "\\n\"); exit(1); }"));
+            block.addStatement(Util.toStmt("num_inputs = statbuf.st_size / " + fileInput.getType().getSizeInC()));
+            block.addStatement(Util.toStmt("fileReadBuffer = (" + fileInput.getType() + " *)mmap(NULL, statbuf.st_size, " + 
+                                           "PROT_READ, MAP_PRIVATE, input_fd, 0)"));
+            block.addStatement(Util.toStmt("if(fileReadBuffer == MAP_FAILED)" +
+                                           "{ printf(\"Error mapping %lu bytes of input file\\n\", (unsigned long)statbuf.st_size); exit(1); }"));
+            block.addStatement(Util.toStmt("madvise((void *)fileReadBuffer, statbuf.st_size, MADV_SEQUENTIAL)"));
+        } else {
+            //open the file read the file into the buffer on the heap
+            block.addStatement(Util.toStmt("struct stat statbuf"));
+            block.addStatement(Util.toStmt("stat(\"" + fileInput.getFileName() + "\", &statbuf)"));
+            block.addStatement(Util.toStmt("num_inputs = statbuf.st_size / " + fileInput.getType().getSizeInC()));
+            block.addStatement(Util.toStmt("fileReadBuffer = (" + fileInput.getType() + " *)malloc(statbuf.st_size)"));
+            block.addStatement(Util.toStmt("input = fopen(\"" + fileInput.getFileName() + "\", \"r\")"));
+            block.addStatement(Util.toStmt("if(fread((void *)fileReadBuffer, " + fileInput.getType().getSizeInC() + ", num_inputs, input) != num_inputs)" +
+                                           "printf(\"Error reading %lu bytes of input file\\n\", (unsigned long)statbuf.st_size)"));
+        }
 
         /*
         for (Core other : SMPBackend.chip.getCores()) {
@@ -208,7 +208,20 @@ public abstract class RotatingBuffer extends Channel {
     			cs = this.parent.getComputeCode();
     		
     		
-    		if (KjcOptions.sharedheap) {
+    		if (KjcOptions.numa) {
+    			//with NUMA placement, allocate the buffer on the heap and have the owning
+    			//thread touch it first, the threads are bound to their CPUs before the 
+    			//buffer init method runs, so the pages end up on the owning core's node
+    			this.parent.getMachine().getOffChipMemory().getComputeCode().appendTxtToGlobal(
+    					"extern " + this.getType().toString() + "* " + bufferNames[i] + ";\n");
+    			cs.appendTxtToGlobal(this.getType().toString() + "* " + bufferNames[i] + ";\n");
+    			//added first, so these end up in the order malloc, memset
+    			cs.addStatementFirstToBufferInit("memset(" + bufferNames[i] + ", 0, " + 
+    					this.getBufferSize() + " * sizeof(" + this.getType().toString() + "))");
+    			cs.addStatementFirstToBufferInit(bufferNames[i] + " = (" + this.getType().toString() + 
+    					"*) malloc(" + this.getBufferSize() +
+    					" * sizeof(" + this.getType().toString() + "))");
+    		} else if (KjcOptions.sharedheap) {
     			//add the declaration to the global header file of the extern variable
     			this.parent.getMachine().getOffChipMemory().getComputeCode().appendTxtToGlobal(
     					"extern " + this.getType().toString() + "* " + bufferNames[i] + ";\n");
@@ -28,15 +28,26 @@ public class SMPBackend {
     	checkArguments();
     	setScheduler();
     	
-    	if (KjcOptions.smp > 16) {
-    		setupLargeConfig();
+    	if (KjcOptions.numa) {
+    		// create cores on the CPUs chosen from the machine topology
+    		SMPTopology topology;
+    		if (KjcOptions.topology != null)
+    			topology = SMPTopology.readFile(KjcOptions.topology);
+    		else
+    			topology = SMPTopology.readSysfs();
+    		System.out.println("NUMA topology has " + topology.numNodes() + " node(s)");
+    		chip = new SMPMachine(topology.getCoreOrder(KjcOptions.smp), topology);
+    	} else {
+    		if (KjcOptions.smp > 16) {
+    			setupLargeConfig();
+    		}
+
+    		// create cores in desired amount and order
+    		int[] cores = new int[KjcOptions.smp];
+    		for (int x = 0 ; x < KjcOptions.smp ; x++)
+    			cores[x] = coreOrder[x];
+    		chip = new SMPMachine(cores);
     	}
-    	
-    	// create cores in desired amount and order
-    	int[] cores = new int[KjcOptions.smp];
-    	for (int x = 0 ; x < KjcOptions.smp ; x++)
-    		cores[x] = coreOrder[x];
-        chip = new SMPMachine(cores);
         
         // create a new structs.h file for typedefs etc.
         structs_h = new Structs_h(structs);
@@ -298,6 +309,22 @@ public class SMPBackend {
                 KjcOptions.sharedbufs = false;
             }
         }
+
+        // point-to-point synchronization only knows about one reader per input buffer,
+        // so it cannot be used with shared buffers (or with load-balancing, which needs
+        // the steady-state barrier and turns on shared buffers)
+        if(KjcOptions.p2psync && KjcOptions.sharedbufs) {
+            System.out.println("WARNING: Disabling point-to-point synchronization due to incompatibility with shared buffers");
+            KjcOptions.p2psync = false;
+        }
+
+        // if point-to-point synchronization, but only 1 core, there is nothing to synchronize
+        if(KjcOptions.p2psync && KjcOptions.smp == 1)
+            KjcOptions.p2psync = false;
+
+        // a topology file implies NUMA-aware placement
+        if(KjcOptions.topology != null)
+            KjcOptions.numa = true;
     }
     
     /**
@@ -7,6 +7,8 @@ public class SMPMachine implements ComputeNodesI<CoreCodeStore> {
     protected int numCores;
     protected Core[] cores;
     protected OffChipMemory offChipMemory;
+    /** the NUMA topology the core IDs refer to, null if unknown */
+    protected SMPTopology topology;
     
     /**
      * Data structures for a machine with a number of cores
@@ -25,6 +27,18 @@ public class SMPMachine implements ComputeNodesI<CoreCodeStore> {
     }
     
     public SMPMachine(int[] coreIDOrder) {
+        this(coreIDOrder, null);
+    }
+    
+    /**
+     * Data structures for a machine whose cores are the logical CPUs 
+     * <pre>coreIDOrder</pre> of <pre>topology</pre>
+     * 
+     * @param coreIDOrder the CPU of each core
+     * @param topology the NUMA topology of the machine, or null if unknown
+     */
+    public SMPMachine(int[] coreIDOrder, SMPTopology topology) {
+    	this.topology = topology;
     	this.numCores = coreIDOrder.length;
     	
     	// Construct cores with IDs in requested order
@@ -43,6 +57,25 @@ public class SMPMachine implements ComputeNodesI<CoreCodeStore> {
         return offChipMemory;
     }
     
+    /**
+     * Return the NUMA topology of the machine, or null if it is unknown.
+     */
+    public SMPTopology getTopology() {
+        return topology;
+    }
+    
+    /**
+     * Return the NUMA distance between two cores, {@link SMPTopology#LOCAL_DISTANCE} if 
+     * they are on the same node or the topology is unknown.  Off-chip memory is 
+     * considered local to every core.
+     */
+    public int getDistance(Core core1, Core core2) {
+        if (topology == null || !core1.isComputeNode() || !core2.isComputeNode())
+            return SMPTopology.LOCAL_DISTANCE;
+        
+        return topology.getDistance(core1.getCoreID(), core2.getCoreID());
+    }
+    
     public LinkedList<Core> getCores() {
         LinkedList<Core> ts = new LinkedList<Core>();
         for (int x = 0; x < cores.length; x++)
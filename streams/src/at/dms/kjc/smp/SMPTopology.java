@@ -0,0 +1,316 @@
+package at.dms.kjc.smp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.StringTokenizer;
+
+/**
+ * The processor topology of the target machine: which NUMA node each logical
+ * CPU belongs to, which logical CPUs are SMT siblings on the same physical core,
+ * and the relative distance between NUMA nodes.  The topology is either read
+ * from the Linux sysfs (/sys/devices/system/node and /sys/devices/system/cpu)
+ * or from a hand-written topology file of the form:
+ *
+ * <pre>
+ * # comment
+ * node 0 cpus 0-7,16-23
+ * node 1 cpus 8-15,24-31
+ * distance 0 10 21
+ * distance 1 21 10
+ * siblings 0,16
+ * siblings 1,17
+ * ...
+ * </pre>
+ *
+ * A distance line gives the distance from a node to every node in ascending order
+ * of node id, using the sysfs convention that the local distance is 10.  Siblings
+ * lines are optional; CPUs that are not listed are assumed to be physical cores.
+ */
+public class SMPTopology {
+    /** the distance from a node to itself, as reported by sysfs */
+    public static final int LOCAL_DISTANCE = 10;
+
+    private static final String SYS_NODE = "/sys/devices/system/node";
+    private static final String SYS_CPU = "/sys/devices/system/cpu";
+
+    /** the node ids in ascending order */
+    private ArrayList<Integer> nodes;
+    /** the logical cpus of each node in ascending order */
+    private HashMap<Integer, ArrayList<Integer>> nodeCPUs;
+    /** cpu -> node */
+    private HashMap<Integer, Integer> cpuNode;
+    /** cpu -> the lowest numbered SMT sibling of the cpu (itself for a physical core) */
+    private HashMap<Integer, Integer> cpuFirstSibling;
+    /** node -> (node -> distance) */
+    private HashMap<Integer, HashMap<Integer, Integer>> distances;
+
+    private SMPTopology() {
+        nodes = new ArrayList<Integer>();
+        nodeCPUs = new HashMap<Integer, ArrayList<Integer>>();
+        cpuNode = new HashMap<Integer, Integer>();
+        cpuFirstSibling = new HashMap<Integer, Integer>();
+        distances = new HashMap<Integer, HashMap<Integer, Integer>>();
+    }
+
+    /**
+     * Read the topology of the machine we are running on from the Linux sysfs.  If the
+     * kernel does not export NUMA information, all online CPUs are placed on node 0.
+     *
+     * @return the topology of this machine
+     */
+    public static SMPTopology readSysfs() {
+        SMPTopology topology = new SMPTopology();
+
+        try {
+            if (new File(SYS_NODE + "/online").exists()) {
+                for (int node : parseCPUList(readLine(SYS_NODE + "/online")))
+                    topology.addNode(node, parseCPUList(readLine(SYS_NODE + "/node" + node + "/cpulist")));
+
+                //the distance file lists the distance to each online node in ascending order
+                for (int node : topology.nodes) {
+                    StringTokenizer dists = new StringTokenizer(readLine(SYS_NODE + "/node" + node + "/distance"));
+                    int[] row = new int[dists.countTokens()];
+                    for (int i = 0; i < row.length; i++)
+                        row[i] = Integer.parseInt(dists.nextToken());
+                    topology.setDistances(node, row);
+                }
+            } else {
+                topology.addNode(0, parseCPUList(readLine(SYS_CPU + "/online")));
+            }
+
+            for (int cpu : topology.cpuNode.keySet()) {
+                File siblings = new File(SYS_CPU + "/cpu" + cpu + "/topology/thread_siblings_list");
+                if (siblings.exists())
+                    topology.addSiblings(parseCPUList(readLine(siblings.getPath())));
+            }
+        } catch (Exception e) {
+            System.err.println("Error while reading the machine topology from " + SYS_NODE +
+                    " and " + SYS_CPU + ": " + e.getMessage());
+            System.exit(1);
+        }
+
+        topology.check("sysfs");
+        return topology;
+    }
+
+    /**
+     * Read the topology from a hand-written topology file, see the class comment
+     * for the format.
+     *
+     * @param fileName the topology file
+     * @return the topology described by the file
+     */
+    public static SMPTopology readFile(String fileName) {
+        SMPTopology topology = new SMPTopology();
+        int lineNumber = 0;
+
+        try {
+            BufferedReader in = new BufferedReader(new FileReader(fileName));
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.indexOf('#') >= 0)
+                    line = line.substring(0, line.indexOf('#'));
+                StringTokenizer tokens = new StringTokenizer(line);
+                if (!tokens.hasMoreTokens())
+                    continue;
+
+                String keyword = tokens.nextToken();
+                if (keyword.equals("node")) {
+                    int node = Integer.parseInt(tokens.nextToken());
+                    if (!tokens.nextToken().equals("cpus"))
+                        throw new IllegalArgumentException("expected \"cpus\"");
+                    topology.addNode(node, parseCPUList(tokens.nextToken()));
+                } else if (keyword.equals("distance")) {
+                    int node = Integer.parseInt(tokens.nextToken());
+                    int[] row = new int[tokens.countTokens()];
+                    for (int i = 0; i < row.length; i++)
+                        row[i] = Integer.parseInt(tokens.nextToken());
+                    topology.setDistances(node, row);
+                } else if (keyword.equals("siblings")) {
+                    topology.addSiblings(parseCPUList(tokens.nextToken()));
+                } else {
+                    throw new IllegalArgumentException("unknown keyword \"" + keyword + "\"");
+                }
+            }
+            in.close();
+        } catch (Exception e) {
+            System.err.println("Error while reading topology file " + fileName +
+                    " (line " + lineNumber + "): " + e.getMessage());
+            System.exit(1);
+        }
+
+        topology.check(fileName);
+        return topology;
+    }
+
+    /**
+     * Return the logical CPUs to run <pre>numCores</pre> threads on.  Physical cores are
+     * used before SMT siblings, and each node is filled before moving on to the next,
+     * so that neighboring cores in the returned order share a node whenever possible.
+     *
+     * @param numCores the number of threads
+     * @return the CPU ids in the order they should be assigned
+     */
+    public int[] getCoreOrder(int numCores) {
+        LinkedList<Integer> physical = new LinkedList<Integer>();
+        LinkedList<Integer> siblings = new LinkedList<Integer>();
+
+        for (int node : nodes) {
+            for (int cpu : nodeCPUs.get(node)) {
+                if (cpuFirstSibling.get(cpu) == cpu)
+                    physical.add(cpu);
+                else
+                    siblings.add(cpu);
+            }
+        }
+        physical.addAll(siblings);
+
+        if (numCores > physical.size()) {
+            System.err.println("The machine topology only has " + physical.size() +
+                    " CPUs, cannot map " + numCores + " cores!");
+            System.exit(1);
+        }
+
+        int[] order = new int[numCores];
+        for (int x = 0; x < numCores; x++)
+            order[x] = physical.get(x);
+        return order;
+    }
+
+    /**
+     * Return the NUMA node of logical CPU <pre>cpu</pre>.
+     */
+    public int getNode(int cpu) {
+        assert cpuNode.containsKey(cpu) : "CPU " + cpu + " not in topology";
+        return cpuNode.get(cpu);
+    }
+
+    /**
+     * Return the distance between the nodes of two logical CPUs,
+     * {@link #LOCAL_DISTANCE} if they share a node.
+     */
+    public int getDistance(int cpu1, int cpu2) {
+        return getNodeDistance(getNode(cpu1), getNode(cpu2));
+    }
+
+    /**
+     * Return the distance between two NUMA nodes, {@link #LOCAL_DISTANCE} if the
+     * distance was not specified.
+     */
+    public int getNodeDistance(int node1, int node2) {
+        if (distances.containsKey(node1) && distances.get(node1).containsKey(node2))
+            return distances.get(node1).get(node2);
+        return LOCAL_DISTANCE;
+    }
+
+    /**
+     * Return the number of NUMA nodes.
+     */
+    public int numNodes() {
+        return nodes.size();
+    }
+
+    private void addNode(int node, ArrayList<Integer> cpus) {
+        if (nodeCPUs.containsKey(node))
+            throw new IllegalArgumentException("node " + node + " defined twice");
+
+        //keep the nodes sorted
+        int index = 0;
+        while (index < nodes.size() && nodes.get(index) < node)
+            index++;
+        nodes.add(index, node);
+        nodeCPUs.put(node, cpus);
+
+        for (int cpu : cpus) {
+            if (cpuNode.containsKey(cpu))
+                throw new IllegalArgumentException("cpu " + cpu + " is on two nodes");
+            cpuNode.put(cpu, node);
+            cpuFirstSibling.put(cpu, cpu);
+        }
+    }
+
+    /**
+     * Remember the distances from <pre>node</pre>, <pre>row</pre> is indexed by the position
+     * of the destination node in the sorted node list.
+     */
+    private void setDistances(int node, int[] row) {
+        HashMap<Integer, Integer> dists = new HashMap<Integer, Integer>();
+        for (int i = 0; i < row.length; i++)
+            dists.put(i, row[i]);
+        distances.put(node, dists);
+    }
+
+    private void addSiblings(ArrayList<Integer> cpus) {
+        int first = cpus.get(0);
+        for (int cpu : cpus) {
+            if (cpu < first)
+                first = cpu;
+        }
+        for (int cpu : cpus) {
+            if (cpuFirstSibling.containsKey(cpu))
+                cpuFirstSibling.put(cpu, first);
+        }
+    }
+
+    /**
+     * Make sure the topology is complete and translate the distance rows from positions
+     * in the node list to node ids.
+     */
+    private void check(String source) {
+        if (cpuNode.isEmpty()) {
+            System.err.println("No CPUs found in topology from " + source);
+            System.exit(1);
+        }
+
+        HashMap<Integer, HashMap<Integer, Integer>> byId = new HashMap<Integer, HashMap<Integer, Integer>>();
+        for (int node : distances.keySet()) {
+            HashMap<Integer, Integer> row = distances.get(node);
+            if (row.size() != nodes.size()) {
+                System.err.println("Topology from " + source + " gives " + row.size() +
+                        " distances for node " + node + " but has " + nodes.size() + " nodes");
+                System.exit(1);
+            }
+            HashMap<Integer, Integer> dists = new HashMap<Integer, Integer>();
+            for (int i = 0; i < nodes.size(); i++)
+                dists.put(nodes.get(i), row.get(i));
+            byId.put(node, dists);
+        }
+        distances = byId;
+    }
+
+    private static String readLine(String fileName) throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(fileName));
+        String line = in.readLine();
+        in.close();
+        if (line == null)
+            throw new IOException(fileName + " is empty");
+        return line.trim();
+    }
+
+    /**
+     * Parse a list of cpus in the kernel's cpulist format, e.g. "0-3,8,10-11".
+     */
+    private static ArrayList<Integer> parseCPUList(String list) {
+        ArrayList<Integer> cpus = new ArrayList<Integer>();
+        StringTokenizer ranges = new StringTokenizer(list.trim(), ",");
+        while (ranges.hasMoreTokens()) {
+            String range = ranges.nextToken();
+            int dash = range.indexOf('-');
+            if (dash < 0) {
+                cpus.add(Integer.parseInt(range));
+            } else {
+                int low = Integer.parseInt(range.substring(0, dash));
+                int high = Integer.parseInt(range.substring(dash + 1));
+                for (int cpu = low; cpu <= high; cpu++)
+                    cpus.add(cpu);
+            }
+        }
+        return cpus;
+    }
+}
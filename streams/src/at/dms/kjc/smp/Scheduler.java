@@ -16,6 +16,12 @@ import at.dms.kjc.KjcOptions;
  */
 public abstract class Scheduler implements Layout<Core> {
     
+    /** 
+     * Estimated extra cost (in work estimate units) of moving one item between two 
+     * cores whose NUMA nodes are twice the local distance apart 
+     */
+    public static final int REMOTE_ITEM_COST = 8;
+    
     protected SpaceTimeScheduleAndSlicer graphSchedule;
     protected HashMap<SliceNode, Core> layoutMap;
     
@@ -43,4 +49,43 @@ public abstract class Scheduler implements Layout<Core> {
     public SpaceTimeScheduleAndSlicer getGraphSchedule() {
         return graphSchedule;
     }
+    
+    /**
+     * Estimate the extra steady-state communication cost of placing <pre>slice</pre> on 
+     * <pre>core</pre>, given the NUMA distance from <pre>core</pre> to the cores of the
+     * slices it communicates with that are already placed.  Zero if the topology
+     * is unknown or everything is on the same node.
+     * 
+     * @param slice the slice we are placing
+     * @param core the candidate core
+     * @return the estimated cost
+     */
+    protected long remoteCommCost(Slice slice, Core core) {
+        long cost = 0;
+        
+        for (InterSliceEdge edge : slice.getHead().getSourceSet(SchedulingPhase.STEADY))
+            cost += remoteCommCost(edge, edge.getSrc().getParent(), core);
+        for (InterSliceEdge edge : slice.getTail().getDestSet(SchedulingPhase.STEADY))
+            cost += remoteCommCost(edge, edge.getDest().getParent(), core);
+        
+        return cost;
+    }
+    
+    private long remoteCommCost(InterSliceEdge edge, Slice other, Core core) {
+        if (!layoutMap.containsKey(other.getFirstFilter()))
+            return 0;
+        
+        int distance = SMPBackend.chip.getDistance(core, layoutMap.get(other.getFirstFilter()));
+        InputSliceNode input = edge.getDest();
+        if (distance <= SMPTopology.LOCAL_DISTANCE || input.totalWeights(SchedulingPhase.STEADY) == 0)
+            return 0;
+        
+        //the items that travel over this edge in the steady state
+        long items = (long)FilterInfo.getFilterInfo(input.getParent().getFirstFilter()).
+            totalItemsReceived(SchedulingPhase.STEADY) * input.getWeight(edge, SchedulingPhase.STEADY) / 
+            input.totalWeights(SchedulingPhase.STEADY);
+        
+        return items * REMOTE_ITEM_COST * (distance - SMPTopology.LOCAL_DISTANCE) / 
+            SMPTopology.LOCAL_DISTANCE;
+    }
 }
@@ -26,6 +26,8 @@ public class SourceAddressRotation extends RotatingBuffer {
     protected String currentWriteRotName;
     /** the name of the pointer to the write buffer of the current rotation */
     protected String currentWriteBufName;
+    /** the name of the counter of the steady-states this source has written to the input buffer */
+    protected String producedCounterName;
     
     /** 
      * Number of times each InputRotatingBuffer has been seen.  Used to create
@@ -53,6 +55,7 @@ public class SourceAddressRotation extends RotatingBuffer {
         writeRotStructName = this.getIdent() + "rot_struct__";
         currentWriteRotName = this.getIdent() + "write_current__";
         currentWriteBufName = this.getIdent() + "_write_buf__";
+        producedCounterName = this.getIdent() + "produced__";
         
         //set the names of the individual address buffers that constitute this rotation
         setBufferNames();
@@ -327,12 +327,17 @@ public class TMD extends Scheduler {
                 
         if (theBest == null) {
             //could not find a tile that was allocated to an upstream input
-            //just pick a tile
+            //just pick a tile, the closest one to the slice's neighbors if we know
+            //the NUMA topology
+            long bestCost = Long.MAX_VALUE;
             for (Core tile : chip.getCores()) {
                 if (allocatedTiles.contains(tile))
                     continue;
-                theBest = tile;
-                break;
+                long cost = remoteCommCost(slice, tile);
+                if (cost < bestCost) {
+                    theBest = tile;
+                    bestCost = cost;
+                }
             }
         }
 
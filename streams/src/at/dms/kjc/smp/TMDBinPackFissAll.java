@@ -106,7 +106,8 @@ public class TMDBinPackFissAll extends Scheduler {
         
         // Attempt to load balance unfizzed slices across cores by using
         // LPT algorithm, which greedily assigns the slice with the most work
-        // to the core with the least amount of estimate work
+        // to the core with the least amount of estimate work (plus the cost
+        // of talking to already placed slices on other NUMA nodes)
         long[] workAmounts = new long[SMPBackend.chip.size()];
         for(int x = 0 ; x < workAmounts.length ; x++)
         	workAmounts[x] = 0;
@@ -117,8 +118,12 @@ public class TMDBinPackFissAll extends Scheduler {
         	int minCore = -1;
         	
         	for(int core = 0 ; core < workAmounts.length ; core++) {
-        		if(workAmounts[core] < minWork) {
-        			minWork = workAmounts[core];
+        		long work = workAmounts[core];
+        		if(SMPBackend.chip.getTopology() != null)
+        			work += remoteCommCost(slice, SMPBackend.chip.getNthComputeNode(core));
+        		
+        		if(work < minWork) {
+        			minWork = work;
         			minCore = core;
         		}
         	}
@@ -92,6 +92,9 @@ public class Layout extends at.dms.util.Utils implements StreamGraphVisitor,
 
     private FileWriter filew;
 
+    /** the cost of the current layout during simulated annealing */
+    private double currentCost;
+
     private RawChip rawChip;
 
     private FileState fileState;
@@ -848,7 +851,7 @@ public class Layout extends at.dms.util.Utils implements StreamGraphVisitor,
     public void simAnnealAssign() {
         System.out.println("Simulated Annealing Assignment");
         int nsucc = 0, j = 0;
-        double currentCost = 0.0, minCost = 0.0;
+        double minCost = 0.0;
         // number of paths tried at an iteration
         int nover = 100; // * RawBackend.rawRows * RawBackend.rawColumns;
 
@@ -892,9 +895,9 @@ public class Layout extends at.dms.util.Utils implements StreamGraphVisitor,
                     int k = 0;
                     nsucc = 0;
                     for (k = 0; k < nover; k++) {
-                        // true if config change was accepted
+                        // true if config change was accepted,
+                        // currentCost is updated by the call
                         boolean accepted = perturbConfiguration(t);
-                        currentCost = placementCost(false);
                         // the layout should always be legal
                         assert currentCost >= 0.0;
 
@@ -1055,11 +1058,12 @@ public class Layout extends at.dms.util.Utils implements StreamGraphVisitor,
         return T;
     }
 
-    // return true if the perturbation is accepted
+    // return true if the perturbation is accepted, and set currentCost
+    // to the cost of the resulting layout
     private boolean perturbConfiguration(double T) throws Exception {
         int first, second;
         // the cost of the new layout and the old layout
-        double e_new, e_old = placementCost(false);
+        double e_new, e_old = currentCost;
         // the nodes to swap
         FlatNode firstNode, secondNode;
 
@@ -1100,6 +1104,7 @@ public class Layout extends at.dms.util.Utils implements StreamGraphVisitor,
             P = Math.exp((((double) e_old) - ((double) e_new)) / T);
 
         if (R < P) {
+            currentCost = e_new;
             return true;
         } else {
             // reject configuration
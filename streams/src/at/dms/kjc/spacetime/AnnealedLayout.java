@@ -18,6 +18,7 @@ import at.dms.kjc.slicegraph.SliceNode;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Iterator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -85,6 +86,10 @@ public class AnnealedLayout extends SimulatedAnnealing implements Layout<RawTile
     private BufferDRAMAssignment assignBuffers;
     /** the total work all the tiles for the current layout */
     private int totalWork;
+    /** the slice moved by the last swapAssignment(), or null */
+    private Slice movedSlice;
+    /** the tiles the filters of movedSlice were assigned to before the move */
+    private RawTile[] movedFrom;
     
     
     
@@ -165,6 +170,7 @@ public class AnnealedLayout extends SimulatedAnnealing implements Layout<RawTile
      */
     public void setAssignment(HashMap newAssignment) {
         assignment = newAssignment;
+        movedSlice = null;
 //      reassign buffers.
         //assignBuffers.run(spaceTime, this);
     }
@@ -266,7 +272,15 @@ public class AnnealedLayout extends SimulatedAnnealing implements Layout<RawTile
         //System.out.print("Reassigning " + reassignMe + " from "
         //        + getTile(reassignMe.getHead().getNextFilter()));
         
-        assert newSliceAssignment(reassignMe.getHead().getNextFilter()) :
+        //remember where the filters were, so undoSwap() can put them back
+        List<FilterSliceNode> filters = reassignMe.getFilterNodes();
+        movedSlice = reassignMe;
+        movedFrom = new RawTile[filters.size()];
+        for (int i = 0; i < movedFrom.length; i++) 
+            movedFrom[i] = (RawTile)assignment.get(filters.get(i));
+        
+        boolean placed = newSliceAssignment(reassignMe.getHead().getNextFilter());
+        assert placed :
             "Error: could not find a legal layout for " + reassignMe + " during layout";
        //System.out.println(" to " + getTile(reassignMe.getHead().getNextFilter()));
     }
@@ -410,6 +424,46 @@ public class AnnealedLayout extends SimulatedAnnealing implements Layout<RawTile
         return false;
     }
     
+    /**
+     * The cost of a move is not computed incrementally: it depends on the 
+     * DRAM assignment of every buffer, which BufferDRAMAssignment redoes 
+     * from the whole layout, and on routes weighted by the work of every 
+     * tile, so moving one slice can change the cost of any tile.  Only a 
+     * move that puts the slice back on the tiles it was on keeps the cost.
+     */
+    protected double swapCost(double oldCost) {
+        if (movedSlice != null) {
+            List<FilterSliceNode> filters = movedSlice.getFilterNodes();
+            boolean moved = false;
+            for (int i = 0; i < movedFrom.length; i++) {
+                if (assignment.get(filters.get(i)) != movedFrom[i]) {
+                    moved = true;
+                    break;
+                }
+            }
+            if (!moved)
+                return oldCost;
+        }
+        return placementCost(false);
+    }
+    
+    /**
+     * A move only changes the filters of one slice, so it is undone by 
+     * putting them back instead of copying the whole assignment.
+     */
+    protected boolean canUndoSwap() {
+        return true;
+    }
+    
+    protected void undoSwap() {
+        if (movedSlice == null)
+            return;
+        List<FilterSliceNode> filters = movedSlice.getFilterNodes();
+        for (int i = 0; i < movedFrom.length; i++) 
+            assignment.put(filters.get(i), movedFrom[i]);
+        movedSlice = null;
+    }
+    
    
         
     /**
@@ -492,7 +546,8 @@ public class AnnealedLayout extends SimulatedAnnealing implements Layout<RawTile
         Slice[] slices = slicer.getSliceGraph();
         for (int i = 0; i < slices.length; i++) {
             //if (!partitioner.isIO(slices[i]))
-            assert newSliceAssignment(slices[i].getHead().getNextFilter()) :
+            boolean placed = newSliceAssignment(slices[i].getHead().getNextFilter());
+            assert placed :
                 "Error: could not find a legal layout for " + slices[i] + " during initial layout";
         }
     }
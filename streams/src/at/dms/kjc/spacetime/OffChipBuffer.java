@@ -78,7 +78,10 @@ public abstract class OffChipBuffer extends Channel {
         //assert !redundant() : "calling setDRAM() on redundant buffer";
         this.dram = DRAM;
         
-        CommonUtils.println_debugging("Assign " + this.toString() + " to " + DRAM);
+        //this is called for every buffer each time the annealing of the
+        //layout computes a cost, so only build the message if it is printed
+        if (KjcOptions.debug)
+            CommonUtils.println_debugging("Assign " + this.toString() + " to " + DRAM);
         //System.out.println("Assign " + this.toString() + " to " + DRAM);
     }
 
@@ -61,6 +61,17 @@ public class IRPrinter extends Utils implements SLIRVisitor
             }
     }
 
+    /**
+     * Build an IRPrinter that writes to <pre>out</pre>.
+     *
+     * @param out  Where to write IR to
+     */
+    public IRPrinter(Writer out)
+    {
+        indent = 0;
+        p = new BufferedWriter(out);
+    }
+
     /**
      * Flush any pending output.
      */
@@ -44,6 +44,7 @@ public class ToJava
                            "Options:\n" +
                            "  --library      Output code suitable for the Java library\n" +
                            "  --countops     Instrument code to count arith ops in Java library\n" +
+                           "  --directtapes  Access tapes as arrays in the Java library\n" +
                            "  --help         Print this message\n" +
                            "  --output file  Write output to file, not stdout\n" +
                            "\n");
@@ -52,6 +53,7 @@ public class ToJava
     private boolean printHelp = false;
     private boolean libraryFormat = false;
     private boolean countops = false;
+    private boolean directTapes = false;
     private String outputFile = null;
     private List<String> inputFiles = new java.util.ArrayList<String>();
 
@@ -75,6 +77,8 @@ public class ToJava
                     libraryFormat = true;
                 else if (args[i].equals("--countops"))
                     countops = true;
+                else if (args[i].equals("--directtapes"))
+                    directTapes = true;
                 else
                     // Maybe check for unrecognized options.
                     inputFiles.add(args[i]);
@@ -314,6 +318,11 @@ public class ToJava
 
         TempVarGen varGen = new TempVarGen(prog);
         prog = lowerIRToJava(prog, libraryFormat, varGen);
+        // (array accesses would be counted as operations by --countops)
+        if (libraryFormat && directTapes && !countops)
+            prog = (Program)prog.accept(new TapesToArrays());
+        if (libraryFormat)
+            prog = (Program)prog.accept(new LoopsToBulkTapeOps());
 
         try
             {
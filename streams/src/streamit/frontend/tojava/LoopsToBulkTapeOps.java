@@ -0,0 +1,344 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.frontend.tojava;
+
+import streamit.frontend.nodes.*;
+import streamit.frontend.passes.SymbolTableVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pass to replace simple loops that move data between a tape and an
+ * array with calls to the bulk tape operations of
+ * {@link streamit.library.Channel}, such as <code>popFloats()</code>
+ * and <code>pushFloats()</code>.  Recognized loops have the form
+ *
+ * <pre>
+ * for (int i = C; i &lt; E; i++) a[i] = pop();
+ * for (int i = C; i &lt; E; i++) a[i] = peek(i);
+ * for (int i = C; i &lt; E; i++) push(a[i]);
+ * for (int i = C; i &lt; E; i++) pop();
+ * </pre>
+ *
+ * where <code>C</code> is an integer literal, <code>E</code> is a
+ * side-effect-free integer expression over literals and variables
+ * other than <code>i</code>, and <code>a</code> is a one-dimensional
+ * array with the element type of the tape.  The loop variable may
+ * also be declared outside the loop, in which case it is assigned
+ * its final value after the bulk call.  Anything else is left alone.
+ *
+ * This should be the last pass before
+ * {@link streamit.frontend.tojava.NodesToJava}, and is only
+ * meaningful when generating code for the library.
+ */
+public class LoopsToBulkTapeOps extends SymbolTableVisitor
+{
+    public LoopsToBulkTapeOps()
+    {
+        super(null);
+    }
+
+    public Object visitStmtFor(StmtFor stmt)
+    {
+        Statement result = convertLoop(stmt);
+        if (result != null)
+            return result;
+        return super.visitStmtFor(stmt);
+    }
+
+    /**
+     * Returns a statement equivalent to <code>stmt</code> that uses
+     * a bulk tape operation, or null if the loop isn't recognized.
+     */
+    private Statement convertLoop(StmtFor stmt)
+    {
+        if (streamType == null)
+            return null;
+        FEContext ctx = stmt.getContext();
+
+        // init: "int i = C" or "i = C"
+        String var;
+        Type varType;
+        Expression start;
+        boolean declared;
+        Statement init = stmt.getInit();
+        if (init instanceof StmtVarDecl)
+            {
+                StmtVarDecl decl = (StmtVarDecl)init;
+                if (decl.getNumVars() != 1)
+                    return null;
+                var = decl.getName(0);
+                varType = decl.getType(0);
+                start = decl.getInit(0);
+                declared = true;
+            }
+        else if (init instanceof StmtAssign &&
+                 ((StmtAssign)init).getOp() == 0 &&
+                 ((StmtAssign)init).getLHS() instanceof ExprVar)
+            {
+                var = ((ExprVar)((StmtAssign)init).getLHS()).getName();
+                varType = getType(((StmtAssign)init).getLHS());
+                start = ((StmtAssign)init).getRHS();
+                declared = false;
+            }
+        else
+            return null;
+        if (!(start instanceof ExprConstInt) ||
+            !isInt(varType))
+            return null;
+
+        // cond: "i < E"
+        if (!(stmt.getCond() instanceof ExprBinary))
+            return null;
+        ExprBinary cond = (ExprBinary)stmt.getCond();
+        if (cond.getOp() != ExprBinary.BINOP_LT ||
+            !isVar(cond.getLeft(), var) ||
+            !isLoopInvariant(cond.getRight(), var) ||
+            !isInt(getType(cond.getRight())))
+            return null;
+        Expression end = cond.getRight();
+
+        // incr: "i++", "++i", "i += 1", or "i = i + 1"
+        if (!isIncrement(stmt.getIncr(), var))
+            return null;
+
+        // body: a single statement
+        Statement body = stmt.getBody();
+        while (body instanceof StmtBlock &&
+               ((StmtBlock)body).getStmts().size() == 1)
+            body = ((StmtBlock)body).getStmts().get(0);
+
+        Expression count = subtract(ctx, end, (ExprConstInt)start);
+        List<Object> params = new ArrayList<Object>();
+        String fn;
+        if (body instanceof StmtExpr &&
+            ((StmtExpr)body).getExpression() instanceof ExprPop)
+            {
+                // pop();
+                fn = bulkFunction("inputChannel.pop", streamType.getIn());
+                params.add(count);
+            }
+        else if (body instanceof StmtPush &&
+                 isArrayElem(((StmtPush)body).getValue(), var,
+                             streamType.getOut()))
+            {
+                // push(a[i]);
+                fn = bulkFunction("outputChannel.push", streamType.getOut());
+                params.add(((ExprArray)((StmtPush)body).getValue()).getBase());
+                params.add(start);
+                params.add(count);
+            }
+        else if (body instanceof StmtAssign &&
+                 ((StmtAssign)body).getOp() == 0 &&
+                 isArrayElem(((StmtAssign)body).getLHS(), var,
+                             streamType.getIn()))
+            {
+                Expression array =
+                    ((ExprArray)((StmtAssign)body).getLHS()).getBase();
+                Expression rhs = ((StmtAssign)body).getRHS();
+                if (rhs instanceof ExprPop)
+                    {
+                        // a[i] = pop();
+                        fn = bulkFunction("inputChannel.pop",
+                                          streamType.getIn());
+                    }
+                else if (rhs instanceof ExprPeek &&
+                         isVar(((ExprPeek)rhs).getExpr(), var))
+                    {
+                        // a[i] = peek(i);
+                        fn = bulkFunction("inputChannel.peek",
+                                          streamType.getIn());
+                        params.add(start);
+                    }
+                else
+                    return null;
+                params.add(array);
+                params.add(start);
+                params.add(count);
+            }
+        else
+            return null;
+        if (fn == null)
+            return null;
+
+        Statement call = new StmtExpr(ctx, new ExprFunCall(ctx, fn, params));
+        if (declared)
+            return call;
+
+        // the loop variable outlives the loop: give it its final
+        // value, which is max(C, E)
+        List<Statement> stmts = new ArrayList<Statement>();
+        stmts.add(call);
+        Expression last =
+            new ExprTernary(ctx, ExprTernary.TEROP_COND,
+                            new ExprBinary(ctx, ExprBinary.BINOP_GT,
+                                           end, start),
+                            end, start);
+        stmts.add(new StmtAssign(ctx, new ExprVar(ctx, var), last));
+        return new StmtBlock(ctx, stmts);
+    }
+
+    /**
+     * Returns the name of the bulk version of tape function
+     * <code>name</code> for a tape of type <code>type</code>, or
+     * null if there isn't one.
+     */
+    private static String bulkFunction(String name, Type type)
+    {
+        if (!(type instanceof TypePrimitive))
+            return null;
+        switch (((TypePrimitive)type).getType())
+            {
+            case TypePrimitive.TYPE_BOOLEAN:
+                return name + "Bools";
+            case TypePrimitive.TYPE_BIT:
+            case TypePrimitive.TYPE_INT:
+                return name + "Ints";
+            case TypePrimitive.TYPE_FLOAT:
+                return name + "Floats";
+            case TypePrimitive.TYPE_DOUBLE:
+                return name + "Doubles";
+            default:
+                return null;
+            }
+    }
+
+    /** Returns whether <code>expr</code> is the variable <code>var</code>. */
+    private static boolean isVar(Expression expr, String var)
+    {
+        return expr instanceof ExprVar && ((ExprVar)expr).getName().equals(var);
+    }
+
+    /**
+     * Returns whether <code>expr</code> is <code>a[var]</code>, where
+     * <code>a</code> is a variable holding a one-dimensional array
+     * whose elements have the same Java type as the items of a tape
+     * of type <code>tapeType</code>.
+     */
+    private boolean isArrayElem(Expression expr, String var, Type tapeType)
+    {
+        if (!(expr instanceof ExprArray))
+            return false;
+        ExprArray elem = (ExprArray)expr;
+        if (!(elem.getBase() instanceof ExprVar) ||
+            isVar(elem.getBase(), var) ||
+            !isVar(elem.getOffset(), var))
+            return false;
+        Type type = getType(elem.getBase());
+        if (!(type instanceof TypeArray))
+            return false;
+        Type base = ((TypeArray)type).getBase();
+        if (!(base instanceof TypePrimitive) ||
+            !(tapeType instanceof TypePrimitive))
+            return false;
+        return javaKind((TypePrimitive)base) ==
+            javaKind((TypePrimitive)tapeType);
+    }
+
+    // bits are ints in the library
+    private static int javaKind(TypePrimitive type)
+    {
+        if (type.getType() == TypePrimitive.TYPE_BIT)
+            return TypePrimitive.TYPE_INT;
+        return type.getType();
+    }
+
+    /**
+     * Returns whether evaluating <code>expr</code> has no side effects
+     * and gives the same result on every iteration of a loop over
+     * <code>var</code> whose body only writes array elements and
+     * tapes.  Only literals, variables other than <code>var</code>,
+     * and arithmetic on them qualify.
+     */
+    private static boolean isLoopInvariant(Expression expr, String var)
+    {
+        if (expr instanceof ExprConstInt)
+            return true;
+        if (expr instanceof ExprVar)
+            return !isVar(expr, var);
+        if (expr instanceof ExprBinary)
+            {
+                ExprBinary binary = (ExprBinary)expr;
+                switch (binary.getOp())
+                    {
+                    case ExprBinary.BINOP_ADD:
+                    case ExprBinary.BINOP_SUB:
+                    case ExprBinary.BINOP_MUL:
+                    case ExprBinary.BINOP_DIV:
+                        return isLoopInvariant(binary.getLeft(), var) &&
+                            isLoopInvariant(binary.getRight(), var);
+                    default:
+                        return false;
+                    }
+            }
+        return false;
+    }
+
+    // small literals have bit type, which is also an int in Java
+    private static boolean isInt(Type type)
+    {
+        return type instanceof TypePrimitive &&
+            javaKind((TypePrimitive)type) == TypePrimitive.TYPE_INT;
+    }
+
+    /** Returns whether <code>stmt</code> adds one to <code>var</code>. */
+    private static boolean isIncrement(Statement stmt, String var)
+    {
+        if (stmt instanceof StmtExpr &&
+            ((StmtExpr)stmt).getExpression() instanceof ExprUnary)
+            {
+                ExprUnary unary = (ExprUnary)((StmtExpr)stmt).getExpression();
+                return (unary.getOp() == ExprUnary.UNOP_POSTINC ||
+                        unary.getOp() == ExprUnary.UNOP_PREINC) &&
+                    isVar(unary.getExpr(), var);
+            }
+        if (stmt instanceof StmtAssign)
+            {
+                StmtAssign assign = (StmtAssign)stmt;
+                if (!isVar(assign.getLHS(), var))
+                    return false;
+                Expression rhs = assign.getRHS();
+                if (assign.getOp() == ExprBinary.BINOP_ADD)
+                    return isOne(rhs);
+                if (assign.getOp() == 0 && rhs instanceof ExprBinary)
+                    {
+                        ExprBinary binary = (ExprBinary)rhs;
+                        return binary.getOp() == ExprBinary.BINOP_ADD &&
+                            ((isVar(binary.getLeft(), var) &&
+                              isOne(binary.getRight())) ||
+                             (isOne(binary.getLeft()) &&
+                              isVar(binary.getRight(), var)));
+                    }
+            }
+        return false;
+    }
+
+    private static boolean isOne(Expression expr)
+    {
+        return expr instanceof ExprConstInt && ((ExprConstInt)expr).getVal() == 1;
+    }
+
+    // returns end - start, folding a zero start away
+    private static Expression subtract(FEContext ctx, Expression end,
+                                       ExprConstInt start)
+    {
+        if (start.getVal() == 0)
+            return end;
+        return new ExprBinary(ctx, ExprBinary.BINOP_SUB, end, start);
+    }
+}
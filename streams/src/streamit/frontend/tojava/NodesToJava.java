@@ -593,6 +593,10 @@ public class NodesToJava implements FEVisitor
             result = "setDelay(";
         } else if (name.startsWith("enqueue")) {
             result = name + "(";
+        } else if (name.startsWith("inputChannel.") ||
+                   name.startsWith("outputChannel.")) {
+            // bulk tape operations from LoopsToBulkTapeOps
+            result = name + "(";
         } else if (name.equals("contextSwitch")) {
             result = name + "(";
         } else if (name.startsWith("init_array")) {
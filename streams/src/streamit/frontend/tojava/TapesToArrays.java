@@ -0,0 +1,358 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.frontend.tojava;
+
+import streamit.frontend.nodes.*;
+import streamit.frontend.passes.SymbolTableVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pass to make the work functions of filters access their tapes as
+ * arrays, instead of calling the push, pop and peek functions of
+ * {@link streamit.library.Channel} for every item.  At the start of
+ * the work function, the filter gets the array holding the input
+ * queue, with at least its peek rate of items, and the array holding
+ * the output queue, with room for its push rate of items, along with
+ * the position of the first item in each.  Tape accesses then become
+ * array accesses at a local position:
+ *
+ * <pre>
+ * pop()     becomes  __in[__inPos++ &amp; __inMask]
+ * peek(i)   becomes  __in[(__inPos + i) &amp; __inMask]
+ * push(x)   becomes  __out[__outPos++ &amp; __outMask] = x
+ * </pre>
+ *
+ * and at the end of the work function the filter reports how many
+ * items it popped and pushed.
+ *
+ * A tape is only converted if it holds a primitive type, and a work
+ * function only if its I/O rates are static (expressions over
+ * literals and fields) and it has no return statement (which would
+ * skip the report) or peek statement (which is no statement at all
+ * as an array access).  Filters whose helper functions also access
+ * the tapes are left alone.  The declared rates are trusted: a work
+ * function that peeks or pushes past them reads or overwrites the
+ * wrong items instead of failing right away.
+ *
+ * This should run after {@link ToJava#lowerIRToJava} and before
+ * {@link LoopsToBulkTapeOps}, and is only meaningful when generating
+ * code for the library.
+ */
+public class TapesToArrays extends SymbolTableVisitor
+{
+    private static final String IN = "__in";
+    private static final String OUT = "__out";
+
+    /** whether the current filter's tapes may be converted */
+    private boolean convertFilter;
+    /** whether tape accesses in the current function are converted */
+    private boolean convertIn, convertOut;
+
+    public TapesToArrays()
+    {
+        super(null);
+    }
+
+    public Object visitStreamSpec(StreamSpec spec)
+    {
+        boolean oldConvert = convertFilter;
+        convertFilter = spec.getType() == StreamSpec.STREAM_FILTER &&
+            !helpersAccessTapes(spec);
+        Object result = super.visitStreamSpec(spec);
+        convertFilter = oldConvert;
+        return result;
+    }
+
+    public Object visitFuncWork(FuncWork func)
+    {
+        if (!convertFilter || streamType == null ||
+            TapeAccessFinder.blocksConversion(func.getBody()))
+            return super.visitFuncWork(func);
+
+        Expression pop = func.getPopRate();
+        Expression peek = func.getPeekRate();
+        if (peek == null)
+            peek = pop;
+        Expression push = func.getPushRate();
+        String inSuffix = arraySuffix(streamType.getIn());
+        String outSuffix = arraySuffix(streamType.getOut());
+        boolean in = inSuffix != null && isStatic(peek);
+        boolean out = outSuffix != null && isStatic(push);
+        if (!in && !out)
+            return super.visitFuncWork(func);
+
+        FEContext ctx = func.getContext();
+        SymbolTable oldSymTab = symtab;
+        symtab = new SymbolTable(symtab);
+        convertIn = in;
+        convertOut = out;
+        Statement body = (Statement)func.getBody().accept(this);
+        convertIn = false;
+        convertOut = false;
+        symtab = oldSymTab;
+
+        List<Statement> stmts = new ArrayList<Statement>();
+        if (in)
+            declareTape(ctx, stmts, IN, "inputChannel.input" + inSuffix,
+                        "inputChannel.inputPosition", streamType.getIn(),
+                        orZero(ctx, peek));
+        if (out)
+            declareTape(ctx, stmts, OUT, "outputChannel.output" + outSuffix,
+                        "outputChannel.outputPosition", streamType.getOut(),
+                        orZero(ctx, push));
+        stmts.add(body);
+        if (in)
+            stmts.add(reportCount(ctx, IN, "inputChannel.popped"));
+        if (out)
+            stmts.add(reportCount(ctx, OUT, "outputChannel.pushed"));
+
+        return new FuncWork(ctx, func.getCls(), func.getName(),
+                            new StmtBlock(ctx, stmts),
+                            func.getPeekRate(), pop, push);
+    }
+
+    public Object visitExprPop(ExprPop exp)
+    {
+        if (!convertIn)
+            return super.visitExprPop(exp);
+        FEContext ctx = exp.getContext();
+        return tapeElem(ctx, IN,
+                        new ExprUnary(ctx, ExprUnary.UNOP_POSTINC,
+                                      new ExprVar(ctx, IN + "Pos")));
+    }
+
+    public Object visitStmtExpr(StmtExpr stmt)
+    {
+        if (!convertIn || !(stmt.getExpression() instanceof ExprPop))
+            return super.visitStmtExpr(stmt);
+        // pop(); only moves past an item
+        FEContext ctx = stmt.getContext();
+        return new StmtExpr(ctx,
+                            new ExprUnary(ctx, ExprUnary.UNOP_POSTINC,
+                                          new ExprVar(ctx, IN + "Pos")));
+    }
+
+    public Object visitExprPeek(ExprPeek exp)
+    {
+        if (!convertIn)
+            return super.visitExprPeek(exp);
+        FEContext ctx = exp.getContext();
+        Expression index = doExpression(exp.getExpr());
+        return tapeElem(ctx, IN,
+                        new ExprBinary(ctx, ExprBinary.BINOP_ADD,
+                                       new ExprVar(ctx, IN + "Pos"), index));
+    }
+
+    public Object visitStmtPush(StmtPush stmt)
+    {
+        if (!convertOut)
+            return super.visitStmtPush(stmt);
+        FEContext ctx = stmt.getContext();
+        Expression value = doExpression(stmt.getValue());
+        return new StmtAssign(ctx,
+                              tapeElem(ctx, OUT,
+                                       new ExprUnary(ctx, ExprUnary.UNOP_POSTINC,
+                                                     new ExprVar(ctx, OUT + "Pos"))),
+                              value);
+    }
+
+    // returns tape[position & tapeMask]
+    private static Expression tapeElem(FEContext ctx, String tape,
+                                       Expression position)
+    {
+        return new ExprArray(ctx, new ExprVar(ctx, tape),
+                             new ExprBinary(ctx, ExprBinary.BINOP_BAND,
+                                            position,
+                                            new ExprVar(ctx, tape + "Mask")));
+    }
+
+    /**
+     * Adds the declarations of the array <code>tape</code> (gotten by
+     * calling <code>getArray</code> with <code>count</code>), its
+     * mask, and its start and current positions (starting at the
+     * value of <code>getPosition</code>) to <code>stmts</code>.
+     */
+    private static void declareTape(FEContext ctx, List<Statement> stmts,
+                                    String tape, String getArray,
+                                    String getPosition, Type type,
+                                    Expression count)
+    {
+        Type intType = new TypePrimitive(TypePrimitive.TYPE_INT);
+        stmts.add(new StmtVarDecl(ctx, new TypeArray(type, count), tape,
+                                  new ExprFunCall(ctx, getArray, count)));
+        stmts.add(new StmtVarDecl(ctx, intType, tape + "Mask",
+                                  new ExprBinary(ctx, ExprBinary.BINOP_SUB,
+                                                 new ExprField(ctx,
+                                                               new ExprVar(ctx, tape),
+                                                               "length"),
+                                                 new ExprConstInt(ctx, 1))));
+        stmts.add(new StmtVarDecl(ctx, intType, tape + "Start",
+                                  new ExprFunCall(ctx, getPosition,
+                                                  new ArrayList<Object>())));
+        stmts.add(new StmtVarDecl(ctx, intType, tape + "Pos",
+                                  new ExprVar(ctx, tape + "Start")));
+    }
+
+    // returns a call reporting tapePos - tapeStart items to <report>
+    private static Statement reportCount(FEContext ctx, String tape,
+                                         String report)
+    {
+        Expression count =
+            new ExprBinary(ctx, ExprBinary.BINOP_SUB,
+                           new ExprVar(ctx, tape + "Pos"),
+                           new ExprVar(ctx, tape + "Start"));
+        return new StmtExpr(ctx, new ExprFunCall(ctx, report, count));
+    }
+
+    private static Expression orZero(FEContext ctx, Expression rate)
+    {
+        if (rate == null)
+            return new ExprConstInt(ctx, 0);
+        return rate;
+    }
+
+    /**
+     * Returns the suffix of the library functions that access a tape
+     * of type <code>type</code> as an array, or null if there are
+     * none.
+     */
+    private static String arraySuffix(Type type)
+    {
+        if (!(type instanceof TypePrimitive))
+            return null;
+        switch (((TypePrimitive)type).getType())
+            {
+            case TypePrimitive.TYPE_BOOLEAN:
+                return "Bools";
+            case TypePrimitive.TYPE_BIT:
+            case TypePrimitive.TYPE_INT:
+                return "Ints";
+            case TypePrimitive.TYPE_FLOAT:
+                return "Floats";
+            case TypePrimitive.TYPE_DOUBLE:
+                return "Doubles";
+            default:
+                return null;
+            }
+    }
+
+    /**
+     * Returns whether <code>rate</code> is missing (zero) or has the
+     * same value at the start of every execution of the work
+     * function: only literals, fields, and arithmetic on them
+     * qualify.
+     */
+    private boolean isStatic(Expression rate)
+    {
+        if (rate == null || rate instanceof ExprConstInt)
+            return true;
+        if (rate instanceof ExprVar)
+            {
+                String name = ((ExprVar)rate).getName();
+                return symtab.hasVar(name) &&
+                    symtab.lookupKind(name) == SymbolTable.KIND_FIELD;
+            }
+        if (rate instanceof ExprUnary)
+            return ((ExprUnary)rate).getOp() == ExprUnary.UNOP_NEG &&
+                isStatic(((ExprUnary)rate).getExpr());
+        if (rate instanceof ExprBinary)
+            {
+                ExprBinary binary = (ExprBinary)rate;
+                switch (binary.getOp())
+                    {
+                    case ExprBinary.BINOP_ADD:
+                    case ExprBinary.BINOP_SUB:
+                    case ExprBinary.BINOP_MUL:
+                    case ExprBinary.BINOP_DIV:
+                    case ExprBinary.BINOP_MOD:
+                        return isStatic(binary.getLeft()) &&
+                            isStatic(binary.getRight());
+                    default:
+                        return false;
+                    }
+            }
+        return false;
+    }
+
+    // whether a function other than a work function touches a tape
+    private static boolean helpersAccessTapes(StreamSpec spec)
+    {
+        for (Object func : spec.getFuncs())
+            if (!(func instanceof FuncWork) &&
+                ((Function)func).getBody() != null &&
+                TapeAccessFinder.accessesTape(((Function)func).getBody()))
+                return true;
+        return false;
+    }
+
+    /**
+     * Looks for tape accesses, and for statements that keep a work
+     * function from being converted, in a function body.
+     */
+    private static class TapeAccessFinder extends FEReplacer
+    {
+        private boolean tapeAccess = false;
+        private boolean blocking = false;
+
+        static boolean accessesTape(Statement body)
+        {
+            TapeAccessFinder finder = new TapeAccessFinder();
+            body.accept(finder);
+            return finder.tapeAccess;
+        }
+
+        static boolean blocksConversion(Statement body)
+        {
+            TapeAccessFinder finder = new TapeAccessFinder();
+            body.accept(finder);
+            return finder.blocking;
+        }
+
+        public Object visitExprPop(ExprPop exp)
+        {
+            tapeAccess = true;
+            return super.visitExprPop(exp);
+        }
+
+        public Object visitExprPeek(ExprPeek exp)
+        {
+            tapeAccess = true;
+            return super.visitExprPeek(exp);
+        }
+
+        public Object visitStmtPush(StmtPush stmt)
+        {
+            tapeAccess = true;
+            return super.visitStmtPush(stmt);
+        }
+
+        public Object visitStmtReturn(StmtReturn stmt)
+        {
+            blocking = true;
+            return super.visitStmtReturn(stmt);
+        }
+
+        public Object visitStmtExpr(StmtExpr stmt)
+        {
+            if (stmt.getExpression() instanceof ExprPeek)
+                blocking = true;
+            return super.visitStmtExpr(stmt);
+        }
+    }
+}
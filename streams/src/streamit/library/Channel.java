@@ -41,16 +41,36 @@ public class Channel extends streamit.misc.DestroyedClass
     
     int totalItemsPushed = 0, totalItemsPopped = 0;
 
-    protected WrappableGrowableQueue_int wgqueue_int, wgqueue_bit;
-    protected WrappableGrowableQueue_float wgqueue_float;
-    protected WrappableGrowableQueue_double wgqueue_double;
-    protected WrappableGrowableQueue_boolean wgqueue_boolean;
-    protected WrappableGrowableQueue_short wgqueue_short;
-    protected WrappableGrowableQueue_char wgqueue_char;
-    protected WrappableGrowableQueue_obj wgqueue_obj;
+    protected RingBuffer_int wgqueue_int, wgqueue_bit;
+    protected RingBuffer_float wgqueue_float;
+    protected RingBuffer_double wgqueue_double;
+    protected RingBuffer_boolean wgqueue_boolean;
+    protected RingBuffer_short wgqueue_short;
+    protected RingBuffer_char wgqueue_char;
+    protected RingBuffer_obj wgqueue_obj;
 
     protected WrappableGrowableQueue myqueue;
 
+    /**
+     * Whether the source and sink of this channel execute in two
+     * different threads (see makeShared).
+     */
+    private boolean shared = false;
+
+    /**
+     * Whether this channel's queue also holds the items of other
+     * channels (see useQueueOf and remapQueueOnto).  The items that
+     * are really in this channel are then only known from its item
+     * counts.
+     */
+    private boolean queueShared = false;
+
+    /**
+     * Whether this channel keeps its items in the queue of another
+     * channel (see remapQueueOnto).
+     */
+    private boolean remapped = false;
+
     // the channel should be constructed with a 0-length array
     // indicating the type that will be held in this channel.
     void setupChannel (Class channelType)
@@ -58,28 +78,28 @@ public class Channel extends streamit.misc.DestroyedClass
         assert channelType != null;
         type = channelType;
         if (type == Integer.TYPE) {
-            wgqueue_int =  new WrappableGrowableQueue_int();
+            wgqueue_int =  new RingBuffer_int();
             myqueue = wgqueue_int;
         } else if (type == Float.TYPE) {
-            wgqueue_float = new WrappableGrowableQueue_float(); 
+            wgqueue_float = new RingBuffer_float(); 
             myqueue = wgqueue_float;
         } else if (type == Double.TYPE) {
-            wgqueue_double = new WrappableGrowableQueue_double();
+            wgqueue_double = new RingBuffer_double();
             myqueue = wgqueue_double;
         } else if (type == Boolean.TYPE) {
-            wgqueue_boolean = new WrappableGrowableQueue_boolean();
+            wgqueue_boolean = new RingBuffer_boolean();
             myqueue = wgqueue_boolean;
         } else if (type == Short.TYPE) {
-            wgqueue_short = new WrappableGrowableQueue_short();
+            wgqueue_short = new RingBuffer_short();
             myqueue = wgqueue_short;
         } else if (type == Character.TYPE) {
-            wgqueue_char = new WrappableGrowableQueue_char();
+            wgqueue_char = new RingBuffer_char();
             myqueue = wgqueue_char;
         } else if (type == Bit.TYPE) {
-            wgqueue_bit = new WrappableGrowableQueue_int();
+            wgqueue_bit = new RingBuffer_int();
             myqueue = wgqueue_bit;
         } else {
-            wgqueue_obj = new WrappableGrowableQueue_obj();
+            wgqueue_obj = new RingBuffer_obj();
             myqueue = wgqueue_obj;
         }
     }
@@ -145,28 +165,28 @@ public class Channel extends streamit.misc.DestroyedClass
         type = original.getType ();
 
         if (type == Integer.TYPE) {
-            wgqueue_int = new WrappableGrowableQueue_int();
+            wgqueue_int = new RingBuffer_int();
             myqueue = wgqueue_int;
         } else if (type == Float.TYPE) {
-            wgqueue_float = new WrappableGrowableQueue_float(); 
+            wgqueue_float = new RingBuffer_float(); 
             myqueue = wgqueue_float;
         } else if (type == Double.TYPE) {
-            wgqueue_double = new WrappableGrowableQueue_double();
+            wgqueue_double = new RingBuffer_double();
             myqueue = wgqueue_double;
         } else if (type == Boolean.TYPE) {
-            wgqueue_boolean = new WrappableGrowableQueue_boolean();
+            wgqueue_boolean = new RingBuffer_boolean();
             myqueue = wgqueue_boolean;
         } else if (type == Short.TYPE) {
-            wgqueue_short = new WrappableGrowableQueue_short();
+            wgqueue_short = new RingBuffer_short();
             myqueue = wgqueue_short;
         } else if (type == Character.TYPE) {
-            wgqueue_char = new WrappableGrowableQueue_char();
+            wgqueue_char = new RingBuffer_char();
             myqueue = wgqueue_char;
         } else if (type == Bit.TYPE) {
-            wgqueue_bit = new WrappableGrowableQueue_int();
+            wgqueue_bit = new RingBuffer_int();
             myqueue = wgqueue_bit;
         } else {
-            wgqueue_obj = new WrappableGrowableQueue_obj();
+            wgqueue_obj = new RingBuffer_obj();
             myqueue = wgqueue_obj;
         }
 
@@ -177,7 +197,13 @@ public class Channel extends streamit.misc.DestroyedClass
 
     void ensureData (int amount)
     {
-        boolean tempval = myqueue.size() < amount;
+        if (shared) {
+            // the producer runs in another thread; the queue itself
+            // waits for it when the data is accessed
+            return;
+        }
+
+        boolean tempval = itemsAvailable() < amount;
 
         while (tempval)
             {
@@ -193,16 +219,30 @@ public class Channel extends streamit.misc.DestroyedClass
                           "maxSize should equal -1 " +
                           "(representing not a scheduled buffer)\n" +
                           "Queue: " + myqueue +
-                          ".size: " + myqueue.size() +
+                          ".size: " + itemsAvailable() +
                           " amount is: " + amount +
                           " and maxSize is: " + maxSize);
                 }
 
                 source.doWork();
-                tempval = myqueue.size() < amount;
+                tempval = itemsAvailable() < amount;
             }
     }
 
+    /**
+     * Returns the number of items in this channel.  If the queue is
+     * shared with the channels upstream of a fused Identity, it also
+     * holds items that have not passed through the Identity yet, and
+     * these are not counted.  Likewise for the items of the other
+     * channels of a fused splitter or joiner (see remapQueueOnto).
+     */
+    private int itemsAvailable ()
+    {
+        if (queueShared)
+            return totalItemsPushed - totalItemsPopped;
+        return myqueue.size();
+    }
+
     void ensureData ()
     {
         ensureData (1);
@@ -330,8 +370,216 @@ public class Channel extends streamit.misc.DestroyedClass
     }
 
 
+    // SHARED CHANNELS ----------------------------------------------
+
+    /**
+     * Makes this channel safe to use with its source and sink
+     * executing in two different threads, by moving its contents to
+     * a lock-free single-producer single-consumer queue.  From now
+     * on the channel holds at most <pre>capacity</pre> items (rounded
+     * up to a power of two): the producer waits while the channel is
+     * full, and the consumer waits (instead of running the source)
+     * while there is not enough data.  This must be called before
+     * the threads are started.
+     */
+    void makeShared (int capacity)
+    {
+        assert !passThrough : "Pass-through channel " + this + " can't be shared";
+        assert capacity > 0 && capacity >= myqueue.size ();
+
+        if (type == Integer.TYPE) {
+            wgqueue_int = new SPSCRingBuffer_int(wgqueue_int, capacity);
+            myqueue = wgqueue_int;
+        } else if (type == Float.TYPE) {
+            wgqueue_float = new SPSCRingBuffer_float(wgqueue_float, capacity);
+            myqueue = wgqueue_float;
+        } else if (type == Double.TYPE) {
+            wgqueue_double = new SPSCRingBuffer_double(wgqueue_double, capacity);
+            myqueue = wgqueue_double;
+        } else if (type == Boolean.TYPE) {
+            wgqueue_boolean = new SPSCRingBuffer_boolean(wgqueue_boolean, capacity);
+            myqueue = wgqueue_boolean;
+        } else if (type == Short.TYPE) {
+            wgqueue_short = new SPSCRingBuffer_short(wgqueue_short, capacity);
+            myqueue = wgqueue_short;
+        } else if (type == Character.TYPE) {
+            wgqueue_char = new SPSCRingBuffer_char(wgqueue_char, capacity);
+            myqueue = wgqueue_char;
+        } else if (type == Bit.TYPE) {
+            wgqueue_bit = new SPSCRingBuffer_int(wgqueue_bit, capacity);
+            myqueue = wgqueue_bit;
+        } else {
+            wgqueue_obj = new SPSCRingBuffer_obj(wgqueue_obj, capacity);
+            myqueue = wgqueue_obj;
+        }
+        shared = true;
+    }
+
+    /**
+     * Returns whether or not the source and sink of this channel
+     * execute in different threads.
+     */
+    boolean isShared () { return shared; }
+
+    // FUSED CHANNELS -----------------------------------------------
+
+    /**
+     * Moves the items in this channel to the end of the queue of
+     * <pre>downstream</pre>, as a first step to having both channels
+     * use the same queue (see useQueueOf).
+     */
+    void appendQueueTo (Channel downstream)
+    {
+        assert type == downstream.type;
+
+        if (type == Integer.TYPE) {
+            while (wgqueue_int.size () > 0)
+                downstream.wgqueue_int.enqueue (wgqueue_int.dequeue ());
+        } else if (type == Float.TYPE) {
+            while (wgqueue_float.size () > 0)
+                downstream.wgqueue_float.enqueue (wgqueue_float.dequeue ());
+        } else if (type == Double.TYPE) {
+            while (wgqueue_double.size () > 0)
+                downstream.wgqueue_double.enqueue (wgqueue_double.dequeue ());
+        } else if (type == Boolean.TYPE) {
+            while (wgqueue_boolean.size () > 0)
+                downstream.wgqueue_boolean.enqueue (wgqueue_boolean.dequeue ());
+        } else if (type == Short.TYPE) {
+            while (wgqueue_short.size () > 0)
+                downstream.wgqueue_short.enqueue (wgqueue_short.dequeue ());
+        } else if (type == Character.TYPE) {
+            while (wgqueue_char.size () > 0)
+                downstream.wgqueue_char.enqueue (wgqueue_char.dequeue ());
+        } else if (type == Bit.TYPE) {
+            while (wgqueue_bit.size () > 0)
+                downstream.wgqueue_bit.enqueue (wgqueue_bit.dequeue ());
+        } else {
+            while (wgqueue_obj.size () > 0)
+                downstream.wgqueue_obj.enqueue (wgqueue_obj.dequeue ());
+        }
+    }
+
+    /**
+     * Makes this channel hold its items in the queue of
+     * <pre>other</pre>.  The item counts of the two channels stay
+     * separate.  Neither channel may be shared between threads.
+     */
+    void useQueueOf (Channel other)
+    {
+        assert type == other.type;
+        assert !shared && !other.shared;
+
+        wgqueue_int = other.wgqueue_int;
+        wgqueue_bit = other.wgqueue_bit;
+        wgqueue_float = other.wgqueue_float;
+        wgqueue_double = other.wgqueue_double;
+        wgqueue_boolean = other.wgqueue_boolean;
+        wgqueue_short = other.wgqueue_short;
+        wgqueue_char = other.wgqueue_char;
+        wgqueue_obj = other.wgqueue_obj;
+        myqueue = other.myqueue;
+        queueShared = true;
+        other.queueShared = true;
+    }
+
+    /**
+     * Accounts for one item passing from this channel to
+     * <pre>to</pre> when both channels use the same queue, so that
+     * the item is already where the sink of <pre>to</pre> will look
+     * for it.
+     */
+    void passShared (Channel to)
+    {
+        totalItemsPopped++;
+        sink.registerPop();
+        to.totalItemsPushed++;
+        to.source.registerPush();
+    }
+
+    /**
+     * Returns whether this channel's queue can be remapped onto the
+     * queue of another channel, or be the queue that other channels
+     * are remapped onto (see remapQueueOnto).
+     */
+    boolean canRemapQueue ()
+    {
+        return !shared && !passThrough && !remapped
+            && type.isPrimitive () && myqueue.size () == 0;
+    }
+
+    /**
+     * Makes this channel keep its items in the queue of
+     * <pre>other</pre>, at the positions described in
+     * RemappedRingBuffer_int, instead of in its own queue.  This lets
+     * the children of a splitter read their items from its input
+     * queue, and the children of a joiner write theirs into its
+     * output queue.  <pre>runs</pre> and <pre>reader</pre> are as for
+     * the RemappedRingBuffer_int constructor.  Both channels must
+     * satisfy canRemapQueue, and from now on go by their item counts
+     * (see itemsAvailable).
+     */
+    void remapQueueOnto (Channel other, int offset, int weight, int period,
+                         int[] runs, int reader)
+    {
+        assert type == other.type;
+        assert canRemapQueue () && other.canRemapQueue ();
+
+        if (type == Integer.TYPE) {
+            wgqueue_int = new RemappedRingBuffer_int(other.wgqueue_int, offset, weight, period, runs, reader);
+            myqueue = wgqueue_int;
+        } else if (type == Float.TYPE) {
+            wgqueue_float = new RemappedRingBuffer_float(other.wgqueue_float, offset, weight, period, runs, reader);
+            myqueue = wgqueue_float;
+        } else if (type == Double.TYPE) {
+            wgqueue_double = new RemappedRingBuffer_double(other.wgqueue_double, offset, weight, period, runs, reader);
+            myqueue = wgqueue_double;
+        } else if (type == Boolean.TYPE) {
+            wgqueue_boolean = new RemappedRingBuffer_boolean(other.wgqueue_boolean, offset, weight, period, runs, reader);
+            myqueue = wgqueue_boolean;
+        } else if (type == Short.TYPE) {
+            wgqueue_short = new RemappedRingBuffer_short(other.wgqueue_short, offset, weight, period, runs, reader);
+            myqueue = wgqueue_short;
+        } else if (type == Character.TYPE) {
+            wgqueue_char = new RemappedRingBuffer_char(other.wgqueue_char, offset, weight, period, runs, reader);
+            myqueue = wgqueue_char;
+        } else {
+            assert type == Bit.TYPE;
+            wgqueue_bit = new RemappedRingBuffer_int(other.wgqueue_bit, offset, weight, period, runs, reader);
+            myqueue = wgqueue_bit;
+        }
+        remapped = true;
+        queueShared = true;
+        other.queueShared = true;
+    }
+
+    /**
+     * Returns whether this channel keeps its items in the queue of
+     * another channel.
+     */
+    boolean isRemapped () { return remapped; }
+
+    /**
+     * Accounts for <pre>n</pre> items being popped by the sink of
+     * this channel, when they have already been read from (or
+     * written to) this channel's queue through remapped channels.
+     */
+    void poppedRemapped (int n)
+    {
+        if (n > 0) dequeued (n);
+    }
+
+    /**
+     * Accounts for <pre>n</pre> items being pushed by the source of
+     * this channel, when they are already in this channel's queue
+     * through remapped channels.
+     */
+    void pushedRemapped (int n)
+    {
+        if (n > 0) enqueued (n);
+    }
+
     // PUSH OPERATIONS ----------------------------------------------
-    
+
     public int getItemsPushed () { return totalItemsPushed; }
 
     // push something of type <pre>type</pre>
@@ -615,6 +863,461 @@ public class Channel extends streamit.misc.DestroyedClass
         return data;
     }
 
+    // BULK OPERATIONS ----------------------------------------------
+
+    // The operations below move a whole array section to or from the
+    // channel at once, as if by a loop of the corresponding single
+    // push/pop/peek calls, but update the item counts and profiling
+    // hooks only once per call.  As with such a loop, nothing happens
+    // if n is not positive.
+
+    // bookkeeping after n items were enqueued at once
+    private void enqueued (int n)
+    {
+        totalItemsPushed += n;
+        source.registerPushes(n);
+        if (passThrough) {
+            // the sink consumes one item per execution
+            for (int i = 0; i < n; i++) {
+                sink.doWork();
+            }
+        }
+    }
+
+    // bookkeeping before n items are dequeued at once
+    private void dequeued (int n)
+    {
+        totalItemsPopped += n;
+        sink.registerPops(n);
+    }
+
+    // push src[off] ... src[off+n-1]
+    public void pushBools(boolean[] src, int off, int n)
+    {
+        assert type == Boolean.TYPE;
+        if (n <= 0) return;
+        wgqueue_boolean.enqueue(src, off, n);
+        enqueued (n);
+    }
+
+    // pop n items into dst[off] ... dst[off+n-1]
+    public void popBools(boolean[] dst, int off, int n)
+    {
+        assert type == Boolean.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_boolean.dequeue(dst, off, n);
+    }
+
+    // pop n items and throw them away
+    public void popBools(int n)
+    {
+        assert type == Boolean.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_boolean.discard(n);
+    }
+
+    // peek at items index ... index+n-1 into dst[off] ... dst[off+n-1]
+    public void peekBools(int index, boolean[] dst, int off, int n)
+    {
+        assert type == Boolean.TYPE;
+        if (n <= 0) return;
+        ensureData (index + n);
+        sink.registerPeek(index + n - 1);
+        wgqueue_boolean.elems(index, dst, off, n);
+    }
+
+    // push src[off] ... src[off+n-1]
+    public void pushInts(int[] src, int off, int n)
+    {
+        assert type == Integer.TYPE;
+        if (n <= 0) return;
+        wgqueue_int.enqueue(src, off, n);
+        enqueued (n);
+    }
+
+    // pop n items into dst[off] ... dst[off+n-1]
+    public void popInts(int[] dst, int off, int n)
+    {
+        assert type == Integer.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_int.dequeue(dst, off, n);
+    }
+
+    // pop n items and throw them away
+    public void popInts(int n)
+    {
+        assert type == Integer.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_int.discard(n);
+    }
+
+    // peek at items index ... index+n-1 into dst[off] ... dst[off+n-1]
+    public void peekInts(int index, int[] dst, int off, int n)
+    {
+        assert type == Integer.TYPE;
+        if (n <= 0) return;
+        ensureData (index + n);
+        sink.registerPeek(index + n - 1);
+        wgqueue_int.elems(index, dst, off, n);
+    }
+
+    // push src[off] ... src[off+n-1]
+    public void pushShorts(short[] src, int off, int n)
+    {
+        assert type == Short.TYPE;
+        if (n <= 0) return;
+        wgqueue_short.enqueue(src, off, n);
+        enqueued (n);
+    }
+
+    // pop n items into dst[off] ... dst[off+n-1]
+    public void popShorts(short[] dst, int off, int n)
+    {
+        assert type == Short.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_short.dequeue(dst, off, n);
+    }
+
+    // pop n items and throw them away
+    public void popShorts(int n)
+    {
+        assert type == Short.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_short.discard(n);
+    }
+
+    // peek at items index ... index+n-1 into dst[off] ... dst[off+n-1]
+    public void peekShorts(int index, short[] dst, int off, int n)
+    {
+        assert type == Short.TYPE;
+        if (n <= 0) return;
+        ensureData (index + n);
+        sink.registerPeek(index + n - 1);
+        wgqueue_short.elems(index, dst, off, n);
+    }
+
+    // push src[off] ... src[off+n-1]
+    public void pushChars(char[] src, int off, int n)
+    {
+        assert type == Character.TYPE;
+        if (n <= 0) return;
+        wgqueue_char.enqueue(src, off, n);
+        enqueued (n);
+    }
+
+    // pop n items into dst[off] ... dst[off+n-1]
+    public void popChars(char[] dst, int off, int n)
+    {
+        assert type == Character.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_char.dequeue(dst, off, n);
+    }
+
+    // pop n items and throw them away
+    public void popChars(int n)
+    {
+        assert type == Character.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_char.discard(n);
+    }
+
+    // peek at items index ... index+n-1 into dst[off] ... dst[off+n-1]
+    public void peekChars(int index, char[] dst, int off, int n)
+    {
+        assert type == Character.TYPE;
+        if (n <= 0) return;
+        ensureData (index + n);
+        sink.registerPeek(index + n - 1);
+        wgqueue_char.elems(index, dst, off, n);
+    }
+
+    // push src[off] ... src[off+n-1]
+    public void pushDoubles(double[] src, int off, int n)
+    {
+        assert type == Double.TYPE;
+        if (n <= 0) return;
+        wgqueue_double.enqueue(src, off, n);
+        enqueued (n);
+    }
+
+    // pop n items into dst[off] ... dst[off+n-1]
+    public void popDoubles(double[] dst, int off, int n)
+    {
+        assert type == Double.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_double.dequeue(dst, off, n);
+    }
+
+    // pop n items and throw them away
+    public void popDoubles(int n)
+    {
+        assert type == Double.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_double.discard(n);
+    }
+
+    // peek at items index ... index+n-1 into dst[off] ... dst[off+n-1]
+    public void peekDoubles(int index, double[] dst, int off, int n)
+    {
+        assert type == Double.TYPE;
+        if (n <= 0) return;
+        ensureData (index + n);
+        sink.registerPeek(index + n - 1);
+        wgqueue_double.elems(index, dst, off, n);
+    }
+
+    // push src[off] ... src[off+n-1]
+    public void pushFloats(float[] src, int off, int n)
+    {
+        assert type == Float.TYPE;
+        if (n <= 0) return;
+        wgqueue_float.enqueue(src, off, n);
+        enqueued (n);
+    }
+
+    // pop n items into dst[off] ... dst[off+n-1]
+    public void popFloats(float[] dst, int off, int n)
+    {
+        assert type == Float.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_float.dequeue(dst, off, n);
+    }
+
+    // pop n items and throw them away
+    public void popFloats(int n)
+    {
+        assert type == Float.TYPE;
+        if (n <= 0) return;
+        ensureData (n);
+        dequeued (n);
+        wgqueue_float.discard(n);
+    }
+
+    // peek at items index ... index+n-1 into dst[off] ... dst[off+n-1]
+    public void peekFloats(int index, float[] dst, int off, int n)
+    {
+        assert type == Float.TYPE;
+        if (n <= 0) return;
+        ensureData (index + n);
+        sink.registerPeek(index + n - 1);
+        wgqueue_float.elems(index, dst, off, n);
+    }
+
+    // DIRECT TAPE ACCESS -------------------------------------------
+
+    // Code generated by ToJava --directtapes reads and writes the
+    // arrays of the queues directly.  Before the work function, the
+    // consumer asks for the array holding at least its peek rate of
+    // items and the counter value of the first one, and the producer
+    // asks for an array with room for its push rate of items and the
+    // counter value of the first free slot (see RingBuffer_int.array).
+    // Afterwards they report how many items they popped or pushed,
+    // which updates the item counts as the bulk operations do.
+
+    // make sure n items can be read; return the array holding them
+    public boolean[] inputBools(int n)
+    {
+        assert type == Boolean.TYPE;
+        ensureData (n);
+        wgqueue_boolean.require(n);
+        return wgqueue_boolean.array();
+    }
+
+    // make room for n items; return the array to store them in
+    public boolean[] outputBools(int n)
+    {
+        assert type == Boolean.TYPE;
+        wgqueue_boolean.reserve(n);
+        return wgqueue_boolean.array();
+    }
+
+    // make sure n items can be read; return the array holding them
+    public int[] inputInts(int n)
+    {
+        assert type == Integer.TYPE;
+        ensureData (n);
+        wgqueue_int.require(n);
+        return wgqueue_int.array();
+    }
+
+    // make room for n items; return the array to store them in
+    public int[] outputInts(int n)
+    {
+        assert type == Integer.TYPE;
+        wgqueue_int.reserve(n);
+        return wgqueue_int.array();
+    }
+
+    // make sure n items can be read; return the array holding them
+    public short[] inputShorts(int n)
+    {
+        assert type == Short.TYPE;
+        ensureData (n);
+        wgqueue_short.require(n);
+        return wgqueue_short.array();
+    }
+
+    // make room for n items; return the array to store them in
+    public short[] outputShorts(int n)
+    {
+        assert type == Short.TYPE;
+        wgqueue_short.reserve(n);
+        return wgqueue_short.array();
+    }
+
+    // make sure n items can be read; return the array holding them
+    public char[] inputChars(int n)
+    {
+        assert type == Character.TYPE;
+        ensureData (n);
+        wgqueue_char.require(n);
+        return wgqueue_char.array();
+    }
+
+    // make room for n items; return the array to store them in
+    public char[] outputChars(int n)
+    {
+        assert type == Character.TYPE;
+        wgqueue_char.reserve(n);
+        return wgqueue_char.array();
+    }
+
+    // make sure n items can be read; return the array holding them
+    public double[] inputDoubles(int n)
+    {
+        assert type == Double.TYPE;
+        ensureData (n);
+        wgqueue_double.require(n);
+        return wgqueue_double.array();
+    }
+
+    // make room for n items; return the array to store them in
+    public double[] outputDoubles(int n)
+    {
+        assert type == Double.TYPE;
+        wgqueue_double.reserve(n);
+        return wgqueue_double.array();
+    }
+
+    // make sure n items can be read; return the array holding them
+    public float[] inputFloats(int n)
+    {
+        assert type == Float.TYPE;
+        ensureData (n);
+        wgqueue_float.require(n);
+        return wgqueue_float.array();
+    }
+
+    // make room for n items; return the array to store them in
+    public float[] outputFloats(int n)
+    {
+        assert type == Float.TYPE;
+        wgqueue_float.reserve(n);
+        return wgqueue_float.array();
+    }
+
+    // counter value of the item at the end of the queue
+    public int inputPosition()
+    {
+        if (type == Integer.TYPE) {
+            return wgqueue_int.tailCount();
+        } else if (type == Float.TYPE) {
+            return wgqueue_float.tailCount();
+        } else if (type == Double.TYPE) {
+            return wgqueue_double.tailCount();
+        } else if (type == Boolean.TYPE) {
+            return wgqueue_boolean.tailCount();
+        } else if (type == Short.TYPE) {
+            return wgqueue_short.tailCount();
+        } else {
+            assert type == Character.TYPE;
+            return wgqueue_char.tailCount();
+        }
+    }
+
+    // counter value of the next item to be pushed
+    public int outputPosition()
+    {
+        if (type == Integer.TYPE) {
+            return wgqueue_int.headCount();
+        } else if (type == Float.TYPE) {
+            return wgqueue_float.headCount();
+        } else if (type == Double.TYPE) {
+            return wgqueue_double.headCount();
+        } else if (type == Boolean.TYPE) {
+            return wgqueue_boolean.headCount();
+        } else if (type == Short.TYPE) {
+            return wgqueue_short.headCount();
+        } else {
+            assert type == Character.TYPE;
+            return wgqueue_char.headCount();
+        }
+    }
+
+    // remove the n items that were read directly
+    public void popped(int n)
+    {
+        if (n <= 0) return;
+        dequeued (n);
+        if (type == Integer.TYPE) {
+            wgqueue_int.discard(n);
+        } else if (type == Float.TYPE) {
+            wgqueue_float.discard(n);
+        } else if (type == Double.TYPE) {
+            wgqueue_double.discard(n);
+        } else if (type == Boolean.TYPE) {
+            wgqueue_boolean.discard(n);
+        } else if (type == Short.TYPE) {
+            wgqueue_short.discard(n);
+        } else {
+            assert type == Character.TYPE;
+            wgqueue_char.discard(n);
+        }
+    }
+
+    // add the n items that were stored directly
+    public void pushed(int n)
+    {
+        if (n <= 0) return;
+        if (type == Integer.TYPE) {
+            wgqueue_int.advanceHead(n);
+        } else if (type == Float.TYPE) {
+            wgqueue_float.advanceHead(n);
+        } else if (type == Double.TYPE) {
+            wgqueue_double.advanceHead(n);
+        } else if (type == Boolean.TYPE) {
+            wgqueue_boolean.advanceHead(n);
+        } else if (type == Short.TYPE) {
+            wgqueue_short.advanceHead(n);
+        } else {
+            assert type == Character.TYPE;
+            wgqueue_char.advanceHead(n);
+        }
+        enqueued (n);
+    }
+
     /**
      * Get the number amount of data popped from this channel
      * on every iteration
@@ -19,6 +19,13 @@ package streamit.library;
 public class ChannelConnectFilter extends Filter
 {
     Class type;
+
+    /**
+     * Whether the input and output channels use the same queue (see
+     * StreamFuser), so that work only has to count the item.
+     */
+    boolean sharesQueue = false;
+
     public ChannelConnectFilter (Class ioType)
     {
         super ();
@@ -41,7 +48,10 @@ public class ChannelConnectFilter extends Filter
 
     public void work()
     {
-        passOneData (inputChannel, outputChannel);
+        if (sharesQueue)
+            inputChannel.passShared (outputChannel);
+        else
+            passOneData (inputChannel, outputChannel);
     }
 
     void useChannels (Channel in, Channel out)
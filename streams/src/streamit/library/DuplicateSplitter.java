@@ -28,6 +28,11 @@ public class DuplicateSplitter extends Splitter
        and remains atomic */
     public void work ()
     {
+        if (remapped)
+            {
+                super.work ();
+                return;
+            }
         duplicateOneData (inputChannel, outputChannel);
     }
 
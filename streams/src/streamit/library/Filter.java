@@ -405,10 +405,24 @@ public abstract class Filter extends Stream
 
     // data and functions for support of multi-stage/multi-phase filters:
     boolean multiPhaseStyle = false;
+
+    // kinds of phases, so that phases can be dispatched without
+    // comparing their names
+    static final int PHASE_PREWORK = 0;
+    static final int PHASE_WORK = 1;
+    static final int PHASE_OTHER = 2;
+
     class PhaseInfo
     {
         final public int e, o, u;
         final public String name;
+        final int kind;
+        /**
+         * For a PHASE_OTHER phase, the phase method of this filter,
+         * already made accessible (see resolvePhases), or null if it
+         * could not be found.
+         */
+        Method method;
         public PhaseInfo(int _e, int _o, int _u, String _name)
         {
             // might be passing in a peek rate that is less than the
@@ -418,6 +432,13 @@ public abstract class Filter extends Stream
             o = _o;
             u = _u;
             name = _name;
+            if (name.equals("prework")) {
+                kind = PHASE_PREWORK;
+            } else if (name.equals("work")) {
+                kind = PHASE_WORK;
+            } else {
+                kind = PHASE_OTHER;
+            }
         }
     }
 
@@ -710,6 +731,11 @@ public abstract class Filter extends Stream
         return steadyPhases.get(stage).name;
     }
 
+    /**
+     * initPhases and steadyPhases as arrays, built by resolvePhases
+     * once all phases have been declared.
+     */
+    private PhaseInfo[] initPhaseArray, steadyPhaseArray;
     private int initPhase = 0;
     private int steadyPhase = 0;
     /**
@@ -717,10 +743,10 @@ public abstract class Filter extends Stream
      * checking or ensuring I/O rates).
      */
     private void advancePhase() {
-        if (initPhase < initPhases.size()) {
+        if (initPhase < initPhaseArray.length) {
             initPhase++;
-        } else {
-            steadyPhase = (steadyPhase + 1) % steadyPhases.size();
+        } else if (++steadyPhase == steadyPhaseArray.length) {
+            steadyPhase = 0;
         }
     }
     /**
@@ -728,10 +754,41 @@ public abstract class Filter extends Stream
      * for checking or ensuring I/O rates).
      */
     private PhaseInfo getCurrentPhase() {
-        if (initPhase < initPhases.size()) {
-            return initPhases.get(initPhase);
+        if (initPhase < initPhaseArray.length) {
+            return initPhaseArray[initPhase];
         } else {
-            return steadyPhases.get(steadyPhase);
+            return steadyPhaseArray[steadyPhase];
+        }
+    }
+
+    /**
+     * Prepares the declared phases for execution: copies them to
+     * arrays and looks up the method of each phase that is neither
+     * work nor prework, so that executing a phase needs neither a
+     * method lookup nor string comparisons.  Called from connectGraph,
+     * after init has declared all of the phases.
+     */
+    private void resolvePhases() {
+        initPhaseArray = initPhases.toArray(new PhaseInfo[initPhases.size()]);
+        steadyPhaseArray = steadyPhases.toArray(new PhaseInfo[steadyPhases.size()]);
+        resolvePhases(initPhaseArray);
+        resolvePhases(steadyPhaseArray);
+    }
+
+    private void resolvePhases(PhaseInfo[] phases) {
+        for (int i = 0; i < phases.length; i++) {
+            PhaseInfo phase = phases[i];
+            if (phase.kind != PHASE_OTHER || phase.method != null) {
+                continue;
+            }
+            try {
+                Method m = getClass().getMethod(phase.name, (Class[])null);
+                m.setAccessible(true);
+                phase.method = m;
+            } catch (Exception e) {
+                // leave the method unset; the failure is reported
+                // (as before) if the phase is ever executed
+            }
         }
     }
 
@@ -763,12 +820,15 @@ public abstract class Filter extends Stream
 
         // call work or prework, etc.
         PhaseInfo phase = getCurrentPhase();
-        if (phase.name.equals("prework")) {
+        switch (phase.kind) {
+        case PHASE_PREWORK:
             prework();
-        } else if (phase.name.equals("work")) {
+            break;
+        case PHASE_WORK:
             work();
             iterationCount++;
-        } else {
+            break;
+        default:
             throw new RuntimeException("Unrecognized phase name: " + phase.name);
         }
 
@@ -807,26 +867,34 @@ public abstract class Filter extends Stream
         // make sure that the next phase to execute is the one asked for!
         assert schedName.equals(phase.name);
 
-        // make sure that there is enough data to peek!
-        assert inputChannel == null
+        // make sure that there is enough data to peek!  (a shared
+        // channel waits for its producer thread instead)
+        assert inputChannel == null || inputChannel.isShared()
             || inputChannel.getItemsPushed() - inputChannel.getItemsPopped() >= phase.e;
 
         // execute the phase
         try
             {
-                if (schedName.equals ("work")) {
-                    doWork();
-                } else if (schedName.equals ("prework")) {
-                    prepareToWork();
+                prepareToWork();
+                switch (phase.kind) {
+                case PHASE_WORK:
+                    work();
+                    iterationCount++;
+                    break;
+                case PHASE_PREWORK:
                     prework ();
-                    cleanupWork();
-                } else {
-                    prepareToWork();
-                    Method m = getClass().getMethod(phase.name, (Class[])null);
-                    m.setAccessible(true);
-                    m.invoke(this, (Object[])null);
-                    cleanupWork();
+                    break;
+                default:
+                    if (phase.method != null) {
+                        phase.method.invoke(this, (Object[])null);
+                    } else {
+                        // not resolved; let reflection report why
+                        Method m = getClass().getMethod(phase.name, (Class[])null);
+                        m.setAccessible(true);
+                        m.invoke(this, (Object[])null);
+                    }
                 }
+                cleanupWork();
             }
         catch (Throwable x)
             {
@@ -937,6 +1005,7 @@ public abstract class Filter extends Stream
 
         addFilter();
         initCount();
+        resolvePhases();
     }
 
     public void work() { ERROR ("You must declare your own \"work\" function in a Filter!\n(unless you're using multi-phased Filters and don't have a \"work\"function"); }
@@ -33,6 +33,13 @@ abstract public class Joiner extends Operator
     public Channel inputChannel[] = null;
     public Channel outputChannel = null;
 
+    /**
+     * Whether the children write their items straight into the
+     * output queue (see StreamFuser), so that work only has to count
+     * them.
+     */
+    boolean remapped = false;
+
     public void init()
     {}
 
@@ -175,13 +182,25 @@ abstract public class Joiner extends Operator
         nWork++;
         nWork = nWork % totalWork;
 
-        for (int nCh = 0; nCh < srcs.size(); nCh++)
+        if (remapped)
             {
-                for (int nData = 0; nData < throughput[nCh]; nData++)
+                // the children wrote the items straight into the
+                // output queue
+                int totalData = 0;
+                for (int nCh = 0; nCh < srcs.size(); nCh++)
                     {
-                        passOneData(inputChannel[nCh], outputChannel);
+                        if (throughput[nCh] > 0) {
+                            inputChannel[nCh].poppedRemapped(throughput[nCh]);
+                            totalData += throughput[nCh];
+                        }
                     }
+                outputChannel.pushedRemapped(totalData);
+                return;
+            }
 
+        for (int nCh = 0; nCh < srcs.size(); nCh++)
+            {
+                passData(inputChannel[nCh], outputChannel, throughput[nCh]);
             }
     }
 
@@ -29,7 +29,12 @@ import java.lang.reflect.*;
  *
  * @version $Id: Message.java,v 1.6 2006-03-24 16:31:46 dimock Exp $
  */
-public class Message {
+public class Message implements Comparable<Message> {
+    /**
+     * Counter used to order messages with the same delivery time by
+     * the order in which they were sent.
+     */
+    private static long MAX_SEQUENCE = 0;
     /**
      * The execution step of the receiver when this should be
      * delivered.  The message should be delivered to the receiver
@@ -48,12 +53,50 @@ public class Message {
      * The arguments to be passed to the message handler.
      */
     private Object[] args;
+    /**
+     * The message handler method of the receiver, resolved when the
+     * receiver was registered with the portal, or null if the handler
+     * should be looked up by name on delivery.
+     */
+    private Method handler;
+    /**
+     * Position of this among all messages sent, for ordering
+     * messages with the same delivery time.
+     */
+    private long sequence;
+    /**
+     * The portal that recycles this message once it is delivered,
+     * or null if the message is not pooled.
+     */
+    private Portal pool;
+    /**
+     * Next message in the free list of <pre>pool</pre>.
+     */
+    Message nextFree;
     
     public Message(int _deliveryTime, boolean _downstream, String _methodName, Object[] _args) {
+        init(_deliveryTime, _downstream, _methodName, null, _args);
+    }
+
+    /**
+     * Makes a message that is returned to <pre>pool</pre> after it is
+     * delivered; see Portal.obtainMessage.
+     */
+    Message(Portal pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * (Re)initializes the contents of this message.
+     */
+    void init(int _deliveryTime, boolean _downstream, String _methodName,
+              Method _handler, Object[] _args) {
         this.deliveryTime = _deliveryTime;
         this.downstream = _downstream;
         this.methodName = _methodName;
+        this.handler = _handler;
         this.args = _args;
+        this.sequence = MAX_SEQUENCE++;
     }
 
     /**
@@ -71,11 +114,47 @@ public class Message {
         return downstream;
     }
 
+    /**
+     * Orders messages by delivery time, and messages with the same
+     * delivery time by the order in which they were sent.
+     */
+    public int compareTo(Message other) {
+        int time = getDeliveryTime(), otherTime = other.getDeliveryTime();
+        if (time != otherTime) {
+            return time < otherTime ? -1 : 1;
+        }
+        return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+
     /**
      * Delivers this message to <pre>receiver</pre>.  The receiver must
-     * implement the appropriate method.
+     * implement the appropriate method.  A pooled message must not be
+     * used after it has been delivered.
      */
     public void deliver(Object receiver) {
+        if (handler != null) {
+            try {
+                handler.invoke(receiver, args);
+            } catch (Exception e) {
+                System.err.println("Message delivery failed.");
+                e.printStackTrace();
+                System.exit(1);
+            }
+        } else {
+            deliverByReflection(receiver);
+        }
+        if (pool != null) {
+            args = null;
+            handler = null;
+            pool.recycleMessage(this);
+        }
+    }
+
+    /**
+     * Delivers this message to <pre>receiver</pre>, looking up the
+     * handler from its name and the types of the arguments.
+     */
+    private void deliverByReflection(Object receiver) {
         try {
             //System.err.println("Delivering message " + methodName + " to " + receiver);
             // get parameter types
@@ -54,11 +54,12 @@ public class Operator extends DestroyedClass
      */
     private int workExecutions = 0;
     /**
-     * The queue of Message objects to be delivered in this, sorted by
-     * increasing order of delivery time.  Everything in this list has
-     * yet to be delivered.
+     * The queue of Message objects to be delivered in this, ordered
+     * by increasing delivery time (and by order of sending for equal
+     * delivery times).  Everything in this queue has yet to be
+     * delivered.
      */
-    private LinkedList<Message> messageQueue = new LinkedList<Message>();
+    private PriorityQueue<Message> messageQueue = new PriorityQueue<Message>();
     /**
      * The parent of this in the stream hierarchy (null for toplevel
      * stream).
@@ -99,15 +100,6 @@ public class Operator extends DestroyedClass
                                        "CURRENT TIME  = " + currentTime);
         }
 
-        // maintain messageQueue by order of delivery time
-        for (int i=0; i<messageQueue.size(); i++) {
-            int other = messageQueue.get(i).getDeliveryTime();
-            if (other > deliveryTime) {
-                messageQueue.add(i, m);
-                return;
-            }
-        }
-        // otherwise add at end
         messageQueue.add(m);
     }
     /**
@@ -115,14 +107,14 @@ public class Operator extends DestroyedClass
      * execution.
      */
     protected void deliverMessages() {
-        while (messageQueue.size()>0) {
-            Message m = messageQueue.get(0);
+        while (!messageQueue.isEmpty()) {
+            Message m = messageQueue.peek();
             // deliver before the next execution
             int currentTime = getSDEPExecutions(true, m.isDownstream());
             int deliveryTime = m.getDeliveryTime();
 
             if (deliveryTime==currentTime) {
-                messageQueue.removeFirst();
+                messageQueue.poll();
                 m.deliver(this);
             } else if (deliveryTime < currentTime) {
                 // we check for this in enqueMessage
@@ -151,7 +143,7 @@ public class Operator extends DestroyedClass
      * Register a pop, push, or peek.
      */
     public void registerPop() {
-        Profiler.registerPop();
+        if (Profiler.counting) Profiler.registerPop();
         currentPopped++;
         totalPopped++;
         // update peek index in case we've popped items without
@@ -161,10 +153,27 @@ public class Operator extends DestroyedClass
         }
     }
     public void registerPush() {
-        Profiler.registerPush();
+        if (Profiler.counting) Profiler.registerPush();
         currentPushed++;
         totalPushed++;
     }
+    /**
+     * Register <pre>n</pre> pops or pushes at once (for the bulk tape
+     * operations in Channel).
+     */
+    public void registerPops(int n) {
+        if (Profiler.counting) Profiler.registerPops(n);
+        currentPopped += n;
+        totalPopped += n;
+        if (currentPopped-1>currentMaxPeek) {
+            currentMaxPeek = currentPopped-1;
+        }
+    }
+    public void registerPushes(int n) {
+        if (Profiler.counting) Profiler.registerPushes(n);
+        currentPushed += n;
+        totalPushed += n;
+    }
     public void registerPeek(int i) {
         currentMaxPeek = currentPopped + i;
     }
@@ -1411,6 +1420,73 @@ public class Operator extends DestroyedClass
                                             }
     }
 
+    /**
+     * Scratch array for passData, kept between executions so that
+     * moving a block of items does not allocate.
+     */
+    private Object passBuffer;
+
+    /**
+     * Moves <pre>n</pre> items from <pre>from</pre> to <pre>to</pre>,
+     * with the same effect as <pre>n</pre> calls to passOneData, but
+     * with one bulk pop and one bulk push for primitive types.
+     */
+    void passData (Channel from, Channel to, int n)
+    {
+        if (n <= 1)
+            {
+                if (n == 1) passOneData (from, to);
+                return;
+            }
+
+        Class type = from.getType ();
+        assert type == to.getType ();
+
+        if (type == Integer.TYPE)
+            {
+                if (!(passBuffer instanceof int[]) || ((int[])passBuffer).length < n)
+                    passBuffer = new int [n];
+                int[] data = (int[])passBuffer;
+                from.popInts (data, 0, n);
+                to.pushInts (data, 0, n);
+            } else
+                if (type == Short.TYPE)
+                    {
+                        if (!(passBuffer instanceof short[]) || ((short[])passBuffer).length < n)
+                            passBuffer = new short [n];
+                        short[] data = (short[])passBuffer;
+                        from.popShorts (data, 0, n);
+                        to.pushShorts (data, 0, n);
+                    } else
+                        if (type == Character.TYPE)
+                            {
+                                if (!(passBuffer instanceof char[]) || ((char[])passBuffer).length < n)
+                                    passBuffer = new char [n];
+                                char[] data = (char[])passBuffer;
+                                from.popChars (data, 0, n);
+                                to.pushChars (data, 0, n);
+                            } else
+                                if (type == Float.TYPE)
+                                    {
+                                        if (!(passBuffer instanceof float[]) || ((float[])passBuffer).length < n)
+                                            passBuffer = new float [n];
+                                        float[] data = (float[])passBuffer;
+                                        from.popFloats (data, 0, n);
+                                        to.pushFloats (data, 0, n);
+                                    } else
+                                        if (type == Double.TYPE)
+                                            {
+                                                if (!(passBuffer instanceof double[]) || ((double[])passBuffer).length < n)
+                                                    passBuffer = new double [n];
+                                                double[] data = (double[])passBuffer;
+                                                from.popDoubles (data, 0, n);
+                                                to.pushDoubles (data, 0, n);
+                                            } else {
+                                                for (int i = 0; i < n; i++)
+                                                    passOneData (from, to);
+                                            }
+    }
+
     // send a message to a handler that returns <pre>stub</pre> within <pre>delay</pre>
     // units of my input/output (to be specified more clearly...)
     public void sendMessage(MessageStub stub, int delay) {}
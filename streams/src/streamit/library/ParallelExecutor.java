@@ -0,0 +1,464 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.library;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import streamit.misc.Pair;
+import streamit.scheduler2.Schedule;
+
+/**
+ * Runs the steady-state schedule of a stream graph on several
+ * threads (the <pre>-threads N</pre> option of Stream.run).
+ *
+ * The filters, splitters and joiners are divided into groups of
+ * consecutive operators in the stream graph, and each group runs on
+ * its own thread.  A thread executes the steady-state schedule
+ * restricted to the operators of its group, so every operator fires
+ * in the same order and with the same input as in the sequential
+ * run.  Channels that connect two groups are shared (see
+ * Channel.makeShared), so the groups communicate through bounded
+ * single-producer / single-consumer queues.  Feedback loops are
+ * never divided between groups.
+ *
+ * The first steady state is executed sequentially.  It measures the
+ * time spent in each operator, which is used to balance the groups,
+ * and the number of items that cross each channel per steady state,
+ * which is used to size the shared channels.  A channel that can
+ * hold its initial items plus one steady state worth of items never
+ * blocks a producer whose consumer has finished the previous steady
+ * state, so the pipeline can not deadlock.
+ */
+class ParallelExecutor
+{
+    /**
+     * A steady-state schedule restricted to the operators of one
+     * group.  Either a leaf, with a stream and work function, or a
+     * list of sub-slices with their repetition counts.
+     */
+    private static class Slice
+    {
+        final Operator stream;
+        final Object function;
+        final Slice[] subSlices;
+        final int[] numExecs;
+
+        Slice(Operator stream, Object function)
+        {
+            this.stream = stream;
+            this.function = function;
+            this.subSlices = null;
+            this.numExecs = null;
+        }
+
+        Slice(Slice[] subSlices, int[] numExecs)
+        {
+            this.stream = null;
+            this.function = null;
+            this.subSlices = subSlices;
+            this.numExecs = numExecs;
+        }
+    }
+
+    private final Stream toplevel;
+    private final Schedule steadySched;
+    private final int maxThreads;
+
+    /**
+     * Nanoseconds spent in each scheduled operator during the
+     * measured steady state.
+     */
+    private final IdentityHashMap<Operator, long[]> opTime =
+        new IdentityHashMap<Operator, long[]>();
+    /**
+     * Group (i.e., thread) that executes each operator.
+     */
+    private final IdentityHashMap<Operator, Integer> groupOf =
+        new IdentityHashMap<Operator, Integer>();
+
+    ParallelExecutor(Stream toplevel, Schedule steadySched, int maxThreads)
+    {
+        assert maxThreads > 1;
+        this.toplevel = toplevel;
+        this.steadySched = steadySched;
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Returns whether the program can be executed by this.  Teleport
+     * messages are timed relative to operators in other threads, and
+     * the timing profile is global, so neither is supported.
+     */
+    static boolean canRunInParallel()
+    {
+        if (Portal.isMessagingUsed()) {
+            System.err.println("Warning: -threads is not supported with teleport messaging; running on one thread.");
+            return false;
+        }
+        if (Stream.profile) {
+            System.err.println("Warning: -threads is not supported with -profile; running on one thread.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs <pre>nIters</pre> steady states (forever if <pre>nIters</pre> is
+     * negative).  The init schedule must have been run already.
+     */
+    void run(int nIters)
+    {
+        assert nIters != 0;
+
+        // the first steady state is run sequentially, to measure it
+        List<Channel> channels = getAllChannels();
+        int[] pushedBefore = new int[channels.size()];
+        for (int i = 0; i < channels.size(); i++) {
+            pushedBefore[i] = channels.get(i).getItemsPushed();
+        }
+        runMeasured(steadySched, 1);
+        if (nIters > 0) nIters--;
+        if (nIters == 0) return;
+
+        int numGroups = assignGroups();
+        if (numGroups == 1) {
+            // not enough operators to divide
+            Slice all = makeSlice(steadySched, 0, new IdentityHashMap<Schedule, Slice>());
+            for (; nIters != 0; ) {
+                runSlice(all, 1);
+                if (nIters > 0) nIters--;
+            }
+            return;
+        }
+
+        // share the channels between groups
+        for (int i = 0; i < channels.size(); i++) {
+            Channel channel = channels.get(i);
+            if (channel.getSource() != null && channel.getSink() != null
+                && getGroup(channel.getSource()) != getGroup(channel.getSink())) {
+                int steadyItems = channel.getItemsPushed() - pushedBefore[i];
+                int capacity = Math.max(channel.maxSize,
+                                        channel.myqueue.size() + steadyItems);
+                channel.makeShared(Math.max(capacity, 1));
+            }
+        }
+
+        // start one thread per group
+        Thread[] threads = new Thread[numGroups];
+        for (int g = 0; g < numGroups; g++) {
+            final Slice slice = makeSlice(steadySched, g, new IdentityHashMap<Schedule, Slice>());
+            final int iters = nIters;
+            threads[g] = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            for (int n = iters; n != 0; ) {
+                                runSlice(slice, 1);
+                                if (n > 0) n--;
+                            }
+                        } catch (Throwable e) {
+                            // same as an error in the sequential run
+                            e.printStackTrace();
+                            System.exit(1);
+                        }
+                    }
+                }, "StreamIt group " + g);
+            threads[g].start();
+        }
+        for (int g = 0; g < numGroups; g++) {
+            boolean joined = false;
+            while (!joined) {
+                try {
+                    threads[g].join();
+                    joined = true;
+                } catch (InterruptedException e) {
+                    // keep waiting
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the filter, splitter or joiner that executes the work
+     * function <pre>function</pre> of bottom-level schedule of <pre>stream</pre>.
+     */
+    private static Operator getScheduledOperator(Operator stream, Object function)
+    {
+        if (stream instanceof SplitJoin) {
+            return (Operator)((Pair)function).getFirst();
+        } else if (stream instanceof FeedbackLoop) {
+            return (Operator)function;
+        } else {
+            return stream;
+        }
+    }
+
+    /**
+     * Like Stream.runSchedule, but records the time spent in each
+     * operator.
+     */
+    private void runMeasured(Schedule sched, int nTimes)
+    {
+        for (; nTimes > 0; nTimes--) {
+            if (sched.isBottomSchedule()) {
+                Operator stream = (Operator)sched.getStream().getObject();
+                Object function = sched.getWorkFunc();
+                Operator op = getScheduledOperator(stream, function);
+                long start = System.nanoTime();
+                Stream.runOperator(stream, function);
+                long elapsed = System.nanoTime() - start;
+
+                long[] time = opTime.get(op);
+                if (time == null) {
+                    time = new long[1];
+                    opTime.put(op, time);
+                }
+                time[0] += elapsed;
+            } else {
+                for (int i = 0; i < sched.getNumPhases(); i++) {
+                    runMeasured(sched.getSubSched(i), sched.getSubSchedNumExecs(i));
+                }
+            }
+        }
+    }
+
+    private static void runSlice(Slice slice, int nTimes)
+    {
+        for (; nTimes > 0; nTimes--) {
+            if (slice.subSlices == null) {
+                Stream.runOperator(slice.stream, slice.function);
+            } else {
+                for (int i = 0; i < slice.subSlices.length; i++) {
+                    runSlice(slice.subSlices[i], slice.numExecs[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restricts <pre>sched</pre> to the operators of <pre>group</pre>.
+     * Returns null if no operator of the group appears in
+     * <pre>sched</pre>.  Schedules are often shared between several
+     * parents, so results are memoized in <pre>done</pre>.
+     */
+    private Slice makeSlice(Schedule sched, int group, IdentityHashMap<Schedule, Slice> done)
+    {
+        if (done.containsKey(sched)) {
+            return done.get(sched);
+        }
+
+        Slice result = null;
+        if (sched.isBottomSchedule()) {
+            Operator stream = (Operator)sched.getStream().getObject();
+            Object function = sched.getWorkFunc();
+            if (getGroup(getScheduledOperator(stream, function)) == group) {
+                result = new Slice(stream, function);
+            }
+        } else {
+            List<Slice> subSlices = new ArrayList<Slice>();
+            List<Integer> numExecs = new ArrayList<Integer>();
+            for (int i = 0; i < sched.getNumPhases(); i++) {
+                Slice sub = makeSlice(sched.getSubSched(i), group, done);
+                if (sub != null) {
+                    subSlices.add(sub);
+                    numExecs.add(Integer.valueOf(sched.getSubSchedNumExecs(i)));
+                }
+            }
+            if (!subSlices.isEmpty()) {
+                int[] execs = new int[numExecs.size()];
+                for (int i = 0; i < execs.length; i++) {
+                    execs[i] = numExecs.get(i).intValue();
+                }
+                result = new Slice(subSlices.toArray(new Slice[0]), execs);
+            }
+        }
+
+        done.put(sched, result);
+        return result;
+    }
+
+    /**
+     * Divides the scheduled operators into at most maxThreads groups
+     * of consecutive units with roughly equal measured time, and
+     * returns the number of groups.
+     */
+    private int assignGroups()
+    {
+        List<List<Operator>> units = new ArrayList<List<Operator>>();
+        collectUnits(toplevel, units);
+
+        long[] cost = new long[units.size()];
+        long total = 0;
+        for (int i = 0; i < units.size(); i++) {
+            for (Operator op : units.get(i)) {
+                long[] time = opTime.get(op);
+                if (time != null) cost[i] += time[0];
+            }
+            total += cost[i];
+        }
+        if (total == 0) {
+            // nothing measurable; balance the number of units instead
+            for (int i = 0; i < cost.length; i++) cost[i] = 1;
+            total = cost.length;
+        }
+
+        // place each unit according to the midpoint of its cost in
+        // the cumulative cost, then renumber the non-empty groups
+        int numGroups = 0;
+        int lastGroup = -1;
+        long before = 0;
+        for (int i = 0; i < units.size(); i++) {
+            int group = (int)((before + cost[i] / 2.0) * maxThreads / total);
+            group = Math.min(group, maxThreads - 1);
+            before += cost[i];
+            if (group != lastGroup) {
+                lastGroup = group;
+                numGroups++;
+            }
+            for (Operator op : units.get(i)) {
+                groupOf.put(op, Integer.valueOf(numGroups - 1));
+            }
+        }
+        return numGroups;
+    }
+
+    /**
+     * Appends to <pre>units</pre> the scheduled operators of <pre>s</pre>,
+     * in stream order.  Each unit is a list of operators that has to
+     * be in the same group.
+     */
+    private static void collectUnits(Stream s, List<List<Operator>> units)
+    {
+        if (s instanceof Pipeline) {
+            Pipeline pipe = (Pipeline)s;
+            for (int i = 0; i < pipe.getNumChildren(); i++) {
+                collectUnits(pipe.getChildN(i), units);
+            }
+        } else if (s instanceof SplitJoin) {
+            SplitJoin sj = (SplitJoin)s;
+            if (sj.getSplitter() != null) {
+                units.add(singleton(sj.getSplitter()));
+            }
+            for (int i = 0; i < sj.getNumChildren(); i++) {
+                collectUnits(sj.getChildN(i), units);
+            }
+            if (sj.getJoiner() != null) {
+                units.add(singleton(sj.getJoiner()));
+            }
+        } else if (s instanceof FeedbackLoop) {
+            // data flows backwards in a feedback loop, so keep all
+            // of it on one thread
+            List<List<Operator>> inner = new ArrayList<List<Operator>>();
+            FeedbackLoop loop = (FeedbackLoop)s;
+            inner.add(singleton(loop.getJoiner()));
+            collectUnits(loop.getBody(), inner);
+            inner.add(singleton(loop.getSplitter()));
+            collectUnits(loop.getLoop(), inner);
+
+            List<Operator> unit = new ArrayList<Operator>();
+            for (List<Operator> ops : inner) {
+                unit.addAll(ops);
+            }
+            units.add(unit);
+        } else {
+            assert s instanceof Filter : s;
+            units.add(singleton(s));
+        }
+    }
+
+    private static List<Operator> singleton(Operator op)
+    {
+        List<Operator> result = new ArrayList<Operator>();
+        result.add(op);
+        return result;
+    }
+
+    /**
+     * Returns the group whose thread executes <pre>op</pre>.  Operators
+     * that do not appear in the schedule (such as the
+     * ChannelConnectFilters between pipeline stages) only run when
+     * something is pushed onto their pass-through input channel, so
+     * they execute in the thread of the upstream operator.
+     */
+    private int getGroup(Operator op)
+    {
+        Integer group = groupOf.get(op);
+        if (group == null) {
+            Channel input = null;
+            for (Channel channel : getChannels(op)) {
+                if (channel.getSink() == op
+                    && (input == null || channel.passThrough)) {
+                    input = channel;
+                }
+            }
+            assert input != null : "Can't find the thread that runs " + op;
+            group = Integer.valueOf(getGroup(input.getSource()));
+            groupOf.put(op, group);
+        }
+        return group.intValue();
+    }
+
+    /**
+     * Returns the input and output channels of a filter, splitter or
+     * joiner.
+     */
+    private static List<Channel> getChannels(Operator op)
+    {
+        List<Channel> result = new ArrayList<Channel>();
+        if (op instanceof Filter) {
+            result.add(((Filter)op).inputChannel);
+            result.add(((Filter)op).outputChannel);
+        } else if (op instanceof Splitter) {
+            Splitter splitter = (Splitter)op;
+            result.add(splitter.inputChannel);
+            if (splitter.outputChannel != null) {
+                for (int i = 0; i < splitter.outputChannel.length; i++) {
+                    result.add(splitter.outputChannel[i]);
+                }
+            }
+        } else if (op instanceof Joiner) {
+            Joiner joiner = (Joiner)op;
+            if (joiner.inputChannel != null) {
+                for (int i = 0; i < joiner.inputChannel.length; i++) {
+                    result.add(joiner.inputChannel[i]);
+                }
+            }
+            result.add(joiner.outputChannel);
+        }
+        while (result.remove(null));
+        return result;
+    }
+
+    /**
+     * Returns every channel in the program, each one once.
+     */
+    private static List<Channel> getAllChannels()
+    {
+        IdentityHashMap<Channel, Channel> seen = new IdentityHashMap<Channel, Channel>();
+        List<Channel> result = new ArrayList<Channel>();
+        for (Operator op : Operator.allNodes) {
+            for (Channel channel : getChannels(op)) {
+                if (!seen.containsKey(channel)) {
+                    seen.put(channel, channel);
+                    result.add(channel);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -24,6 +24,7 @@ import streamit.library.iriter.Iterator;
 import streamit.library.iriter.IterFactory;
 import streamit.library.iriter.BasicIterFactory;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.LinkedList;
@@ -48,14 +49,35 @@ public abstract class Portal
     private int id = (MAX_ID++);
 
     protected ArrayList<Object> receivers; //List of Filters
+    /**
+     * Message handlers of the receivers, resolved when each receiver
+     * is registered: handlers.get(i) maps the name of a message to the
+     * handler method of receivers.get(i), already made accessible.
+     * Names that can't be resolved unambiguously are left out, and are
+     * looked up on delivery.
+     */
+    private ArrayList<HashMap<String, Method>> handlers;
+    /**
+     * Free list of delivered messages, for reuse by obtainMessage.
+     */
+    private Message freeMessages;
     private int minLat,maxLat;
     /**
      * SDEP info for this portal.
      */
     private SDEPInfo sdepInfo;
     
+    /**
+     * Returns whether any portal has been created, i.e., whether the
+     * program uses teleport messaging.
+     */
+    static boolean isMessagingUsed() {
+        return MAX_ID > 0;
+    }
+
     public Portal() {
         this.receivers = new ArrayList<Object>();
+        this.handlers = new ArrayList<HashMap<String, Method>>();
         this.sdepInfo = null;
     }
 
@@ -97,6 +119,73 @@ public abstract class Portal
     {
         //System.out.println("Registering Receiver: "+o);
         receivers.add(o);
+        handlers.add(bindHandlers(o));
+    }
+
+    /**
+     * Returns the handlers in <pre>receiver</pre> of the messages that
+     * can be sent through this portal, i.e., the methods of the
+     * interfaces that this portal implements.
+     */
+    private HashMap<String, Method> bindHandlers(Object receiver) {
+        HashMap<String, Method> result = new HashMap<String, Method>();
+        HashSet<String> ambiguous = new HashSet<String>();
+        for (Class c = getClass(); c != Portal.class; c = c.getSuperclass()) {
+            Class[] ifaces = c.getInterfaces();
+            for (int i=0; i<ifaces.length; i++) {
+                Method[] messages = ifaces[i].getMethods();
+                for (int j=0; j<messages.length; j++) {
+                    String name = messages[j].getName();
+                    Class[] params = messages[j].getParameterTypes();
+                    if (ambiguous.contains(name)) {
+                        continue;
+                    }
+                    try {
+                        Method m = receiver.getClass().getMethod(name, params);
+                        Method previous = result.get(name);
+                        if (previous != null) {
+                            if (!m.equals(previous)) {
+                                // overloaded message; resolve on delivery
+                                result.remove(name);
+                                ambiguous.add(name);
+                            }
+                            continue;
+                        }
+                        m.setAccessible(true);
+                        result.put(name, m);
+                    } catch (Exception e) {
+                        // leave it to delivery to report the problem
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a message record for the given contents, reusing a
+     * previously delivered one if possible.
+     */
+    private Message obtainMessage(int deliveryTime, boolean downstream, String handlerName,
+                                  Method handler, Object[] args) {
+        Message m = freeMessages;
+        if (m != null) {
+            freeMessages = m.nextFree;
+            m.nextFree = null;
+        } else {
+            m = new Message(this);
+        }
+        m.init(deliveryTime, downstream, handlerName, handler, args);
+        return m;
+    }
+
+    /**
+     * Called by <pre>m</pre> once it has been delivered, so that it can
+     * be reused.
+     */
+    void recycleMessage(Message m) {
+        m.nextFree = freeMessages;
+        freeMessages = m;
     }
 
     /**
@@ -109,6 +198,7 @@ public abstract class Portal
         // for each receiver...
         for (int i=0; i<receivers.size(); i++) {
             Stream receiver = (Stream)receivers.get(i);
+            Method handler = handlers.get(i).get(handlerName);
             // make message -- for now just send with maximum latency
             // to make it easiest to schedule
             Message m;
@@ -119,8 +209,8 @@ public abstract class Portal
                                    (sender.getSDEPExecutions(false, true)+maxLat+1) + " -> " + 
                                    sdep.data[i].getDstPhase4SrcPhase(sender.getSDEPExecutions(false, true)+maxLat+1));
                 */
-                m = new Message(sdep.data[i].getDstPhase4SrcPhase(sender.getSDEPExecutions(false, true)+maxLat+1),
-                                sdep.downstream[i], handlerName, args);
+                m = obtainMessage(sdep.data[i].getDstPhase4SrcPhase(sender.getSDEPExecutions(false, true)+maxLat+1),
+                                  sdep.downstream[i], handlerName, handler, args);
             } else {
                 // schedule upstream messages messages using SrcPhase4Dst
                 /*
@@ -128,8 +218,8 @@ public abstract class Portal
                                    (sender.getSDEPExecutions(false, true)+maxLat+1) + " -> " + 
                                    sdep.data[i].getSrcPhase4DstPhase(sender.getSDEPExecutions(false, false)+maxLat+1));
                 */
-                m = new Message(sdep.data[i].getSrcPhase4DstPhase(sender.getSDEPExecutions(false, false)+maxLat+1),
-                                sdep.downstream[i], handlerName, args);
+                m = obtainMessage(sdep.data[i].getSrcPhase4DstPhase(sender.getSDEPExecutions(false, false)+maxLat+1),
+                                  sdep.downstream[i], handlerName, handler, args);
             }
             //System.err.println("Enqueuing message <" + handlerName + "> for deliver at time " + m.getDeliveryTime() + " in " + receiver);
             // enqueue message
@@ -325,34 +415,35 @@ public abstract class Portal
     /**
      * For wrapping primitives into objects, so that message senders
      * can have uniform interface for queueing up messaging arguments.
+     * (The valueOf forms share the cached boxes of small values.)
      */
     public Byte wrapInObject(byte b) { 
-        return new Byte(b);
+        return Byte.valueOf(b);
     }
     public Boolean wrapInObject(boolean b) { 
-        return new Boolean(b); 
+        return Boolean.valueOf(b); 
     }
     public Character wrapInObject(char c) { 
-        return new Character(c); 
+        return Character.valueOf(c); 
     }
     public Float wrapInObject(float f) { 
-        return new Float(f); 
+        return Float.valueOf(f); 
     }
     public Double wrapInObject(double d) { 
-        return new Double(d);
+        return Double.valueOf(d);
     }
     public Integer wrapInObject(int i) { 
-        return new Integer(i); 
+        return Integer.valueOf(i); 
     }
     public Long wrapInObject(long l) {
-        return new Long(l);
+        return Long.valueOf(l);
     }
     public Object wrapInObject(Object o) {
         // make a copy to mimick pass-by-value
         return Cloner.doCopy(o);
     }
     public Short wrapInObject(short s) {
-        return new Short(s);
+        return Short.valueOf(s);
     }
 
     /**
@@ -113,6 +113,10 @@ public class Profiler {
     private static long intTotal = 0;
     private static long boolTotal = 0;
 
+    // whether the program was instrumented to count operations
+    // (set by setNumIds); pushes and pops are only counted if so
+    static boolean counting = false;
+
     // counts of all communication
     private static long pushTotal = 0;
     private static long popTotal = 0;
@@ -195,6 +199,7 @@ public class Profiler {
         // initialize arrays
         idCounts = new long[numIds];
         idCode = new String[numIds];
+        counting = true;
     }
 
     /**
@@ -216,7 +221,7 @@ public class Profiler {
      * Registers a push operation.  Note that this is for a primitive
      * datatype -- will only be called once when pushing arrays.
      */
-    public static void registerPop() {
+    public static synchronized void registerPop() {
         popTotal++;
     }
     
@@ -224,9 +229,23 @@ public class Profiler {
      * Registers a push operation.  Note that this is for a primitive
      * datatype -- will only be called once when pushing arrays.
      */
-    public static void registerPush() {
+    public static synchronized void registerPush() {
         pushTotal++;
     }
+
+    /**
+     * Registers <pre>n</pre> pop operations at once.
+     */
+    public static synchronized void registerPops(int n) {
+        popTotal += n;
+    }
+
+    /**
+     * Registers <pre>n</pre> push operations at once.
+     */
+    public static synchronized void registerPushes(int n) {
+        pushTotal += n;
+    }
     
     /**
      * Called when the program has finished, to print results, etc.
@@ -33,6 +33,12 @@ abstract public class Splitter extends Operator
     public Channel inputChannel = null;
     public Channel outputChannel[] = null;
 
+    /**
+     * Whether the children read their items straight from the input
+     * queue (see StreamFuser), so that work only has to count them.
+     */
+    boolean remapped = false;
+
     public void init()
     {}
 
@@ -105,17 +111,42 @@ abstract public class Splitter extends Operator
         nWork++;
         nWork = nWork % totalWork;
 
-        for (int nCh = 0; nCh < dest.size(); nCh++)
+        if (remapped)
             {
-                for (int nData = 0; nData < throughput[nCh]; nData++)
-                    {
-                        passOneData(inputChannel, outputChannel[nCh]);
-                    }
+                workRemapped(throughput);
+                return;
+            }
 
+        for (int nCh = 0; nCh < dest.size(); nCh++)
+            {
+                passData(inputChannel, outputChannel[nCh], throughput[nCh]);
             }
 
     }
 
+    // counts the items passed to the children, which read them
+    // straight from the input queue
+    void workRemapped(int throughput[])
+    {
+        int totalData = 0;
+        for (int nCh = 0; nCh < throughput.length; nCh++)
+            {
+                if (duplicateSplitter) {
+                    totalData = MAX(throughput[nCh], totalData);
+                }
+                else {
+                    totalData += throughput[nCh];
+                }
+            }
+        inputChannel.poppedRemapped(totalData);
+        for (int nCh = 0; nCh < throughput.length; nCh++)
+            {
+                if (throughput[nCh] > 0) {
+                    outputChannel[nCh].pushedRemapped(throughput[nCh]);
+                }
+            }
+    }
+
     void add(Stream s)
     {
         dest.add(s);
@@ -588,32 +588,37 @@ public abstract class Stream extends Operator
                             System.out.print(".");
                         numSteadyStates = 0;
                     }
-                Operator oper = (Operator)schedule;
-                int filterPop, filterPush;
-                if (oper instanceof Filter)
-                    {
-                        Filter f = (Filter)oper;
-                        f.executeNextPhase((String)function);
-                    }
-                else if (oper instanceof SplitJoin)
-                    {
-                        assert function instanceof Pair;
-                        Pair pair = (Pair)function;
-                        assert pair.getFirst() instanceof Operator;
-                        Operator sORj = (Operator)pair.getFirst();
-                        int funcNum = ((Integer)pair.getSecond()).intValue();
+                runOperator((Operator)schedule, function);
+            }
+    }
 
-                        sORj.doWork();
-                    }
-                else if (oper instanceof FeedbackLoop)
-                    {
-                        assert function instanceof Operator;
-                        ((Operator)function).doWork();
-                    }
-                else
-                    assert false : oper;
+    /**
+     * Executes <pre>function</pre> of <pre>oper</pre>, where these are the
+     * stream and work function of a bottom-level schedule.
+     */
+    static void runOperator(Operator oper, Object function)
+    {
+        if (oper instanceof Filter)
+            {
+                Filter f = (Filter)oper;
+                f.executeNextPhase((String)function);
+            }
+        else if (oper instanceof SplitJoin)
+            {
+                assert function instanceof Pair;
+                Pair pair = (Pair)function;
+                assert pair.getFirst() instanceof Operator;
+                Operator sORj = (Operator)pair.getFirst();
 
+                sORj.doWork();
+            }
+        else if (oper instanceof FeedbackLoop)
+            {
+                assert function instanceof Operator;
+                ((Operator)function).doWork();
             }
+        else
+            assert false : oper;
     }
     void runSchedule(Object schedule, int nTimes)
     {
@@ -674,15 +679,20 @@ public abstract class Stream extends Operator
 
     // just a runtime hook to run the stream
     public static boolean scheduledRun = true;
+    // whether the run is limited to a number of iterations (-i)
+    public static boolean fixedIterations = false;
     public void run(String args[])
     {
         boolean printGraph = true;
         boolean doRun = true;
         boolean sas = false;
+        int minbufferMaxSize = -1; // -1 means don't use minbuffer
         boolean printSDEP = false;
         String sdepTOPString = null, sdepBOTTOMString = null;
         int nIters = -1;
+        int numThreads = 1;
         boolean useJcc = false;
+        boolean fuse = false;
 
         // we're running this as the toplevel stream
         toplevel = this;
@@ -708,6 +718,11 @@ public abstract class Stream extends Operator
                                     index++;
                                     nIters = Integer.valueOf(args[index]).intValue();
                                 }
+                            else if (args[index].equals("-threads"))
+                                {
+                                    index++;
+                                    numThreads = Integer.valueOf(args[index]).intValue();
+                                }
                             else if (args[index].equals("-marksteady"))
                                 {
                                     marksteady = true;
@@ -732,6 +747,11 @@ public abstract class Stream extends Operator
                                 {
                                     sas = true;
                                 }
+                            else if (args[index].equals("-minbuffer"))
+                                {
+                                    index++;
+                                    minbufferMaxSize = Integer.valueOf(args[index]).intValue();
+                                }
                             else if (args[index].equals("-finegrained"))
                                 {
                                     finegrained = true;
@@ -747,12 +767,17 @@ public abstract class Stream extends Operator
                                 {
                                     useJcc = true;
                                 }
+                            else if (args[index].equals("-fuse"))
+                                {
+                                    fuse = true;
+                                }
                             else
                                 {
                                     ERROR("Unrecognized argument: " + args[index] + ".");
                                 }
                         }
                 }
+            fixedIterations = nIters >= 0;
 
             setupOperator();
 
@@ -851,6 +876,11 @@ public abstract class Stream extends Operator
                         scheduler =
                             streamit.scheduler2.singleappearance.Scheduler.create(
                                                                                   selfIter);
+                    else if (minbufferMaxSize >= 0)
+                        scheduler =
+                            streamit.scheduler2.minbuffer.Scheduler.create(
+                                                                           selfIter,
+                                                                           minbufferMaxSize);
                     else
                         scheduler =
                             streamit.scheduler2.minlatency.Scheduler.create(selfIter);
@@ -893,12 +923,27 @@ public abstract class Stream extends Operator
                     if (!doRun)
                         System.exit(0);
 
+                    boolean parallel = numThreads > 1 && nIters != 0
+                        && ParallelExecutor.canRunInParallel();
+
+                    // remove the copies between operators; channels
+                    // between threads can't share their queues
+                    if (fuse)
+                        new StreamFuser().fuse(!parallel);
+
                     // run the init schedule:
                     if (nIters != 0)
                         runSchedule(initSched, 1);
 
                     //nIters = 0;
 
+                    // run the steady schedule on several threads
+                    if (parallel)
+                        {
+                            new ParallelExecutor(this, steadySched, numThreads).run(nIters);
+                            nIters = 0;
+                        }
+
                     // and run the steady schedule forever:
                     while (nIters != 0)
                         {
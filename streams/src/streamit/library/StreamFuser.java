@@ -0,0 +1,328 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.library;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Removes data copies that only connect other operators from a
+ * scheduled stream graph (the <pre>-fuse</pre> option of Stream.run).
+ * This is done once, after the buffers have been set up and before
+ * anything is executed.
+ *
+ * First, the ChannelConnectFilters that join the children of
+ * pipelines and feedback loops are spliced out.  These run whenever
+ * an item is pushed onto their pass-through input channel, and only
+ * move it to their output channel; instead, the operator upstream is
+ * made to push directly onto that output channel.
+ *
+ * The other steps are only taken if the channels are not going to be
+ * shared between threads.
+ *
+ * Second, the round-robin and duplicate splitters and the round-robin
+ * joiners with a single work function stop moving items.  The output
+ * channels of such a splitter are remapped onto its input queue, so
+ * that each child reads its items where the splitter's producer put
+ * them, and the input channels of such a joiner are remapped onto its
+ * output queue, so that each child writes its items where the
+ * joiner's consumer will read them (see
+ * Channel.remapQueueOnto).  The splitter or joiner then only updates
+ * the item counts when it fires.
+ *
+ * Third, every Identity filter in the schedule whose channels were
+ * not remapped is made to use the same queue for its input and output
+ * channels.  An item pushed onto the input is then already in place
+ * for the filter downstream, and the Identity only updates the item
+ * counts when it fires.
+ *
+ * The counts still tell the schedule how many items each channel
+ * holds, and the rate checks of Channel.ensureData go by them rather
+ * than by the size of the queue, so a consumer that reads past its
+ * declared rate is still reported.
+ *
+ * Either way, every operator still fires exactly as it would have
+ * and sees the same items, so the output does not change.
+ */
+class StreamFuser
+{
+    /**
+     * For every channel whose queue is used by other channels too,
+     * the list of all channels that use that queue.
+     */
+    private final IdentityHashMap<Channel, List<Channel>> queueUsers =
+        new IdentityHashMap<Channel, List<Channel>>();
+
+    /**
+     * The channels whose queues other channels are remapped onto.
+     */
+    private final IdentityHashMap<Channel, Boolean> remapTargets =
+        new IdentityHashMap<Channel, Boolean>();
+
+    /**
+     * Fuses the stream graph made of Operator.allNodes.  Channels are
+     * only made to use the same queue if <pre>shareQueues</pre> is
+     * true, which must not be the case if any channel is going to be
+     * shared between threads.
+     */
+    void fuse(boolean shareQueues)
+    {
+        for (Operator op : Operator.allNodes) {
+            if (!isPassThroughConnector(op)) {
+                bypassConnectors(op);
+            }
+        }
+
+        if (shareQueues) {
+            for (Operator op : Operator.allNodes) {
+                if (op instanceof Splitter) {
+                    remapSplitter((Splitter)op);
+                } else if (op instanceof Joiner) {
+                    remapJoiner((Joiner)op);
+                }
+            }
+            for (Operator op : Operator.allNodes) {
+                if (op instanceof ChannelConnectFilter
+                    && !isPassThroughConnector(op)) {
+                    shareQueue((ChannelConnectFilter)op);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether <pre>op</pre> is a connector that is run by
+     * pushing onto its input channel, rather than by the schedule.
+     */
+    private static boolean isPassThroughConnector(Operator op)
+    {
+        if (!(op instanceof ChannelConnectFilter)) {
+            return false;
+        }
+        Channel input = ((ChannelConnectFilter)op).inputChannel;
+        return input != null && input.passThrough;
+    }
+
+    /**
+     * Makes <pre>op</pre> push past the pass-through connectors on
+     * each of its output channels.
+     */
+    private static void bypassConnectors(Operator op)
+    {
+        if (op instanceof Filter) {
+            Filter filter = (Filter)op;
+            if (filter.outputChannel != null) {
+                filter.outputChannel = bypassConnectors(op, filter.outputChannel);
+            }
+        } else if (op instanceof Splitter) {
+            Splitter splitter = (Splitter)op;
+            if (splitter.outputChannel != null) {
+                for (int i = 0; i < splitter.outputChannel.length; i++) {
+                    if (splitter.outputChannel[i] != null) {
+                        splitter.outputChannel[i] =
+                            bypassConnectors(op, splitter.outputChannel[i]);
+                    }
+                }
+            }
+        } else if (op instanceof Joiner) {
+            Joiner joiner = (Joiner)op;
+            if (joiner.outputChannel != null) {
+                joiner.outputChannel = bypassConnectors(op, joiner.outputChannel);
+            }
+        }
+    }
+
+    /**
+     * Returns the channel at the end of the chain of pass-through
+     * connectors that starts with <pre>channel</pre>, and makes
+     * <pre>source</pre> its source.  A channel that already holds items
+     * ends the chain, so that no item is skipped or reordered.
+     */
+    private static Channel bypassConnectors(Operator source, Channel channel)
+    {
+        Channel result = channel;
+        while (result.passThrough
+               && result.getSink() instanceof ChannelConnectFilter
+               && result.myqueue.size() == 0) {
+            ChannelConnectFilter connect = (ChannelConnectFilter)result.getSink();
+            assert connect.inputChannel == result;
+            result = connect.outputChannel;
+        }
+        if (result != channel) {
+            result.setSource(source);
+        }
+        return result;
+    }
+
+    /**
+     * Makes the children of <pre>splitter</pre> read their items
+     * straight from its input queue, if that is possible.
+     */
+    private void remapSplitter(Splitter splitter)
+    {
+        Channel in = splitter.inputChannel;
+        Channel[] out = splitter.outputChannel;
+        int numWork = (splitter.sjIter != null
+                       ? splitter.sjIter.getSplitterNumWork()
+                       : splitter.flIter.getSplitterNumWork());
+        if (in == null || out == null || numWork != 1
+            || !in.canRemapQueue()) {
+            return;
+        }
+        int[] weights = (splitter.sjIter != null
+                         ? splitter.sjIter.getSplitPushWeights(0)
+                         : splitter.flIter.getSplitPushWeights(0));
+
+        // every child of a duplicate splitter reads every item
+        int period = 0;
+        int readers = 0;
+        for (int i = 0; i < out.length; i++) {
+            if (weights[i] == 0) {
+                continue;
+            }
+            if (!canRemapOnto(out[i], in)
+                || (splitter.duplicateSplitter
+                    && period != 0 && weights[i] != period)) {
+                return;
+            }
+            period = (splitter.duplicateSplitter
+                      ? weights[i] : period + weights[i]);
+            readers++;
+        }
+        if (readers == 0) {
+            return;
+        }
+
+        int[] runs = new int[readers];
+        int offset = 0;
+        int reader = 0;
+        for (int i = 0; i < out.length; i++) {
+            if (weights[i] == 0) {
+                continue;
+            }
+            out[i].remapQueueOnto(in, offset, weights[i], period, runs, reader++);
+            if (!splitter.duplicateSplitter) {
+                offset += weights[i];
+            }
+        }
+        remapTargets.put(in, Boolean.TRUE);
+        splitter.remapped = true;
+    }
+
+    /**
+     * Makes the children of <pre>joiner</pre> write their items
+     * straight into its output queue, if that is possible.
+     */
+    private void remapJoiner(Joiner joiner)
+    {
+        Channel[] in = joiner.inputChannel;
+        Channel out = joiner.outputChannel;
+        int numWork = (joiner.sjIter != null
+                       ? joiner.sjIter.getJoinerNumWork()
+                       : joiner.flIter.getJoinerNumWork());
+        if (in == null || out == null || numWork != 1
+            || !out.canRemapQueue()) {
+            return;
+        }
+        int[] weights = (joiner.sjIter != null
+                         ? joiner.sjIter.getJoinPopWeights(0)
+                         : joiner.flIter.getJoinPopWeights(0));
+
+        int period = 0;
+        for (int i = 0; i < in.length; i++) {
+            if (weights[i] == 0) {
+                continue;
+            }
+            if (!canRemapOnto(in[i], out)) {
+                return;
+            }
+            period += weights[i];
+        }
+        if (period == 0) {
+            return;
+        }
+
+        int offset = 0;
+        for (int i = 0; i < in.length; i++) {
+            if (weights[i] == 0) {
+                continue;
+            }
+            in[i].remapQueueOnto(out, offset, weights[i], period, null, 0);
+            offset += weights[i];
+        }
+        remapTargets.put(out, Boolean.TRUE);
+        joiner.remapped = true;
+    }
+
+    /**
+     * Returns whether <pre>channel</pre> can be remapped onto the
+     * queue of <pre>target</pre>.
+     */
+    private boolean canRemapOnto(Channel channel, Channel target)
+    {
+        return channel != null && channel != target
+            && channel.getType() == target.getType()
+            && channel.canRemapQueue()
+            && !remapTargets.containsKey(channel);
+    }
+
+    /**
+     * Makes the input channel of <pre>identity</pre> (and every
+     * channel that already uses the same queue) use the queue of its
+     * output channel, if that is possible.
+     */
+    private void shareQueue(ChannelConnectFilter identity)
+    {
+        Channel in = identity.inputChannel;
+        Channel out = identity.outputChannel;
+        if (in == null || out == null
+            || in.passThrough || out.passThrough
+            || in.isShared() || out.isShared()
+            || in.isRemapped() || out.isRemapped()
+            || remapTargets.containsKey(in) || remapTargets.containsKey(out)
+            || in.getType() != out.getType()) {
+            return;
+        }
+        List<Channel> upstream = getQueueUsers(in);
+        List<Channel> downstream = getQueueUsers(out);
+        if (upstream == downstream) {
+            return;
+        }
+
+        // the items already past the identity come first
+        in.appendQueueTo(out);
+        for (Channel channel : upstream) {
+            channel.useQueueOf(out);
+            queueUsers.put(channel, downstream);
+        }
+        downstream.addAll(upstream);
+
+        identity.sharesQueue = true;
+    }
+
+    private List<Channel> getQueueUsers(Channel channel)
+    {
+        List<Channel> users = queueUsers.get(channel);
+        if (users == null) {
+            users = new ArrayList<Channel>();
+            users.add(channel);
+            queueUsers.put(channel, users);
+        }
+        return users;
+    }
+}
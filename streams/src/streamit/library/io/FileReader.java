@@ -21,15 +21,77 @@ import streamit.library.Stream;
 import streamit.library.Channel;
 
 import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
+/**
+ * Reads items of a primitive type from a file.  Ints, shorts and
+ * floats are read little-endian and chars big-endian, as the C
+ * library writes them, unless a byte order is given; bits are read
+ * most significant first.
+ *
+ * The file is mapped into memory a window at a time, so files of any
+ * size can be read without copying them through a stream.  Items are
+ * decoded out of the mapping a block at a time into an array, and go
+ * to the output channel with one bulk push: a whole block per
+ * execution in a demand-driven (-nosched) run that runs as long as it
+ * can, and otherwise one item per execution, as the declared rate
+ * says.
+ */
 public class FileReader extends Filter
 {
+    /**
+     * The most bytes of the file that are mapped at once.  A multiple
+     * of the size of every type that is read.
+     */
+    private static final long WINDOW_SIZE = 64 << 20;
+
+    /**
+     * The most items that are decoded at once.  A multiple of 8, so
+     * that bits are decoded a whole byte at a time.
+     */
+    private static final int BLOCK_SIZE = 4096;
+
     Class fileType;
     File inputFile;
     String fileName;
-    DataInputStream inputStream;
+    ByteOrder byteOrder;
+    FileChannel fileChannel;
+    /** the part of the file being read */
+    MappedByteBuffer window;
+    /** where in the file <pre>window</pre> starts */
+    long windowStart;
+    /** bytes in one item of <pre>fileType</pre> */
+    int itemSize;
+    /** the decoded block; bits are decoded into <pre>ints</pre> */
+    int[] ints;
+    short[] shorts;
+    char[] chars;
+    float[] floats;
+    /** items in the decoded block, and the next one to push */
+    int decoded, next;
 
     public FileReader (String fileName, Class type, boolean TREAT_AS_BITS)
+    {
+        this(fileName, type, TREAT_AS_BITS, null);
+    }
+
+    // This is part of the hack to make FileReader/Writer<bit> work
+    public FileReader (String fileName, Class type) {
+        this(fileName, type, false);
+    }
+
+    /**
+     * Reads items of <pre>type</pre> that were written in
+     * <pre>order</pre>.
+     */
+    public FileReader (String fileName, Class type, ByteOrder order) {
+        this(fileName, type, false, order);
+    }
+
+    private FileReader (String fileName, Class type, boolean TREAT_AS_BITS,
+                        ByteOrder order)
     {
         // This is part of the hack to make FileReader/Writer<bit> work
         if (TREAT_AS_BITS)
@@ -37,17 +99,25 @@ public class FileReader extends Filter
         else
             this.fileType = type;
         this.fileName = fileName;
+        if (order != null)
+            this.byteOrder = order;
+        else if (fileType == Character.TYPE)
+            this.byteOrder = ByteOrder.BIG_ENDIAN;
+        else
+            this.byteOrder = ByteOrder.LITTLE_ENDIAN;
+        if (fileType == Integer.TYPE || fileType == Float.TYPE)
+            itemSize = 4;
+        else if (fileType == Short.TYPE || fileType == Character.TYPE)
+            itemSize = 2;
+        else
+            itemSize = 1;
         openFile();
     }
 
-    // This is part of the hack to make FileReader/Writer<bit> work
-    public FileReader (String fileName, Class type) {
-        this(fileName, type, false);
-    }
-
     private void closeFile() {
         try {
-            inputStream.close();
+            fileChannel.close();
+            window = null;
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -57,8 +127,11 @@ public class FileReader extends Filter
         try
             {
                 inputFile = new File(fileName);
-                FileInputStream fileInputStream = new java.io.FileInputStream (inputFile);
-                inputStream = new DataInputStream (new BufferedInputStream(fileInputStream));
+                fileChannel = new FileInputStream(inputFile).getChannel();
+                window = null;
+                windowStart = 0;
+                decoded = 0;
+                next = 0;
             }
         catch(Throwable e)
             {
@@ -66,87 +139,124 @@ public class FileReader extends Filter
             }
     }
 
+    /**
+     * Makes sure that at least <pre>bytes</pre> bytes are left in
+     * <pre>window</pre>, mapping the next part of the file if need
+     * be.  Returns false if the file doesn't have that many more
+     * bytes (yet).
+     */
+    private boolean ensureMapped(int bytes) throws IOException
+    {
+        if (window != null && window.remaining() >= bytes)
+            return true;
+        long start = windowStart;
+        if (window != null)
+            start += window.position();
+        long left = fileChannel.size() - start;
+        if (left < bytes)
+            return false;
+        window = fileChannel.map(FileChannel.MapMode.READ_ONLY, start,
+                                  Math.min(left, WINDOW_SIZE));
+        window.order(byteOrder);
+        windowStart = start;
+        return true;
+    }
+
+    /**
+     * Decodes the next block of items out of <pre>window</pre>, which
+     * holds at least one item.
+     */
+    private void decodeBlock()
+    {
+        int n = Math.min(BLOCK_SIZE, window.remaining() / itemSize);
+        // Hacked to make FileReader/Writer<bit> work
+        if (fileType == null) { // fileType is a bit
+            n = Math.min(n, BLOCK_SIZE / 8);
+            for (int i = 0; i < n; i++) {
+                byte bits = window.get();
+                for (int j = 0; j < 8; j++)
+                    ints[8 * i + j] = (bits >> (7 - j)) & 1;
+            }
+            n *= 8;
+        } else {
+            if (fileType == Integer.TYPE)
+                window.asIntBuffer().get(ints, 0, n);
+            else if (fileType == Short.TYPE)
+                window.asShortBuffer().get(shorts, 0, n);
+            else if (fileType == Character.TYPE)
+                window.asCharBuffer().get(chars, 0, n);
+            else
+                window.asFloatBuffer().get(floats, 0, n);
+            // the view buffers don't move the window along
+            window.position(window.position() + n * itemSize);
+        }
+        decoded = n;
+        next = 0;
+    }
+
     public void init ()
     {
         // Hacked to make FileReader/Writer<bit> work
         if (fileType == null) {
             outputChannel = new Channel (Integer.TYPE, 1);
-            bits_to_go = 0;
+            ints = new int[BLOCK_SIZE];
         } else {
             outputChannel = new Channel (fileType, 1);
+            if (fileType == Integer.TYPE)
+                ints = new int[BLOCK_SIZE];
+            else if (fileType == Short.TYPE)
+                shorts = new short[BLOCK_SIZE];
+            else if (fileType == Character.TYPE)
+                chars = new char[BLOCK_SIZE];
+            else if (fileType == Float.TYPE)
+                floats = new float[BLOCK_SIZE];
         }
     }
 
-    int endianFlip (int x)
-    {
-        int x0, x1, x2, x3;
-        x0 = (x >> 24) & 0xff;
-        x1 = (x >> 16) & 0xff;
-        x2 = (x >> 8) & 0xff;
-        x3 = (x >> 0) & 0xff;
-
-        return (x0 | (x1 << 8) | (x2 << 16) | (x3 << 24));
-    }
-
-    short endianFlip (short x)
-    {
-        int x0, x1, x2, x3;
-        x0 = (x >> 8) & 0xff;
-        x1 = (x >> 0) & 0xff;
-
-        return (short)(x0 | (x1 << 8));
-    }
-
-    // for reading bits one at a time.
-    private int bits_to_go = 0;
-    private byte the_bits = 0;
-
     public void work ()
     {
-        boolean done = false;
-        while (!done) {
-            try {
-                // Hacked to make FileReader/Writer<bit> work
-                if (fileType == null) { // fileType is a bit
-                    if (bits_to_go == 0) {
-                        the_bits = (byte)(inputStream.readUnsignedByte());
-                        bits_to_go = 8;
+        try {
+            if (fileType != null && fileType != Integer.TYPE
+                && fileType != Short.TYPE && fileType != Character.TYPE
+                && fileType != Float.TYPE) {
+                ERROR ("You must define a reader for your type here.\nObjects aren't really supported right now (for compatibility\nwith the C library).");
+            }
+
+            if (next == decoded) {
+                while (!ensureMapped(itemSize)) {
+                    if (!Stream.scheduledRun) {
+                        // If in -nosched mode, return from work without
+                        // having done anything.  This will result in a
+                        // NoPushPopException and a switch to the next
+                        // sink.
+                        return;
                     }
-                    outputChannel.pushInt((the_bits >> 7) & 1);
-                    the_bits <<= 1;
-                    bits_to_go--;
-                } else if (fileType == Integer.TYPE) {
-                    outputChannel.pushInt (endianFlip (inputStream.readInt ()));
-                } else if (fileType == Short.TYPE) {
-                    outputChannel.pushShort (endianFlip (inputStream.readShort ()));
-                } else if (fileType == Character.TYPE) {
-                    outputChannel.pushChar (inputStream.readChar ());
-                } else if (fileType == Float.TYPE) {
-                    outputChannel.pushFloat (Float.intBitsToFloat (endianFlip (inputStream.readInt ())));
-                } else {
-                    ERROR ("You must define a reader for your type here.\nObjects aren't really supported right now (for compatibility\nwith the C library).");
+                    // otherwise hang, for now, in case the file grows
                 }
-                done = true;
+                decodeBlock();
             }
-            catch (EOFException e) {
-                if (!Stream.scheduledRun) {
-                    // If in -nosched mode, return from work without
-                    // having done anything.  This will result in a
-                    // NoPushPopException and a switch to the next
-                    // sink.
-                    break;
-                } 
-                // otherwise hang, for now...
-
-                // try closing and opening file, to try again
-                // closeFile();
-                // openFile();
+
+            // a scheduled run pushes the declared one item per
+            // execution.  A demand-driven run takes the whole block,
+            // unless it is counting iterations: it drains the
+            // channels after each one, so every item pushed counts.
+            int n = (Stream.scheduledRun || Stream.fixedIterations)
+                ? 1 : decoded - next;
+            if (fileType == null || fileType == Integer.TYPE) {
+                outputChannel.pushInts (ints, next, n);
+            } else if (fileType == Short.TYPE) {
+                outputChannel.pushShorts (shorts, next, n);
+            } else if (fileType == Character.TYPE) {
+                outputChannel.pushChars (chars, next, n);
+            } else {
+                outputChannel.pushFloats (floats, next, n);
             }
-            catch (Throwable e)
-                {
-                    ERROR (e);
-                }
+            next += n;
         }
+        catch (Throwable e)
+            {
+                ERROR (e);
+            }
     }
 
 }
@@ -23,12 +23,28 @@ import java.util.List;
 import java.util.LinkedList;
 
 import java.io.*;
-
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes items of a primitive type to a file.  Ints, shorts and
+ * floats are written little-endian and chars big-endian, as the C
+ * library reads them, unless a byte order is given; bits are packed
+ * most significant first.
+ *
+ * Items are encoded into a direct buffer that is handed to the file's
+ * channel whenever it fills up, and when the writer is closed.
+ */
 public class FileWriter extends Filter
 {
+    /** bytes collected before they are written to the file */
+    private static final int BUFFER_SIZE = 1 << 20;
+
     Class fileType;
     File outputFile;
-    DataOutputStream outputStream;
+    FileChannel fileChannel;
+    ByteBuffer buffer;
     boolean closed = true;
     /**
      * List of all FileWriters that have ever been created.
@@ -36,6 +52,24 @@ public class FileWriter extends Filter
     private static List<FileWriter> allFileWriters = new LinkedList<FileWriter>();
 
     public FileWriter (String fileName, Class type, boolean TREAT_AS_BITS)
+    {
+        this(fileName, type, TREAT_AS_BITS, null);
+    }
+
+    // This is part of the hack to make FileReader/Writer&lt;bit:gt; work
+    public FileWriter (String fileName, Class type) {
+        this(fileName, type, false);
+    }
+
+    /**
+     * Writes items of <pre>type</pre> in <pre>order</pre>.
+     */
+    public FileWriter (String fileName, Class type, ByteOrder order) {
+        this(fileName, type, false, order);
+    }
+
+    private FileWriter (String fileName, Class type, boolean TREAT_AS_BITS,
+                        ByteOrder order)
     {
         allFileWriters.add(this);
         // This is part of the hack to make FileReader/Writer&lt;bit:gt; work
@@ -47,8 +81,14 @@ public class FileWriter extends Filter
         try
             {
                 outputFile = new File(fileName);
-                FileOutputStream fileOutputStream = new java.io.FileOutputStream (outputFile);
-                outputStream = new DataOutputStream (new BufferedOutputStream(fileOutputStream));
+                fileChannel = new FileOutputStream(outputFile).getChannel();
+                buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                if (order != null)
+                    buffer.order(order);
+                else if (fileType == Character.TYPE)
+                    buffer.order(ByteOrder.BIG_ENDIAN);
+                else
+                    buffer.order(ByteOrder.LITTLE_ENDIAN);
                 closed = false;
             }
         catch(Throwable e)
@@ -57,11 +97,6 @@ public class FileWriter extends Filter
             }
     }
 
-    // This is part of the hack to make FileReader/Writer&lt;bit:gt; work
-    public FileWriter (String fileName, Class type) {
-        this(fileName, type, false);
-    }
-
     public void init ()
     {
         // This is part of the hack to make FileReader/Writer&lt;bit:gt; work
@@ -74,27 +109,17 @@ public class FileWriter extends Filter
         }
     }
 
-    int endianFlip (int x)
-    {
-        int x0, x1, x2, x3;
-        x0 = (x >> 24) & 0xff;
-        x1 = (x >> 16) & 0xff;
-        x2 = (x >> 8) & 0xff;
-        x3 = (x >> 0) & 0xff;
-
-        return (x0 | (x1 << 8) | (x2 << 16) | (x3 << 24));
-    }
-
-    short endianFlip (short x)
+    /**
+     * Writes out whatever is in <pre>buffer</pre>.
+     */
+    private void flushBuffer() throws IOException
     {
-        int x0, x1, x2, x3;
-        x0 = (x >> 8) & 0xff;
-        x1 = (x >> 0) & 0xff;
-
-        return (short)(x0 | (x1 << 8));
+        buffer.flip();
+        while (buffer.hasRemaining())
+            fileChannel.write(buffer);
+        buffer.clear();
     }
 
-
     // for writing bits one at a time.
     private int bits_to_go = 8;
     private byte the_bits = 0;
@@ -102,24 +127,27 @@ public class FileWriter extends Filter
     public void work ()
     {
         try {
+            // every type is at most 8 bytes
+            if (buffer.remaining() < 8)
+                flushBuffer();
             // This is part of the hack to make FileReader/Writer&lt;bit:gt; work
             if (fileType == null) {
                 the_bits = (byte) ((the_bits << 1) | (inputChannel.popInt() & 1));
                 bits_to_go--;
                 if (bits_to_go == 0) {
-                    outputStream.writeByte(the_bits);
+                    buffer.put(the_bits);
                     the_bits = 0;
                     bits_to_go = 8;
                 }
             } else if (fileType == Integer.TYPE) {
-                outputStream.writeInt(endianFlip(inputChannel.popInt()));
+                buffer.putInt(inputChannel.popInt());
             } else if (fileType == Short.TYPE) {
-                outputStream.writeShort(endianFlip(inputChannel.popShort()));
+                buffer.putShort(inputChannel.popShort());
             } else if (fileType == Character.TYPE) {
-                outputStream.writeChar(inputChannel.popChar());
+                buffer.putChar(inputChannel.popChar());
             } else if (fileType == Float.TYPE) {
-                outputStream.writeInt(endianFlip(Float.floatToIntBits(inputChannel
-                                                                      .popFloat())));
+                // floatToIntBits, not putFloat, to write a single NaN
+                buffer.putInt(Float.floatToIntBits(inputChannel.popFloat()));
             } else {
                 ERROR("You must define a writer for your type here.\n" +
                       "Object writing isn't supported right now " +
@@ -150,11 +178,11 @@ public class FileWriter extends Filter
             try {
                 if (fileType == null && bits_to_go != 8) {
                     the_bits = (byte) (the_bits << bits_to_go);
-                    outputStream.writeByte(the_bits);
+                    buffer.put(the_bits);
                     bits_to_go = 8;
                 }
-                outputStream.flush();
-                outputStream.close();
+                flushBuffer();
+                fileChannel.close();
             } catch (Throwable e) {
                 ERROR(e);
             }
@@ -5,14 +5,29 @@ import java.math.BigInteger;
 
 // from http://egghead.psu.edu/~herzog/applets/lin_equation/index.html
 // replaced 'long' with BigInteger to allow for arbitrary precision rationals
+//
+// Rates in real programs almost always fit in a long, so a fraction
+// is kept in a pair of longs and all the arithmetic is done on them,
+// with every operation checked for overflow.  Only when a result
+// doesn't fit is it redone with BigIntegers, and such a fraction
+// moves back to longs as soon as it fits again.
 
 /******************************************************************************/
 public class Fraction        // encapsulates a fraction
     /******************************************************************************/
 {
 
-    private BigInteger num;
-    private BigInteger denom;
+    // if bigNum is null, the fraction is num/denom; otherwise it is
+    // bigNum/bigDenom, and at least one of them does not fit in a
+    // long.  denom is always positive, and neither num nor denom is
+    // ever Long.MIN_VALUE, so that negating them can't overflow.
+    private long num;
+    private long denom;
+    private BigInteger bigNum;
+    private BigInteger bigDenom;
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf (Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf (Long.MAX_VALUE);
 
     public void set (BigInteger num, BigInteger denom)
     {
@@ -24,13 +39,41 @@ public class Fraction        // encapsulates a fraction
         if(sign < 0)
             num = num.negate ();
 
-        this.num = num;
-        this.denom = denom;
+        if (fitsLong (num) && fitsLong (denom))
+            {
+                this.num = num.longValue ();
+                this.denom = denom.longValue ();
+                this.bigNum = null;
+                this.bigDenom = null;
+            }
+        else
+            {
+                this.bigNum = num;
+                this.bigDenom = denom;
+            }
     }
 
     public void set (long num, long denom)
     {
-        set (BigInteger.valueOf (num), BigInteger.valueOf (denom));
+        if (num == Long.MIN_VALUE || denom == Long.MIN_VALUE)
+            {
+                set (BigInteger.valueOf (num), BigInteger.valueOf (denom));
+                return;
+            }
+
+        if(denom == 0)
+            throw new ArithmeticException("Denominator in fraction cannot be zero: "+num+"/"+denom);
+
+        if (denom < 0)
+            {
+                num = -num;
+                denom = -denom;
+            }
+
+        this.num = num;
+        this.denom = denom;
+        this.bigNum = null;
+        this.bigDenom = null;
     }
 
     /******************************************************************************/
@@ -53,6 +96,8 @@ public class Fraction        // encapsulates a fraction
     {
         num = frac.num;
         denom = frac.denom;
+        bigNum = frac.bigNum;
+        bigDenom = frac.bigDenom;
     }
 
 
@@ -78,31 +123,136 @@ public class Fraction        // encapsulates a fraction
             strTokens[1] = new String("1");
         }
 
-        num = new BigInteger (strTokens[0]);
-        denom = new BigInteger (strTokens[1]);
+        set (new BigInteger (strTokens[0]), new BigInteger (strTokens[1]));
+    }
 
-        if(denom.equals (BigInteger.ZERO))
-            throw new ArithmeticException("Denominator in fraction cannot be zero: "+num.toString ()+"/"+denom.toString ());
+    // for the results of arithmetic on longs, which are already in
+    // the form the fields need
+    private Fraction()
+    {
+    }
 
-        if (denom.signum () == -1)
+    /**
+     * Returns num/denom, where denom is positive and num and denom
+     * are both known to be other than Long.MIN_VALUE.
+     */
+    private static Fraction make (long num, long denom)
+    {
+        Fraction result = new Fraction ();
+        result.num = num;
+        result.denom = denom;
+        return result;
+    }
+
+    private static boolean fitsLong (BigInteger x)
+    {
+        return x.compareTo (LONG_MIN) > 0 && x.compareTo (LONG_MAX) <= 0;
+    }
+
+    /**
+     * Returns a * b, or throws ArithmeticException if that doesn't
+     * fit in the range a Fraction keeps in a long.
+     */
+    private static long multiplyExact (long a, long b)
+    {
+        long result = a * b;
+        if ((a != 0 && (result / a != b || (a == -1 && b == Long.MIN_VALUE)))
+            || result == Long.MIN_VALUE)
+            throw new ArithmeticException ("long overflow");
+        return result;
+    }
+
+    /**
+     * Returns a + b, or throws ArithmeticException if that doesn't
+     * fit in the range a Fraction keeps in a long.
+     */
+    private static long addExact (long a, long b)
+    {
+        long result = a + b;
+        // overflow iff both operands have the sign the result lacks
+        if (((a ^ result) & (b ^ result)) < 0 || result == Long.MIN_VALUE)
+            throw new ArithmeticException ("long overflow");
+        return result;
+    }
+
+    /**
+     * Returns the greatest common divisor of a and b, which must not
+     * be negative; gcd(0, b) is b.  Uses the binary algorithm, which
+     * needs no division.
+     */
+    public static long gcd (long a, long b)
+    {
+        if (a == 0) return b;
+        if (b == 0) return a;
+
+        int shift = Long.numberOfTrailingZeros (a | b);
+        a >>= Long.numberOfTrailingZeros (a);
+        do
             {
-                num = num.negate ();
-                denom = denom.negate ();
+                b >>= Long.numberOfTrailingZeros (b);
+                if (a > b)
+                    {
+                        long t = a;
+                        a = b;
+                        b = t;
+                    }
+                b -= a;
             }
+        while (b != 0);
+
+        return a << shift;
     }
 
+    /**
+     * Returns the least common multiple of a and b, which must be
+     * positive.  Throws ArithmeticException if it doesn't fit in a
+     * long.
+     */
+    public static long lcm (long a, long b)
+    {
+        return multiplyExact (a / gcd (a, b), b);
+    }
 
     /******************************************************************************/
     public BigInteger getNum()
         /******************************************************************************/
     {
-        return num;
+        return bigNum != null ? bigNum : BigInteger.valueOf (num);
     }
 
     /******************************************************************************/
     public BigInteger getDenom()
         /******************************************************************************/
     {
+        return bigDenom != null ? bigDenom : BigInteger.valueOf (denom);
+    }
+
+    /**
+     * Returns whether both the numerator and the denominator fit in a
+     * long, so that getLongNum and getLongDenom can be used.
+     */
+    public boolean fitsLong()
+    {
+        return bigNum == null;
+    }
+
+    /**
+     * Returns the numerator as a long; fitsLong() must be true.
+     */
+    public long getLongNum()
+    {
+        if (bigNum != null)
+            throw new ArithmeticException ("Numerator does not fit in a long: " + this);
+        return num;
+    }
+
+    /**
+     * Returns the denominator as a long; fitsLong() must be true.
+     */
+    public long getLongDenom()
+    {
+        if (bigNum != null)
+            throw new ArithmeticException ("Denominator does not fit in a long: " + this);
         return denom;
     }
 
@@ -111,40 +261,39 @@ public class Fraction        // encapsulates a fraction
     public Fraction reduce()   // returns a fraction which is this reduced to lowest form
         /******************************************************************************/
     {
-        BigInteger sign = BigInteger.ONE;
-
-        if (num.signum () == -1)
+        if (bigNum == null)
             {
-                sign = BigInteger.valueOf (-1);
+                long gcd = gcd (Math.abs (num), denom);
+                return make (num / gcd, denom / gcd);
             }
 
-        if(num.equals (denom))
-            {
-                return (new Fraction (sign, BigInteger.ONE));
-            }
+        BigInteger gcd = bigNum.gcd (bigDenom);
 
-        else if (num.equals (BigInteger.ZERO))
-            {
-                return new Fraction (BigInteger.ZERO, BigInteger.ONE);
-            }
-
-        else {
-            BigInteger gcd = num.gcd (denom);
-
-            BigInteger newNum = num.divide (gcd);
-            BigInteger newDenom = denom.divide (gcd);
+        BigInteger newNum = bigNum.divide (gcd);
+        BigInteger newDenom = bigDenom.divide (gcd);
 
-            return new Fraction (newNum, newDenom);
-        }
+        return new Fraction (newNum, newDenom);
     } // end reduce()
 
+    /**
+     * Returns num/denom in lowest form, or throws ArithmeticException
+     * if num is Long.MIN_VALUE.  denom must be positive.
+     */
+    private static Fraction reduce (long num, long denom)
+    {
+        if (num == Long.MIN_VALUE)
+            throw new ArithmeticException ("long overflow");
+        long gcd = gcd (Math.abs (num), denom);
+        return make (num / gcd, denom / gcd);
+    }
+
 
     /******************************************************************************/
     public Fraction subtract(Fraction temp) // subtraction operator returns this - temp
         /******************************************************************************/
     {
 
-        return add(new Fraction(temp.num.negate (), temp.denom));
+        return add(temp.negate ());
     }
 
 
@@ -152,9 +301,25 @@ public class Fraction        // encapsulates a fraction
     public Fraction add(Fraction temp) // addition operators returns this + temp
         /******************************************************************************/
     {
-        BigInteger Dn = denom.multiply (temp.denom);
-        BigInteger Nn1 = num.multiply (temp.denom);
-        BigInteger Nn2 = temp.num.multiply (denom);
+        if (bigNum == null && temp.bigNum == null)
+            {
+                try
+                    {
+                        long gcd = gcd (denom, temp.denom);
+                        long Nn1 = multiplyExact (num, temp.denom / gcd);
+                        long Nn2 = multiplyExact (temp.num, denom / gcd);
+                        long Dn = multiplyExact (denom / gcd, temp.denom);
+                        return reduce (addExact (Nn1, Nn2), Dn);
+                    }
+                catch (ArithmeticException e)
+                    {
+                        // overflowed; do it again with BigIntegers
+                    }
+            }
+
+        BigInteger Dn = getDenom ().multiply (temp.getDenom ());
+        BigInteger Nn1 = getNum ().multiply (temp.getDenom ());
+        BigInteger Nn2 = temp.getNum ().multiply (getDenom ());
 
         BigInteger aNum = Nn1.add (Nn2);
 
@@ -169,7 +334,24 @@ public class Fraction        // encapsulates a fraction
     public Fraction multiply(Fraction temp) // multiply returns this * temp
         /******************************************************************************/
     {
-        Fraction returnValue = new Fraction(num.multiply (temp.num), denom.multiply (temp.denom));
+        if (bigNum == null && temp.bigNum == null)
+            {
+                try
+                    {
+                        // cancel across first, so that the products
+                        // are as small as they can be
+                        long gcd1 = gcd (Math.abs (num), temp.denom);
+                        long gcd2 = gcd (Math.abs (temp.num), denom);
+                        return reduce (multiplyExact (num / gcd1, temp.num / gcd2),
+                                       multiplyExact (denom / gcd2, temp.denom / gcd1));
+                    }
+                catch (ArithmeticException e)
+                    {
+                        // overflowed; do it again with BigIntegers
+                    }
+            }
+
+        Fraction returnValue = new Fraction(getNum ().multiply (temp.getNum ()), getDenom ().multiply (temp.getDenom ()));
         return returnValue.reduce();
     }
 
@@ -177,19 +359,24 @@ public class Fraction        // encapsulates a fraction
     public Fraction multiply(BigInteger temp) // multiply returns this * temp
         /******************************************************************************/
     {
-        Fraction returnValue = new Fraction(num.multiply (temp), denom);
-        return returnValue.reduce();
+        return multiply(new Fraction(temp, BigInteger.ONE));
+    }
+
+    /******************************************************************************/
+    public Fraction multiply(long temp) // multiply returns this * temp
+        /******************************************************************************/
+    {
+        return multiply(new Fraction(temp, 1));
     }
 
     /******************************************************************************/
     public Fraction divide(Fraction temp) // divide returns this / temp
         /******************************************************************************/
     {
-        if(temp.num.equals (BigInteger.ZERO)) throw new ArithmeticException
-                                                  ("Divide by zero error: " + this + " / " + temp );
+        if(temp.signum () == 0) throw new ArithmeticException
+                                    ("Divide by zero error: " + this + " / " + temp );
 
-        Fraction returnValue =  new Fraction( num.multiply (temp.denom), denom.multiply (temp.num));
-        return returnValue.reduce();
+        return multiply(temp.inverse ());
     }
 
     /******************************************************************************/
@@ -199,8 +386,7 @@ public class Fraction        // encapsulates a fraction
         if(temp.equals (BigInteger.ZERO)) throw new ArithmeticException
                                               ("Divide by zero error: " + this + " / " + temp );
 
-        Fraction returnValue =  new Fraction( num, denom.multiply (temp));
-        return returnValue.reduce();
+        return multiply(new Fraction(BigInteger.ONE, temp));
     }
 
     /******************************************************************************/
@@ -218,10 +404,34 @@ public class Fraction        // encapsulates a fraction
                                         // and 1 for this>temp
         /******************************************************************************/
     {
-        Fraction test;
+        // the denominators are positive, so this is the order of the
+        // cross products
+        if (bigNum == null && temp.bigNum == null)
+            {
+                try
+                    {
+                        long left = multiplyExact (num, temp.denom);
+                        long right = multiplyExact (temp.num, denom);
+                        return left < right ? -1 : (left == right ? 0 : 1);
+                    }
+                catch (ArithmeticException e)
+                    {
+                        // overflowed; do it again with BigIntegers
+                    }
+            }
 
-        test = subtract(temp);
-        return test.num.signum ();
+        return getNum ().multiply (temp.getDenom ())
+            .compareTo (temp.getNum ().multiply (getDenom ()));
+    }
+
+    /**
+     * Returns -1, 0 or 1 as this is negative, zero or positive.
+     */
+    public int signum()
+    {
+        if (bigNum != null)
+            return bigNum.signum ();
+        return num < 0 ? -1 : (num == 0 ? 0 : 1);
     }
 
 
@@ -229,14 +439,18 @@ public class Fraction        // encapsulates a fraction
     public Fraction inverse() // returns the inverse of this
         /******************************************************************************/
     {
-        return new Fraction(denom,num);
+        if (bigNum == null)
+            return new Fraction(denom,num);
+        return new Fraction(bigDenom,bigNum);
     }
 
     /******************************************************************************/
     public Fraction negate() // returns this * -1
         /******************************************************************************/
     {
-        return new Fraction(num.negate (),denom);
+        if (bigNum == null)
+            return make(-num,denom);
+        return new Fraction(bigNum.negate (),bigDenom);
     }
 
 
@@ -244,28 +458,40 @@ public class Fraction        // encapsulates a fraction
     public BigInteger getNumerator()
         /******************************************************************************/
     {
-        return num;
+        return getNum ();
     }
 
     /******************************************************************************/
     public BigInteger getDenominator()
         /******************************************************************************/
     {
-        return denom;
+        return getDenom ();
     }
 
     /******************************************************************************/
     public String toString()
         /******************************************************************************/
     {
-        if(num.equals (BigInteger.ZERO))
+        if (bigNum == null)
+            {
+                if(num == 0)
+                    return "0";
+                else if(denom == 1)
+                    return Long.toString (num);
+                else if(denom == num)
+                    return "1";
+                else
+                    return num + "/" + denom;
+            }
+
+        if(bigNum.equals (BigInteger.ZERO))
             return "0";
-        else if(denom.equals (BigInteger.ONE))
-            return num.toString ();
-        else if(denom.equals (num))
+        else if(bigDenom.equals (BigInteger.ONE))
+            return bigNum.toString ();
+        else if(bigDenom.equals (bigNum))
             return "1";
         else
-            return new String(num.toString () + "/" + denom.toString ());
+            return new String(bigNum.toString () + "/" + bigDenom.toString ());
     }
 
 
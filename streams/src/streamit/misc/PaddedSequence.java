@@ -0,0 +1,89 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.misc;
+
+/**
+ * A counter that is written by exactly one thread and read by
+ * others, padded so that it sits on a cache line of its own.  The
+ * SPSCRingBuffer_* classes keep one of these for the producer and
+ * one for the consumer, so that the two threads never write to the
+ * same cache line.
+ *
+ * The padding is split over a small class hierarchy because the VM
+ * lays out the fields of a superclass before those of a subclass,
+ * but is otherwise free to reorder fields within a class.
+ */
+public class PaddedSequence extends PaddedSequenceValue {
+    // padding after the value
+    long q1, q2, q3, q4, q5, q6, q7;
+
+    /**
+     * Number of times a waiting thread spins before it starts
+     * yielding the processor.
+     */
+    private static final int SPIN_LIMIT = 128;
+
+    /**
+     * Returns the current value of the counter.
+     */
+    public int get() {
+        return value;
+    }
+
+    /**
+     * Sets the counter to <pre>newValue</pre>.  Only the owning thread
+     * may call this.  This is a volatile store, so a reader that
+     * sees the new value also sees the data it publishes.
+     */
+    public void publish(int newValue) {
+        value = newValue;
+    }
+
+    /**
+     * Waits until the counter is at least <pre>target</pre> and returns
+     * its value.  Comparisons are done modulo 2^32, so the counter
+     * may wrap around.
+     */
+    public int awaitAtLeast(int target) {
+        int current;
+        int spins = 0;
+        while ((current = value) - target < 0) {
+            if (spins < SPIN_LIMIT) {
+                spins++;
+            } else {
+                Thread.yield();
+            }
+        }
+        return current;
+    }
+}
+
+class PaddedSequencePad {
+    // padding before the value
+    long p1, p2, p3, p4, p5, p6, p7;
+}
+
+class PaddedSequenceValue extends PaddedSequencePad {
+    /** the counter itself */
+    volatile int value;
+    /**
+     * The owner's last observation of the other side's counter.
+     * Only the owning thread touches this, so it shares the cache
+     * line of <pre>value</pre>.
+     */
+    int cache;
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.misc;
+
+import java.nio.BufferUnderflowException;
+
+/**
+ * A queue that keeps its items in another RingBuffer_char (the
+ * backing queue), in every period'th run of weight consecutive
+ * positions there.  The channels of a round-robin splitter's children
+ * read their items from the splitter's input queue this way, and the
+ * channels of a round-robin joiner's children write their items into
+ * the joiner's output queue this way, so that the splitter or joiner
+ * itself does not have to move them.
+ *
+ * Item j of this queue is the item with counter value
+ * <pre>base + offset + (j / weight) * period + j % weight</pre> in the
+ * backing queue, where <pre>base</pre> is the backing queue's head
+ * count when this queue is made.  Whoever uses the two queues must
+ * make sure, by keeping count of the items, that an item is only read
+ * after it has been stored.
+ *
+ * A queue that reads from the backing queue removes items from it
+ * once every queue reading from it together has dequeued all of its
+ * items in their periods.  A queue that writes into the backing
+ * queue extends it as far as the items it stores; the positions in
+ * between belong to the other writers.
+ *
+ * Code that accesses the array of the queue directly (see
+ * RingBuffer_char.array) gets a copy of the items, in this queue's
+ * own buffer, which is copied back when it advances the head.
+ *
+ * Note: there is one of these classes for every primitive type;
+ * changes to one should be made to all of them.
+ */
+public class RemappedRingBuffer_char extends RingBuffer_char {
+
+    private final RingBuffer_char backing;
+    private final int base;
+    private final int weight;
+    private final int period;
+
+    /** counter value in the backing queue of the next item */
+    private int next;
+    /** items left in the current run, starting at next */
+    private int left;
+
+    /**
+     * Runs finished by each of the queues reading the backing queue
+     * together, or null if this queue writes into it.
+     */
+    private final int[] runs;
+    /** this queue's index in runs */
+    private final int reader;
+
+    /**
+     * Constructs an empty queue whose items are kept in
+     * <pre>backing</pre> as described above.  <pre>runs</pre> is
+     * shared by every queue reading from <pre>backing</pre>, which
+     * are numbered by <pre>reader</pre>, and must start out as zeros;
+     * it is null for a queue writing into <pre>backing</pre>.
+     */
+    public RemappedRingBuffer_char(RingBuffer_char backing, int offset,
+                                   int weight, int period,
+                                   int[] runs, int reader) {
+        super(1);
+        assert weight > 0 && offset >= 0 && offset + weight <= period;
+        this.backing = backing;
+        this.base = backing.head;
+        this.weight = weight;
+        this.period = period;
+        this.runs = runs;
+        this.reader = reader;
+        next = base + offset;
+        left = weight;
+    }
+
+    /**
+     * Adds an item to the beginning of the queue.
+     */
+    public void enqueue(char i) {
+        extendBacking(next);
+        backing.buffer[next & backing.mask] = i;
+        advance(1);
+    }
+
+    /**
+     * Removes an item from the end of the queue.
+     * @throws BufferUnderflowException If the item is not in the backing queue.
+     */
+    public char dequeue() {
+        checkBacking(0, 1);
+        char return_val = backing.buffer[next & backing.mask];
+        advance(1);
+        return return_val;
+    }
+
+    /**
+     * Returns the index'th element from the end of the queue without
+     * removing it.
+     * @throws BufferUnderflowException If the item is not in the backing queue.
+     */
+    public char elem(int index) {
+        checkBacking(index, 1);
+        return backing.buffer[position(index) & backing.mask];
+    }
+
+    /**
+     * Returns the number of items of this queue that the backing
+     * queue holds.
+     */
+    public int size() {
+        int n = backing.head - next;
+        if (n <= left) {
+            return Math.max(n, 0);
+        }
+        n -= left + period - weight;
+        if (n <= 0) {
+            return left;
+        }
+        return left + (n / period) * weight + Math.min(n % period, weight);
+    }
+
+    /**
+     * Returns the number of elements the backing queue can hold
+     * before it has to grow.
+     */
+    public int capacity() {
+        return backing.capacity();
+    }
+
+    /**
+     * Adds <pre>n</pre> items, taken in order from
+     * <pre>src[off]</pre> ... <pre>src[off+n-1]</pre>, to the beginning
+     * of the queue.
+     */
+    public void enqueue(char[] src, int off, int n) {
+        if (n <= 0) {
+            return;
+        }
+        extendBacking(position(n - 1));
+        int count = n;
+        int pos = next;
+        int run = left;
+        while (n > 0) {
+            int chunk = Math.min(n, run);
+            backing.copyIn(src, off, pos, chunk);
+            pos += chunk + period - weight;
+            off += chunk;
+            n -= chunk;
+            run = weight;
+        }
+        advance(count);
+    }
+
+    /**
+     * Removes <pre>n</pre> items from the end of the queue, storing
+     * them in order in <pre>dst[off]</pre> ... <pre>dst[off+n-1]</pre>.
+     * @throws BufferUnderflowException If some of the items are not in the backing queue.
+     */
+    public void dequeue(char[] dst, int off, int n) {
+        elems(0, dst, off, n);
+        advance(n);
+    }
+
+    /**
+     * Removes <pre>n</pre> items from the end of the queue and throws
+     * them away.
+     * @throws BufferUnderflowException If some of the items are not in the backing queue.
+     */
+    public void discard(int n) {
+        if (n <= 0) {
+            return;
+        }
+        checkBacking(0, n);
+        advance(n);
+    }
+
+    /**
+     * Copies the elements at positions <pre>index</pre> ...
+     * <pre>index+n-1</pre> from the end of the queue into
+     * <pre>dst[off]</pre> ... <pre>dst[off+n-1]</pre>, without removing
+     * them from the queue.
+     * @throws BufferUnderflowException If some of the items are not in the backing queue.
+     */
+    public void elems(int index, char[] dst, int off, int n) {
+        if (n <= 0) {
+            return;
+        }
+        checkBacking(index, n);
+        int pos = position(index);
+        int run = index < left ? left - index : weight - (index - left) % weight;
+        while (n > 0) {
+            int chunk = Math.min(n, run);
+            backing.copyOut(pos, dst, off, chunk);
+            pos += chunk + period - weight;
+            off += chunk;
+            n -= chunk;
+            run = weight;
+        }
+    }
+
+    /**
+     * Makes room for <pre>n</pre> items in this queue's own buffer,
+     * which array() returns, starting at counter value 0.
+     */
+    public void reserve(int n) {
+        stage(n);
+    }
+
+    /**
+     * Adds the <pre>n</pre> items that were stored in array() to the
+     * beginning of the queue.
+     */
+    public void advanceHead(int n) {
+        enqueue(buffer, 0, n);
+    }
+
+    /**
+     * Copies the first <pre>n</pre> items of the queue into this
+     * queue's own buffer, which array() returns, starting at counter
+     * value 0.  They are removed from the queue by discard.
+     * @throws BufferUnderflowException If some of the items are not in the backing queue.
+     */
+    public void require(int n) {
+        stage(n);
+        elems(0, buffer, 0, n);
+    }
+
+    /**
+     * Does nothing: the backing queue grows as needed.
+     */
+    public void setBufferSize(int size) {
+    }
+
+    // Makes this queue's own buffer empty, with room for <n> items
+    // starting at counter value 0.
+    private void stage(int n) {
+        if (n > buffer.length) {
+            buffer = new char[RingBuffers.roundUpToPowerOfTwo(n)];
+            mask = buffer.length - 1;
+        }
+        head = 0;
+        tail = 0;
+    }
+
+    // Returns the counter value in the backing queue of the index'th
+    // item from the end of this queue.
+    private int position(int index) {
+        if (index < left) {
+            return next + index;
+        }
+        index -= left;
+        return next + left + period - weight + (index / weight) * period + index % weight;
+    }
+
+    // Moves the end of this queue past <n> items.  A reader then
+    // removes the items every reader is done with from the backing
+    // queue.
+    private void advance(int n) {
+        if (n < left) {
+            next += n;
+            left -= n;
+            return;
+        }
+        n -= left;
+        int finished = 1 + n / weight;
+        next += left + period - weight + (n / weight) * period + n % weight;
+        left = weight - n % weight;
+        if (runs != null) {
+            // only the slowest readers hold up the backing queue
+            boolean slowest = base + runs[reader] * period == backing.tail;
+            runs[reader] += finished;
+            if (slowest) {
+                release();
+            }
+        }
+    }
+
+    // Removes from the backing queue the periods whose items every
+    // reader has dequeued.
+    private void release() {
+        int done = runs[reader];
+        for (int i = 0; i < runs.length; i++) {
+            done = Math.min(done, runs[i]);
+        }
+        int end = base + done * period;
+        if (end - backing.tail > 0) {
+            backing.discard(end - backing.tail);
+        }
+    }
+
+    // Checks that the backing queue holds the index'th to
+    // (index+n-1)'th items of this queue.
+    private void checkBacking(int index, int n) {
+        if (position(index + n - 1) - backing.head >= 0) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    // Extends the backing queue to hold the item with counter value
+    // <pos>.
+    private void extendBacking(int pos) {
+        if (pos - backing.head >= 0) {
+            backing.reserve(pos + 1 - backing.head);
+            backing.head = pos + 1;
+        }
+    }
+}
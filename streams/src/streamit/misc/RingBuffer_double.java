@@ -0,0 +1,280 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.misc;
+
+import java.nio.BufferUnderflowException;
+
+/**
+ * A growable FIFO queue held in a circular buffer whose capacity is
+ * always a power of two, so that positions are found by masking
+ * instead of by a modulus.  This is the queue behind the library's
+ * channels; SPSCRingBuffer_double is a variant that can be shared
+ * between a producer thread and a consumer thread.
+ *
+ * <pre>head</pre> and <pre>tail</pre> count the items ever enqueued and
+ * dequeued; they are only reduced modulo the capacity when the
+ * buffer is indexed, and their difference is the size of the queue.
+ *
+ * Note: there is one of these classes for every primitive type (and
+ * one for Object); changes to one should be made to all of them.
+ * See WrappableGrowableQueue_obj for why this is not done with
+ * generics.
+ */
+public class RingBuffer_double implements WrappableGrowableQueue {
+
+    /** capacity of a queue that was not given one */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    double[] buffer;
+    int mask;
+    int head;
+    int tail;
+
+    /**
+     * Constructs an empty queue with the default capacity.
+     */
+    public RingBuffer_double() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty queue that can hold at least
+     * <pre>capacity</pre> elements before it has to grow.
+     */
+    public RingBuffer_double(int capacity) {
+        buffer = new double[RingBuffers.roundUpToPowerOfTwo(capacity)];
+        mask = buffer.length - 1;
+    }
+
+    /**
+     * Adds an item to the beginning of the queue.
+     * @param i The item to be added.
+     */
+    public void enqueue(double i) {
+        if (head - tail == buffer.length) {
+            grow(buffer.length * 2);
+        }
+        buffer[head & mask] = i;
+        head++;
+    }
+
+    /**
+     * Removes an item from the end of the queue.
+     * @return The item at the end of the queue
+     * @throws BufferUnderflowException If the queue is already empty.
+     */
+    public double dequeue() {
+        if (head == tail) {
+            throw new BufferUnderflowException();
+        }
+        double return_val = buffer[tail & mask];
+        tail++;
+        return return_val;
+    }
+
+    /**
+     * Returns an element at a specified position in the
+     * queue without removing it from the queue.
+     * @param index The position of an element from the end of the queue:
+     *              0 is the element at the end of the queue.
+     * @return The element at the index'th position in the queue.
+     * @throws BufferUnderflowException If index refers to an element not in the queue.
+     */
+    public double elem(int index) {
+        if (index >= head - tail) {
+            throw new BufferUnderflowException();
+        }
+        return buffer[(tail + index) & mask];
+    }
+
+    /**
+     * Returns the number of elements currently stored in the queue.
+     */
+    public int size() {
+        return head - tail;
+    }
+
+    /**
+     * Returns the number of elements the queue can hold before it
+     * has to grow.
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Adds <pre>n</pre> items, taken in order from
+     * <pre>src[off]</pre> ... <pre>src[off+n-1]</pre>, to the beginning
+     * of the queue.
+     */
+    public void enqueue(double[] src, int off, int n) {
+        if (head - tail + n > buffer.length) {
+            grow(RingBuffers.roundUpToPowerOfTwo(head - tail + n));
+        }
+        copyIn(src, off, head, n);
+        head += n;
+    }
+
+    /**
+     * Removes <pre>n</pre> items from the end of the queue, storing
+     * them in order in <pre>dst[off]</pre> ... <pre>dst[off+n-1]</pre>.
+     * @throws BufferUnderflowException If the queue holds fewer than n items.
+     */
+    public void dequeue(double[] dst, int off, int n) {
+        if (n > head - tail) {
+            throw new BufferUnderflowException();
+        }
+        copyOut(tail, dst, off, n);
+        tail += n;
+    }
+
+    /**
+     * Removes <pre>n</pre> items from the end of the queue and throws
+     * them away.
+     * @throws BufferUnderflowException If the queue holds fewer than n items.
+     */
+    public void discard(int n) {
+        if (n > head - tail) {
+            throw new BufferUnderflowException();
+        }
+        tail += n;
+    }
+
+    /**
+     * Copies the elements at positions <pre>index</pre> ...
+     * <pre>index+n-1</pre> from the end of the queue into
+     * <pre>dst[off]</pre> ... <pre>dst[off+n-1]</pre>, without removing
+     * them from the queue.
+     * @throws BufferUnderflowException If some of the positions are not in the queue.
+     */
+    public void elems(int index, double[] dst, int off, int n) {
+        if (index + n > head - tail) {
+            throw new BufferUnderflowException();
+        }
+        copyOut(tail + index, dst, off, n);
+    }
+
+    /**
+     * Returns the array that holds the queue, so that a producer or
+     * consumer can access it directly.  Its length is the capacity of
+     * the queue (a power of two), and the item with counter value
+     * <pre>c</pre> (see headCount and tailCount) is at index
+     * <pre>c &amp; (length - 1)</pre>.  The array is replaced when the
+     * queue grows.
+     */
+    public double[] array() {
+        return buffer;
+    }
+
+    /**
+     * Returns the number of items ever enqueued, which is the counter
+     * value of the next item to be enqueued.
+     */
+    public int headCount() {
+        return head;
+    }
+
+    /**
+     * Returns the number of items ever dequeued, which is the counter
+     * value of the item at the end of the queue.
+     */
+    public int tailCount() {
+        return tail;
+    }
+
+    /**
+     * Makes sure that <pre>n</pre> more items can be stored in array()
+     * without the queue growing.
+     */
+    public void reserve(int n) {
+        if (head - tail + n > buffer.length) {
+            grow(RingBuffers.roundUpToPowerOfTwo(head - tail + n));
+        }
+    }
+
+    /**
+     * Adds to the beginning of the queue the <pre>n</pre> items that
+     * were stored directly in array(), at counter values headCount()
+     * ... headCount()+n-1.  Room for them must have been reserved.
+     */
+    public void advanceHead(int n) {
+        head += n;
+    }
+
+    /**
+     * Checks that the queue holds at least <pre>n</pre> items, so that
+     * they can be read directly from array().
+     * @throws BufferUnderflowException If the queue holds fewer than n items.
+     */
+    public void require(int n) {
+        if (n > head - tail) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    // Copies <n> items from <src>, starting at <off>, into the
+    // buffer, starting at the position of counter value <pos>.
+    void copyIn(double[] src, int off, int pos, int n) {
+        int first = pos & mask;
+        int firstLength = Math.min(n, buffer.length - first);
+        System.arraycopy(src, off, buffer, first, firstLength);
+        System.arraycopy(src, off + firstLength, buffer, 0, n - firstLength);
+    }
+
+    // Copies <n> items from the buffer, starting at the position of
+    // counter value <pos>, into <dst>, starting at <off>.
+    void copyOut(int pos, double[] dst, int off, int n) {
+        int first = pos & mask;
+        int firstLength = Math.min(n, buffer.length - first);
+        System.arraycopy(buffer, first, dst, off, firstLength);
+        System.arraycopy(buffer, 0, dst, off + firstLength, n - firstLength);
+    }
+
+    // Moves the contents of the queue into a new buffer of
+    // <capacity> elements, which must be a power of two no smaller
+    // than the size of the queue.  The items keep their counter
+    // values, which RemappedRingBuffer_double relies on.
+    private void grow(int capacity) {
+        double[] old_buffer = buffer;
+        int size = head - tail;
+        int first = tail & mask;
+        int firstLength = Math.min(size, old_buffer.length - first);
+        buffer = new double[capacity];
+        mask = capacity - 1;
+        copyIn(old_buffer, first, tail, firstLength);
+        copyIn(old_buffer, 0, tail + firstLength, size - firstLength);
+    }
+
+    /**
+     * Changes the size of the buffer used to hold the queue, so
+     * that objects which know they need a queue of a certain size
+     * can grow it to that size beforehand.  The buffer is rounded up
+     * to the next power of two.
+     * @param size The number of elements the buffer should be able to hold.
+     * @throws IllegalArgumentException If one tries to set the buffer size to a value
+     *                                  smaller than the current number of elements in the queue.
+     */
+    public void setBufferSize(int size) {
+        if (head - tail > size) {
+            throw new IllegalArgumentException("sizeof_queue " + (head - tail) + " size " + size);
+        }
+        int capacity = RingBuffers.roundUpToPowerOfTwo(size);
+        if (capacity != buffer.length) {
+            grow(capacity);
+        }
+    }
+}
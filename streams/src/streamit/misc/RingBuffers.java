@@ -0,0 +1,42 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.misc;
+
+/**
+ * Helper functions shared by the RingBuffer_* and SPSCRingBuffer_*
+ * classes.
+ */
+public class RingBuffers {
+
+    /** largest power of two that fits in an int */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Returns the smallest power of two that is at least
+     * <pre>n</pre> (and at least 1).
+     */
+    public static int roundUpToPowerOfTwo(int n) {
+        if (n > MAX_CAPACITY) {
+            throw new IllegalArgumentException("ring buffer capacity " + n + " is too large");
+        }
+        int capacity = 1;
+        while (capacity < n) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.misc;
+
+/**
+ * A bounded, lock-free variant of RingBuffer_int for a queue that
+ * has exactly one producer thread and one consumer thread.
+ *
+ * The queue never grows.  Instead, enqueue waits while the queue is
+ * full, and dequeue and elem wait until the requested element has
+ * been produced.  The producer's and consumer's counters live on
+ * separate cache lines (see PaddedSequence), and each side caches
+ * its last view of the other side's counter, so that in the common
+ * case neither thread reads a line that the other one is writing.
+ *
+ * The queue must be built (and the original queue abandoned) before
+ * the producer and consumer threads are started.
+ *
+ * Note: there is one of these classes for every primitive type (and
+ * one for Object); changes to one should be made to all of them.
+ */
+public class SPSCRingBuffer_int extends RingBuffer_int {
+
+    /** items enqueued; cache holds the consumer's count last seen */
+    private final PaddedSequence producer = new PaddedSequence();
+    /** items dequeued; cache holds the producer's count last seen */
+    private final PaddedSequence consumer = new PaddedSequence();
+
+    /**
+     * Constructs a queue that holds at least <pre>capacity</pre>
+     * elements, initially containing the elements of
+     * <pre>contents</pre>.
+     */
+    public SPSCRingBuffer_int(RingBuffer_int contents, int capacity) {
+        super(Math.max(capacity, contents.size()));
+        int size = contents.size();
+        for (int i = 0; i < size; i++) {
+            buffer[i] = contents.elem(i);
+        }
+        producer.value = size;
+        consumer.cache = size;
+    }
+
+    /**
+     * Adds an item to the beginning of the queue, waiting for the
+     * consumer if the queue is full.  Only the producer may call this.
+     */
+    public void enqueue(int i) {
+        int head = producer.value;
+        if (head - producer.cache == buffer.length) {
+            producer.cache = consumer.awaitAtLeast(head - buffer.length + 1);
+        }
+        buffer[head & mask] = i;
+        producer.publish(head + 1);
+    }
+
+    /**
+     * Removes an item from the end of the queue, waiting for the
+     * producer if the queue is empty.  Only the consumer may call this.
+     */
+    public int dequeue() {
+        int tail = consumer.value;
+        if (tail == consumer.cache) {
+            consumer.cache = producer.awaitAtLeast(tail + 1);
+        }
+        int return_val = buffer[tail & mask];
+        consumer.publish(tail + 1);
+        return return_val;
+    }
+
+    /**
+     * Returns the index'th element from the end of the queue,
+     * waiting for the producer until it is available.  Only the
+     * consumer may call this.
+     */
+    public int elem(int index) {
+        int tail = consumer.value;
+        if (consumer.cache - tail <= index) {
+            consumer.cache = producer.awaitAtLeast(tail + index + 1);
+        }
+        return buffer[(tail + index) & mask];
+    }
+
+    /**
+     * Adds <pre>n</pre> items to the beginning of the queue, waiting
+     * for the consumer whenever the queue is full.  Only the producer
+     * may call this.
+     */
+    public void enqueue(int[] src, int off, int n) {
+        int head = producer.value;
+        while (n > 0) {
+            int chunk = Math.min(n, buffer.length);
+            if (head - producer.cache + chunk > buffer.length) {
+                producer.cache = consumer.awaitAtLeast(head + chunk - buffer.length);
+            }
+            copyIn(src, off, head, chunk);
+            head += chunk;
+            off += chunk;
+            n -= chunk;
+            producer.publish(head);
+        }
+    }
+
+    /**
+     * Removes <pre>n</pre> items from the end of the queue, waiting
+     * for the producer until they are available.  Only the consumer
+     * may call this.
+     */
+    public void dequeue(int[] dst, int off, int n) {
+        int tail = consumer.value;
+        while (n > 0) {
+            int chunk = Math.min(n, buffer.length);
+            if (consumer.cache - tail < chunk) {
+                consumer.cache = producer.awaitAtLeast(tail + chunk);
+            }
+            copyOut(tail, dst, off, chunk);
+            tail += chunk;
+            off += chunk;
+            n -= chunk;
+            consumer.publish(tail);
+        }
+    }
+
+    /**
+     * Removes <pre>n</pre> items from the end of the queue and throws
+     * them away, waiting for the producer until they are available.
+     * Only the consumer may call this.
+     */
+    public void discard(int n) {
+        int tail = consumer.value;
+        while (n > 0) {
+            int chunk = Math.min(n, buffer.length);
+            if (consumer.cache - tail < chunk) {
+                consumer.cache = producer.awaitAtLeast(tail + chunk);
+            }
+            tail += chunk;
+            n -= chunk;
+            consumer.publish(tail);
+        }
+    }
+
+    /**
+     * Copies the index'th to (index+n-1)'th elements from the end of
+     * the queue, waiting for the producer until they are available.
+     * Only the consumer may call this.
+     */
+    public void elems(int index, int[] dst, int off, int n) {
+        int tail = consumer.value;
+        if (consumer.cache - tail < index + n) {
+            consumer.cache = producer.awaitAtLeast(tail + index + n);
+        }
+        copyOut(tail + index, dst, off, n);
+    }
+
+    /**
+     * Returns the number of items ever enqueued.  Only the producer
+     * may call this.
+     */
+    public int headCount() {
+        return producer.value;
+    }
+
+    /**
+     * Returns the number of items ever dequeued.  Only the consumer
+     * may call this.
+     */
+    public int tailCount() {
+        return consumer.value;
+    }
+
+    /**
+     * Waits for the consumer until <pre>n</pre> more items can be
+     * stored in array().  Only the producer may call this.
+     */
+    public void reserve(int n) {
+        if (n > buffer.length) {
+            throw new IllegalArgumentException("shared queue of capacity " + buffer.length
+                                               + " can't hold " + n + " more items");
+        }
+        int head = producer.value;
+        if (head - producer.cache + n > buffer.length) {
+            producer.cache = consumer.awaitAtLeast(head + n - buffer.length);
+        }
+    }
+
+    /**
+     * Publishes the <pre>n</pre> items that were stored directly in
+     * array() to the consumer.  Only the producer may call this.
+     */
+    public void advanceHead(int n) {
+        producer.publish(producer.value + n);
+    }
+
+    /**
+     * Waits for the producer until the queue holds at least
+     * <pre>n</pre> items.  Only the consumer may call this.
+     */
+    public void require(int n) {
+        int tail = consumer.value;
+        if (consumer.cache - tail < n) {
+            consumer.cache = producer.awaitAtLeast(tail + n);
+        }
+    }
+
+    /**
+     * Returns the number of elements in the queue.  When called by
+     * either endpoint, the result may be stale in the conservative
+     * direction: the producer never sees fewer elements than there
+     * are, and the consumer never sees more.
+     */
+    public int size() {
+        return producer.get() - consumer.get();
+    }
+
+    /**
+     * The buffer of a shared queue cannot be resized; this only
+     * checks that it is already large enough.
+     */
+    public void setBufferSize(int size) {
+        if (size > buffer.length) {
+            throw new IllegalArgumentException("shared queue of capacity " + buffer.length
+                                               + " can't grow to " + size);
+        }
+    }
+}
@@ -18,7 +18,11 @@ package streamit.scheduler2;
 
 import streamit.misc.AssertedClass;
 import streamit.misc.Pair;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Vector;
+import java.util.WeakHashMap;
 
 /**
  * <dl>
@@ -30,6 +34,13 @@ import java.util.Vector;
  * of subschedules or it can hold a reference to a function that 
  * should be executed.
  * </dl>
+ *
+ * <p>Schedules can be interned (see intern()), so that there is
+ * only ever one copy of a given schedule.  A schedule that repeats
+ * the same phases as another, which is common in split-joins and in
+ * the steady states of filters, is then just another reference to
+ * the same object, and the whole schedule is a DAG rather than a
+ * tree.</p>
  * 
  * @version 2
  * @author  Michal Karczmarek
@@ -57,6 +68,20 @@ public class Schedule extends AssertedClass
     // identifier of this stream (used for hashcode)
     private int id = MAX_ID++;
 
+    /**
+     * The interned schedules, keyed by their contents.  An entry goes
+     * away once nothing refers to its schedule any more (only the
+     * schedule itself refers to its key).
+     */
+    private static final Map<Key, WeakReference<Schedule>> canonical =
+        new WeakHashMap<Key, WeakReference<Schedule>>();
+
+    /**
+     * The contents of this schedule, if it has been interned; null
+     * otherwise.  An interned schedule can't be changed.
+     */
+    private Key key = null;
+
     /**
      * Create a schedule that will be used with many sub-schedules.
      */
@@ -137,6 +162,7 @@ public class Schedule extends AssertedClass
     {
         // make sure this is not a bottom schedule
         assert subScheds != null;
+        assert key == null : "can't add to an interned schedule";
 
         subScheds.add(new Pair(subSchedule, new Integer(1)));
     }
@@ -151,6 +177,7 @@ public class Schedule extends AssertedClass
     {
         // make sure this is not a bottom schedule
         assert subScheds != null;
+        assert key == null : "can't add to an interned schedule";
 
         subScheds.add(new Pair(subSchedule, new Integer(numExecs)));
     }
@@ -185,4 +212,130 @@ public class Schedule extends AssertedClass
         return id;
     }
 
+    /**
+     * Returns the interned schedule with the same contents as this
+     * one: this schedule itself if it is the first with those
+     * contents to be interned, and the earlier one otherwise.  The
+     * sub-schedules are interned first, and replaced by their interned
+     * versions.  Once a schedule has been interned, no more
+     * sub-schedules can be added to it.
+     *
+     * Bottom schedules have the same contents if their work functions
+     * and streams are equal.  Other schedules have the same contents
+     * if they execute the same interned sub-schedules the same number
+     * of times, in the same order; their streams are not compared, so
+     * getStream() on an interned schedule that is not a bottom
+     * schedule returns the stream of the first schedule interned with
+     * those contents.
+     * @return interned schedule with the contents of this one
+     */
+    public Schedule intern()
+    {
+        if (key != null)
+            return this;
+
+        if (subScheds != null)
+            {
+                for (int nSched = 0; nSched < subScheds.size(); nSched++)
+                    {
+                        Pair<Schedule,Integer> sub = subScheds.get(nSched);
+                        Schedule internedSub = sub.getFirst().intern();
+                        if (internedSub != sub.getFirst())
+                            subScheds.set(nSched,
+                                          new Pair<Schedule,Integer>(internedSub,
+                                                                     sub.getSecond()));
+                    }
+            }
+
+        Key newKey = new Key(this);
+        synchronized (canonical)
+            {
+                WeakReference<Schedule> ref = canonical.get(newKey);
+                Schedule existing = (ref == null ? null : ref.get());
+                if (existing != null)
+                    return existing;
+
+                key = newKey;
+                canonical.put(newKey, new WeakReference<Schedule>(this));
+                return this;
+            }
+    }
+
+    /**
+     * Returns whether this schedule has been interned.
+     */
+    public boolean isInterned()
+    {
+        return key != null;
+    }
+
+    /**
+     * The contents of a schedule, as compared by intern().  The
+     * sub-schedules are compared by identity, as they have been
+     * interned already.
+     */
+    private static final class Key
+    {
+        private final Object workFunc;
+        private final streamit.scheduler2.iriter.Iterator workStream;
+        private final Schedule[] subScheds;
+        private final int[] numExecs;
+        private final int hash;
+
+        Key(Schedule sched)
+        {
+            if (sched.isBottomSchedule())
+                {
+                    workFunc = sched.workFunc;
+                    workStream = sched.workStream;
+                    subScheds = null;
+                    numExecs = null;
+                    hash = (workFunc == null ? 0 : workFunc.hashCode()) * 31
+                        + (workStream == null ? 0 : workStream.hashCode());
+                }
+            else
+                {
+                    workFunc = null;
+                    workStream = null;
+                    subScheds = new Schedule[sched.getNumPhases()];
+                    numExecs = new int[sched.getNumPhases()];
+                    int h = 1;
+                    for (int nSched = 0; nSched < subScheds.length; nSched++)
+                        {
+                            subScheds[nSched] = sched.getSubSched(nSched);
+                            numExecs[nSched] = sched.getSubSchedNumExecs(nSched);
+                            h = h * 31 + subScheds[nSched].hashCode();
+                            h = h * 31 + numExecs[nSched];
+                        }
+                    hash = h;
+                }
+        }
+
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            if (hash != other.hash)
+                return false;
+            if (subScheds == null || other.subScheds == null)
+                return subScheds == other.subScheds
+                    && (workFunc == null ? other.workFunc == null
+                        : workFunc.equals(other.workFunc))
+                    && (workStream == null ? other.workStream == null
+                        : workStream.equals(other.workStream));
+            if (subScheds.length != other.subScheds.length)
+                return false;
+            for (int nSched = 0; nSched < subScheds.length; nSched++)
+                if (subScheds[nSched] != other.subScheds[nSched])
+                    return false;
+            return Arrays.equals(numExecs, other.numExecs);
+        }
+    }
+
 }
@@ -65,6 +65,21 @@ public class ScheduleBuffers extends DestroyedClass
         return status.getBufferSize();
     }
 
+    /**
+     * Returns the sum of the sizes of all the buffers in the stream,
+     * which is how much data the schedules seen so far need to have
+     * room for at once.
+     */
+    public int getTotalBufferSize()
+    {
+        int total = 0;
+        for (BufferStatus status : bufferSizes.values())
+            {
+                total += status.getBufferSize();
+            }
+        return total;
+    }
+
     final private Map<Iterator, Iterator> user2persistent = new HashMap<Iterator, Iterator>();
     final private Map<Iterator, Iterator> firstChildStream = new HashMap<Iterator, Iterator>();
     final private Map<Iterator, Iterator> lastChildStream = new HashMap<Iterator, Iterator>();
@@ -893,6 +908,13 @@ public class ScheduleBuffers extends DestroyedClass
                                 }
                             else
                                 ERROR("stream variable is not a known stream type!");
+
+                            // if the stream being scheduled has an input
+                            // or output tape of its own, there's no buffer
+                            // for it, and the delta for it was filed under
+                            // null, over the buffer set - put the set back
+                            buffers.remove(null);
+                            deltas.put(null, buffers);
                             assert deltas.get(null) != null;
                         }
                 }
@@ -16,17 +16,26 @@
 
 package streamit.scheduler2;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.Vector;
 import streamit.misc.AssertedClass;
-import streamit.scheduler2.iriter.Iterator;
 
 /**
  * This class takes a schedule produced by the scheduler and optimizes it
  * into a more compact schedule.
+ *
+ * The schedules are interned (see Schedule.intern()) before they are
+ * optimized, so every distinct phase is a single node of a DAG, and
+ * each optimization works on every node once, rewriting it into a new
+ * interned node.  The optimizations are repeated until they leave
+ * both schedules unchanged.  collectRepeats and liftSingles only look
+ * at the phases under a node, so what they make of a node is
+ * remembered from one round to the next; liftSingles2 depends on how
+ * often phases are used, so it starts afresh each round.
  */
 
 public class ScheduleOptimizer extends AssertedClass
@@ -48,32 +57,30 @@ public class ScheduleOptimizer extends AssertedClass
         scheduler = _scheduler;
     }
 
-    Integer symbolicUnoptimizedInit = null;
-    Integer symbolicUnoptimizedSteady = null;
+    // the schedules as they are being optimized
+    Schedule init = null;
+    Schedule steady = null;
 
     public void optimize()
     {
-        symbolicUnoptimizedInit = convertToSymbolic(unoptimizedInit);
-        symbolicUnoptimizedSteady = convertToSymbolic(unoptimizedSteady);
+        init = unoptimizedInit.intern();
+        steady = unoptimizedSteady.intern();
 
-        Integer oldUnoptimizedInit;
-        Integer oldUnoptimizedSteady;
+        Schedule oldInit;
+        Schedule oldSteady;
 
         do
             {
-                oldUnoptimizedInit = symbolicUnoptimizedInit;
-                oldUnoptimizedSteady = symbolicUnoptimizedSteady;
+                oldInit = init;
+                oldSteady = steady;
                 collectRepeats();
                 liftSingles();
                 liftSingles2();
             }
-        while (oldUnoptimizedInit.intValue()
-               != symbolicUnoptimizedInit.intValue()
-               || oldUnoptimizedSteady.intValue()
-               != symbolicUnoptimizedSteady.intValue());
+        while (oldInit != init || oldSteady != steady);
 
-        optimizedInit = convertToSchedule(symbolicUnoptimizedInit);
-        optimizedSteady = convertToSchedule(symbolicUnoptimizedSteady);
+        optimizedInit = init;
+        optimizedSteady = steady;
     }
 
     public Schedule getOptimizedInitSched()
@@ -108,460 +115,275 @@ public class ScheduleOptimizer extends AssertedClass
 
     // ---------------- Beef of the class ----------------
 
-    Map<Integer, Integer> integers = new HashMap<Integer, Integer>();
-
-    Integer getInteger(int i)
-    {
-        Integer key = new Integer(i);
-
-        if (!integers.containsKey(key))
-            {
-                integers.put(key, key);
-                return key;
-            }
-
-        return integers.get(key);
-    }
-    
-    // this will store a map of Schedule -> Integer
-    // Integer stores an index into a Vector which stores the
-    // details of the specific symbolic phase
-    Map<Schedule, Integer> sched2symbolicIdx = new HashMap<Schedule, Integer>();
-    Map<Integer, Schedule> symbolicIdx2sched = new HashMap<Integer, Schedule>();
-
-    Map<Integer, Vector<Object>> symbolicIdx2symbolic = new HashMap<Integer, Vector<Object>>();
-    Map<Vector<Object>, Integer> symbolic2symbolicIdx = new HashMap<Vector<Object>, Integer>();
-    Map<Integer, Iterator> symbolicIdx2stream = new HashMap<Integer, Iterator>();
-
-    Integer convertToSymbolic(Schedule sched)
+    /**
+     * Makes an interned schedule that executes <pre>phases</pre> the
+     * number of times in <pre>numExecs</pre>, to replace
+     * <pre>original</pre>.
+     */
+    Schedule makeSchedule(Schedule original,
+                          List<Schedule> phases,
+                          List<Integer> numExecs)
     {
-        if (sched2symbolicIdx.containsKey(sched))
-            {
-                return sched2symbolicIdx.get(sched);
-            }
-
-        // convert all the children
-        if (!sched.isBottomSchedule())
-            {
-                for (int nPhase = 0; nPhase < sched.getNumPhases(); nPhase++)
-                    {
-                        convertToSymbolic(sched.getSubSched(nPhase));
-                    }
-            }
-
-        Integer symbolicIdx = getInteger(symbolicIdx2symbolic.size());
-
-        // create a vector version of self
-        Vector<Object> self = new Vector<Object>();
-        if (!sched.isBottomSchedule())
-            {
-                for (int nPhase = 0; nPhase < sched.getNumPhases(); nPhase++)
-                    {
-                        self.add(getInteger(sched.getSubSchedNumExecs(nPhase)));
-                        self.add(sched2symbolicIdx.get(sched.getSubSched(nPhase)));
-                    }
-            }
-        else
-            {
-                // this is an actual leaf - create a vector with just
-                // a single entry - the schedule
-                self.add(sched);
-            }
-
-        if (symbolic2symbolicIdx.containsKey(self))
+        Schedule sched = new Schedule(original.getStream());
+        for (int i = 0; i < phases.size(); i++)
             {
-                symbolicIdx = symbolic2symbolicIdx.get(self);
-                sched2symbolicIdx.put(sched, symbolicIdx);
-
-                return symbolicIdx;
+                sched.addSubSchedule(phases.get(i), numExecs.get(i).intValue());
             }
-
-        // and insert the symbolic representation and idx 
-        // into both way lookups
-        symbolicIdx2symbolic.put(symbolicIdx, self);
-        symbolic2symbolicIdx.put(self, symbolicIdx);
-
-        // also record the stream to which this schedule belongs
-        symbolicIdx2stream.put(symbolicIdx, sched.getStream());
-
-        // and store two-way maps of the sched <=> idx
-        sched2symbolicIdx.put(sched, symbolicIdx);
-        symbolicIdx2sched.put(symbolicIdx, sched);
-
-        return symbolicIdx;
+        return sched.intern();
     }
 
-    Schedule convertToSchedule(Integer symbolicIdx)
-    {
-        if (symbolicIdx2sched.containsKey(symbolicIdx))
-            {
-                return symbolicIdx2sched.get(symbolicIdx);
-            }
-
-        Vector self = symbolicIdx2symbolic.get(symbolicIdx);
-
-        if (self.size() == 1)
-            {
-                // this phase is actually a bottom schedule
-                // just return it!
-                return (Schedule)self.get(0);
-            }
-        else
-            {
-                Schedule newSched =
-                    new Schedule(symbolicIdx2stream.get(symbolicIdx));
-                Vector symbolicSched =
-                    symbolicIdx2symbolic.get(symbolicIdx);
-
-                for (int i = 0; i < symbolicSched.size(); i += 2)
-                    {
-                        newSched.addSubSchedule(
-                                                convertToSchedule((Integer)symbolicSched.get(i + 1)),
-                                                ((Integer)symbolicSched.get(i)).intValue());
-                    }
-
-                symbolicIdx2sched.put(symbolicIdx, newSched);
-
-                return newSched;
-            }
-    }
+    // what collectRepeats has made of each schedule so far
+    Map<Schedule, Schedule> collectRepeatsDone = new IdentityHashMap<Schedule, Schedule>();
 
     void collectRepeats()
     {
-        Map<Integer, Integer> symbolicIdxSubstitionsChain = new HashMap<Integer, Integer>();
-        symbolicUnoptimizedInit =
-            collectRepeats(
-                           symbolicUnoptimizedInit,
-                           symbolicIdxSubstitionsChain);
-        symbolicUnoptimizedSteady =
-            collectRepeats(
-                           symbolicUnoptimizedSteady,
-                           symbolicIdxSubstitionsChain);
+        init = collectRepeats(init);
+        steady = collectRepeats(steady);
     }
 
-    Integer collectRepeats(
-                           Integer symbolicIdx,
-                           Map<Integer, Integer> symbolicIdxSubstitionsChain)
+    /**
+     * Merges consecutive executions of the same phase into one.
+     */
+    Schedule collectRepeats(Schedule sched)
     {
-        if (symbolicIdxSubstitionsChain.containsKey(symbolicIdx))
+        // can't do anything to leaf schedules
+        if (sched.isBottomSchedule())
+            return sched;
+
+        Schedule done = collectRepeatsDone.get(sched);
+        if (done != null)
             {
-                return symbolicIdxSubstitionsChain.get(symbolicIdx);
+                return done;
             }
 
-        Vector symbolicSched =
-            symbolicIdx2symbolic.get(symbolicIdx);
-
-        // can't do anything to leaf schedules
-        if (symbolicSched.size() == 1)
-            return symbolicIdx;
-
-        Vector<Object> newSymbolicSched = new Vector<Object>();
-        Integer previousPhaseIdx = getInteger(-1);
+        List<Schedule> newPhases = new ArrayList<Schedule>();
+        List<Integer> newNumExecs = new ArrayList<Integer>();
+        Schedule previousPhase = null;
 
-        for (int i = 0; i < symbolicSched.size(); i += 2)
+        for (int i = 0; i < sched.getNumPhases(); i++)
             {
-                Integer phaseSymbolicIdx = (Integer)symbolicSched.get(i + 1);
-                Integer phaseNumExec = (Integer)symbolicSched.get(i);
-
                 // optimize the child phase
-                phaseSymbolicIdx =
-                    collectRepeats(
-                                   phaseSymbolicIdx,
-                                   symbolicIdxSubstitionsChain);
+                Schedule phase = collectRepeats(sched.getSubSched(i));
+                int phaseNumExec = sched.getSubSchedNumExecs(i);
 
-                if (phaseSymbolicIdx.intValue() == previousPhaseIdx.intValue())
+                if (phase == previousPhase)
                     {
-                        int prevSchedIdx = newSymbolicSched.size() - 2;
-                        int prevNumExec =
-                            ((Integer)newSymbolicSched.get(prevSchedIdx))
-                            .intValue();
-
-                        newSymbolicSched.set(
-                                             prevSchedIdx,
-                                             getInteger(prevNumExec + phaseNumExec.intValue()));
+                        int prevSchedIdx = newNumExecs.size() - 1;
+                        int prevNumExec = newNumExecs.get(prevSchedIdx).intValue();
+
+                        newNumExecs.set(prevSchedIdx,
+                                        new Integer(prevNumExec + phaseNumExec));
                     }
                 else
                     {
-                        newSymbolicSched.add(phaseNumExec);
-                        newSymbolicSched.add(phaseSymbolicIdx);
+                        newPhases.add(phase);
+                        newNumExecs.add(new Integer(phaseNumExec));
                     }
 
-                previousPhaseIdx = phaseSymbolicIdx;
+                previousPhase = phase;
             }
 
-        Integer newSymbolicIdx;
-        if (symbolic2symbolicIdx.containsKey(newSymbolicSched))
-            {
-                newSymbolicIdx =
-                    symbolic2symbolicIdx.get(newSymbolicSched);
-            }
-        else
-            {
-                newSymbolicIdx = getInteger(symbolicIdx2symbolic.size());
-                symbolic2symbolicIdx.put(newSymbolicSched, newSymbolicIdx);
-                symbolicIdx2symbolic.put(newSymbolicIdx, newSymbolicSched);
-                symbolicIdx2stream.put(
-                                       newSymbolicIdx,
-                                       symbolicIdx2stream.get(symbolicIdx));
-            }
-
-        symbolicIdxSubstitionsChain.put(symbolicIdx, newSymbolicIdx);
-        return newSymbolicIdx;
+        Schedule newSched = makeSchedule(sched, newPhases, newNumExecs);
+        collectRepeatsDone.put(sched, newSched);
+        return newSched;
     }
 
+    // what liftSingles has made of each schedule so far
+    Map<Schedule, Schedule> liftSinglesDone = new IdentityHashMap<Schedule, Schedule>();
+
     void liftSingles()
     {
-        Map<Integer, Integer> symbolicIdxSubstitionsChain = new HashMap<Integer, Integer>();
-        symbolicUnoptimizedInit =
-            liftSingles(
-                        symbolicUnoptimizedInit,
-                        symbolicIdxSubstitionsChain);
-        symbolicUnoptimizedSteady =
-            liftSingles(
-                        symbolicUnoptimizedSteady,
-                        symbolicIdxSubstitionsChain);
+        init = liftSingles(init);
+        steady = liftSingles(steady);
     }
 
-    Integer liftSingles(
-                        Integer symbolicIdx,
-                        Map<Integer, Integer> symbolicIdxSubstitionsChain)
+    /**
+     * Drops phases that are executed no times or do nothing, and
+     * replaces phases that consist of a single phase by that phase.
+     */
+    Schedule liftSingles(Schedule sched)
     {
-        if (symbolicIdxSubstitionsChain.containsKey(symbolicIdx))
+        // can't do anything to leaf schedules
+        if (sched.isBottomSchedule())
+            return sched;
+
+        Schedule done = liftSinglesDone.get(sched);
+        if (done != null)
             {
-                return symbolicIdxSubstitionsChain.get(symbolicIdx);
+                return done;
             }
 
-        Vector symbolicSched =
-            symbolicIdx2symbolic.get(symbolicIdx);
-
-        // can't do anything to leaf schedules
-        if (symbolicSched.size() == 1)
-            return symbolicIdx;
+        List<Schedule> newPhases = new ArrayList<Schedule>();
+        List<Integer> newNumExecs = new ArrayList<Integer>();
 
-        Vector<Object> newSymbolicSched = new Vector<Object>();
-
-        for (int i = 0; i < symbolicSched.size(); i += 2)
+        for (int i = 0; i < sched.getNumPhases(); i++)
             {
-                Integer phaseSymbolicIdx = (Integer)symbolicSched.get(i + 1);
-                Integer phaseNumExec = (Integer)symbolicSched.get(i);
+                int phaseNumExec = sched.getSubSchedNumExecs(i);
 
                 // if for some reason I have a phase that
                 // doesn't get executed, skip it
-                if (phaseNumExec.intValue() == 0)
+                if (phaseNumExec == 0)
                     continue;
 
                 // optimize the child phase
-                phaseSymbolicIdx =
-                    liftSingles(phaseSymbolicIdx, symbolicIdxSubstitionsChain);
-
-                Vector phaseSymbolicSched;
-                phaseSymbolicSched =
-                    symbolicIdx2symbolic.get(phaseSymbolicIdx);
+                Schedule phase = liftSingles(sched.getSubSched(i));
 
-                // if the phase I'm referencing has not sub-phases, skip it
-                if (phaseSymbolicSched.size() == 0)
-                    continue;
-
-                // if the phase I'm referencing is only a single-phase phase,
-                // simply lift
-                if (phaseSymbolicSched.size() == 2)
+                if (!phase.isBottomSchedule())
                     {
-                        phaseSymbolicIdx = (Integer)phaseSymbolicSched.get(1);
-                        phaseNumExec =
-                            getInteger(
-                                       phaseNumExec.intValue()
-                                       * ((Integer)phaseSymbolicSched.get(0))
-                                       .intValue());
-                    }
+                        // if the phase I'm referencing has not sub-phases, skip it
+                        if (phase.getNumPhases() == 0)
+                            continue;
 
-                newSymbolicSched.add(phaseNumExec);
-                newSymbolicSched.add(phaseSymbolicIdx);
-            }
+                        // if the phase I'm referencing is only a single-phase phase,
+                        // simply lift
+                        if (phase.getNumPhases() == 1)
+                            {
+                                phaseNumExec *= phase.getSubSchedNumExecs(0);
+                                phase = phase.getSubSched(0);
+                            }
+                    }
 
-        Integer newSymbolicIdx;
-        if (symbolic2symbolicIdx.containsKey(newSymbolicSched))
-            {
-                newSymbolicIdx =
-                    symbolic2symbolicIdx.get(newSymbolicSched);
-            }
-        else
-            {
-                newSymbolicIdx = getInteger(symbolicIdx2symbolic.size());
-                symbolic2symbolicIdx.put(newSymbolicSched, newSymbolicIdx);
-                symbolicIdx2symbolic.put(newSymbolicIdx, newSymbolicSched);
-                symbolicIdx2stream.put(
-                                       newSymbolicIdx,
-                                       symbolicIdx2stream.get(symbolicIdx));
+                newPhases.add(phase);
+                newNumExecs.add(new Integer(phaseNumExec));
             }
 
-        symbolicIdxSubstitionsChain.put(symbolicIdx, newSymbolicIdx);
-        return newSymbolicIdx;
+        Schedule newSched = makeSchedule(sched, newPhases, newNumExecs);
+        liftSinglesDone.put(sched, newSched);
+        return newSched;
     }
 
-    void collectPhaseUseInfo(Integer phaseIdx, Map<Integer, Integer> phaseUseCount)
+    /**
+     * Counts how many times each phase is used by other phases.
+     * Phases used more than once are only counted the first time
+     * round; bottom schedules are given a count of -1, so that they
+     * are never inlined.
+     */
+    void collectPhaseUseInfo(Schedule phase, Map<Schedule, Integer> phaseUseCount)
     {
-        if (phaseUseCount.containsKey(phaseIdx))
+        if (phaseUseCount.containsKey(phase))
             {
                 // already have the phase in the phaseUseCount
                 // just increment the counter and return
-                Integer phaseUseInfo = phaseUseCount.get(phaseIdx);
-                if (phaseUseInfo.intValue() > 0)
+                int phaseUseInfo = phaseUseCount.get(phase).intValue();
+                if (phaseUseInfo > 0)
                     {
-                        phaseUseInfo = getInteger(phaseUseInfo.intValue() + 1);
-                        phaseUseCount.put(phaseIdx, phaseUseInfo);
+                        phaseUseCount.put(phase, new Integer(phaseUseInfo + 1));
                     }
                 return;
             }
 
         // first time I'm visitin this phase        
-        phaseUseCount.put(phaseIdx, getInteger(1));
+        phaseUseCount.put(phase, new Integer(1));
 
         // is this a base phase? if so, quit while I'm ahead        
-        Vector symbolic = symbolicIdx2symbolic.get(phaseIdx);
-        if (symbolic.size() == 1)
+        if (phase.isBottomSchedule())
             {
                 // before I quit, make sure that this phase will never have
                 // the lifting procedure applied to it!
-                phaseUseCount.put(phaseIdx, getInteger(-1));
+                phaseUseCount.put(phase, new Integer(-1));
                 return;
             }
 
         // go through all the children's phases
-        for (int i = 1; i < symbolic.size(); i += 2)
+        for (int i = 0; i < phase.getNumPhases(); i++)
             {
-                collectPhaseUseInfo((Integer)symbolic.get(i), phaseUseCount);
+                collectPhaseUseInfo(phase.getSubSched(i), phaseUseCount);
             }
     }
 
     void liftSingles2()
     {
-        Map<Integer, Integer> phaseUseCount = new HashMap<Integer, Integer>();
-        collectPhaseUseInfo(symbolicUnoptimizedInit, phaseUseCount);
-        collectPhaseUseInfo(symbolicUnoptimizedSteady, phaseUseCount);
-
-        Map<Integer, Integer> symbolicIdxSubstitionsChain = new HashMap<Integer, Integer>();
-        symbolicUnoptimizedInit =
-            liftSingles2(
-                         symbolicUnoptimizedInit,
-                         phaseUseCount,
-                         symbolicIdxSubstitionsChain);
-        symbolicUnoptimizedSteady =
-            liftSingles2(
-                         symbolicUnoptimizedSteady,
-                         phaseUseCount,
-                         symbolicIdxSubstitionsChain);
+        Map<Schedule, Integer> phaseUseCount = new IdentityHashMap<Schedule, Integer>();
+        collectPhaseUseInfo(init, phaseUseCount);
+        collectPhaseUseInfo(steady, phaseUseCount);
+
+        Map<Schedule, Schedule> done = new IdentityHashMap<Schedule, Schedule>();
+        init = liftSingles2(init, phaseUseCount, done);
+        steady = liftSingles2(steady, phaseUseCount, done);
     }
 
-    Integer liftSingles2(
-                         Integer symbolicIdx,
-                         Map<Integer, Integer> phaseUseCount,
-                         Map<Integer, Integer> symbolicIdxSubstitionsChain)
+    /**
+     * Inlines phases that are executed once and used nowhere else
+     * into the phase that uses them.
+     */
+    Schedule liftSingles2(Schedule sched,
+                          Map<Schedule, Integer> phaseUseCount,
+                          Map<Schedule, Schedule> done)
     {
-        if (symbolicIdxSubstitionsChain.containsKey(symbolicIdx))
+        // can't do anything to leaf schedules
+        if (sched.isBottomSchedule())
+            return sched;
+
+        if (done.containsKey(sched))
             {
-                return symbolicIdxSubstitionsChain.get(symbolicIdx);
+                return done.get(sched);
             }
 
-        Vector symbolicSched =
-            symbolicIdx2symbolic.get(symbolicIdx);
+        List<Schedule> newPhases = new ArrayList<Schedule>();
+        List<Integer> newNumExecs = new ArrayList<Integer>();
 
-        // can't do anything to leaf schedules
-        if (symbolicSched.size() == 1)
-            return symbolicIdx;
-
-        Vector<Object> newSymbolicSched = new Vector<Object>();
-
-        for (int i = 0; i < symbolicSched.size(); i += 2)
+        for (int i = 0; i < sched.getNumPhases(); i++)
             {
-                Integer phaseSymbolicIdx = (Integer)symbolicSched.get(i + 1);
-                Integer phaseNumExec = (Integer)symbolicSched.get(i);
+                Schedule phase = sched.getSubSched(i);
+                int phaseNumExec = sched.getSubSchedNumExecs(i);
 
                 // optimize the child phase
-                Integer newPhaseSymbolicIdx =
-                    liftSingles2(
-                                 phaseSymbolicIdx,
-                                 phaseUseCount,
-                                 symbolicIdxSubstitionsChain);
+                Schedule newPhase = liftSingles2(phase, phaseUseCount, done);
 
                 // should I inline this phase?
-                if (phaseNumExec.intValue() == 1
-                    && phaseUseCount.get(phaseSymbolicIdx).intValue()
-                    == 1)
+                if (phaseNumExec == 1
+                    && phaseUseCount.get(phase).intValue() == 1)
                     {
-                        // yes! find the phase to inline
-                        Vector phaseSymbolicSched;
-                        phaseSymbolicSched =
-                            symbolicIdx2symbolic.get(newPhaseSymbolicIdx);
-
-                        assert phaseSymbolicSched.size() != 1;
+                        // yes! copy the phases of the optimized phase
+                        assert !newPhase.isBottomSchedule();
 
-                        for (int j = 0; j < phaseSymbolicSched.size(); j++)
+                        for (int j = 0; j < newPhase.getNumPhases(); j++)
                             {
-                                newSymbolicSched.add(phaseSymbolicSched.get(j));
+                                newPhases.add(newPhase.getSubSched(j));
+                                newNumExecs.add(new Integer(newPhase.getSubSchedNumExecs(j)));
                             }
                     }
                 else
                     {
                         // no - just add it to the schedule normally
-                        newSymbolicSched.add(phaseNumExec);
-                        newSymbolicSched.add(phaseSymbolicIdx);
+                        // (the optimized phase is picked up on the
+                        // next round)
+                        newPhases.add(phase);
+                        newNumExecs.add(new Integer(phaseNumExec));
                     }
             }
 
-        Integer newSymbolicIdx;
-        if (symbolic2symbolicIdx.containsKey(newSymbolicSched))
-            {
-                newSymbolicIdx =
-                    symbolic2symbolicIdx.get(newSymbolicSched);
-            }
-        else
-            {
-                newSymbolicIdx = getInteger(symbolicIdx2symbolic.size());
-                symbolic2symbolicIdx.put(newSymbolicSched, newSymbolicIdx);
-                symbolicIdx2symbolic.put(newSymbolicIdx, newSymbolicSched);
-                symbolicIdx2stream.put(
-                                       newSymbolicIdx,
-                                       symbolicIdx2stream.get(symbolicIdx));
-            }
-
-        symbolicIdxSubstitionsChain.put(symbolicIdx, newSymbolicIdx);
-        return newSymbolicIdx;
+        Schedule newSched = makeSchedule(sched, newPhases, newNumExecs);
+        done.put(sched, newSched);
+        return newSched;
     }
 
-    private void printSymbolicSchedule(Integer symbolicIdx)
+    private void printSchedule(Schedule sched)
     {
         System.out.println ("[");
-        printSymbolicSchedule (symbolicIdx, new HashSet<Integer> ());
+        printSchedule (sched, new HashSet<Schedule> ());
         System.out.println ("]");
     }
 
-    private void printSymbolicSchedule(Integer symbolicIdx, Set<Integer> printedScheds)
+    private void printSchedule(Schedule sched, Set<Schedule> printedScheds)
     {
-        if (printedScheds.contains(symbolicIdx)) return;
+        if (printedScheds.contains(sched)) return;
         
-        System.out.print("$" + symbolicIdx + " = ");
+        System.out.print("$" + sched.hashCode() + " = ");
 
-        Vector self = symbolicIdx2symbolic.get(symbolicIdx);
-
-        if (self.size() == 1)
+        if (sched.isBottomSchedule())
             {
-                Schedule sched = symbolicIdx2sched.get(symbolicIdx);
                 System.out.println(
                                    sched.getStream().getObject() + "." + sched.getWorkFunc());
             }
         else
             {
-                Integer scheds [] = new Integer [self.size () / 2];
                 System.out.print("{ ");
 
-                Vector symbolicSched =
-                    symbolicIdx2symbolic.get(symbolicIdx);
-
-                for (int i = 0; i < symbolicSched.size(); i += 2)
+                for (int i = 0; i < sched.getNumPhases(); i++)
                     {
-                        int times = ((Integer)symbolicSched.get(i)).intValue();
-                        int idx = ((Integer)symbolicSched.get(i + 1)).intValue();
-                        scheds [i/2] = (Integer)symbolicSched.get(i + 1);
+                        int times = sched.getSubSchedNumExecs(i);
+                        int idx = sched.getSubSched(i).hashCode();
                         if (times > 1)
                             System.out.print("{" + times + " $" + idx + "} ");
                         else
@@ -570,11 +392,11 @@ public class ScheduleOptimizer extends AssertedClass
             
                 System.out.println ("}");
             
-                printedScheds.add(symbolicIdx);
+                printedScheds.add(sched);
             
-                for (int i = 0; i < symbolicSched.size () / 2; i++)
+                for (int i = 0; i < sched.getNumPhases(); i++)
                     {
-                        printSymbolicSchedule (scheds [i], printedScheds);
+                        printSchedule (sched.getSubSched(i), printedScheds);
                     }
             }
     }
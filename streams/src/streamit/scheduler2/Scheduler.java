@@ -20,6 +20,8 @@ import streamit.misc.AssertedClass;
 import streamit.scheduler2.iriter.Iterator;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
 
 /**
  * <dl>
@@ -125,6 +127,41 @@ abstract public class Scheduler extends AssertedClass
         computeBufferUse();
         return scheduleBuffers.getBufferSizeBetween(userBefore, userAfter);
     }
+
+    /**
+     * Returns the sum of the sizes of all the buffers needed to run
+     * the optimized init and steady state schedules.
+     */
+    public int getTotalBufferSize()
+    {
+        computeBufferUse();
+        return scheduleBuffers.getTotalBufferSize();
+    }
+
+    /**
+     * Returns the size of the optimized init and steady state
+     * schedules: the number of entries in all the distinct
+     * non-bottom schedules they are made of.
+     */
+    public int getOptimizedScheduleSize()
+    {
+        Set<Schedule> seen = new HashSet<Schedule>();
+        return getScheduleSize(getOptimizedInitSchedule(), seen)
+            + getScheduleSize(getOptimizedSteadySchedule(), seen);
+    }
+
+    private int getScheduleSize(Schedule sched, Set<Schedule> seen)
+    {
+        if (!seen.add(sched) || sched.isBottomSchedule())
+            return 0;
+
+        int size = sched.getNumPhases();
+        for (int nPhase = 0; nPhase < sched.getNumPhases(); nPhase++)
+            {
+                size += getScheduleSize(sched.getSubSched(nPhase), seen);
+            }
+        return size;
+    }
     
     /*
      * Schedule printing utilities
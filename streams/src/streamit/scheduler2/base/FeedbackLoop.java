@@ -17,7 +17,6 @@
 package streamit.scheduler2.base;
 
 import streamit.scheduler2.iriter.FeedbackLoopIter;
-import java.math.BigInteger;
 import streamit.misc.Fraction;
 import at.dms.kjc.sir.*;
 
@@ -185,29 +184,26 @@ abstract public class FeedbackLoop extends StreamWithSplitNJoin
         // now, assuming the body executes once, compute fractions
         // of how many times everything else executes
         {
-            BigInteger bodyPush, bodyPop;
-            BigInteger loopPush, loopPop;
+            int bodyPush, bodyPop;
+            int loopPush, loopPop;
 
-            bodyPush = BigInteger.valueOf(body.getSteadyPush());
-            bodyPop = BigInteger.valueOf(body.getSteadyPop());
+            bodyPush = body.getSteadyPush();
+            bodyPop = body.getSteadyPop();
 
-            loopPush = BigInteger.valueOf(loop.getSteadyPush());
-            loopPop = BigInteger.valueOf(loop.getSteadyPop());
+            loopPush = loop.getSteadyPush();
+            loopPop = loop.getSteadyPop();
 
-            BigInteger splitPush, splitPop;
-            BigInteger joinPush, joinPop;
+            int splitPush, splitPop;
+            int joinPush, joinPop;
 
             // get the feedback production rate and others
-            splitPush =
-                BigInteger.valueOf(getSteadySplitFlow().getPushWeight(1));
-            splitPop =
-                BigInteger.valueOf(getSteadySplitFlow().getPopWeight());
-            joinPop = BigInteger.valueOf(getSteadyJoinFlow().getPopWeight(1));
-            joinPush =
-                BigInteger.valueOf(getSteadyJoinFlow().getPushWeight());
+            splitPush = getSteadySplitFlow().getPushWeight(1);
+            splitPop = getSteadySplitFlow().getPopWeight();
+            joinPop = getSteadyJoinFlow().getPopWeight(1);
+            joinPush = getSteadyJoinFlow().getPushWeight();
 
             // calculate all the fractions
-            Fraction bodyFrac = new Fraction(BigInteger.ONE, BigInteger.ONE);
+            Fraction bodyFrac = new Fraction(1, 1);
             Fraction splitFrac =
                 new Fraction(bodyPush, splitPop).multiply(bodyFrac);
             Fraction loopFrac =
@@ -218,13 +214,13 @@ abstract public class FeedbackLoop extends StreamWithSplitNJoin
             // make sure that the rates are self consistant
             if (!joinFrac
                 .multiply(joinPush)
-                .divide(bodyPop)
+                .divide(new Fraction(bodyPop, 1))
                 .equals(bodyFrac))
                 {
                   if (feedbackLoop instanceof at.dms.kjc.iterator.SIRFeedbackLoopIter) {
                     assert false : ((at.dms.kjc.iterator.SIRFeedbackLoopIter)feedbackLoop).getStream().getIdent()
                     + " joiner has inconsistent rates - cannot be scheduled without growing buffers infinitely!"
-                    + "\n" + joinFrac.toString() + " * " + joinPush.toString() + " / " + bodyPop.toString() 
+                    + "\n" + joinFrac.toString() + " * " + joinPush + " / " + bodyPop 
                     + " != " + bodyFrac.toString();
                   } else {
                     // use from library: what data structures do we need for better error?
@@ -235,19 +231,10 @@ abstract public class FeedbackLoop extends StreamWithSplitNJoin
             // compute a minimal multiplier for all the fractions
             // s.t. multiplying the fractions by the multiplier will yield
             // all integers
-            BigInteger multiplier = bodyFrac.getDenominator();
-            multiplier =
-                multiplier.multiply(
-                                    splitFrac.getDenominator().divide(
-                                                                      multiplier.gcd(splitFrac.getDenominator())));
-            multiplier =
-                multiplier.multiply(
-                                    loopFrac.getDenominator().divide(
-                                                                     multiplier.gcd(loopFrac.getDenominator())));
-            multiplier =
-                multiplier.multiply(
-                                    joinFrac.getDenominator().divide(
-                                                                     multiplier.gcd(joinFrac.getDenominator())));
+            long multiplier = bodyFrac.getLongDenom();
+            multiplier = Fraction.lcm(multiplier, splitFrac.getLongDenom());
+            multiplier = Fraction.lcm(multiplier, loopFrac.getLongDenom());
+            multiplier = Fraction.lcm(multiplier, joinFrac.getLongDenom());
 
             // multiply all the fractions by the multiplier
             bodyFrac = bodyFrac.multiply(multiplier);
@@ -256,17 +243,17 @@ abstract public class FeedbackLoop extends StreamWithSplitNJoin
             joinFrac = joinFrac.multiply(multiplier);
 
             // make sure that all the fractions are integers now
-            assert bodyFrac.getDenominator().equals(BigInteger.ONE);
-            assert loopFrac.getDenominator().equals(BigInteger.ONE);
-            assert joinFrac.getDenominator().equals(BigInteger.ONE);
-            assert splitFrac.getDenominator().equals(BigInteger.ONE);
+            assert bodyFrac.getLongDenom() == 1;
+            assert loopFrac.getLongDenom() == 1;
+            assert joinFrac.getLongDenom() == 1;
+            assert splitFrac.getLongDenom() == 1;
 
             // and now actually set the appropriate multipliers on body and loop
             // and split and join:
-            bodyNumExecs = bodyFrac.getNumerator().intValue();
-            loopNumExecs = loopFrac.getNumerator().intValue();
-            joinNumRounds = joinFrac.getNumerator().intValue();
-            splitNumRounds = splitFrac.getNumerator().intValue();
+            bodyNumExecs = (int) bodyFrac.getLongNum();
+            loopNumExecs = (int) loopFrac.getLongNum();
+            joinNumRounds = (int) joinFrac.getLongNum();
+            splitNumRounds = (int) splitFrac.getLongNum();
 
             // make sure that both children, splitter and joiner will
             // execute a positive # of times
@@ -18,7 +18,6 @@ package streamit.scheduler2.base;
 
 import streamit.scheduler2.iriter./*persistent.*/
     SplitJoinIter;
-import java.math.BigInteger;
 
 import at.dms.kjc.sir.SIRStream;
 import streamit.misc.Fraction;
@@ -167,7 +166,7 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
      * SplitJoin to go through an entire steady state.
      * These are initialized by computeSteadySchedule
      */
-    private BigInteger childrenNumExecs[];
+    private int childrenNumExecs[];
 
     /**
      * Return how many times a particular child should be executed in
@@ -179,7 +178,7 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
         // make sure nChild is in range
         assert nChild >= 0 && nChild < getNumChildren();
 
-        return childrenNumExecs[nChild].intValue();
+        return childrenNumExecs[nChild];
     }
 
     /**
@@ -188,7 +187,7 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
      * in order to execute a full steady state of this SplitJoin.
      * These are initialized by computeSteadySchedule
      */
-    private BigInteger splitNumRounds, joinNumRounds;
+    private int splitNumRounds, joinNumRounds;
 
     /**
      * return the numberof times all the splitter work functions need to
@@ -197,7 +196,7 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
      */
     protected int getSplitNumRounds()
     {
-        return splitNumRounds.intValue();
+        return splitNumRounds;
     }
 
     /**
@@ -207,7 +206,7 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
      */
     protected int getJoinNumRounds()
     {
-        return joinNumRounds.intValue();
+        return joinNumRounds;
     }
 
     /**
@@ -259,16 +258,14 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
                             if (splitRate == null)
                                 {
                                     // if I hadn't set the split rate yet, do it now
-                                    splitRate =
-                                        new Fraction(BigInteger.ONE, BigInteger.ONE);
+                                    splitRate = new Fraction(1, 1);
                                 }
 
                             // compute the rate at which the child should be executing
                             // (relative to the splitter)
                             childRate =
                                 new Fraction(numOut, numIn)
-                                .multiply(splitRate)
-                                .reduce();
+                                .multiply(splitRate);
 
                             // if I still hadn't computed the rate at which the joiner
                             // is executed, try to compute it:
@@ -283,8 +280,7 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
 
                                     joinRate =
                                         new Fraction(childOut, joinIn)
-                                        .multiply(childRate)
-                                        .reduce();
+                                        .multiply(childRate);
                                 }
                         }
 
@@ -316,7 +312,7 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
                     assert joinRate == null;
 
                     // okay, just set it to ONE/ONE
-                    joinRate = new Fraction(BigInteger.ONE, BigInteger.ONE);
+                    joinRate = new Fraction(1, 1);
                 }
 
             int nChild;
@@ -352,8 +348,7 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
                                 // w.r.t. the splitter
                                 newChildRate =
                                     new Fraction(joinIn, childOut)
-                                    .multiply(joinRate)
-                                    .reduce();
+                                    .multiply(joinRate);
                             }
                         else
                             {
@@ -413,15 +408,18 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
 
         // normalize all the rates to be integers
         {
-            BigInteger multiplier;
+            // the rates are all products of int rates, so they
+            // normally stay in longs; Fraction.lcm throws an
+            // ArithmeticException if the multiplier doesn't
+            long multiplier;
 
             if (joinRate != null)
                 {
-                    multiplier = joinRate.getDenominator();
+                    multiplier = joinRate.getLongDenom();
                 }
             else
                 {
-                    multiplier = BigInteger.ONE;
+                    multiplier = 1;
                 }
 
             // find a factor to multiply all the fractional rates by
@@ -432,11 +430,7 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
                         Fraction childRate = (Fraction) childrenRates[index];
                         assert childRate != null;
 
-                        BigInteger rateDenom = childRate.getDenominator();
-                        assert rateDenom != null;
-
-                        BigInteger gcd = multiplier.gcd(rateDenom);
-                        multiplier = multiplier.multiply(rateDenom).divide(gcd);
+                        multiplier = Fraction.lcm(multiplier, childRate.getLongDenom());
                     }
             }
 
@@ -446,29 +440,29 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
                 if (splitRate != null)
                     {
                         splitRate = splitRate.multiply(multiplier);
-                        assert splitRate.getDenominator().equals(BigInteger.ONE);
-                        splitNumRounds = splitRate.getNumerator();
+                        assert splitRate.getLongDenom() == 1;
+                        splitNumRounds = (int) splitRate.getLongNum();
                     }
                 else
                     {
-                        splitNumRounds = BigInteger.ZERO;
+                        splitNumRounds = 0;
                     }
 
                 if (joinRate != null)
                     {
                         joinRate = joinRate.multiply(multiplier);
-                        assert joinRate.getDenominator().equals(BigInteger.ONE);
-                        joinNumRounds = joinRate.getNumerator();
+                        assert joinRate.getLongDenom() == 1;
+                        joinNumRounds = (int) joinRate.getLongNum();
                     }
                 else
                     {
-                        joinNumRounds = BigInteger.ZERO;
+                        joinNumRounds = 0;
                     }
 
                 // normalize the children's rates and store them in
                 // childrenNumExecs
                 {
-                    childrenNumExecs = new BigInteger[nChildren];
+                    childrenNumExecs = new int[nChildren];
 
                     int nChild;
                     for (nChild = 0; nChild < nChildren; nChild++)
@@ -478,12 +472,11 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
 
                             Fraction newChildRate =
                                 childRate.multiply(multiplier);
-                            assert newChildRate.getDenominator()
-                                .equals(BigInteger.ONE);
+                            assert newChildRate.getLongDenom() == 1;
 
                             // set the rate
                             childrenNumExecs[nChild] =
-                                newChildRate.getNumerator();
+                                (int) newChildRate.getLongNum();
 
                             // Debugging:
                             if (debugsplitjoin) {
@@ -498,7 +491,7 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
 
                             // make sure that the child executes a positive
                             // number of times!
-                            assert childrenNumExecs[nChild].signum() == 1;
+                            assert childrenNumExecs[nChild] > 0;
                         }
                 }
             }
@@ -507,10 +500,10 @@ abstract public class SplitJoin extends StreamWithSplitNJoin
         // setup my variables that come for Stream:
         {
             int pop =
-                splitNumRounds.intValue()
+                splitNumRounds
                 * getSteadySplitFlow().getPopWeight();
             int push =
-                joinNumRounds.intValue()
+                joinNumRounds
                 * getSteadyJoinFlow().getPushWeight();
 
             setSteadyPeek(pop);
@@ -58,7 +58,7 @@ abstract public class FeedbackLoop
                     Schedule sched =
                         new Schedule(
                                      feedbackLoop.getSplitterWork(nPhase),
-                                     feedbackLoop.getUnspecializedIter());
+                                     feedbackLoop.getUnspecializedIter()).intern();
                     int pushAmount = feedbackLoop.getSplitPushWeights(nPhase)[0];
                     splitPhases[nPhase] =
                         new PhasingSchedule(this, sched, 0, 0, pushAmount);
@@ -77,7 +77,7 @@ abstract public class FeedbackLoop
                     Schedule sched =
                         new Schedule(
                                      feedbackLoop.getJoinerWork(nPhase),
-                                     feedbackLoop.getUnspecializedIter());
+                                     feedbackLoop.getUnspecializedIter()).intern();
                     int popAmount = feedbackLoop.getJoinPopWeights(nPhase)[0];
                     joinPhases[nPhase] =
                         new PhasingSchedule(this, sched, popAmount, popAmount, 0);
@@ -81,7 +81,7 @@ abstract public class Filter
         Schedule workFunction =
             new Schedule(
                          filterIter.getWorkFunctionPhase(nPhase),
-                         filterIter.getUnspecializedIter());
+                         filterIter.getUnspecializedIter()).intern();
         PhasingSchedule phase =
             new PhasingSchedule(
                                 this,
@@ -117,7 +117,7 @@ abstract public class Filter
         Schedule initCall =
             new Schedule(
                          filterIter.getInitFunctionStage(nPhase),
-                         filterIter.getUnspecializedIter());
+                         filterIter.getUnspecializedIter()).intern();
         PhasingSchedule initPhase =
             new PhasingSchedule(
                                 this,
@@ -252,10 +252,11 @@ public class PhasingSchedule extends DestroyedClass
                         sched.addSubSchedule(getPhase(phase).getSchedule());
                     }
 
-                phasingPreComputedSchedule = sched;
+                // share it with any other phase that does the same
+                phasingPreComputedSchedule = sched.intern();
 
 
-                return sched;
+                return phasingPreComputedSchedule;
             }
     }
 }
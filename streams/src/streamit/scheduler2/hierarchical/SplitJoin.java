@@ -58,7 +58,7 @@ abstract public class SplitJoin
                     Schedule sched =
                         new Schedule(
                                      splitjoin.getSplitterWork(nPhase),
-                                     splitjoin.getUnspecializedIter());
+                                     splitjoin.getUnspecializedIter()).intern();
                     int popAmount = splitjoin.getSplitPop(nPhase);
                     splitPhases[nPhase] =
                         new PhasingSchedule(
@@ -82,7 +82,7 @@ abstract public class SplitJoin
                     Schedule sched =
                         new Schedule(
                                      splitjoin.getJoinerWork(nPhase),
-                                     splitjoin.getUnspecializedIter());
+                                     splitjoin.getUnspecializedIter()).intern();
                     int pushAmount = splitjoin.getJoinPush(nPhase);
                     joinPhases[nPhase] =
                         new PhasingSchedule(this, sched, 0, 0, pushAmount);
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.scheduler2.minbuffer;
+
+import streamit.scheduler2.iriter./*persistent.*/
+    PipelineIter;
+
+/**
+ * This class implements a pipeline for the minbuffer scheduler.  It
+ * uses the minlatency pull algorithm, but runs its last child as few
+ * times per phase as the limit on the number of phases allows (once,
+ * if there is no limit), so that every phase pulls only as much data
+ * through the pipeline as it takes to produce that little output.
+ */
+
+public class Pipeline extends streamit.scheduler2.minlatency.Pipeline
+{
+    final StreamFactory factory;
+
+    public Pipeline(PipelineIter iterator, StreamFactory _factory)
+    {
+        super(iterator, _factory);
+        factory = _factory;
+    }
+
+    protected int getLastChildNumExecPerPhase(int numLastChildPhases)
+    {
+        if (numLastChildPhases <= factory.maxPipelinePhases)
+            return 1;
+
+        factory.limitedPhases = true;
+        return 1 + (numLastChildPhases - 1) / factory.maxPipelinePhases;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.scheduler2.minbuffer;
+
+import streamit.scheduler2.iriter.Iterator;
+import streamit.scheduler2.base.StreamInterface;
+
+/**
+ * A scheduler that trades schedule size for buffer space.  It tries
+ * splitting every pipeline into at most 1, 2, 4, ... phases, up to
+ * as many as the pipeline can have, and picks the schedule that
+ * needs the least buffer space in total among those whose optimized
+ * size is no more than maxScheduleSize.  If none is that small, it
+ * picks the smallest one.  A maxScheduleSize of 0 means that the
+ * size doesn't matter, and only the finest schedule is computed.
+ *
+ * @see streamit.scheduler2.Scheduler#getTotalBufferSize
+ * @see streamit.scheduler2.Scheduler#getOptimizedScheduleSize
+ */
+
+public class Scheduler extends streamit.scheduler2.Scheduler
+{
+    final int maxScheduleSize;
+
+    protected Scheduler(Iterator _root, int _maxScheduleSize)
+    {
+        super (_root);
+
+        maxScheduleSize = _maxScheduleSize;
+    }
+
+    // static constructor for consistency with constrained.Scheduler
+    public static Scheduler create(Iterator _root, int _maxScheduleSize) {
+        return new Scheduler(_root, _maxScheduleSize);
+    }
+
+    public void computeSchedule()
+    {
+        if (steadySchedule != null) return;
+
+        Candidate best;
+        if (maxScheduleSize <= 0)
+            {
+                best = new Candidate(root, Integer.MAX_VALUE);
+            }
+        else
+            {
+                best = null;
+                int maxPipelinePhases = 1;
+                while (true)
+                    {
+                        Candidate candidate =
+                            new Candidate(root, maxPipelinePhases);
+
+                        if (best == null || candidate.isBetterThan(best))
+                            best = candidate;
+
+                        // stop once no pipeline was held back, or
+                        // doubling the limit again would overflow
+                        if (!candidate.factory.hasLimitedPhases()
+                            || maxPipelinePhases > Integer.MAX_VALUE / 2)
+                            break;
+                        maxPipelinePhases *= 2;
+                    }
+            }
+
+        initSchedule = best.getUnoptimizedInitSchedule();
+        steadySchedule = best.getUnoptimizedSteadySchedule();
+    }
+
+    /**
+     * A schedule computed with a particular limit on the number of
+     * phases of pipelines.
+     */
+    private class Candidate extends streamit.scheduler2.Scheduler
+    {
+        final StreamFactory factory;
+        final int size;
+        final int buffers;
+
+        Candidate(Iterator _root, int maxPipelinePhases)
+        {
+            super (_root);
+
+            factory = new StreamFactory(maxPipelinePhases);
+            StreamInterface rootStream = factory.newFrom(root, null);
+            rootStream.computeSchedule();
+            initSchedule = rootStream.getInitSchedule();
+            steadySchedule = rootStream.getSteadySchedule();
+
+            if (maxScheduleSize > 0)
+                {
+                    size = getOptimizedScheduleSize();
+                    buffers = getTotalBufferSize();
+                }
+            else
+                {
+                    size = 0;
+                    buffers = 0;
+                }
+        }
+
+        public void computeSchedule()
+        {
+        }
+
+        boolean fits()
+        {
+            return size <= maxScheduleSize;
+        }
+
+        boolean isBetterThan(Candidate other)
+        {
+            if (fits() != other.fits())
+                return fits();
+            if (!fits())
+                return size < other.size;
+            if (buffers != other.buffers)
+                return buffers < other.buffers;
+            return size < other.size;
+        }
+    }
+}
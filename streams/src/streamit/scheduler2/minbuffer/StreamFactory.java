@@ -0,0 +1,83 @@
+/*
+ * Copyright 2003 by the Massachusetts Institute of Technology.
+ *
+ * Permission to use, copy, modify, and distribute this
+ * software and its documentation for any purpose and without
+ * fee is hereby granted, provided that the above copyright
+ * notice appear in all copies and that both that copyright
+ * notice and this permission notice appear in supporting
+ * documentation, and that the name of M.I.T. not be used in
+ * advertising or publicity pertaining to distribution of the
+ * software without specific, written prior permission.
+ * M.I.T. makes no representations about the suitability of
+ * this software for any purpose.  It is provided "as is"
+ * without express or implied warranty.
+ */
+
+package streamit.scheduler2.minbuffer;
+
+import streamit.misc.DestroyedClass;
+import streamit.scheduler2.iriter.Iterator;
+import streamit.scheduler2.base.StreamInterface;
+
+/**
+ * This class implements the StreamFactory interface for the
+ * minbuffer scheduler.  Filters, splitjoins and feedback loops are
+ * scheduled by the minlatency scheduler; pipelines are split into at
+ * most maxPipelinePhases phases each.
+ */
+
+public class StreamFactory
+    extends DestroyedClass
+    implements streamit.scheduler2.base.StreamFactory
+{
+    final int maxPipelinePhases;
+    boolean limitedPhases = false;
+
+    public StreamFactory(int _maxPipelinePhases)
+    {
+        maxPipelinePhases = _maxPipelinePhases;
+    }
+
+    public StreamInterface newFrom(Iterator streamIter, Iterator parent)
+    {
+        if (streamIter.isFilter() != null)
+            {
+                return new streamit.scheduler2.minlatency.Filter(
+                                                                 streamIter.isFilter());
+            }
+
+        if (streamIter.isPipeline() != null)
+            {
+                return new Pipeline(streamIter.isPipeline(), this);
+            }
+
+        if (streamIter.isSplitJoin() != null)
+            {
+                return new streamit.scheduler2.minlatency.SplitJoin(
+                                                                    streamIter.isSplitJoin(),
+                                                                    this);
+            }
+
+        if (streamIter.isFeedbackLoop() != null)
+            {
+                return new streamit.scheduler2.minlatency.FeedbackLoop(
+                                                                       streamIter.isFeedbackLoop(),
+                                                                       this);
+            }
+
+        ERROR ("Unsupported type passed to StreamFactory!");
+        return null;
+    }
+
+    public boolean needsSchedule() { return true; }
+
+    /**
+     * Returns whether some pipeline would have been split into more
+     * phases, had maxPipelinePhases allowed it.
+     */
+    public boolean hasLimitedPhases()
+    {
+        return limitedPhases;
+    }
+}
@@ -52,7 +52,7 @@ public class Filter extends streamit.scheduler2.hierarchical.Filter
                     Schedule initCall =
                         new Schedule(
                                      filterIter.getInitFunctionStage(nStage),
-                                     filterIter.getUnspecializedIter());
+                                     filterIter.getUnspecializedIter()).intern();
                     PhasingSchedule stage =
                         new PhasingSchedule(
                                             this,
@@ -74,7 +74,7 @@ public class Filter extends streamit.scheduler2.hierarchical.Filter
                     Schedule workFunction =
                         new Schedule(
                                      filterIter.getWorkFunctionPhase(nPhase),
-                                     filterIter.getUnspecializedIter());
+                                     filterIter.getUnspecializedIter()).intern();
                     PhasingSchedule phase =
                         new PhasingSchedule(
                                             this,
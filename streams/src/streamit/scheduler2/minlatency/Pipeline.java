@@ -343,6 +343,40 @@ public class Pipeline extends streamit.scheduler2.hierarchical.Pipeline
         return extraChildrenExecs;
     }
 
+    /**
+     * Returns the most times the last child should be executed in
+     * one phase of the steady state schedule, given that it is
+     * executed numLastChildPhases times in the whole steady state.
+     * Fewer executions per phase mean more phases, and less data
+     * buffered between the children.
+     */
+    protected int getLastChildNumExecPerPhase(int numLastChildPhases)
+    {
+        if (getHierarchicalChild(getNumChildren() - 1).getSteadyPush() != 0)
+            {
+                // the last child is not a sink
+                // execute it to the heart's content
+                return numLastChildPhases;
+            }
+        else
+            {
+                // the last child is a sink! use the algorithm described
+                // in karczma's thesis (page 87) to figure out how many
+                // phases of the pipeline I want
+                int numDataConsumed =
+                    getChildNumExecs(getNumChildren() - 1)
+                    * getHierarchicalChild(getNumChildren() - 1)
+                    .getSteadyPop();
+                double numPipelinePhases = Math.sqrt(numDataConsumed);
+                if (numPipelinePhases != 0)
+                    return (int)Math.ceil(
+                                          ((double)numLastChildPhases)
+                                          / numPipelinePhases);
+                else
+                    return numLastChildPhases;
+            }
+    }
+
     public void computeSchedule()
     {
         int steadyChildPhases[] = new int[getNumChildren()];
@@ -418,38 +452,9 @@ public class Pipeline extends streamit.scheduler2.hierarchical.Pipeline
                 }
 
             // figure out how many times I want to run the last child
-            int lastChildNumExecPerPhase;
-            {
-                if (getHierarchicalChild(getNumChildren() - 1)
-                    .getSteadyPush()
-                    != 0)
-                    {
-                        // the last child is not a sink
-                        // execute it to the heart's content
-                        lastChildNumExecPerPhase =
-                            numChildPhases[getNumChildren() - 1];
-                    }
-                else
-                    {
-                        // the last child is a sink! use the algorithm described
-                        // in karczma's thesis (page 87) to figure out how many
-                        // phases of the pipeline I want
-                        int numDataConsumed =
-                            getChildNumExecs(getNumChildren() - 1)
-                            * getHierarchicalChild(getNumChildren() - 1)
-                            .getSteadyPop();
-                        double numPipelinePhases = Math.sqrt(numDataConsumed);
-                        if (numPipelinePhases != 0)
-                            lastChildNumExecPerPhase =
-                                (int)Math.ceil(
-                                               ((double)numChildPhases[getNumChildren()
-                                                                       - 1])
-                                               / numPipelinePhases);
-                        else
-                            lastChildNumExecPerPhase =
-                                numChildPhases[getNumChildren() - 1];
-                    }
-            }
+            int lastChildNumExecPerPhase =
+                getLastChildNumExecPerPhase(
+                                            numChildPhases[getNumChildren() - 1]);
 
             int extraExecs =
                 computeMinLatencySchedule(
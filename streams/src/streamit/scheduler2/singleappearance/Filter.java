@@ -65,7 +65,7 @@ public class Filter extends streamit.scheduler2.hierarchical.Filter
                                                                         this,
                                                                         new Schedule(
                                                                                      initFunc,
-                                                                                     filterIter.getUnspecializedIter()),
+                                                                                     filterIter.getUnspecializedIter()).intern(),
                                                                         peek,
                                                                         pop,
                                                                         push));
@@ -97,7 +97,7 @@ public class Filter extends streamit.scheduler2.hierarchical.Filter
                     steadySchedule.addSubSchedule(
                                                   new Schedule(
                                                                steadyFunc,
-                                                               filterIter.getUnspecializedIter()));
+                                                               filterIter.getUnspecializedIter()).intern());
                 }
 
             steadyPhasingSchedule =